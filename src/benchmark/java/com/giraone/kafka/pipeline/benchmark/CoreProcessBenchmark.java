@@ -0,0 +1,102 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.pipe.AbstractStringPipeService;
+import com.giraone.kafka.pipeline.service.pipe.PipeBytesService;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the pipe task per record for the String path (deserialize, toUpperCase, serialize - as done by the
+ * StringDeserializer, AbstractStringPipeService.coreProcess and the StringSerializer) compared to the byte array path
+ * of PipeBytesService, that transforms the consumed bytes in place. Use the JMH gc profiler to compare the
+ * allocation rate. {@link #pipeServiceCoreProcess()} calls the real AbstractStringPipeService.coreProcess on a String,
+ * that is already deserialized.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CoreProcessBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    int size;
+
+    byte[] consumed;
+    byte[] work;
+    String consumedString;
+    CoreProcessPipeService pipeService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        consumed = new byte[size];
+        for (int i = 0; i < size; i++) {
+            consumed[i] = (byte) ('a' + i % 26);
+        }
+        work = new byte[size];
+        consumedString = new String(consumed, StandardCharsets.UTF_8);
+        final ApplicationProperties applicationProperties = new ApplicationProperties();
+        pipeService = new CoreProcessPipeService(applicationProperties,
+            new CounterService(applicationProperties, new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public byte[] stringPath() {
+        final String value = new String(consumed, StandardCharsets.UTF_8);
+        final String output = value.toUpperCase(Locale.ROOT);
+        return output.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] bytesPath() {
+        // the copy stands for the ByteArrayDeserializer, which copies the value from the fetch buffer
+        System.arraycopy(consumed, 0, work, 0, size);
+        PipeBytesService.toUpperCaseAscii(work, 0, size);
+        return work;
+    }
+
+    @Benchmark
+    public String pipeServiceCoreProcess() {
+        return pipeService.coreProcessValue(consumedString);
+    }
+
+    /**
+     * Makes the protected core task accessible. It is never started, so it needs neither a sender nor a receiver.
+     */
+    static class CoreProcessPipeService extends AbstractStringPipeService {
+
+        CoreProcessPipeService(ApplicationProperties applicationProperties, CounterService counterService) {
+            super(applicationProperties, counterService, new KafkaSenderPool<>(Collections.singletonList(null), topic -> 0),
+                null, null);
+        }
+
+        @Override
+        protected void start() {
+            // not used
+        }
+
+        String coreProcessValue(String input) {
+            return coreProcess(input);
+        }
+    }
+}
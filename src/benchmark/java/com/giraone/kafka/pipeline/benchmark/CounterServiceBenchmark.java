@@ -0,0 +1,96 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of one {@link CounterService} call on the hot path and how it scales with the number of worker threads.
+ * Each thread writes to its own partition, as the workers of PipePartitionedService do.
+ * The log rate is set to one hour, so the measurement does not include the log output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedCounterService {
+
+        CounterService counterService;
+        final AtomicInteger partitions = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            final ApplicationProperties applicationProperties = new ApplicationProperties();
+            applicationProperties.setLogRate(Duration.ofHours(1));
+            counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPartition {
+
+        int partition;
+        long offset;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedCounterService shared) {
+            partition = shared.partitions.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void logRateReceived_1Thread(SharedCounterService shared, ThreadPartition thread) {
+        shared.counterService.logRateReceived(thread.partition, thread.offset++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logRateReceived_4Threads(SharedCounterService shared, ThreadPartition thread) {
+        shared.counterService.logRateReceived(thread.partition, thread.offset++);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void logRateReceived_8Threads(SharedCounterService shared, ThreadPartition thread) {
+        shared.counterService.logRateReceived(thread.partition, thread.offset++);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void logRateReceived_MaxThreads(SharedCounterService shared, ThreadPartition thread) {
+        shared.counterService.logRateReceived(thread.partition, thread.offset++);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void logRateProcessed_1Thread(SharedCounterService shared) {
+        shared.counterService.logRateProcessed();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void logRateProcessed_MaxThreads(SharedCounterService shared) {
+        shared.counterService.logRateProcessed();
+    }
+}
@@ -0,0 +1,74 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per record of the dedup stage of the pipe services: hashing key and value, the lookup on receive and the
+ * insert after send. The cache is full, so every insert also evicts the oldest entry. With the JMH gc profiler
+ * it can be verified, that no memory is allocated per record. The fixed memory of the cache is logged on setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DedupCacheBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DedupCacheBenchmark.class);
+
+    @Param({"10000", "100000", "1000000"})
+    int maxEntries;
+
+    DedupCache dedupCache;
+    String[] keys;
+    String value = "ABCDEFGHIJ";
+    long now;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dedupCache = new DedupCache(maxEntries, 0L);
+        keys = new String[4096];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Integer.toString(1_700_000_000 + i);
+        }
+        for (long i = 0; i < maxEntries; i++) {
+            dedupCache.add(i + 1, now);
+        }
+        LOGGER.info("DedupCache with {} entries uses {} bytes", maxEntries, dedupCache.memoryBytes());
+    }
+
+    @Benchmark
+    public long hash() {
+        return DedupCache.hash(keys[next++ & 4095], value);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return dedupCache.contains(DedupCache.hash(keys[next++ & 4095], value), now);
+    }
+
+    @Benchmark
+    public boolean containsAndAdd() {
+        // one unique record: lookup on receive, insert (with eviction) after send
+        final long hash = DedupCache.hash(keys[next & 4095], value) + next++;
+        return !dedupCache.contains(hash, now) && dedupCache.add(hash, now);
+    }
+}
@@ -0,0 +1,117 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per record logging of the services (logReceived, logProcessed, logSent): counters, latency recording
+ * and the debug log statement. With level DEBUG the log events are created, but not written, because the logger
+ * has no appender - so the cost of the event creation is measured without the I/O. With level INFO only the
+ * argument array of the disabled debug statement is left. Use the JMH gc profiler to see the allocation per record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LogPathBenchmark {
+
+    @Param({"INFO", "DEBUG"})
+    String level;
+
+    LoggingService service;
+    KafkaReceiverRecord<String, String> receiverRecord;
+    RecordMetadata recordMetadata;
+
+    private Logger serviceLogger;
+    private Level savedLevel;
+    private boolean savedAdditive;
+
+    @Setup
+    public void setUp() {
+        final ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setLogRate(Duration.ofHours(1));
+        service = new LoggingService(applicationProperties, new CounterService(applicationProperties, new SimpleMeterRegistry()));
+        receiverRecord = SyntheticRecords.create(0, 4711L, "key", SyntheticRecords.value(0, 100));
+        recordMetadata = new RecordMetadata(new TopicPartition("b1", 0), 4711L, 0, System.currentTimeMillis(), 3, 100);
+
+        serviceLogger = (Logger) LoggerFactory.getLogger(AbstractService.class);
+        savedLevel = serviceLogger.getLevel();
+        savedAdditive = serviceLogger.isAdditive();
+        serviceLogger.setLevel(Level.toLevel(level));
+        // no appender - the events are created, but not written
+        serviceLogger.setAdditive(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serviceLogger.setLevel(savedLevel);
+        serviceLogger.setAdditive(savedAdditive);
+    }
+
+    @Benchmark
+    public void logReceived() {
+        service.received(receiverRecord);
+    }
+
+    @Benchmark
+    public void logProcessed() {
+        service.processed(receiverRecord);
+    }
+
+    @Benchmark
+    public void logSent() {
+        service.sent(recordMetadata, receiverRecord);
+    }
+
+    /**
+     * Makes the protected log methods accessible. It is never started.
+     */
+    static class LoggingService extends AbstractService {
+
+        LoggingService(ApplicationProperties applicationProperties, CounterService counterService) {
+            super(applicationProperties, counterService);
+        }
+
+        @Override
+        protected void start() {
+            // not used
+        }
+
+        void received(KafkaReceiverRecord<String, String> receiverRecord) {
+            logReceived(receiverRecord);
+        }
+
+        void processed(KafkaReceiverRecord<String, String> receiverRecord) {
+            logProcessed(receiverRecord);
+        }
+
+        void sent(RecordMetadata recordMetadata, KafkaReceiverRecord<String, String> receiverRecord) {
+            logSent(recordMetadata, receiverRecord.consumerRecord());
+        }
+    }
+}
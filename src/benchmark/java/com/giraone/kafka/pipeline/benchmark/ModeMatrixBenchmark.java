@@ -0,0 +1,248 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import com.giraone.kafka.pipeline.KafkaPipelineApplication;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * End-to-end comparison of the modes and configurations with an in-process KRaft broker - no Docker needed.
+ * Each mode runs in its own application context for every combination of scheduler type, acknowledgement queue mode
+ * and max.poll.records (the consumer settings do not apply to the producers, so each producer runs once). The pipes
+ * and consumers are fed by a producer of this class with records, that carry the creation time header.
+ * <p>
+ * Throughput is measured from the first received (producer: produced) record until the last record is committed
+ * (producer: sent). The latency is the end-to-end latency of the commit stage from the "pipeline.latency" timer.
+ * The producers run without interval (as fast as possible) or paced with matrix.producerRate events per second.
+ * A run, that does not complete within the timeout, is marked as FAILED in the report and the benchmark exits with 1.
+ * The report is written to target/mode-matrix as CSV and Markdown. The matrix is configured by system properties:
+ * matrix.modes, matrix.schedulerTypes, matrix.ackModes, matrix.maxPollRecords (comma separated), matrix.records,
+ * matrix.timeoutSeconds, matrix.waitTime (processing time per record), matrix.producerRate and matrix.reportDir.
+ */
+public class ModeMatrixBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModeMatrixBenchmark.class);
+
+    static final int PARTITIONS = 4;
+    static final int VALUE_SIZE = 100;
+    static final long POLL_MILLIS = 5L;
+
+    private final List<String> modes = listProperty("matrix.modes",
+        "ProduceConcatMap,ProduceFlatMap,PipeReceiveSend,PipePartitioned,ConsumeDefault,ConsumeSampled");
+    private final List<String> schedulerTypes = listProperty("matrix.schedulerTypes", "parallel,newParallel,newBoundedElastic");
+    private final List<String> ackModes = listProperty("matrix.ackModes", "STRICT,COMPACT");
+    private final List<String> maxPollRecords = listProperty("matrix.maxPollRecords", "10,500");
+    private final long records = Long.getLong("matrix.records", 10_000L);
+    private final long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong("matrix.timeoutSeconds", 120L));
+    private final String waitTime = System.getProperty("matrix.waitTime", "0ms");
+    private final double producerRate = Double.parseDouble(System.getProperty("matrix.producerRate", "0"));
+    private final Path reportDir = Path.of(System.getProperty("matrix.reportDir", "target/mode-matrix"));
+
+    private final ModeMatrixReport report = new ModeMatrixReport();
+    private EmbeddedKafkaKraftBroker broker;
+    private int runNumber;
+    private int failedRuns;
+
+    public static void main(String[] args) throws Exception {
+        final int failedRuns = new ModeMatrixBenchmark().runAll();
+        // the schedulers of the services have non daemon threads
+        System.exit(failedRuns > 0 ? 1 : 0);
+    }
+
+    /**
+     * @return the number of failed runs
+     */
+    int runAll() throws Exception {
+
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS);
+        broker.afterPropertiesSet();
+        LOGGER.info("Embedded KRaft broker started at {}", broker.getBrokersAsString());
+        try {
+            for (String mode : modes) {
+                if (isProducer(mode)) {
+                    report.add(run(mode, null, null, null));
+                    continue;
+                }
+                for (String schedulerType : schedulerTypes) {
+                    for (String ackMode : ackModes) {
+                        for (String maxPoll : maxPollRecords) {
+                            report.add(run(mode, schedulerType, ackMode, Integer.valueOf(maxPoll)));
+                        }
+                    }
+                }
+            }
+        } finally {
+            report.write(reportDir);
+            broker.destroy();
+        }
+        LOGGER.info("Report written to {}:\n{}", reportDir.toAbsolutePath(), String.join("\n", report.markdown()));
+        if (failedRuns > 0) {
+            LOGGER.error("{} of {} runs failed", failedRuns, runNumber);
+        }
+        return failedRuns;
+    }
+
+    ModeMatrixReport.Row run(String mode, String schedulerType, String ackMode, Integer maxPoll) throws Exception {
+
+        runNumber++;
+        final String topicA = "matrix-" + runNumber + "-a";
+        final String topicB = "matrix-" + runNumber + "-b";
+        broker.addTopics(topicA, topicB);
+        LOGGER.info("Run {}: mode={} schedulerType={} acknowledgementQueueMode={} maxPollRecords={}",
+            runNumber, mode, schedulerType, ackMode, maxPoll);
+
+        final List<String> args = new ArrayList<>(List.of(
+            "--spring.application.name=matrix-" + runNumber,
+            "--spring.main.banner-mode=off",
+            "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+            "--spring.kafka.jaas.enabled=false",
+            "--spring.kafka.security.protocol=PLAINTEXT",
+            "--spring.kafka.consumer.group-id=matrix-" + runNumber,
+            "--spring.kafka.consumer.auto-offset-reset=earliest",
+            "--logging.level.com.giraone=WARN",
+            "--application.mode=" + mode,
+            "--application.topic-a=" + topicA,
+            "--application.topic-b=" + topicB,
+            "--application.processing.wait-time=" + waitTime,
+            "--application.producer-variables.max-number-of-events=" + records,
+            "--application.metrics.latency-per-partition=false"
+        ));
+        final boolean producer = isProducer(mode);
+        if (producer) {
+            // without the default interval of 10ms between two events - else the interval is measured
+            args.add("--application.producer-variables.interval=0ms");
+            if (producerRate > 0.0) {
+                args.add("--application.producer-variables.pacing.rate=" + producerRate);
+            }
+        }
+        if (schedulerType != null) {
+            args.add("--application.processing.scheduler-type=" + schedulerType);
+            args.add("--application.consumer.acknowledgement-queue-mode=" + ackMode);
+            args.add("--spring.kafka.consumer.max-poll-records=" + maxPoll);
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(KafkaPipelineApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(args.toArray(new String[0]))) {
+
+            final CounterService counterService = context.getBean(CounterService.class);
+            final ToLongFunction<CounterService> started = producer ? CounterService::getCounterProduced : CounterService::getCounterReceived;
+            final ToLongFunction<CounterService> finished = producer ? CounterService::getCounterSent : CounterService::getCounterCommitted;
+            Thread feeder = null;
+            if (!producer) {
+                final String feedTopic = mode.startsWith("Pipe") ? topicA : topicB;
+                feeder = new Thread(() -> feed(feedTopic), "matrixFeeder");
+                feeder.start();
+            }
+
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            long startNanos = 0L;
+            long endNanos = 0L;
+            while (System.currentTimeMillis() < deadline) {
+                final long now = System.nanoTime();
+                if (startNanos == 0L && started.applyAsLong(counterService) > 0L) {
+                    startNanos = now;
+                }
+                if (finished.applyAsLong(counterService) >= records) {
+                    endNanos = now;
+                    break;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            if (feeder != null) {
+                feeder.join(timeoutMillis);
+            }
+
+            final boolean completed = endNanos != 0L;
+            if (!completed) {
+                // no throughput and latency of an incomplete run
+                failedRuns++;
+                final String status = "FAILED: timeout with " + finished.applyAsLong(counterService) + " of " + records;
+                LOGGER.error("Run {}: {}", runNumber, status);
+                return new ModeMatrixReport.Row(mode, schedulerType, ackMode, maxPoll, records, -1.0,
+                    -1.0, -1.0, -1.0, status);
+            }
+            final double seconds = (endNanos - startNanos) / 1e9;
+            final double[] latencies = producer ? new double[]{-1.0, -1.0, -1.0} : commitLatencies(context.getBean(MeterRegistry.class));
+            LOGGER.info("Run {}: {} records in {} s", runNumber, records, seconds);
+            return new ModeMatrixReport.Row(mode, schedulerType, ackMode, maxPoll, records, seconds,
+                latencies[0], latencies[1], latencies[2], "OK");
+        }
+    }
+
+    /**
+     * Send the records to the input topic of a pipe or consumer as fast as possible.
+     */
+    void feed(String topic) {
+        final Map<String, Object> props = Map.of(
+            ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+            ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+            ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+            ProducerConfig.LINGER_MS_CONFIG, 5,
+            ProducerConfig.ACKS_CONFIG, "1");
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(props)) {
+            for (long i = 0; i < records; i++) {
+                final ProducerRecord<String, String> producerRecord = new ProducerRecord<>(topic, Long.toString(i),
+                    SyntheticRecords.value((int) i, VALUE_SIZE));
+                producerRecord.headers().add(AbstractService.HEADER_CREATED_AT,
+                    ByteBuffer.allocate(Long.BYTES).putLong(System.currentTimeMillis()).array());
+                producer.send(producerRecord);
+            }
+            producer.flush();
+        }
+    }
+
+    /**
+     * @return p50, p99 and max of the commit stage latency in milliseconds - -1, if there is no timer
+     */
+    static double[] commitLatencies(MeterRegistry registry) {
+        final double[] ret = {-1.0, -1.0, -1.0};
+        final Timer timer = registry.find("pipeline.latency").tag("stage", "commit").timer();
+        if (timer == null) {
+            return ret;
+        }
+        final HistogramSnapshot snapshot = timer.takeSnapshot();
+        for (ValueAtPercentile valueAtPercentile : snapshot.percentileValues()) {
+            if (valueAtPercentile.percentile() == 0.5) {
+                ret[0] = valueAtPercentile.value(TimeUnit.MILLISECONDS);
+            } else if (valueAtPercentile.percentile() == 0.99) {
+                ret[1] = valueAtPercentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        ret[2] = snapshot.max(TimeUnit.MILLISECONDS);
+        return ret;
+    }
+
+    private static boolean isProducer(String mode) {
+        return mode.startsWith("Produce");
+    }
+
+    private static List<String> listProperty(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty(name, defaultValue).split(","))
+            .map(String::trim)
+            .filter(value -> !value.isEmpty())
+            .toList();
+    }
+}
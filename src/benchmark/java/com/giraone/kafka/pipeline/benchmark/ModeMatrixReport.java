@@ -0,0 +1,102 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result table of {@link ModeMatrixBenchmark} - one row per run - written as CSV and as Markdown.
+ */
+class ModeMatrixReport {
+
+    private static final String[] COLUMNS = {
+        "mode", "schedulerType", "acknowledgementQueueMode", "maxPollRecords", "records", "seconds",
+        "recordsPerSecond", "latencyP50Ms", "latencyP99Ms", "latencyMaxMs", "status"
+    };
+
+    private final List<Row> rows = new ArrayList<>();
+
+    void add(Row row) {
+        rows.add(row);
+    }
+
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("mode-matrix.csv"), csv());
+        Files.write(directory.resolve("mode-matrix.md"), markdown());
+    }
+
+    List<String> csv() {
+        final List<String> ret = new ArrayList<>(rows.size() + 1);
+        ret.add(String.join(",", COLUMNS));
+        rows.forEach(row -> ret.add(String.join(",", row.values())));
+        return ret;
+    }
+
+    List<String> markdown() {
+        final List<String> ret = new ArrayList<>(rows.size() + 2);
+        ret.add("| " + String.join(" | ", COLUMNS) + " |");
+        ret.add("|" + "---|".repeat(COLUMNS.length));
+        rows.forEach(row -> ret.add("| " + String.join(" | ", row.values()) + " |"));
+        return ret;
+    }
+
+    /**
+     * One run. Dimensions, that do not apply to the mode (e.g. the consumer settings of a producer), are null.
+     * Latencies are negative, if not measured.
+     */
+    static class Row {
+
+        final String mode;
+        final String schedulerType;
+        final String acknowledgementQueueMode;
+        final Integer maxPollRecords;
+        final long records;
+        final double seconds;
+        final double latencyP50Ms;
+        final double latencyP99Ms;
+        final double latencyMaxMs;
+        final String status;
+
+        Row(String mode, String schedulerType, String acknowledgementQueueMode, Integer maxPollRecords, long records,
+            double seconds, double latencyP50Ms, double latencyP99Ms, double latencyMaxMs, String status) {
+            this.mode = mode;
+            this.schedulerType = schedulerType;
+            this.acknowledgementQueueMode = acknowledgementQueueMode;
+            this.maxPollRecords = maxPollRecords;
+            this.records = records;
+            this.seconds = seconds;
+            this.latencyP50Ms = latencyP50Ms;
+            this.latencyP99Ms = latencyP99Ms;
+            this.latencyMaxMs = latencyMaxMs;
+            this.status = status;
+        }
+
+        String[] values() {
+            return new String[]{
+                mode,
+                orDash(schedulerType),
+                orDash(acknowledgementQueueMode),
+                maxPollRecords != null ? maxPollRecords.toString() : "-",
+                Long.toString(records),
+                format(seconds),
+                seconds > 0.0 ? Long.toString(Math.round(records / seconds)) : "-",
+                format(latencyP50Ms),
+                format(latencyP99Ms),
+                format(latencyMaxMs),
+                status
+            };
+        }
+
+        private static String orDash(String value) {
+            return value != null ? value : "-";
+        }
+
+        private static String format(double value) {
+            return value >= 0.0 ? String.format(Locale.ROOT, "%.1f", value) : "-";
+        }
+    }
+}
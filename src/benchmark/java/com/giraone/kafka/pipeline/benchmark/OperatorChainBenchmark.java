@@ -0,0 +1,81 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead per record of the operator chains used by the services, fed by synthetic received records. The processing
+ * step is a synchronous Mono with the String core task, so the differences are caused by the operators: concatMap
+ * (PipeSendReceive), flatMapSequential (ConsumeDefault) and groupBy by partition with concatMap per group
+ * (PipePartitioned). The chains run on the benchmark thread - scheduler hops are not part of the measurement.
+ * The results are per record. Use the JMH gc profiler to see the allocation per record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OperatorChainBenchmark {
+
+    static final int RECORDS = 10_000;
+
+    @Param({"1", "8"})
+    int partitions;
+
+    List<KafkaReceiverRecord<String, String>> records;
+
+    @Setup
+    public void setUp() {
+        records = SyntheticRecords.create(RECORDS, partitions, 100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public Long concatMap() {
+        return Flux.fromIterable(records)
+            .concatMap(this::process)
+            .count()
+            .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public Long flatMapSequential() {
+        return Flux.fromIterable(records)
+            .flatMapSequential(this::process)
+            .count()
+            .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public Long groupByFlatMap() {
+        return Flux.fromIterable(records)
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux -> partitionFlux.concatMap(this::process))
+            .count()
+            .block();
+    }
+
+    private Mono<String> process(KafkaReceiverRecord<String, String> receiverRecord) {
+        return Mono.fromSupplier(() -> receiverRecord.value().toUpperCase(Locale.ROOT));
+    }
+}
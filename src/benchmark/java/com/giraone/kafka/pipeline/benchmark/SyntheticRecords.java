@@ -0,0 +1,46 @@
+package com.giraone.kafka.pipeline.benchmark;
+
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Received records for the benchmarks - without a broker. Acknowledgement and nacknowledgement do nothing.
+ */
+final class SyntheticRecords {
+
+    static final String TOPIC = "a1";
+
+    private SyntheticRecords() {
+    }
+
+    /**
+     * @param count      number of records
+     * @param partitions the records are distributed round-robin to this number of partitions
+     * @param valueSize  number of characters of each value
+     */
+    static List<KafkaReceiverRecord<String, String>> create(int count, int partitions, int valueSize) {
+        final List<KafkaReceiverRecord<String, String>> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(create(i % partitions, i / partitions, Integer.toString(i), value(i, valueSize)));
+        }
+        return ret;
+    }
+
+    static KafkaReceiverRecord<String, String> create(int partition, long offset, String key, String value) {
+        final ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>(TOPIC, partition, offset, key, value);
+        return KafkaReceiverRecord.create(consumerRecord, () -> {
+        }, error -> {
+        });
+    }
+
+    static String value(int i, int size) {
+        final char[] ret = new char[size];
+        for (int j = 0; j < size; j++) {
+            ret[j] = (char) ('a' + (i + j) % 26);
+        }
+        return new String(ret);
+    }
+}
@@ -1,8 +1,17 @@
 package com.giraone.kafka.pipeline.config;
 
+import com.giraone.kafka.pipeline.config.properties.ArchiveProperties;
+import com.giraone.kafka.pipeline.config.properties.BenchmarkProperties;
+import com.giraone.kafka.pipeline.config.properties.CaptureProperties;
 import com.giraone.kafka.pipeline.config.properties.KafkaConsumerProperties;
+import com.giraone.kafka.pipeline.config.properties.KafkaMetricsProperties;
 import com.giraone.kafka.pipeline.config.properties.KafkaProducerProperties;
+import com.giraone.kafka.pipeline.config.properties.MetricsProperties;
+import com.giraone.kafka.pipeline.config.properties.PacingProperties;
+import com.giraone.kafka.pipeline.config.properties.R2dbcSinkProperties;
 import com.giraone.kafka.pipeline.config.properties.RetryProperties;
+import com.giraone.kafka.pipeline.config.properties.RetryTopicProperties;
+import com.giraone.kafka.pipeline.config.properties.WorkloadProperties;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -43,7 +52,7 @@ public class ApplicationProperties {
      */
     private boolean debugAgent;
     /**
-     * Mode: ProduceSendSource, ProduceFlatMap, ProduceTransactional, PipeSendReceive, PipeReceiveSend, PipePartitioned, PipeExactlyOnce, PipeDedup, Consume
+     * Mode: ProduceSendSource, ProduceFlatMap, ProduceMultiSender, ProduceBenchmark, ProduceReplay, ProduceTransactional, PipeSendReceive, PipeReceiveSend, PipePartitioned, PipeBatched, PipeKeyOrdered, PipeUnordered, PipeBytes, PipeExactlyOnce, PipeDedup, ConsumeDefault, ConsumeSampled, ConsumeUnordered, ConsumeParallel, ConsumeCapture, ConsumeR2dbc, ConsumeArchive
      */
     private String mode = MODE_PIPE;
     /**
@@ -82,6 +91,30 @@ public class ApplicationProperties {
      * Processing retry properties, when retryable error was caught
      */
     private RetryProperties processingRetry = RetryProperties.defaultExponential();
+    /**
+     * Retry topics and dead-letter topic for records, that failed in processing. Uses processingRetry for the tiers.
+     */
+    private RetryTopicProperties retryTopics = new RetryTopicProperties();
+    /**
+     * Capture file for ConsumeCapture and ProduceReplay.
+     */
+    private CaptureProperties capture = new CaptureProperties();
+    /**
+     * Database sink of ConsumeR2dbc.
+     */
+    private R2dbcSinkProperties r2dbc = new R2dbcSinkProperties();
+    /**
+     * Segment files of ConsumeArchive.
+     */
+    private ArchiveProperties archive = new ArchiveProperties();
+    /**
+     * Additional metrics (latencies) beside the counters.
+     */
+    private MetricsProperties metrics = new MetricsProperties();
+    /**
+     * Export of the Kafka client metrics - which metrics and how often they are read.
+     */
+    private KafkaMetricsProperties kafkaMetrics = new KafkaMetricsProperties();
 
     @SuppressWarnings("java:S2629") // invoke conditionally
     @PostConstruct
@@ -112,7 +145,7 @@ public class ApplicationProperties {
     public static class ProducerVariables {
         /**
          * Time interval for producer service after which a new event is emitted. With produceInterval=10ms, there should be
-         * approx. 100 events per second.
+         * approx. 100 events per second. With 0, the events are emitted as fast as they are sent.
          * Default is 10ms.
          */
         private Duration interval = Duration.ofMillis(10);
@@ -124,5 +157,18 @@ public class ApplicationProperties {
          * Percentage on duplicate messages (same key, same content).
          **/
         private float duplicatePercentage = 0.0F;
+        /**
+         * Pacing by a target rate (events per second) with an optional rate profile. If a rate is defined,
+         * it is used instead of the interval.
+         **/
+        private PacingProperties pacing = new PacingProperties();
+        /**
+         * Workload profile (value sizes, key cardinality and skew, compressibility) of the produced events.
+         **/
+        private WorkloadProperties workload = new WorkloadProperties();
+        /**
+         * Intended rate, in flight limit and histogram log of the ProduceBenchmark mode.
+         **/
+        private BenchmarkProperties benchmark = new BenchmarkProperties();
     }
 }
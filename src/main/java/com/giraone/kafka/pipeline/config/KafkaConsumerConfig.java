@@ -1,5 +1,6 @@
 package com.giraone.kafka.pipeline.config;
 
+import com.giraone.kafka.pipeline.config.properties.CommitProperties;
 import com.giraone.kafka.pipeline.config.properties.KafkaConsumerProperties;
 import com.giraone.kafka.pipeline.config.properties.SpringKafkaProperties;
 import io.atleon.core.AcknowledgementQueueMode;
@@ -7,8 +8,11 @@ import io.atleon.kafka.KafkaReceiver;
 import io.atleon.kafka.KafkaReceiverOptions;
 import io.atleon.kafka.ReactiveAdmin;
 import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,13 +29,40 @@ public class KafkaConsumerConfig {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KafkaConsumerConfig.class);
 
+    // the modes consuming the raw value bytes - case-insensitive like AbstractService.isSelected()
+    static final String BYTES_MODES = "'${application.mode:}'.toLowerCase().matches('pipebytes|consumecapture|consumearchive')";
+
     @Bean
     public KafkaReceiverOptions<String, String> kafkaReceiverOptions(ApplicationProperties applicationProperties,
                                                                      SpringKafkaProperties springKafkaProperties) {
 
+        final KafkaProperties.Consumer springConsumerProperties = springKafkaProperties.getConsumer();
+        return buildReceiverOptions(applicationProperties, springKafkaProperties,
+            springConsumerProperties.getValueDeserializer() != null
+                ? springConsumerProperties.getValueDeserializer().getName()
+                : StringDeserializer.class.getName()
+        );
+    }
+
+    /**
+     * Receiver options for the raw value bytes (PipeBytes, ConsumeCapture, ConsumeArchive). The value is not decoded
+     * into a String. Only created in these modes.
+     */
+    @Bean
+    @ConditionalOnExpression(BYTES_MODES)
+    public KafkaReceiverOptions<String, byte[]> bytesKafkaReceiverOptions(ApplicationProperties applicationProperties,
+                                                                          SpringKafkaProperties springKafkaProperties) {
+
+        return buildReceiverOptions(applicationProperties, springKafkaProperties, ByteArrayDeserializer.class.getName());
+    }
+
+    private <V> KafkaReceiverOptions<String, V> buildReceiverOptions(ApplicationProperties applicationProperties,
+                                                                     SpringKafkaProperties springKafkaProperties,
+                                                                     String valueDeserializer) {
+
         final KafkaProperties.Consumer springConsumerProperties = springKafkaProperties.getConsumer();
         final Map<String, Object> springConsumerPropertiesObjectMap = PropertyUtil.buildConsumerProperties(springConsumerProperties.getProperties());
-        final KafkaReceiverOptions.Builder<String, String> builder = KafkaReceiverOptions.<String, String>newBuilder()
+        final KafkaReceiverOptions.Builder<String, V> builder = KafkaReceiverOptions.<String, V>newBuilder()
             .consumerProperties(springConsumerPropertiesObjectMap)
             .consumerProperty(BOOTSTRAP_SERVERS_CONFIG, springKafkaProperties.getBootstrapServers())
             .consumerProperty(CLIENT_ID_CONFIG, springKafkaProperties.buildClientId())
@@ -40,12 +71,9 @@ public class KafkaConsumerConfig {
             .consumerProperty(PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName())
             .consumerProperty(KEY_DESERIALIZER_CLASS_CONFIG, springConsumerProperties.getKeyDeserializer() != null
                 ? springConsumerProperties.getKeyDeserializer().getName()
-                : org.apache.kafka.common.serialization.StringDeserializer.class.getName()
-            )
-            .consumerProperty(VALUE_DESERIALIZER_CLASS_CONFIG, springConsumerProperties.getValueDeserializer() != null
-                ? springConsumerProperties.getValueDeserializer().getName()
-                : org.apache.kafka.common.serialization.StringDeserializer.class.getName()
+                : StringDeserializer.class.getName()
             )
+            .consumerProperty(VALUE_DESERIALIZER_CLASS_CONFIG, valueDeserializer)
             .consumerProperty(AUTO_OFFSET_RESET_CONFIG, springConsumerProperties.getAutoOffsetReset())
             // Poll properties
             .consumerProperty(MAX_POLL_RECORDS_CONFIG, springConsumerProperties.getMaxPollRecords() != null
@@ -62,7 +90,8 @@ public class KafkaConsumerConfig {
                 : DEFAULT_FETCH_MAX_WAIT_MS
             )
             // Metrics reporter - we want default Kafka metrics
-            .consumerProperty(METRIC_REPORTER_CLASSES_CONFIG, ReactorKafkaMetricsExporter.class.getName());
+            .consumerProperty(METRIC_REPORTER_CLASSES_CONFIG, ReactorKafkaMetricsExporter.class.getName())
+            .consumerProperties(ReactorKafkaMetricsExporter.configs(applicationProperties.getKafkaMetrics()));
 
         if (springKafkaProperties.getJaas().isEnabled()) {
             final SpringKafkaProperties.Properties properties = springKafkaProperties.getProperties();
@@ -82,6 +111,15 @@ public class KafkaConsumerConfig {
         builder.terminationGracePeriod(applicationProperties.getConsumer().getTerminationGracePeriod());
         builder.revocationGracePeriod(applicationProperties.getConsumer().getRevocationGracePeriod());
         builder.fullPollRecordsPrefetch(applicationProperties.getConsumer().getFullPollRecordsPrefetch());
+        // the receiver commits the acknowledged offsets to the broker as defined by the commit strategy
+        final CommitProperties commitProperties = agentConsumerProperties.getCommit();
+        switch (commitProperties.effectiveType(applicationProperties.getMode())) {
+            case PER_RECORD -> builder.commitBatchSize(1);
+            case EVERY_N -> builder.commitBatchSize(commitProperties.getEveryN()).commitPeriod(commitProperties.getEveryNMaxWait());
+            case EVERY_T -> builder.commitBatchSize(Integer.MAX_VALUE).commitPeriod(commitProperties.getEveryT());
+            // the strategy adapts the period of the acknowledged groups, the receiver commits each group right away
+            case ADAPTIVE -> builder.commitBatchSize(Integer.MAX_VALUE).commitPeriod(commitProperties.getAdaptiveMinPeriod());
+        }
         return builder.build();
     }
 
@@ -89,19 +127,32 @@ public class KafkaConsumerConfig {
     public KafkaReceiver<String, String> kafkaReceiver(KafkaReceiverOptions<String, String> kafkaReceiverOptions) {
 
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("pollTimeout={}, loadMaxPollRecords={}, maxActiveInFlight={}, maxCommitAttempts={}",
+            LOGGER.debug("pollTimeout={}, loadMaxPollRecords={}, maxActiveInFlight={}, maxCommitAttempts={}, commitPeriod={}, commitBatchSize={}",
                 kafkaReceiverOptions.pollTimeout(), kafkaReceiverOptions.loadMaxPollRecords(),
-                kafkaReceiverOptions.maxActiveInFlight(), kafkaReceiverOptions.maxCommitAttempts());
+                kafkaReceiverOptions.maxActiveInFlight(), kafkaReceiverOptions.maxCommitAttempts(),
+                kafkaReceiverOptions.commitPeriod(), kafkaReceiverOptions.commitBatchSize());
         }
         return KafkaReceiver.create(kafkaReceiverOptions);
     }
 
+    @Bean
+    @ConditionalOnExpression(BYTES_MODES)
+    public KafkaReceiver<String, byte[]> bytesKafkaReceiver(KafkaReceiverOptions<String, byte[]> bytesKafkaReceiverOptions) {
+
+        return KafkaReceiver.create(bytesKafkaReceiverOptions);
+    }
+
     @Bean
     public ReactiveAdmin reactiveAdmin(SpringKafkaProperties springKafkaProperties) {
 
+        return ReactiveAdmin.create(buildAdminProperties(springKafkaProperties, "-ADMIN"));
+    }
+
+    static Map<String, Object> buildAdminProperties(SpringKafkaProperties springKafkaProperties, String clientIdSuffix) {
+
         final Map<String, Object> adminProperties = new HashMap<>();
         adminProperties.put(BOOTSTRAP_SERVERS_CONFIG, springKafkaProperties.getBootstrapServers());
-        adminProperties.put(CLIENT_ID_CONFIG, springKafkaProperties.buildClientId() + "-ADMIN");
+        adminProperties.put(CLIENT_ID_CONFIG, springKafkaProperties.buildClientId() + clientIdSuffix);
 
         if (springKafkaProperties.getJaas().isEnabled()) {
             final SpringKafkaProperties.Properties properties = springKafkaProperties.getProperties();
@@ -113,6 +164,6 @@ public class KafkaConsumerConfig {
             adminProperties.put("sasl.mechanism", saslProperties.getMechanism());
             adminProperties.put("sasl.jaas.config", saslJaasConfig);
         }
-        return ReactiveAdmin.create(adminProperties);
+        return adminProperties;
     }
 }
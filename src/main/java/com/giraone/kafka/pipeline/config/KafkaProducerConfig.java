@@ -1,16 +1,27 @@
 package com.giraone.kafka.pipeline.config;
 
 import com.giraone.kafka.pipeline.config.properties.SpringKafkaProperties;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
 import io.atleon.kafka.KafkaSender;
 import io.atleon.kafka.KafkaSenderOptions;
 import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.ByteBufferSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.apache.kafka.clients.producer.ProducerConfig.*;
 
@@ -19,17 +30,112 @@ public class KafkaProducerConfig {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KafkaProducerConfig.class);
 
+    private static final long DESCRIBE_TIMEOUT_SECONDS = 10L;
+
+    @Bean
+    public KafkaSender<String, String> kafkaSender(ApplicationProperties applicationProperties,
+                                                   SpringKafkaProperties springKafkaProperties) {
+
+        return KafkaSender.create(buildSenderOptions(applicationProperties, springKafkaProperties,
+            springKafkaProperties.getProducer().getValueSerializer().getName()));
+    }
+
+    /**
+     * Sender for raw value bytes (PipeBytes). The value is not encoded from a String. Only created in this mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "application.mode", havingValue = "PipeBytes")
+    public KafkaSender<String, byte[]> bytesKafkaSender(ApplicationProperties applicationProperties,
+                                                        SpringKafkaProperties springKafkaProperties) {
+
+        return KafkaSender.create(buildSenderOptions(applicationProperties, springKafkaProperties, ByteArraySerializer.class.getName()));
+    }
+
+    /**
+     * Sender for values, that are views on a buffer (ProduceReplay). The serializer copies the value once.
+     */
+    @Bean
+    public KafkaSender<String, ByteBuffer> byteBufferKafkaSender(ApplicationProperties applicationProperties,
+                                                                 SpringKafkaProperties springKafkaProperties) {
+
+        return KafkaSender.create(buildSenderOptions(applicationProperties, springKafkaProperties, ByteBufferSerializer.class.getName()));
+    }
+
+    /**
+     * Pool of senders for the pipes and ProduceMultiSender. The first sender of the pool is the default sender,
+     * so with application.producer.senders=1 no additional Kafka producer is created. On shutdown the pool closes
+     * the additional senders (inferred destroy method close()) - the default sender is closed as its own bean.
+     */
     @Bean
-    public KafkaSender<String, String> kafkaSender(SpringKafkaProperties springKafkaProperties) {
+    public KafkaSenderPool<String> kafkaSenderPool(ApplicationProperties applicationProperties,
+                                                   SpringKafkaProperties springKafkaProperties,
+                                                   KafkaSender<String, String> kafkaSender) {
+
+        return buildSenderPool(applicationProperties, springKafkaProperties,
+            springKafkaProperties.getProducer().getValueSerializer().getName(), kafkaSender);
+    }
+
+    /**
+     * Pool of senders for raw value bytes (PipeBytes). Only created in this mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "application.mode", havingValue = "PipeBytes")
+    public KafkaSenderPool<byte[]> bytesKafkaSenderPool(ApplicationProperties applicationProperties,
+                                                        SpringKafkaProperties springKafkaProperties,
+                                                        KafkaSender<String, byte[]> bytesKafkaSender) {
+
+        return buildSenderPool(applicationProperties, springKafkaProperties, ByteArraySerializer.class.getName(), bytesKafkaSender);
+    }
+
+    private <V> KafkaSenderPool<V> buildSenderPool(ApplicationProperties applicationProperties,
+                                                   SpringKafkaProperties springKafkaProperties, String valueSerializer,
+                                                   KafkaSender<String, V> defaultSender) {
+
+        final int numberOfSenders = Math.max(1, applicationProperties.getProducer().getSenders());
+        final List<KafkaSender<String, V>> senders = new ArrayList<>(numberOfSenders);
+        senders.add(defaultSender);
+        for (int i = 1; i < numberOfSenders; i++) {
+            senders.add(KafkaSender.create(buildSenderOptions(applicationProperties, springKafkaProperties,
+                valueSerializer, springKafkaProperties.buildClientId() + "-" + i)));
+        }
+        final Map<String, Object> adminProperties = KafkaConsumerConfig.buildAdminProperties(springKafkaProperties, "-POOL-ADMIN");
+        final KafkaSenderPool<V> ret = new KafkaSenderPool<>(senders, topic -> describeNumberOfPartitions(adminProperties, topic));
+        // the pipes send to topicB, ProduceMultiSender sends to topicA
+        ret.resolvePartitions(List.of(applicationProperties.getTopicA(), applicationProperties.getTopicB()));
+        return ret;
+    }
+
+    private static int describeNumberOfPartitions(Map<String, Object> adminProperties, String topic) {
+
+        try (Admin admin = Admin.create(adminProperties)) {
+            return admin.describeTopics(List.of(topic)).allTopicNames()
+                .get(DESCRIBE_TIMEOUT_SECONDS, TimeUnit.SECONDS).get(topic).partitions().size();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while describing topic " + topic, ie);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Cannot describe topic " + topic, e);
+        }
+    }
+
+    private <V> KafkaSenderOptions<String, V> buildSenderOptions(ApplicationProperties applicationProperties,
+                                                                 SpringKafkaProperties springKafkaProperties, String valueSerializer) {
+
+        return buildSenderOptions(applicationProperties, springKafkaProperties, valueSerializer, springKafkaProperties.buildClientId());
+    }
+
+    private <V> KafkaSenderOptions<String, V> buildSenderOptions(ApplicationProperties applicationProperties,
+                                                                 SpringKafkaProperties springKafkaProperties, String valueSerializer,
+                                                                 String clientId) {
 
         final KafkaProperties.Producer springProducerProperties = springKafkaProperties.getProducer();
         final Map<String, Object> springProducerPropertiesObjectMap = PropertyUtil.buildProducerProperties(springProducerProperties.getProperties());
-        final KafkaSenderOptions.Builder<String, String> builder = KafkaSenderOptions.<String, String>newBuilder()
+        final KafkaSenderOptions.Builder<String, V> builder = KafkaSenderOptions.<String, V>newBuilder()
             .producerProperties(springProducerPropertiesObjectMap)
             .producerProperty(BOOTSTRAP_SERVERS_CONFIG, springKafkaProperties.getBootstrapServers())
-            .producerProperty(CLIENT_ID_CONFIG, springKafkaProperties.buildClientId())
+            .producerProperty(CLIENT_ID_CONFIG, clientId)
             .producerProperty(KEY_SERIALIZER_CLASS_CONFIG, springProducerProperties.getKeySerializer().getName())
-            .producerProperty(VALUE_SERIALIZER_CLASS_CONFIG, springProducerProperties.getValueSerializer().getName())
+            .producerProperty(VALUE_SERIALIZER_CLASS_CONFIG, valueSerializer)
             .producerProperty(ACKS_CONFIG, springProducerProperties.getAcks() != null
                 ? springProducerProperties.getAcks()
                 : "all"
@@ -39,7 +145,8 @@ public class KafkaProducerConfig {
                 : 16384
             )
             // Metrics reporter
-            .producerProperty(METRIC_REPORTER_CLASSES_CONFIG, ReactorKafkaMetricsExporter.class.getName());
+            .producerProperty(METRIC_REPORTER_CLASSES_CONFIG, ReactorKafkaMetricsExporter.class.getName())
+            .producerProperties(ReactorKafkaMetricsExporter.configs(applicationProperties.getKafkaMetrics()));
 
         if (springKafkaProperties.getJaas().isEnabled()) {
             final SpringKafkaProperties.Properties properties = springKafkaProperties.getProperties();
@@ -52,7 +159,6 @@ public class KafkaProducerConfig {
                 .producerProperty("sasl.jaas.config", saslJaasConfig);
         }
 
-        final KafkaSenderOptions<String, String> kafkaSenderOptions = builder.build();
-        return KafkaSender.create(kafkaSenderOptions);
+        return builder.build();
     }
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.giraone.kafka.pipeline.config;
 
+import com.giraone.kafka.pipeline.config.properties.DedupProperties;
+import com.giraone.kafka.pipeline.service.scheduler.InstrumentedScheduler;
+import com.giraone.kafka.pipeline.service.scheduler.SchedulerMetrics;
 import lombok.AllArgsConstructor;
 import lombok.Generated;
 import lombok.Getter;
@@ -8,7 +11,6 @@ import lombok.Setter;
 import lombok.ToString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
@@ -65,26 +67,73 @@ public class ProcessingProperties {
     private Duration waitTime = Duration.ofMillis(10);
 
     /**
-     * Rate limiter properties for processing consumed records. Not used yet.
+     * Maximum number of records of one partition, that are processed, sent and committed together in batched mode
+     * (PipeBatched). Default is 100.
+     */
+    private int batchMaxSize = 100;
+
+    /**
+     * Maximum time to wait for a batch to be filled in batched mode (PipeBatched). Default is 100ms.
+     */
+    private Duration batchMaxWait = Duration.ofMillis(100);
+
+    /**
+     * Number of parallel lanes per partition in key ordered mode (PipeKeyOrdered). The records of a partition are
+     * distributed by the hash of their key to the lanes, so the order per key is kept. Default is 4.
+     */
+    private int lanesPerPartition = 4;
+
+    /**
+     * Maximum number of records per partition, that are processed concurrently and out of order in unordered mode
+     * (PipeUnordered, ConsumeUnordered). Default is 256.
+     */
+    private int unorderedConcurrency = 256;
+
+    /**
+     * Number of rails in parallel mode (ConsumeParallel). Each rail has its own thread and the partitions are
+     * assigned to the rails by their number, so the order per partition is kept. 0 for one rail per available
+     * processor. Default is 0.
+     */
+    private int rails = 0;
+
+    /**
+     * Percentage of records, for which a processing failure is simulated. Used to test retry topics and the
+     * dead-letter topic. Default is 0.
+     */
+    private float failurePercentage = 0.0F;
+
+    /**
+     * Rate limiter properties for processing consumed records. The permits are acquired before processing.
      */
     private RateLimitProperties rate = new RateLimitProperties();
 
+    /**
+     * Deduplication of consumed records in pipe mode.
+     */
+    private DedupProperties dedup = new DedupProperties();
+
     /**
      * Build a scheduler. Scheduler type and concurrency are fetch from the corresponding properties.
+     * The scheduler is instrumented, so its usage can be monitored - see {@link SchedulerMetrics}.
      *
      * @return A newly created Scheduler ("newParallel", "newBoundedElastic") or a default one ("parallel").
      */
-    public Scheduler buildScheduler() {
+    public InstrumentedScheduler buildScheduler() {
 
-        final Scheduler ret;
+        final InstrumentedScheduler ret;
         if ("newParallel".equalsIgnoreCase(schedulerType)) {
             // no daemon threads, so we do not create any during a shutdown
-            ret = Schedulers.newParallel("newParallelConsumer", newParallelPoolSize, false);
+            ret = new InstrumentedScheduler(Schedulers.newParallel("newParallelConsumer", newParallelPoolSize, false),
+                new SchedulerMetrics("newParallelConsumer", newParallelPoolSize, -1));
         } else if ("newBoundedElastic".equalsIgnoreCase(schedulerType)) {
-            ret = Schedulers.newBoundedElastic(newBoundedElasticSize, newBoundedElasticQueueSize,
-                "newElasticConsumer");
+            // the queue size is the maximum number of queued tasks per thread
+            ret = new InstrumentedScheduler(
+                Schedulers.newBoundedElastic(newBoundedElasticSize, newBoundedElasticQueueSize, "newElasticConsumer"),
+                new SchedulerMetrics("newElasticConsumer", newBoundedElasticSize,
+                    newBoundedElasticSize * newBoundedElasticQueueSize));
         } else {
-            ret = Schedulers.parallel();
+            ret = new InstrumentedScheduler(Schedulers.parallel(),
+                new SchedulerMetrics("parallel", Schedulers.DEFAULT_POOL_SIZE, -1));
         }
         LOGGER.debug("Using {} as scheduler for Kafka consumer", ret);
         return ret;
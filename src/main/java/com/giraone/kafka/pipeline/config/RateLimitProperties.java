@@ -1,5 +1,6 @@
 package com.giraone.kafka.pipeline.config;
 
+import com.giraone.kafka.pipeline.service.TokenBucketRateLimiter;
 import lombok.AllArgsConstructor;
 import lombok.Generated;
 import lombok.Getter;
@@ -7,8 +8,10 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.time.Duration;
+
 /**
- * Rate limiting properties for processing consumed records. Not yet used.
+ * Rate limiting properties for processing consumed records.
  */
 @Setter
 @Getter
@@ -20,7 +23,7 @@ import lombok.ToString;
 public class RateLimitProperties {
 
     /**
-     * Configures the permissions limit for a period.
+     * Configures the permissions limit for a period. Default value is 0, which means no rate limiting.
      */
     private int limit = 0;
 
@@ -30,7 +33,13 @@ public class RateLimitProperties {
     private long periodMs = 1000L;
 
     /**
-     * Configures the timeout duration, after which events are emitted even if less than {@see limit} events arrived
+     * Configures the timeout duration for waiting on a permit. The permit is still granted after a longer wait, so
+     * the limit is never exceeded, but the wait is counted as a timeout in the metric "pipeline.ratelimit.timeout".
+     * Default value is 2 seconds.
      */
     private long timeoutMs = 2000L;
+
+    public TokenBucketRateLimiter toRateLimiter() {
+        return new TokenBucketRateLimiter(limit, Duration.ofMillis(periodMs));
+    }
 }
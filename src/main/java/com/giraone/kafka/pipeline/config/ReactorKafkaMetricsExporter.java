@@ -1,13 +1,116 @@
 package com.giraone.kafka.pipeline.config;
 
+import com.giraone.kafka.pipeline.config.properties.KafkaMetricsProperties;
+import com.giraone.kafka.pipeline.service.commit.ConsumerCommitLatency;
 import io.atleon.micrometer.AbstractKafkaMetricsReporter;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 /**
- * Replicates metric formats provided by legacy reactor-kafka implementation
+ * Replicates metric formats provided by legacy reactor-kafka implementation.
+ * <p>
+ * The number of meters is controlled by {@link KafkaMetricsProperties}, which are passed with the client
+ * configuration: allow and deny patterns on "group:name", the aggregation of per partition metrics into one meter
+ * per topic and a minimum refresh interval of the Kafka metric values. An aggregate is passed on to the base class
+ * as a Kafka metric without the partition tag, so its meter is named, tagged and registered like all other meters.
  */
 public class ReactorKafkaMetricsExporter extends AbstractKafkaMetricsReporter {
 
+    public static final String ALLOW_CONFIG = "pipeline.metrics.kafka.allow";
+    public static final String DENY_CONFIG = "pipeline.metrics.kafka.deny";
+    public static final String AGGREGATE_PARTITIONS_CONFIG = "pipeline.metrics.kafka.aggregate-partitions";
+    public static final String REFRESH_INTERVAL_MS_CONFIG = "pipeline.metrics.kafka.refresh-interval-ms";
+
+    static final String PARTITION_TAG = "partition";
+
+    private List<Pattern> allow = List.of();
+    private List<Pattern> deny = List.of();
+    private boolean aggregatePartitions;
+    private long refreshIntervalNanos;
+    // the metrics passed on to the base class - the original or a caching copy
+    private final Map<MetricName, KafkaMetric> exported = new ConcurrentHashMap<>();
+    // per metric name without the partition - guarded by this
+    private final Map<MetricName, PartitionAggregate> aggregates = new HashMap<>();
+
+    /**
+     * The client configuration of the exporter.
+     */
+    public static Map<String, Object> configs(KafkaMetricsProperties kafkaMetricsProperties) {
+        final Map<String, Object> ret = new HashMap<>();
+        ret.put(ALLOW_CONFIG, String.join("\n", kafkaMetricsProperties.getAllow()));
+        ret.put(DENY_CONFIG, String.join("\n", kafkaMetricsProperties.getDeny()));
+        ret.put(AGGREGATE_PARTITIONS_CONFIG, Boolean.toString(kafkaMetricsProperties.isAggregatePartitions()));
+        ret.put(REFRESH_INTERVAL_MS_CONFIG, Long.toString(kafkaMetricsProperties.getRefreshInterval().toMillis()));
+        return ret;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        super.configure(configs);
+        this.allow = patterns(configs.get(ALLOW_CONFIG));
+        this.deny = patterns(configs.get(DENY_CONFIG));
+        this.aggregatePartitions = Boolean.parseBoolean(String.valueOf(configs.get(AGGREGATE_PARTITIONS_CONFIG)));
+        final Object refreshIntervalMs = configs.get(REFRESH_INTERVAL_MS_CONFIG);
+        this.refreshIntervalNanos = refreshIntervalMs != null ? Long.parseLong(refreshIntervalMs.toString()) * 1_000_000L : 0L;
+    }
+
+    @Override
+    public void init(List<KafkaMetric> metrics) {
+        final List<KafkaMetric> ret = new ArrayList<>(metrics.size());
+        for (KafkaMetric metric : metrics) {
+            ConsumerCommitLatency.register(metric);
+            final KafkaMetric exportedMetric = route(metric);
+            if (exportedMetric != null) {
+                ret.add(exportedMetric);
+            }
+        }
+        super.init(ret);
+    }
+
+    @Override
+    public void metricChange(KafkaMetric metric) {
+        // the commit latency drives the ADAPTIVE commit strategy - also, when it is not exported
+        ConsumerCommitLatency.register(metric);
+        final KafkaMetric exportedMetric = route(metric);
+        if (exportedMetric != null) {
+            super.metricChange(exportedMetric);
+        }
+    }
+
+    @Override
+    public void metricRemoval(KafkaMetric metric) {
+        ConsumerCommitLatency.unregister(metric);
+        final KafkaMetric exportedMetric = exported.remove(metric.metricName());
+        if (exportedMetric != null) {
+            super.metricRemoval(exportedMetric);
+            return;
+        }
+        final KafkaMetric aggregateMetric = removeFromAggregate(metric);
+        if (aggregateMetric != null) {
+            super.metricRemoval(aggregateMetric);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            aggregates.clear();
+        }
+        exported.clear();
+        super.close();
+    }
+
     @Override
     protected String extractMetricName(KafkaMetric metric) {
         return removeUpToLastAndIncluding(metric.metricName().name(), '.');
@@ -17,4 +120,180 @@ public class ReactorKafkaMetricsExporter extends AbstractKafkaMetricsReporter {
     protected String extractMeterNamePrefix(KafkaMetric metric) {
         return super.extractMeterNamePrefix(metric).replace("-metrics", "");
     }
+
+    /**
+     * @return the metric to be passed on to the base class - the aggregate for the first partition of an aggregated
+     * metric - or null, if it is not exported or was added to an existing aggregate
+     */
+    KafkaMetric route(KafkaMetric metric) {
+        final MetricName metricName = metric.metricName();
+        if (!isExported(metricName)) {
+            return null;
+        }
+        if (aggregatePartitions && metricName.tags().containsKey(PARTITION_TAG)) {
+            return addToAggregate(metric);
+        }
+        final KafkaMetric ret = refreshIntervalNanos > 0L ? cached(metric) : metric;
+        exported.put(metricName, ret);
+        return ret;
+    }
+
+    boolean isExported(MetricName metricName) {
+        final String groupAndName = metricName.group() + ":" + metricName.name();
+        if (!allow.isEmpty() && allow.stream().noneMatch(pattern -> pattern.matcher(groupAndName).matches())) {
+            return false;
+        }
+        return deny.stream().noneMatch(pattern -> pattern.matcher(groupAndName).matches());
+    }
+
+    /**
+     * A copy of the metric, that reads the value of the original metric at most once per refresh interval.
+     */
+    private KafkaMetric cached(KafkaMetric metric) {
+        final CachedValue cachedValue = new CachedValue(refreshIntervalNanos, metric::metricValue);
+        return new KafkaMetric(new Object(), metric.metricName(),
+            (org.apache.kafka.common.metrics.Gauge<Object>) (config, now) -> cachedValue.get(),
+            metric.config(), Time.SYSTEM);
+    }
+
+    /**
+     * Add and remove are synchronized, so a partition, that is added concurrently to the removal of the last
+     * partition, is not added to an aggregate, that is no longer exported.
+     *
+     * @return the new aggregate, when the metric is the first partition, otherwise null
+     */
+    synchronized KafkaMetric addToAggregate(KafkaMetric metric) {
+        final MetricName aggregateName = aggregateName(metric.metricName());
+        PartitionAggregate aggregate = aggregates.get(aggregateName);
+        final boolean created = aggregate == null;
+        if (created) {
+            aggregate = new PartitionAggregate(aggregateName, metric);
+            aggregates.put(aggregateName, aggregate);
+        }
+        aggregate.partitions.put(metric.metricName(), metric);
+        return created ? aggregate.metric : null;
+    }
+
+    /**
+     * @return the removed aggregate, when the metric was its last partition, otherwise null
+     */
+    synchronized KafkaMetric removeFromAggregate(KafkaMetric metric) {
+        final MetricName aggregateName = aggregateName(metric.metricName());
+        final PartitionAggregate aggregate = aggregates.get(aggregateName);
+        if (aggregate == null || aggregate.partitions.remove(metric.metricName()) == null || !aggregate.partitions.isEmpty()) {
+            return null;
+        }
+        aggregates.remove(aggregateName);
+        return aggregate.metric;
+    }
+
+    private static MetricName aggregateName(MetricName metricName) {
+        return new MetricName(metricName.name(), metricName.group(), metricName.description(),
+            withoutPartition(metricName.tags()));
+    }
+
+    private static Map<String, String> withoutPartition(Map<String, String> tags) {
+        final Map<String, String> ret = new LinkedHashMap<>(tags);
+        ret.remove(PARTITION_TAG);
+        return ret;
+    }
+
+    static List<Pattern> patterns(Object config) {
+        if (config == null) {
+            return List.of();
+        }
+        final Collection<?> values = config instanceof Collection<?> collection ? collection : List.of(config.toString().split("\n"));
+        final List<Pattern> ret = new ArrayList<>(values.size());
+        for (Object value : values) {
+            final String pattern = value.toString().trim();
+            if (!pattern.isEmpty()) {
+                ret.add(Pattern.compile(pattern));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * How the values of the partitions are combined, based on the metric name.
+     */
+    enum Aggregation {
+        SUM, MAX, MIN, AVG;
+
+        static Aggregation of(String metricName) {
+            if (metricName.endsWith("-max")) {
+                return MAX;
+            } else if (metricName.endsWith("-min")) {
+                return MIN;
+            } else if (metricName.endsWith("-avg")) {
+                return AVG;
+            }
+            return SUM;
+        }
+
+        double apply(Collection<KafkaMetric> metrics) {
+            double ret = this == MAX ? Double.NEGATIVE_INFINITY : this == MIN ? Double.POSITIVE_INFINITY : 0.0;
+            int count = 0;
+            for (KafkaMetric metric : metrics) {
+                if (!(metric.metricValue() instanceof Number number) || Double.isNaN(number.doubleValue())) {
+                    continue;
+                }
+                final double value = number.doubleValue();
+                ret = switch (this) {
+                    case MAX -> Math.max(ret, value);
+                    case MIN -> Math.min(ret, value);
+                    default -> ret + value;
+                };
+                count++;
+            }
+            if (count == 0) {
+                return Double.NaN;
+            }
+            return this == AVG ? ret / count : ret;
+        }
+    }
+
+    /**
+     * A metric of all partitions of a topic. Its value is aggregated from the metrics of the partitions.
+     */
+    private final class PartitionAggregate {
+
+        private final Map<MetricName, KafkaMetric> partitions = new ConcurrentHashMap<>();
+        private final KafkaMetric metric;
+
+        private PartitionAggregate(MetricName aggregateName, KafkaMetric firstPartition) {
+            final Aggregation aggregation = Aggregation.of(aggregateName.name());
+            final CachedValue cachedValue = new CachedValue(refreshIntervalNanos, () -> aggregation.apply(partitions.values()));
+            this.metric = new KafkaMetric(new Object(), aggregateName,
+                (org.apache.kafka.common.metrics.Gauge<Object>) (config, now) -> cachedValue.get(),
+                firstPartition.config(), Time.SYSTEM);
+        }
+    }
+
+    /**
+     * A value, that is read from its source at most once per refresh interval.
+     */
+    static final class CachedValue {
+
+        private final long refreshIntervalNanos;
+        private final Supplier<Object> source;
+        private volatile Object value;
+        private volatile long nextRefreshNanos;
+
+        CachedValue(long refreshIntervalNanos, Supplier<Object> source) {
+            this.refreshIntervalNanos = refreshIntervalNanos;
+            this.source = source;
+        }
+
+        Object get() {
+            if (refreshIntervalNanos <= 0L) {
+                return source.get();
+            }
+            final long now = System.nanoTime();
+            if (value == null || now - nextRefreshNanos >= 0L) {
+                value = source.get();
+                nextRefreshNanos = now + refreshIntervalNanos;
+            }
+            return value;
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Segment files of ConsumeArchive.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class ArchiveProperties {
+
+    /**
+     * Base directory of the archive. Each partition has its own subdirectory "topic-partition".
+     * Default is "archive".
+     */
+    private String directory = "archive";
+
+    /**
+     * Maximum size of a segment file in bytes. The segment is memory-mapped with this size, so at most 2 GB.
+     * Default is 64 MB.
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * Number of log bytes between two entries of the sparse offset index.
+     * Default is 4 KB.
+     */
+    private int indexInterval = 4 * 1024;
+
+    /**
+     * Maximum time between two syncs (group commit). Records are committed only after they are synced.
+     * Default is 100ms.
+     */
+    private Duration syncInterval = Duration.ofMillis(100);
+
+    /**
+     * Maximum number of records of one sync (group commit).
+     * Default is 1000.
+     */
+    private int syncMaxRecords = 1000;
+}
@@ -0,0 +1,59 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Options of the ProduceBenchmark mode, that sends maxNumberOfEvents events at a fixed intended rate and measures
+ * the latency until the send is acknowledged.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class BenchmarkProperties {
+
+    /**
+     * Intended rate in events per second. Event i is intended to be sent at start + i / rate.
+     * Default is 1000.
+     */
+    private double rate = 1000.0;
+
+    /**
+     * Maximum number of events in flight (sent, but not yet acknowledged). When reached, the next sends are delayed,
+     * which is included in the corrected latency.
+     * Default is 1000.
+     */
+    private int maxInFlight = 1000;
+
+    /**
+     * Interval, after which an interval histogram is written to the histogram log.
+     * Default is 10 seconds.
+     */
+    private Duration reportInterval = Duration.ofSeconds(10);
+
+    /**
+     * File of the HdrHistogram log. Empty for no log file.
+     * Default is "produce-benchmark.hlog".
+     */
+    private String histogramLog = "produce-benchmark.hlog";
+
+    /**
+     * Highest latency, that can be recorded. Higher latencies are recorded as this value.
+     * Default is 1 minute.
+     */
+    private Duration highestTrackableLatency = Duration.ofMinutes(1);
+
+    /**
+     * Number of significant decimal digits of the recorded latencies (1 - 5).
+     * Default is 3.
+     */
+    private int significantDigits = 3;
+}
@@ -0,0 +1,38 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Capture file of ConsumeCapture (writes the records of topicB) and ProduceReplay (sends the records to topicA).
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class CaptureProperties {
+
+    /**
+     * Path of the capture file. ConsumeCapture overwrites an existing file.
+     * Default is "capture.kcap".
+     */
+    private String file = "capture.kcap";
+
+    /**
+     * Replay speed relative to the captured timestamps: 1.0 for the original speed, 2.0 for double speed.
+     * 0 replays as fast as possible.
+     * Default is 1.0.
+     */
+    private double speed = 1.0;
+
+    /**
+     * Size of the write buffer of ConsumeCapture in bytes.
+     * Default is 1 MB.
+     */
+    private int bufferSize = 1024 * 1024;
+}
@@ -0,0 +1,100 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import com.giraone.kafka.pipeline.service.commit.AdaptiveCommitStrategy;
+import com.giraone.kafka.pipeline.service.commit.CommitStrategy;
+import com.giraone.kafka.pipeline.service.commit.ConsumerCommitLatency;
+import com.giraone.kafka.pipeline.service.commit.EveryNCommitStrategy;
+import com.giraone.kafka.pipeline.service.commit.EveryTCommitStrategy;
+import com.giraone.kafka.pipeline.service.commit.PerRecordCommitStrategy;
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Commit strategy for all pipe and consume modes. The strategy groups the acknowledgements of the processed records
+ * and the receiver commits the acknowledged offsets to the broker with the matching commit period and batch size.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class CommitProperties {
+
+    /**
+     * The commit strategy: PER_RECORD, EVERY_N, EVERY_T or ADAPTIVE.
+     * Default is empty, which means the default of the mode - EVERY_T for ConsumeSampled, otherwise PER_RECORD.
+     */
+    private CommitStrategy.Type type;
+
+    /**
+     * Number of records per commit for EVERY_N.
+     * Default is 100.
+     */
+    private int everyN = 100;
+
+    /**
+     * Maximum wait time for EVERY_N, after which a group is committed, even if it has less than everyN records.
+     * Default is 1 second.
+     */
+    private Duration everyNMaxWait = Duration.ofSeconds(1);
+
+    /**
+     * Commit period for EVERY_T.
+     * Default is 250ms.
+     */
+    private Duration everyT = Duration.ofMillis(250);
+
+    /**
+     * Minimum commit period for ADAPTIVE. This is also the commit period of the receiver.
+     * Default is 10ms.
+     */
+    private Duration adaptiveMinPeriod = Duration.ofMillis(10);
+
+    /**
+     * Maximum commit period for ADAPTIVE.
+     * Default is 5 seconds.
+     */
+    private Duration adaptiveMaxPeriod = Duration.ofSeconds(5);
+
+    /**
+     * Factor for ADAPTIVE: commit period = average commit latency of the consumer * factor.
+     * Default is 20, so committing takes at most approx. 5% of the time.
+     */
+    private double adaptiveLatencyFactor = 20.0;
+
+    /**
+     * The type used by a mode - the configured type or the default of the mode.
+     *
+     * @param mode the mode of the application
+     * @return EVERY_T for ConsumeSampled and PER_RECORD for all other modes, when no type is configured
+     */
+    public CommitStrategy.Type effectiveType(String mode) {
+        if (type != null) {
+            return type;
+        }
+        return "ConsumeSampled".equalsIgnoreCase(mode) ? CommitStrategy.Type.EVERY_T : CommitStrategy.Type.PER_RECORD;
+    }
+
+    /**
+     * Build the commit strategy.
+     *
+     * @param modeDefault the type to be used, when no type is configured
+     * @return a new strategy instance
+     */
+    public CommitStrategy toCommitStrategy(CommitStrategy.Type modeDefault) {
+        final CommitStrategy.Type effectiveType = type != null ? type : modeDefault;
+        return switch (effectiveType) {
+            case PER_RECORD -> new PerRecordCommitStrategy();
+            case EVERY_N -> new EveryNCommitStrategy(everyN, everyNMaxWait);
+            case EVERY_T -> new EveryTCommitStrategy(everyT);
+            case ADAPTIVE -> new AdaptiveCommitStrategy(adaptiveMinPeriod, adaptiveMaxPeriod, adaptiveLatencyFactor,
+                ConsumerCommitLatency::averageNanos);
+        };
+    }
+}
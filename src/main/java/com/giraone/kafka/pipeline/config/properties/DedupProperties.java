@@ -0,0 +1,46 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Deduplication of consumed records in pipe mode. A record is a duplicate, when a record with the same key and the
+ * same value was already sent within the window. Duplicates are not processed and sent, but committed in offset
+ * order like the processed records.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class DedupProperties {
+
+    /**
+     * Skip duplicate records in pipe mode.
+     * Default is false.
+     */
+    private boolean enabled;
+
+    /**
+     * Maximum number of remembered records. Memory usage is approx. 32-48 bytes per entry.
+     * Default is 100_000.
+     */
+    private int maxEntries = 100_000;
+
+    /**
+     * Maximum age of remembered records.
+     * Default is 10 minutes.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    public DedupCache toDedupCache() {
+        return new DedupCache(maxEntries, ttl.toMillis());
+    }
+}
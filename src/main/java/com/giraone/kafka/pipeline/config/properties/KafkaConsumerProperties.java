@@ -68,6 +68,11 @@ public class KafkaConsumerProperties {
      */
     private RetryProperties retrySpecification = RetryProperties.defaultFixed();
 
+    /**
+     * How often the processed records are committed (acknowledged).
+     */
+    private CommitProperties commit = new CommitProperties();
+
     /**
      * Specifies how long the service should wait to fetch partition info of a topic.
      */
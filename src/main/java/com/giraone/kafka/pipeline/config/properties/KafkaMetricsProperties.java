@@ -0,0 +1,45 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Export of the Kafka client metrics (consumer and producer) as Micrometer meters. The patterns are regular
+ * expressions, that must match the whole "group:name" of a Kafka metric, e.g. "consumer-fetch-manager-metrics:records-lag-max"
+ * or ".*-node-metrics:.*" for all per broker metrics.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class KafkaMetricsProperties {
+
+    /**
+     * Only the metrics matching one of these patterns are exported. Default is empty - all metrics are exported.
+     */
+    private List<String> allow = new ArrayList<>();
+    /**
+     * The metrics matching one of these patterns are not exported, even if they are allowed. Default is empty.
+     */
+    private List<String> deny = new ArrayList<>();
+    /**
+     * Export the per partition metrics (e.g. records-lag) as one meter per topic instead of one meter per partition.
+     * Metrics ending with "-max" are aggregated by the maximum, "-min" by the minimum, "-avg" by the average and
+     * all others by the sum. Default is false.
+     */
+    private boolean aggregatePartitions = false;
+    /**
+     * Minimum time between two reads of a Kafka metric. A meter, that is read more often, returns the last value.
+     * Zero reads the Kafka metric on every read of the meter. Default is zero.
+     */
+    private Duration refreshInterval = Duration.ZERO;
+}
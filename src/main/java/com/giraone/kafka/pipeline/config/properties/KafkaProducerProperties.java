@@ -14,4 +14,10 @@ import lombok.ToString;
 @Generated
 public class KafkaProducerProperties {
 
+    /**
+     * Number of KafkaSender instances (each with its own Kafka producer) of the sender pool, that is used by the
+     * pipes and by ProduceMultiSender. The records are routed to the senders by their target partition.
+     * Default is 1 (no additional senders).
+     */
+    private int senders = 1;
 }
@@ -0,0 +1,71 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class MetricsProperties {
+
+    /**
+     * Record the end-to-end latencies (created by producer until received, processed, sent, committed) as
+     * Micrometer timers "pipeline.latency". The producer stamps every record with a creation time header.
+     * Default is true.
+     */
+    private boolean latencyEnabled = true;
+    /**
+     * Add the partition as a tag to the latency timers. Default is true.
+     */
+    private boolean latencyPerPartition = true;
+    /**
+     * The percentiles, that are published for the latency timers. The maximum is always published.
+     * Default is p50, p99 and p99.9.
+     */
+    private double[] latencyPercentiles = {0.5, 0.99, 0.999};
+    /**
+     * Operator level metrics "pipeline.stage.*" for the stages receive, publishOn, process, send and commit of the
+     * pipelines: onNext rate, time between request and onNext and requested but undelivered demand. There is an
+     * overhead per record and stage. Default is false.
+     */
+    private boolean stagesEnabled = false;
+    /**
+     * Add the partition as a tag to the stage metrics of the stages, that run per partition. Otherwise, the tag
+     * is "all". Default is false.
+     */
+    private boolean stagesPerPartition = false;
+    /**
+     * Split the latency of each consumed record into the parts queue (received until processing starts), process,
+     * send (until the send is acknowledged by the broker) and acknowledge (until committed) as Micrometer timers
+     * "pipeline.breakdown". The timestamps of each record are kept in rings of breakdownRingSize slots per partition.
+     * Default is false.
+     */
+    private boolean breakdownEnabled = false;
+    /**
+     * The service level objectives (histogram buckets) of the breakdown timers.
+     * Default is 1ms, 5ms, 10ms, 50ms, 100ms, 500ms and 1s.
+     */
+    private Duration[] breakdownSlo = {
+        Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(50),
+        Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(1)
+    };
+    /**
+     * Number of records per partition, whose timestamps are kept for the breakdown. Records, that are still
+     * in flight, when this number of later records were received, are not measured. Rounded up to a power of 2.
+     * Default is 4096.
+     */
+    private int breakdownRingSize = 4096;
+    /**
+     * Interval, in which the slowest record of each part is logged with topic, partition and offset.
+     * Zero disables the logging. Default is 60 seconds.
+     */
+    private Duration breakdownSlowestLogInterval = Duration.ofSeconds(60);
+}
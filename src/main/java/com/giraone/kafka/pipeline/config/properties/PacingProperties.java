@@ -0,0 +1,74 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import com.giraone.kafka.pipeline.service.produce.RatePacer;
+import com.giraone.kafka.pipeline.service.produce.RateProfile;
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Pacing of the producer by a target rate in events per second. Used instead of the producer interval, when
+ * a rate is defined. Multiple events are emitted per tick, so rates far above one event per millisecond are possible.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class PacingProperties {
+
+    /**
+     * Target (base) rate in events per second. 0 disables pacing - then the producer interval is used.
+     * Default is 0.
+     */
+    private double rate;
+
+    /**
+     * Maximum rate in events per second for the profiles RAMP, STEP and SPIKE.
+     * Default is 0 (same as rate).
+     */
+    private double rateMax;
+
+    /**
+     * Rate profile: CONSTANT, RAMP, STEP or SPIKE.
+     * Default is CONSTANT.
+     */
+    private RateProfile.Type profile = RateProfile.Type.CONSTANT;
+
+    /**
+     * Duration of the ramp (RAMP), of one step (STEP) or the interval between two spikes (SPIKE).
+     * Default is 60 seconds.
+     */
+    private Duration profilePeriod = Duration.ofSeconds(60);
+
+    /**
+     * Number of steps from rate to rateMax (STEP).
+     * Default is 5.
+     */
+    private int steps = 5;
+
+    /**
+     * Duration of a spike (SPIKE).
+     * Default is 5 seconds.
+     */
+    private Duration spikeDuration = Duration.ofSeconds(5);
+
+    /**
+     * Interval of the pacing timer. The events due within one tick are emitted together.
+     * Default is 10ms.
+     */
+    private Duration tick = Duration.ofMillis(10);
+
+    public boolean isEnabled() {
+        return rate > 0.0;
+    }
+
+    public RatePacer toRatePacer() {
+        return new RatePacer(new RateProfile(profile, rate, rateMax, profilePeriod, steps, spikeDuration), tick);
+    }
+}
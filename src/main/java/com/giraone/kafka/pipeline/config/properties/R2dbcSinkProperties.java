@@ -0,0 +1,60 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Database sink of ConsumeR2dbc. The connection itself is configured by Spring Boot (spring.r2dbc.url,
+ * spring.r2dbc.pool.max-size). Without a URL an embedded in-memory H2 database is used.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class R2dbcSinkProperties {
+
+    /**
+     * Table, into which the records are inserted.
+     * Default is "pipeline_event".
+     */
+    private String table = "pipeline_event";
+
+    /**
+     * Create the table on startup, if it does not exist. Meant for local tests - the column types are those of H2
+     * and PostgreSQL.
+     * Default is true.
+     */
+    private boolean createTable = true;
+
+    /**
+     * Maximum number of rows of one multi-row insert statement.
+     * Default is 500.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Maximum time to wait for a batch to be filled, before a smaller batch is inserted.
+     * Default is 100ms.
+     */
+    private Duration batchMaxWait = Duration.ofMillis(100);
+
+    /**
+     * Maximum number of insert statements executed concurrently. Should not be larger than spring.r2dbc.pool.max-size.
+     * Default is 4.
+     */
+    private int maxConcurrentStatements = 4;
+
+    /**
+     * Bind marker of the database driver: "$" for indexed markers ($1, $2, ... - H2, PostgreSQL) or "?" for
+     * anonymous markers (MySQL, MariaDB).
+     * Default is "$".
+     */
+    private String bindMarker = "$";
+}
@@ -48,6 +48,18 @@ public class RetryProperties {
             : Retry.fixedDelay(maxAttempts, fixedDelay);
     }
 
+    /**
+     * The backoff before the given retry attempt, the same way as used by {@link #toRetry()} (without jitter).
+     *
+     * @param attempt retry attempt starting with 1
+     * @return minBackoff * 2^(attempt-1) for exponential backoff, otherwise the fixed delay
+     */
+    public Duration backoff(int attempt) {
+        return minBackoff != null && !minBackoff.isNegative()
+            ? minBackoff.multipliedBy(1L << Math.min(attempt - 1, 30))
+            : fixedDelay;
+    }
+
     public static RetryProperties defaultExponential() {
         return new RetryProperties(DEFAULT_NUMBER_OF_ATTEMPTS, null, Duration.ofSeconds(DEFAULT_EXPONENTIAL_RETRIES_SECONDS));
     }
@@ -0,0 +1,42 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Non-blocking retries using retry topics. A record, that failed in processing, is sent to the next retry topic
+ * (tier) and the original record is committed like a processed one - in offset order after the records received
+ * before it - so its partition is not blocked. The number of tiers and their delays are defined by the processing
+ * retry properties (maxAttempts and backoff). When all tiers are exhausted, the record is sent to the dead-letter
+ * topic.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class RetryTopicProperties {
+
+    /**
+     * Route failed records to retry topics and the dead-letter topic. When disabled, a failed record is
+     * negatively acknowledged, which stops and restarts the main loop.
+     * Default is false.
+     */
+    private boolean enabled;
+
+    /**
+     * Suffix of the retry topics, followed by the delay of the tier, e.g. "a1-retry-2s".
+     * Default is "-retry-".
+     */
+    private String retrySuffix = "-retry-";
+
+    /**
+     * Suffix of the dead-letter topic, e.g. "a1-dlt".
+     * Default is "-dlt".
+     */
+    private String dltSuffix = "-dlt";
+}
@@ -0,0 +1,92 @@
+package com.giraone.kafka.pipeline.config.properties;
+
+import com.giraone.kafka.pipeline.service.produce.WorkloadGenerator;
+import lombok.Generated;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Workload profile of the producer: size distribution of the values, key cardinality and key skew and the
+ * compressibility of the values. When disabled, sequential keys and values of 10 equal characters are produced.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@ToString
+// exclude from test coverage
+@Generated
+public class WorkloadProperties {
+
+    /**
+     * Use the workload profile.
+     * Default is false.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Distribution of the value sizes: FIXED, UNIFORM or LOGNORMAL.
+     * Default is FIXED.
+     */
+    private WorkloadGenerator.SizeDistribution sizeDistribution = WorkloadGenerator.SizeDistribution.FIXED;
+
+    /**
+     * Size of a value in characters (FIXED) or mean size (LOGNORMAL).
+     * Default is 100.
+     */
+    private int size = 100;
+
+    /**
+     * Minimum size of a value (UNIFORM, LOGNORMAL).
+     * Default is 10.
+     */
+    private int sizeMin = 10;
+
+    /**
+     * Maximum size of a value (UNIFORM, LOGNORMAL).
+     * Default is 10_000.
+     */
+    private int sizeMax = 10_000;
+
+    /**
+     * Shape of the LOGNORMAL distribution. The larger, the longer the tail of large values.
+     * Default is 1.0.
+     */
+    private double sizeSigma = 1.0;
+
+    /**
+     * Number of pre-generated values, from which the values are taken.
+     * Default is 1000.
+     */
+    private int poolSize = 1000;
+
+    /**
+     * Fraction (0.0 - 1.0) of each value, that is a repeated character and compresses well.
+     * Default is 0.5.
+     */
+    private double compressibility = 0.5;
+
+    /**
+     * Number of distinct keys. 0 means sequential keys - one key per event.
+     * Default is 0.
+     */
+    private int keyCardinality = 0;
+
+    /**
+     * Zipf exponent of the key distribution. 0 means uniformly distributed keys, 1.0 and more means a few hot keys.
+     * Default is 0.
+     */
+    private double keySkew = 0.0;
+
+    /**
+     * Seed of the random generator to reproduce a workload. 0 means a random seed.
+     * Default is 0.
+     */
+    private long seed = 0L;
+
+    public WorkloadGenerator toWorkloadGenerator() {
+        return new WorkloadGenerator(sizeDistribution, size, sizeMin, sizeMax, sizeSigma, poolSize, compressibility,
+            keyCardinality, keySkew, seed);
+    }
+}
@@ -1,52 +1,168 @@
 package com.giraone.kafka.pipeline.service;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.commit.CommitStrategy;
+import com.giraone.kafka.pipeline.service.commit.OffsetTrackers;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
 import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
 import io.atleon.kafka.KafkaSenderResult;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.event.ContextClosedEvent;
 import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AbstractService implements CommandLineRunner {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractService.class);
 
+    /**
+     * Header with the creation time of a record (epoch millis as 8 bytes big endian). Set by the producer services
+     * and passed through by the pipe services. Used to measure end-to-end latencies.
+     */
+    public static final String HEADER_CREATED_AT = "x-created-at";
+
+    // names of the pipeline stages for the operator level metrics - see StageMetrics
+    public static final String STAGE_RECEIVE = "receive";
+    public static final String STAGE_PUBLISH_ON = "publishOn";
+    public static final String STAGE_PROCESS = "process";
+    public static final String STAGE_SEND = "send";
+    public static final String STAGE_COMMIT = "commit";
+
     protected final AtomicInteger starts = new AtomicInteger();
+    protected final AtomicInteger retryStarts = new AtomicInteger();
     // used to save the subscription of the main consumer loop, so we can dispose on shutdown, to stop consuming during shutdown
     protected Disposable subscription;
+    // used to save the subscription of the retry topic consumer loop
+    protected Disposable retrySubscription;
 
     protected final ApplicationProperties applicationProperties;
     protected final CounterService counterService;
+    // rate limiter for processing consumed records (pipe, consume)
+    protected final TokenBucketRateLimiter rateLimiter;
+    protected final long rateLimitTimeoutNanos;
+    // routing of failed records to retry topics - null for producers
+    protected final RetryTopicRouter retryTopicRouter;
+    private final float failurePercentage;
+    // how often processed records are committed (pipe, consume) - may be replaced by modes with another default
+    protected CommitStrategy commitStrategy;
+    // the received records of the input topic per partition, so they are committed in strict offset order
+    protected final OffsetTrackers<KafkaReceiverRecord<?, ?>> offsetTrackers = new OffsetTrackers<>();
+    // true, when records of the input topic may complete out of order or are acknowledged outside the commit stage
+    // (routed to a retry topic) - may be set by modes, that always complete out of order
+    protected boolean trackOffsets;
+    // the marks of the consumed topics (input and retry topics) - resolved on start, so a mark needs no topic lookup
+    private TopicMarks[] topicMarks = new TopicMarks[0];
 
     protected AbstractService(ApplicationProperties applicationProperties,
                               CounterService counterService) {
+        this(applicationProperties, counterService, null);
+    }
+
+    protected AbstractService(ApplicationProperties applicationProperties,
+                              CounterService counterService,
+                              RetryTopicRouter retryTopicRouter) {
         this.applicationProperties = applicationProperties;
         this.counterService = counterService;
+        this.retryTopicRouter = retryTopicRouter;
+        this.failurePercentage = applicationProperties.getProcessing().getFailurePercentage();
+        this.commitStrategy = applicationProperties.getConsumer().getCommit().toCommitStrategy(CommitStrategy.Type.PER_RECORD);
+        // a routed record is acknowledged, while records received before it may still be in process or send
+        this.trackOffsets = retryTopicRouter != null && retryTopicRouter.isEnabled();
+        this.rateLimiter = applicationProperties.getProcessing().getRate().toRateLimiter();
+        this.rateLimitTimeoutNanos = Duration.ofMillis(applicationProperties.getProcessing().getRate().getTimeoutMs()).toNanos();
     }
 
     protected abstract void start();
 
+    /**
+     * Start the consumer loop for the retry topics. Does nothing by default.
+     */
+    protected void startRetryLoop() {
+    }
+
     @Override
     public void run(String... args) {
 
-        if (!(applicationProperties.getMode() + "Service").equalsIgnoreCase(this.getClass().getSimpleName())) {
+        if (!isSelected()) {
             return;
         }
         LOGGER.info("STARTING {}", this.getClass().getSimpleName());
+        this.resolveTopicMarks();
+        this.monitor();
         this.start();
+        if (retryTopicRouter != null && retryTopicRouter.isEnabled()) {
+            this.startRetryLoop();
+        }
+    }
+
+    /**
+     * @return true, if this is the service of the selected mode ({@code application.mode})
+     */
+    public boolean isSelected() {
+        return (applicationProperties.getMode() + "Service").equalsIgnoreCase(this.getClass().getSimpleName());
+    }
+
+    /**
+     * @return the consumed topic - null for producers
+     */
+    protected String getTopicInput() {
+        return null;
+    }
+
+    /**
+     * Resolve the marks of the consumed topics: the input topic and its retry topics.
+     */
+    protected void resolveTopicMarks() {
+        final String topicInput = getTopicInput();
+        if (topicInput == null) {
+            return;
+        }
+        final List<String> topics = new ArrayList<>();
+        topics.add(topicInput);
+        if (retryTopicRouter != null && retryTopicRouter.isEnabled()) {
+            topics.addAll(retryTopicRouter.retryTopics(topicInput));
+        }
+        topicMarks = topics.stream().map(counterService::topicMarks).toArray(TopicMarks[]::new);
+    }
+
+    /**
+     * @return the number of restarts of the main loop after an error
+     */
+    public int getStarts() {
+        return starts.get();
+    }
+
+    /**
+     * Register the metrics of the resources of the started service, e.g. its scheduler. Called once before the
+     * first start - only for the service of the selected mode.
+     */
+    protected void monitor() {
+        // nothing to monitor by default
     }
 
     protected void restartMainLoopOnError(Throwable throwable) {
         counterService.logMainLoopError(throwable);
+        // the partitions are assigned again, when the main loop is restarted
+        counterService.resetPipelineState();
         // We do not re-subscribe endlessly - hard limit to 10 re-subscribes
         if (starts.get() < 10) {
+            starts.incrementAndGet();
             Mono.delay(Duration.ofSeconds(60L))
                 .doOnNext(i -> start())
                 .subscribe();
@@ -55,55 +171,338 @@ public abstract class AbstractService implements CommandLineRunner {
         }
     }
 
+    protected void restartRetryLoopOnError(Throwable throwable) {
+        counterService.logMainLoopError(throwable);
+        // the same hard limit as for the main loop
+        if (retryStarts.get() < 10) {
+            retryStarts.incrementAndGet();
+            Mono.delay(Duration.ofSeconds(60L))
+                .doOnNext(i -> startRetryLoop())
+                .subscribe();
+        } else {
+            LOGGER.error("Gave up restarting, because of more than 10 restarts of the retry topic consuming chain");
+        }
+    }
+
     protected void onApplicationCloseEvent(ContextClosedEvent ignoredEvent) {
         LOGGER.info("Got shutdown signal, disposing main consumer loop subscription...");
         if (subscription != null) {
             subscription.dispose();
         }
+        if (retrySubscription != null) {
+            retrySubscription.dispose();
+        }
+    }
+
+    /**
+     * Handle an error of the processing step. When retry topics are enabled, the record is routed to the next retry
+     * topic (or the dead-letter topic) and committed, so the partition keeps flowing and the returned Mono is empty.
+     * Otherwise, the record is negatively acknowledged and the error is passed on.
+     *
+     * @param inputRecord the record, that failed in processing
+     * @param throwable   the processing error
+     * @return an empty Mono, when the record was routed, otherwise an error Mono
+     */
+    protected <T> Mono<T> handleProcessingError(KafkaReceiverRecord<String, String> inputRecord, Throwable throwable) {
+        return handleProcessingError(inputRecord, throwable, () -> retryTopicRouter.route(inputRecord, throwable));
+    }
+
+    /**
+     * Handle an error of the processing step like {@link #handleProcessingError(KafkaReceiverRecord, Throwable)},
+     * but route the record with the given sender, that has the serializer of the value type.
+     *
+     * @param inputRecord the record, that failed in processing
+     * @param throwable   the processing error
+     * @param retrySender the sender for the retry topics
+     * @return an empty Mono, when the record was routed, otherwise an error Mono
+     */
+    protected <V, T> Mono<T> handleProcessingError(KafkaReceiverRecord<String, V> inputRecord, Throwable throwable,
+                                                   KafkaSender<String, V> retrySender) {
+        return handleProcessingError(inputRecord, throwable, () -> retryTopicRouter.route(inputRecord, throwable, retrySender));
+    }
+
+    private <T> Mono<T> handleProcessingError(KafkaReceiverRecord<String, ?> inputRecord, Throwable throwable,
+                                              Supplier<Mono<Void>> routing) {
+        LOGGER.error("Error processing record from topic \"{}\" with key={}",
+            inputRecord.topicPartition().topic(), inputRecord.key(), throwable);
+        if (retryTopicRouter != null && retryTopicRouter.isEnabled()) {
+            return routing.get()
+                .then(Mono.<T>fromRunnable(() -> commitRouted(inputRecord)))
+                // the record could not be routed - fall back to the negative acknowledgement
+                .doOnError(routingError -> nacknowledge(inputRecord, routingError));
+        }
+        nacknowledge(inputRecord, throwable);
+        return Mono.error(throwable);
+    }
+
+    /**
+     * Negatively acknowledge a single record - it is no longer in flight.
+     */
+    protected void nacknowledge(KafkaReceiverRecord<?, ?> receiverRecord, Throwable throwable) {
+        receiverRecord.nacknowledge(throwable);
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
+        counterService.logNacknowledged(topicMarks(consumerRecord.topic()), consumerRecord.partition());
+    }
+
+    /**
+     * Commit a record, that was routed to a retry topic. A record of the input topic is committed in offset order,
+     * because the records received before it may still be in process. The retry topics are processed one record
+     * after the other per partition, so their records are committed directly.
+     */
+    protected void commitRouted(KafkaReceiverRecord<?, ?> receiverRecord) {
+        if (receiverRecord.topicPartition().topic().equals(getTopicInput())) {
+            commitInOffsetOrder(receiverRecord);
+        } else {
+            acknowledge(receiverRecord);
+        }
+    }
+
+    /**
+     * Commit the processed records as defined by the commit strategy. The strategy groups the records and all
+     * records of a group are committed together in their order.
+     *
+     * @param processed    the processed records in commit order
+     * @param commitAction commits a single record
+     * @return a Flux completing, when the processed records complete
+     */
+    protected <T> Flux<Void> commit(Flux<T> processed, Consumer<T> commitAction) {
+        return commitStrategy.commitGroups(processed)
+            .transform(stage(STAGE_COMMIT))
+            .concatMap(group -> Mono.<Void>fromRunnable(() -> commitGroup(group, commitAction))
+                .doOnError(this::logCommitError));
+    }
+
+    /**
+     * Instrument the output of an operator as a named pipeline stage, e.g. {@code .transform(stage(STAGE_PROCESS))}.
+     * Nothing is added, when the stage metrics are disabled.
+     */
+    protected <T> Function<Flux<T>, Flux<T>> stage(String stage) {
+        return stage(stage, -1);
+    }
+
+    /**
+     * Instrument the output of an operator as a named pipeline stage, that runs per partition.
+     */
+    protected <T> Function<Flux<T>, Flux<T>> stage(String stage, int partition) {
+        final StageMetrics stageMetrics = counterService.stageMetrics(stage, partition);
+        if (stageMetrics == null) {
+            return Function.identity();
+        }
+        return stageMetrics::instrument;
+    }
+
+    private <T> void commitGroup(List<T> group, Consumer<T> commitAction) {
+        for (T item : group) {
+            commitAction.accept(item);
+        }
+        counterService.logCommitGroup(group.size());
     }
 
-    protected void logReceived(KafkaReceiverRecord<String, String> receiverRecord) {
-        final ConsumerRecord<String, String> consumerRecord = receiverRecord.consumerRecord();
+    /**
+     * Acknowledge a single record and log the commit.
+     */
+    protected void acknowledge(KafkaReceiverRecord<?, ?> receiverRecord) {
+        receiverRecord.acknowledge();
+        logCommited(receiverRecord);
+    }
+
+    /**
+     * Throw an exception for the configured percentage of calls, to simulate processing failures.
+     */
+    protected void simulateFailure() {
+        if (failurePercentage > 0.0F && ThreadLocalRandom.current().nextFloat() * 100.0F < failurePercentage) {
+            throw new IllegalStateException("Simulated processing failure");
+        }
+    }
+
+    /**
+     * Acquire a permit of the rate limiter without blocking. The returned Mono completes, when the permit may be used.
+     * Because the processing waits on the permit, the demand to the upstream (the Kafka receiver) is throttled and
+     * no records are buffered.
+     *
+     * @return an empty Mono completing, when the permit is granted - immediately, when rate limiting is disabled
+     */
+    protected Mono<Void> acquirePermit() {
+        return acquirePermits(1);
+    }
+
+    /**
+     * Acquire one permit per record of a batch - see {@link #acquirePermit()}.
+     *
+     * @param permits number of records
+     * @return an empty Mono completing, when all permits are granted
+     */
+    protected Mono<Void> acquirePermits(int permits) {
+        if (!rateLimiter.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            final long waitNanos = rateLimiter.reserve(permits);
+            counterService.logRateLimitPermit(waitNanos, waitNanos > rateLimitTimeoutNanos);
+            return waitNanos > 0L ? Mono.delay(Duration.ofNanos(waitNanos)).then() : Mono.empty();
+        });
+    }
+
+    protected void logReceived(KafkaReceiverRecord<?, ?> receiverRecord) {
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
         final int partition = consumerRecord.partition();
         final long offset = consumerRecord.offset();
         counterService.logRateReceived(partition, offset);
+        logLatency(LatencyRecorder.Stage.RECEIVE, consumerRecord);
+        logReached(LatencyBreakdown.Mark.RECEIVED, consumerRecord);
         LOGGER.debug("<<< {} {} {} {} {}", consumerRecord.topic(), partition, consumerRecord.offset(), offset, consumerRecord.value());
     }
 
-    protected void logProcessed(KafkaReceiverRecord<String, String> receiverRecord) {
-        final ConsumerRecord<String, String> consumerRecord = receiverRecord.consumerRecord();
+    /**
+     * A record of a retry topic was received. It is counted separately (RTRY), so the partitions of the retry topics
+     * do not mix with the partitions of the input topic in the receive counters and latencies.
+     */
+    protected void logRetryReceived(KafkaReceiverRecord<?, ?> receiverRecord) {
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
+        final int partition = consumerRecord.partition();
+        final long offset = consumerRecord.offset();
+        counterService.logRateRetryReceived(partition, offset);
+        logReached(LatencyBreakdown.Mark.RECEIVED, consumerRecord);
+        LOGGER.debug("<<R {} {} {} {}", consumerRecord.topic(), partition, offset, consumerRecord.value());
+    }
+
+    /**
+     * The processing of a received record starts - the end of the queue wait, e.g. before publishOn(scheduler).
+     */
+    protected void logProcessStarted(KafkaReceiverRecord<?, ?> receiverRecord) {
+        logReached(LatencyBreakdown.Mark.PROCESS_STARTED, receiverRecord.consumerRecord());
+    }
+
+    protected void logProcessed(KafkaReceiverRecord<?, ?> receiverRecord) {
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
         final int partition = consumerRecord.partition();
         final long offset = consumerRecord.offset();
         counterService.logRateProcessed();
+        logLatency(LatencyRecorder.Stage.PROCESS, consumerRecord);
+        logReached(LatencyBreakdown.Mark.PROCESSED, consumerRecord);
         LOGGER.debug("°°° {} {} {} {} {}", consumerRecord.topic(), partition, offset, consumerRecord.key(), consumerRecord.value());
     }
 
-    protected void logSent(KafkaSenderResult<KafkaReceiverRecord<String, String>> senderResult) {
-        final String topic = senderResult.recordMetadata().get().topic();
-        final int partition = senderResult.recordMetadata().get().partition();
-        final long offset = senderResult.recordMetadata().get().offset();
+    protected void logSent(KafkaSenderResult<? extends KafkaReceiverRecord<?, ?>> senderResult) {
+        logSent(senderResult.recordMetadata().get(), senderResult.correlationMetadata().consumerRecord());
+    }
+
+    /**
+     * @param recordMetadata metadata of the sent record
+     * @param consumerRecord the consumed record, from which the sent record was built
+     */
+    protected void logSent(RecordMetadata recordMetadata, ConsumerRecord<?, ?> consumerRecord) {
+        final String topic = recordMetadata.topic();
+        final int partition = recordMetadata.partition();
+        final long offset = recordMetadata.offset();
         counterService.logRateSent(partition, offset);
-        final ConsumerRecord<String, String> consumerRecord = senderResult.correlationMetadata().consumerRecord();
+        logLatency(LatencyRecorder.Stage.SEND, consumerRecord);
+        logReached(LatencyBreakdown.Mark.SENT, consumerRecord);
         LOGGER.debug(">>> {} {} {} {} {}", topic, partition, offset, consumerRecord.key(), consumerRecord.value());
     }
 
-    protected void logCommited(KafkaReceiverRecord<String, String> receiverRecord) {
-        final ConsumerRecord<String, String> consumerRecord = receiverRecord.consumerRecord();
+    protected void logCommited(KafkaReceiverRecord<?, ?> receiverRecord) {
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
         final int partition = consumerRecord.partition();
         final long offset = consumerRecord.offset();
         counterService.logRateCommitted(partition, offset);
+        logLatency(LatencyRecorder.Stage.COMMIT, consumerRecord);
+        logReached(LatencyBreakdown.Mark.ACKNOWLEDGED, consumerRecord);
         LOGGER.debug("### {} {} {} {} {}", consumerRecord.topic(), partition, offset, consumerRecord.key(), consumerRecord.value());
     }
 
-    protected void logDiscardCommited(KafkaReceiverRecord<String, String> receiverRecord) {
-        final ConsumerRecord<String, String> consumerRecord = receiverRecord.consumerRecord();
+    protected void logDiscardCommited(KafkaReceiverRecord<?, ?> receiverRecord) {
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
         final int partition = consumerRecord.partition();
         final long offset = consumerRecord.offset();
         counterService.logRateCommittedOnDiscard(partition, offset);
+        counterService.logReachedOnDiscard(topicMarks(consumerRecord.topic()), partition, offset);
+        logLatency(LatencyRecorder.Stage.COMMIT, consumerRecord);
         LOGGER.debug("#!# {} {} {} {} {}", consumerRecord.topic(), partition, offset, consumerRecord.key(), consumerRecord.value());
     }
 
+    /**
+     * Track a received record of the input topic, when the offsets are tracked - see {@link #commitInOffsetOrder}.
+     */
+    protected void track(KafkaReceiverRecord<?, ?> receiverRecord) {
+        if (trackOffsets) {
+            final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
+            offsetTrackers.forPartition(consumerRecord.partition()).track(consumerRecord.offset(), receiverRecord);
+        }
+    }
+
+    /**
+     * Mark a record of the input topic as done and commit all records of its partition, that are now completed
+     * without a gap - in strict offset order. When the offsets are not tracked, the records are completed in offset
+     * order and the record is committed directly.
+     *
+     * @param receiverRecord the completed record
+     */
+    protected void commitInOffsetOrder(KafkaReceiverRecord<?, ?> receiverRecord) {
+        if (!trackOffsets) {
+            acknowledge(receiverRecord);
+            return;
+        }
+        final ConsumerRecord<?, ?> consumerRecord = receiverRecord.consumerRecord();
+        offsetTrackers.forPartition(consumerRecord.partition())
+            .complete(consumerRecord.offset(), receiverRecord, this::acknowledge);
+    }
+
     protected void logCommitError(Throwable throwable) {
         LOGGER.error("!!! Commit ERROR: {}: {}", throwable.getClass().getSimpleName(), throwable.getMessage());
     }
+
+    private void logReached(LatencyBreakdown.Mark mark, ConsumerRecord<?, ?> consumerRecord) {
+        counterService.logReached(mark, topicMarks(consumerRecord.topic()), consumerRecord.partition(), consumerRecord.offset());
+    }
+
+    private TopicMarks topicMarks(String topic) {
+        for (TopicMarks marks : topicMarks) {
+            if (marks.getTopic().equals(topic)) {
+                return marks;
+            }
+        }
+        // a topic, that was not resolved on start
+        return counterService.topicMarks(topic);
+    }
+
+    private void logLatency(LatencyRecorder.Stage stage, ConsumerRecord<?, ?> consumerRecord) {
+        if (counterService.isLatencyEnabled()) {
+            counterService.logLatency(stage, consumerRecord.partition(), createdAt(consumerRecord));
+        }
+    }
+
+    /**
+     * Build the value of the {@link #HEADER_CREATED_AT} header.
+     *
+     * @param epochMillis creation time
+     * @return 8 bytes big endian
+     */
+    protected static byte[] createdAtHeaderValue(long epochMillis) {
+        final byte[] ret = new byte[Long.BYTES];
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            ret[i] = (byte) epochMillis;
+            epochMillis >>>= 8;
+        }
+        return ret;
+    }
+
+    /**
+     * Read the creation time from the {@link #HEADER_CREATED_AT} header of a consumed record.
+     *
+     * @param consumerRecord the consumed record
+     * @return creation time in epoch millis or -1, if the header is missing
+     */
+    protected static long createdAt(ConsumerRecord<?, ?> consumerRecord) {
+        final Header header = consumerRecord.headers().lastHeader(HEADER_CREATED_AT);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return -1L;
+        }
+        final byte[] value = header.value();
+        long ret = 0L;
+        for (int i = 0; i < Long.BYTES; i++) {
+            ret = (ret << 8) | (value[i] & 0xFFL);
+        }
+        return ret;
+    }
 }
@@ -1,28 +1,49 @@
 package com.giraone.kafka.pipeline.service;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.consume.RailMetrics;
+import com.giraone.kafka.pipeline.service.commit.ConsumerCommitLatency;
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import com.giraone.kafka.pipeline.service.produce.RatePacer;
+import com.giraone.kafka.pipeline.service.scheduler.SchedulerMetrics;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class CounterService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CounterService.class);
 
-    // per metric, per partition
-    private final Map<String, Map<Integer, BeforeAndNowCounter>> counterPerMetric = new HashMap<>();
-    private final Map<String, BeforeAndNowCounter> totalCounterPerMetric = new HashMap<>();
+    // per metric - the per partition counters are kept within each metric
+    private final MetricCounter[] counterPerMetric = new MetricCounter[Metric.values().length];
 
+    private final MeterRegistry registry;
     private final long logEveryMs;
+    private final LatencyRecorder latencyRecorder;
+    private final LatencyBreakdown latencyBreakdown;
+    private final PipelineState pipelineState = new PipelineState();
+    private final boolean stagesEnabled;
+    private final boolean stagesPerPartition;
+    // per stage and partition tag
+    private final Map<String, StageMetrics> stageMetrics = new ConcurrentHashMap<>();
+    private final List<SchedulerMetrics> monitoredSchedulers = new CopyOnWriteArrayList<>();
 
     private final Counter counterProduced;
     private final Counter counterSent;
@@ -32,15 +53,37 @@ public class CounterService {
     private final Counter counterCommitted;
     private final Counter counterCommittedOnDiscard;
 
+    private final Counter counterRateLimitGranted;
+    private final Counter counterRateLimitTimeout;
+    private final Timer timerRateLimitWait;
+
+    private final Counter counterRetryReceived;
+    private final Counter counterRetryRouted;
+    private final Counter counterDeadLettered;
+
+    private final Counter counterDuplicates;
+
+    private final Counter counterCommitGroups;
+    private final DistributionSummary summaryCommitSize;
+
     private final Counter counterError;
     private final Counter counterMainLoopStarted;
     private final Counter counterMainLoopStopped;
 
     public CounterService(ApplicationProperties applicationProperties, MeterRegistry registry) {
 
+        this.registry = registry;
         this.logEveryMs = applicationProperties.getLogRate().toMillis();
         LOGGER.info("Starting Counter Service configured to log every {} ms", logEveryMs);
 
+        for (Metric metric : Metric.values()) {
+            counterPerMetric[metric.ordinal()] = new MetricCounter(metric);
+        }
+        this.latencyRecorder = new LatencyRecorder(applicationProperties.getMetrics(), registry);
+        this.latencyBreakdown = new LatencyBreakdown(applicationProperties.getMetrics(), registry);
+        this.stagesEnabled = applicationProperties.getMetrics().isStagesEnabled();
+        this.stagesPerPartition = applicationProperties.getMetrics().isStagesPerPartition();
+
         this.counterProduced = registry.counter("pipeline.produced");
         this.counterSent = registry.counter("pipeline.sent");
 
@@ -49,43 +92,240 @@ public class CounterService {
         this.counterCommitted = registry.counter("pipeline.committed");
         this.counterCommittedOnDiscard = registry.counter("pipeline.committedOnDiscard");
 
+        this.counterRateLimitGranted = registry.counter("pipeline.ratelimit.granted");
+        this.counterRateLimitTimeout = registry.counter("pipeline.ratelimit.timeout");
+        this.timerRateLimitWait = registry.timer("pipeline.ratelimit.wait");
+
+        this.counterRetryReceived = registry.counter("pipeline.retry.received");
+        this.counterRetryRouted = registry.counter("pipeline.retry.routed");
+        this.counterDeadLettered = registry.counter("pipeline.retry.dlt");
+
+        this.counterDuplicates = registry.counter("pipeline.dedup.duplicates");
+
+        this.counterCommitGroups = registry.counter("pipeline.commit.count");
+        this.summaryCommitSize = registry.summary("pipeline.commit.size");
+        // the commit latency to the broker, as measured by the consumer
+        Gauge.builder("pipeline.commit.latency", ConsumerCommitLatency::averageSeconds).baseUnit("seconds").register(registry);
 
         this.counterError = registry.counter("pipeline.error");
         this.counterMainLoopStarted = registry.counter("pipeline.loop.started");
         this.counterMainLoopStopped = registry.counter("pipeline.loop.stopped");
+
+        Gauge.builder("pipeline.inflight", pipelineState, PipelineState::getInFlight).register(registry);
     }
 
     public void logRateSent(int partition, long offset) {
-        logRateInternal("SENT", partition, offset);
+        logRateInternal(Metric.SENT, partition, offset);
         counterSent.increment();
     }
 
     public void logRateReceived(int partition, long offset) {
-        logRateInternal("RECV", partition, offset);
+        logRateInternal(Metric.RECV, partition, offset);
         counterReceived.increment();
     }
 
+    /**
+     * Count a record received from a retry topic - separate from the records of the input topic.
+     */
+    public void logRateRetryReceived(int partition, long offset) {
+        logRateInternal(Metric.RETRY, partition, offset);
+        counterRetryReceived.increment();
+    }
+
     public void logRateCommitted(int partition, long offset) {
-        logRateInternal("CMMT", partition, offset);
+        logRateInternal(Metric.CMMT, partition, offset);
         counterCommitted.increment();
     }
 
     public void logRateCommittedOnDiscard(int partition, long offset) {
-        logRateInternal("CMM*", partition, offset);
+        logRateInternal(Metric.CMM_DISCARD, partition, offset);
         counterCommitted.increment();
         counterCommittedOnDiscard.increment();
     }
 
     public void logRateProduced() {
-        logRateInternal("PROD", -1, -1);
+        logRateInternal(Metric.PROD, -1, -1);
         counterProduced.increment();
     }
 
     public void logRateProcessed() {
-        logRateInternal("TASK", -1, -1);
+        logRateInternal(Metric.TASK, -1, -1);
         counterProcessed.increment();
     }
 
+    /**
+     * Record the latency from the creation of a record until the given stage is reached.
+     *
+     * @param stage           the reached stage
+     * @param partition       the partition of the record
+     * @param createdAtMillis the creation time (epoch millis) from the record header or a value &lt;= 0, if unknown
+     */
+    public void logLatency(LatencyRecorder.Stage stage, int partition, long createdAtMillis) {
+        latencyRecorder.record(stage, partition, createdAtMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the state of the marks of a consumed topic - to be resolved once per topic by the services
+     */
+    public TopicMarks topicMarks(String topic) {
+        return new TopicMarks(topic, pipelineState.topicState(topic),
+            latencyBreakdown.isEnabled() ? latencyBreakdown.topicRings(topic) : null);
+    }
+
+    /**
+     * Mark a point of the processing of a consumed record for the latency breakdown.
+     *
+     * @param mark       the reached point
+     * @param topicMarks the marks of the topic of the consumed record
+     * @param partition  the partition of the consumed record
+     * @param offset     the offset of the consumed record
+     */
+    public void logReached(LatencyBreakdown.Mark mark, TopicMarks topicMarks, int partition, long offset) {
+        pipelineState.reached(mark, topicMarks.getState(), partition, offset, System.currentTimeMillis());
+        if (topicMarks.getRings() != null) {
+            latencyBreakdown.reached(mark, topicMarks.getRings(), partition, offset, System.nanoTime());
+        }
+    }
+
+    /**
+     * Mark a consumed record, that was committed without being processed, in the pipeline state.
+     */
+    public void logReachedOnDiscard(TopicMarks topicMarks, int partition, long offset) {
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, topicMarks.getState(), partition, offset, System.currentTimeMillis());
+    }
+
+    /**
+     * Mark a consumed record, that was negatively acknowledged, in the pipeline state.
+     */
+    public void logNacknowledged(TopicMarks topicMarks, int partition) {
+        pipelineState.nacknowledged(topicMarks.getState(), partition);
+    }
+
+    /**
+     * Drop the partitions of the pipeline state, when the main loop is restarted.
+     */
+    public void resetPipelineState() {
+        pipelineState.clear();
+    }
+
+    public PipelineState getPipelineState() {
+        return pipelineState;
+    }
+
+    public boolean isLatencyEnabled() {
+        return latencyRecorder.isEnabled();
+    }
+
+    /**
+     * Record a granted rate limiter permit.
+     *
+     * @param waitNanos time to wait for the permit
+     * @param timedOut  the wait time was longer than the configured timeout
+     */
+    public void logRateLimitPermit(long waitNanos, boolean timedOut) {
+        counterRateLimitGranted.increment();
+        timerRateLimitWait.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (timedOut) {
+            counterRateLimitTimeout.increment();
+        }
+    }
+
+    /**
+     * Record a failed record, that was routed to a retry topic or to the dead-letter topic.
+     *
+     * @param deadLetter the record was routed to the dead-letter topic
+     */
+    public void logRetryRouted(boolean deadLetter) {
+        if (deadLetter) {
+            counterDeadLettered.increment();
+        } else {
+            counterRetryRouted.increment();
+        }
+    }
+
+    /**
+     * Record a commit of a group of records, as defined by the commit strategy.
+     *
+     * @param size number of records committed together
+     */
+    public void logCommitGroup(int size) {
+        counterCommitGroups.increment();
+        summaryCommitSize.record(size);
+    }
+
+    public void logDuplicate() {
+        counterDuplicates.increment();
+    }
+
+    /**
+     * Publish the size and the memory usage of a dedup cache as gauges.
+     */
+    public void monitorDedupCache(DedupCache dedupCache) {
+        Gauge.builder("pipeline.dedup.size", dedupCache, DedupCache::size).register(registry);
+        Gauge.builder("pipeline.dedup.memory", dedupCache, DedupCache::memoryBytes).baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * Publish the target rate and the achieved (sent) rate of a paced producer as gauges.
+     */
+    public void monitorRatePacer(RatePacer ratePacer) {
+        Gauge.builder("pipeline.producer.rate.target", ratePacer, RatePacer::getTargetRate).register(registry);
+        Gauge.builder("pipeline.producer.rate.achieved", ratePacer, RatePacer::getAchievedRate).register(registry);
+    }
+
+    /**
+     * Publish the queue depth of a rail of a parallel consumer as a gauge and its busy time as a counter, both tagged
+     * with the rail. The rate of the busy time is the utilization of the rail.
+     */
+    public void monitorRail(RailMetrics railMetrics) {
+        final String rail = Integer.toString(railMetrics.getRail());
+        Gauge.builder("pipeline.rail.queue", railMetrics, RailMetrics::getQueueDepth).tag("rail", rail).register(registry);
+        FunctionCounter.builder("pipeline.rail.busy", railMetrics, RailMetrics::getBusySeconds).baseUnit("seconds")
+            .tag("rail", rail).register(registry);
+    }
+
+    /**
+     * The operator level metrics of a pipeline stage.
+     *
+     * @param stage     name of the stage
+     * @param partition the partition of a stage, that runs per partition, or -1
+     * @return the metrics - shared by all callers with the same stage and partition tag - or null, if disabled
+     */
+    public StageMetrics stageMetrics(String stage, int partition) {
+        if (!stagesEnabled) {
+            return null;
+        }
+        final String partitionTag = stagesPerPartition && partition >= 0 ? Integer.toString(partition) : StageMetrics.ALL_PARTITIONS;
+        return stageMetrics.computeIfAbsent(stage + "/" + partitionTag, key -> new StageMetrics(stage, partitionTag, registry));
+    }
+
+    /**
+     * Register the gauges, timers and the rejection counter of a processing scheduler. The scheduler is also
+     * reported by the scheduler health indicator.
+     */
+    public void monitorScheduler(SchedulerMetrics schedulerMetrics) {
+        final String scheduler = schedulerMetrics.getName();
+        Gauge.builder("pipeline.scheduler.threads", schedulerMetrics, SchedulerMetrics::getThreads).tag("scheduler", scheduler).register(registry);
+        Gauge.builder("pipeline.scheduler.active", schedulerMetrics, SchedulerMetrics::getActive).tag("scheduler", scheduler).register(registry);
+        Gauge.builder("pipeline.scheduler.queued", schedulerMetrics, SchedulerMetrics::getQueued).tag("scheduler", scheduler).register(registry);
+        if (schedulerMetrics.getQueueCapacity() > 0) {
+            Gauge.builder("pipeline.scheduler.queue.capacity", schedulerMetrics, SchedulerMetrics::getQueueCapacity).tag("scheduler", scheduler).register(registry);
+        }
+        FunctionTimer.builder("pipeline.scheduler.wait", schedulerMetrics,
+                SchedulerMetrics::getWaitCount, SchedulerMetrics::getWaitNanos, TimeUnit.NANOSECONDS)
+            .tag("scheduler", scheduler).register(registry);
+        FunctionTimer.builder("pipeline.scheduler.execution", schedulerMetrics,
+                SchedulerMetrics::getExecutionCount, SchedulerMetrics::getExecutionNanos, TimeUnit.NANOSECONDS)
+            .tag("scheduler", scheduler).register(registry);
+        FunctionCounter.builder("pipeline.scheduler.rejected", schedulerMetrics, SchedulerMetrics::getRejected)
+            .tag("scheduler", scheduler).register(registry);
+        monitoredSchedulers.add(schedulerMetrics);
+    }
+
+    public List<SchedulerMetrics> getMonitoredSchedulers() {
+        return monitoredSchedulers;
+    }
+
     public void logError(String errorMessage, Throwable throwable) {
         LOGGER.error("ERROR! {} ", errorMessage, throwable);
         counterError.increment();
@@ -126,51 +366,154 @@ public class CounterService {
         return (long) this.counterCommittedOnDiscard.count();
     }
 
-    private void logRateInternal(String metric, int partition, long offset) {
+    /**
+     * @return the received records per second of a partition since the start - the "ops/partition" of the RECV log line
+     */
+    public long getRateReceived(int partition) {
+        return getRate(Metric.RECV, partition);
+    }
 
-        final long now = System.currentTimeMillis();
+    /**
+     * @return the committed records per second of a partition since the start - the "ops/partition" of the CMMT log line
+     */
+    public long getRateCommitted(int partition) {
+        return getRate(Metric.CMMT, partition);
+    }
 
-        BeforeAndNowCounter counterTotal = totalCounterPerMetric.get(metric);
-        if (counterTotal == null) {
-            counterTotal = new BeforeAndNowCounter();
-            totalCounterPerMetric.put(metric, counterTotal);
+    long getRate(Metric metric, int partition) {
+        final PartitionCounter counter = counterPerMetric[metric.ordinal()].peekPartition(partition);
+        if (counter == null) {
+            return 0L;
         }
-        counterTotal.value++;
+        return counter.value.sum() * 1000L / Math.max(1L, System.currentTimeMillis() - counter.start);
+    }
 
-        if (partition >= 0) {
-            final Map<Integer, BeforeAndNowCounter> countersPerPartition = counterPerMetric.computeIfAbsent(metric, k -> new HashMap<>());
-            BeforeAndNowCounter counterForPartition = countersPerPartition.get(partition);
-            if (counterForPartition == null) {
-                counterForPartition = new BeforeAndNowCounter();
-                countersPerPartition.put(partition, counterForPartition);
-            }
-            counterForPartition.value++;
+    long getTotal(Metric metric) {
+        return counterPerMetric[metric.ordinal()].value.sum();
+    }
+
+    long getTotal(Metric metric, int partition) {
+        return counterPerMetric[metric.ordinal()].forPartition(partition).value.sum();
+    }
+
+    private void logRateInternal(Metric metric, int partition, long offset) {
 
-            if ((now - counterForPartition.lastLog) > logEveryMs) {
-                final long partitionRate = counterForPartition.value * 1000L / (now - counterForPartition.start);
-                final long totalRate = counterTotal.value * 1000L / (now - counterTotal.start);
+        final long now = System.currentTimeMillis();
+        final MetricCounter counterTotal = counterPerMetric[metric.ordinal()];
+        counterTotal.value.increment();
+
+        if (partition >= 0) {
+            final PartitionCounter counterForPartition = counterTotal.forPartition(partition);
+            counterForPartition.value.increment();
+
+            final long lastLog = counterForPartition.lastLog.get();
+            // only the thread, that wins the CAS, writes the log line
+            if ((now - lastLog) > logEveryMs && counterForPartition.lastLog.compareAndSet(lastLog, now)) {
+                final long partitionValue = counterForPartition.value.sum();
+                final long totalValue = counterTotal.value.sum();
+                final long partitionRate = partitionValue * 1000L / (now - counterForPartition.start);
+                final long totalRate = totalValue * 1000L / (now - counterTotal.start);
                 LOGGER.info("{}/{}: ops/partition={} ops/topic={} offset={} total/partition={} total/topic={}",
-                    metric, String.format("%02d", partition), partitionRate, totalRate,
-                    offset, counterForPartition.value, counterTotal.value);
-                counterForPartition.lastLog = now;
-                counterTotal.lastLog = now;
+                    metric.label, counterForPartition.label, partitionRate, totalRate,
+                    offset, partitionValue, totalValue);
+                counterTotal.lastLog.set(now);
             }
         } else {
-            if ((now - counterTotal.lastLog) > logEveryMs) {
-                final long totalRate = counterTotal.value * 1000L / (now - counterTotal.start);
+            final long lastLog = counterTotal.lastLog.get();
+            if ((now - lastLog) > logEveryMs && counterTotal.lastLog.compareAndSet(lastLog, now)) {
+                final long totalValue = counterTotal.value.sum();
+                final long totalRate = totalValue * 1000L / (now - counterTotal.start);
                 LOGGER.info("{}/**: ops={} total={}",
-                    metric, totalRate, counterTotal.value);
-                counterTotal.lastLog = now;
+                    metric.label, totalRate, totalValue);
             }
         }
     }
 
-    @Getter
-    @Setter
-    @NoArgsConstructor
-    static class BeforeAndNowCounter {
-        private long value = 0L;
-        private long start = System.currentTimeMillis();
-        private long lastLog = System.currentTimeMillis();
+    /**
+     * The metrics, that are logged. The label is the prefix of the log line.
+     */
+    enum Metric {
+        PROD("PROD"),
+        SENT("SENT"),
+        RECV("RECV"),
+        RETRY("RTRY"),
+        TASK("TASK"),
+        CMMT("CMMT"),
+        CMM_DISCARD("CMM*");
+
+        private final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Total counter of one metric together with the counters per partition. The partition array is grown on demand
+     * (e.g. after a rebalance) using copy on write, so reading it needs no lock.
+     */
+    static class MetricCounter {
+
+        private static final int INITIAL_NUMBER_OF_PARTITIONS = 16;
+
+        private final Metric metric;
+        private final LongAdder value = new LongAdder();
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong lastLog = new AtomicLong(start);
+        private volatile PartitionCounter[] partitions = new PartitionCounter[INITIAL_NUMBER_OF_PARTITIONS];
+
+        MetricCounter(Metric metric) {
+            this.metric = metric;
+        }
+
+        PartitionCounter forPartition(int partition) {
+            final PartitionCounter[] current = partitions;
+            if (partition < current.length) {
+                final PartitionCounter ret = current[partition];
+                if (ret != null) {
+                    return ret;
+                }
+            }
+            return createPartitionCounter(partition);
+        }
+
+        /**
+         * @return the counter of the partition or null, if nothing was counted for the partition
+         */
+        PartitionCounter peekPartition(int partition) {
+            final PartitionCounter[] current = partitions;
+            return partition >= 0 && partition < current.length ? current[partition] : null;
+        }
+
+        private synchronized PartitionCounter createPartitionCounter(int partition) {
+            PartitionCounter[] current = partitions;
+            if (partition >= current.length) {
+                current = Arrays.copyOf(current, Math.max(partition + 1, current.length * 2));
+            } else if (current[partition] != null) {
+                return current[partition];
+            } else {
+                current = current.clone();
+            }
+            final PartitionCounter ret = new PartitionCounter(partition);
+            current[partition] = ret;
+            partitions = current;
+            LOGGER.debug("Counter for {}/{} created", metric.label, ret.label);
+            return ret;
+        }
+    }
+
+    /**
+     * Counter of one metric for one partition. {@link LongAdder} is used, because the counters are incremented
+     * from the worker threads of the processing schedulers.
+     */
+    static class PartitionCounter {
+        private final String label; // the two digit partition number used in the log line
+        private final LongAdder value = new LongAdder();
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong lastLog = new AtomicLong(start);
+
+        PartitionCounter(int partition) {
+            this.label = partition < 10 ? "0" + partition : Integer.toString(partition);
+        }
     }
 }
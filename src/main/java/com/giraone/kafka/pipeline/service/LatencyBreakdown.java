@@ -0,0 +1,261 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.properties.MetricsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the latency of each consumed record into the parts between the points, that are marked by the services:
+ * received, processing started, processed, sent and acknowledged. Per part there is one Micrometer timer
+ * "pipeline.breakdown" with service level objective buckets. The time of each mark is kept in a ring per topic and
+ * partition, whose slot is given by the offset of the record. The rings of a topic are resolved once by the services
+ * ({@link #topicRings(String)}) and indexed by the partition, so records of different topics (e.g. the input and a
+ * retry topic) do not share a ring and a mark needs no lookup by the topic name.
+ * A slot also keeps the offset, so a slot, that was already overwritten by a later record, is not used for the
+ * measurement.
+ * <p>
+ * The slowest record of each part within a log interval is logged with topic, partition and offset.
+ */
+public class LatencyBreakdown {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatencyBreakdown.class);
+
+    public enum Part {
+        QUEUE("queue"),
+        PROCESS("process"),
+        SEND("send"),
+        ACKNOWLEDGE("acknowledge");
+
+        private final String tagValue;
+
+        Part(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+    /**
+     * The marked points of a record. Each mark ends the part, that started with a previous mark.
+     */
+    public enum Mark {
+        RECEIVED,
+        PROCESS_STARTED,
+        PROCESSED,
+        SENT,
+        ACKNOWLEDGED
+    }
+
+    // ACKNOWLEDGED is the last mark and is not stored
+    private static final int STORED_MARKS = Mark.ACKNOWLEDGED.ordinal();
+    private static final int INITIAL_NUMBER_OF_PARTITIONS = 16;
+
+    private final boolean enabled;
+    private final int mask;
+    private final long logIntervalNanos;
+    private final Timer[] timers = new Timer[Part.values().length];
+    private final Slowest[] slowest = new Slowest[Part.values().length];
+    private final Map<String, TopicRings> ringsPerTopic = new ConcurrentHashMap<>();
+    private volatile long windowStartNanos;
+
+    public LatencyBreakdown(MetricsProperties metricsProperties, MeterRegistry registry) {
+        this(metricsProperties, registry, System.nanoTime());
+    }
+
+    LatencyBreakdown(MetricsProperties metricsProperties, MeterRegistry registry, long nowNanos) {
+        this.enabled = metricsProperties.isBreakdownEnabled();
+        this.mask = ringSize(metricsProperties.getBreakdownRingSize()) - 1;
+        this.logIntervalNanos = metricsProperties.getBreakdownSlowestLogInterval().toNanos();
+        this.windowStartNanos = nowNanos;
+        for (Part part : Part.values()) {
+            timers[part.ordinal()] = Timer.builder("pipeline.breakdown")
+                .description("Latency of a part of the processing of a consumed record")
+                .tag("part", part.tagValue)
+                .serviceLevelObjectives(metricsProperties.getBreakdownSlo())
+                .register(registry);
+            slowest[part.ordinal()] = new Slowest();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the rings of the partitions of a topic - created on the first call for the topic
+     */
+    public TopicRings topicRings(String topic) {
+        return ringsPerTopic.computeIfAbsent(topic, TopicRings::new);
+    }
+
+    /**
+     * A record reached a marked point - see {@link #reached(Mark, TopicRings, int, long, long)}.
+     */
+    public void reached(Mark mark, String topic, int partition, long offset, long nowNanos) {
+        if (enabled) {
+            reached(mark, topicRings(topic), partition, offset, nowNanos);
+        }
+    }
+
+    /**
+     * A record reached a marked point. The part ending with this mark is recorded, if the start of the part
+     * was marked before.
+     *
+     * @param mark       the reached point
+     * @param topicRings the rings of the topic of the consumed record
+     * @param partition  the partition of the consumed record
+     * @param offset     the offset of the consumed record
+     * @param nowNanos   the current time (System.nanoTime)
+     */
+    public void reached(Mark mark, TopicRings topicRings, int partition, long offset, long nowNanos) {
+        if (!enabled) {
+            return;
+        }
+        final String topic = topicRings.topic;
+        final Ring ring = topicRings.ring(partition);
+        final int slot = (int) (offset & mask);
+        switch (mark) {
+            case PROCESS_STARTED -> measure(Part.QUEUE, ring, Mark.RECEIVED, slot, topic, partition, offset, nowNanos);
+            case PROCESSED -> measure(Part.PROCESS, ring, Mark.PROCESS_STARTED, slot, topic, partition, offset, nowNanos);
+            case SENT -> measure(Part.SEND, ring, Mark.PROCESSED, slot, topic, partition, offset, nowNanos);
+            case ACKNOWLEDGED -> {
+                // consumers do not send - the acknowledge part starts, when the record is processed
+                if (!measure(Part.ACKNOWLEDGE, ring, Mark.SENT, slot, topic, partition, offset, nowNanos)) {
+                    measure(Part.ACKNOWLEDGE, ring, Mark.PROCESSED, slot, topic, partition, offset, nowNanos);
+                }
+            }
+            default -> {
+                // RECEIVED starts the first part
+            }
+        }
+        if (mark.ordinal() < STORED_MARKS) {
+            ring.nanos[mark.ordinal()][slot] = nowNanos;
+            ring.offsets[mark.ordinal()][slot] = offset;
+        }
+        if (logIntervalNanos > 0L && nowNanos - windowStartNanos >= logIntervalNanos) {
+            logSlowest(nowNanos);
+        }
+    }
+
+    Timer timer(Part part) {
+        return timers[part.ordinal()];
+    }
+
+    private boolean measure(Part part, Ring ring, Mark startMark, int slot,
+                            String topic, int partition, long offset, long nowNanos) {
+        if (ring.offsets[startMark.ordinal()][slot] != offset) {
+            return false;
+        }
+        final long nanos = Math.max(0L, nowNanos - ring.nanos[startMark.ordinal()][slot]);
+        timers[part.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        final Slowest slowestOfPart = slowest[part.ordinal()];
+        if (nanos > slowestOfPart.nanos) {
+            slowestOfPart.update(nanos, topic, partition, offset);
+        }
+        return true;
+    }
+
+    private synchronized void logSlowest(long nowNanos) {
+        if (nowNanos - windowStartNanos < logIntervalNanos) {
+            return;
+        }
+        for (Part part : Part.values()) {
+            slowest[part.ordinal()].logAndReset(part);
+        }
+        windowStartNanos = nowNanos;
+    }
+
+    static int ringSize(int requested) {
+        int ret = 1;
+        while (ret < requested && ret < (1 << 30)) {
+            ret <<= 1;
+        }
+        return ret;
+    }
+
+    /**
+     * The rings of the partitions of one topic - copied on write, when a partition is added.
+     */
+    public final class TopicRings {
+
+        private final String topic;
+        private volatile Ring[] rings = new Ring[INITIAL_NUMBER_OF_PARTITIONS];
+
+        private TopicRings(String topic) {
+            this.topic = topic;
+        }
+
+        private Ring ring(int partition) {
+            final Ring[] current = rings;
+            if (partition < current.length) {
+                final Ring ret = current[partition];
+                if (ret != null) {
+                    return ret;
+                }
+            }
+            return createRing(partition);
+        }
+
+        private synchronized Ring createRing(int partition) {
+            Ring[] current = rings;
+            if (partition < current.length && current[partition] != null) {
+                return current[partition];
+            }
+            current = Arrays.copyOf(current, Math.max(partition + 1, current.length));
+            final Ring ret = new Ring(mask + 1);
+            current[partition] = ret;
+            rings = current;
+            return ret;
+        }
+    }
+
+    /**
+     * Time and offset of the stored marks of one partition.
+     */
+    private static final class Ring {
+
+        private final long[][] nanos = new long[STORED_MARKS][];
+        private final long[][] offsets = new long[STORED_MARKS][];
+
+        private Ring(int size) {
+            for (int i = 0; i < STORED_MARKS; i++) {
+                nanos[i] = new long[size];
+                offsets[i] = new long[size];
+                Arrays.fill(offsets[i], -1L);
+            }
+        }
+    }
+
+    /**
+     * The slowest record of one part in the current log interval.
+     */
+    private static final class Slowest {
+
+        private volatile long nanos;
+        private String topic;
+        private int partition;
+        private long offset;
+
+        synchronized void update(long nanos, String topic, int partition, long offset) {
+            if (nanos > this.nanos) {
+                this.nanos = nanos;
+                this.topic = topic;
+                this.partition = partition;
+                this.offset = offset;
+            }
+        }
+
+        synchronized void logAndReset(Part part) {
+            if (nanos > 0L) {
+                LOGGER.info("Slowest {}: {} ms topic={} partition={} offset={}",
+                    part.tagValue, TimeUnit.NANOSECONDS.toMillis(nanos), topic, partition, offset);
+            }
+            nanos = 0L;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.properties.MetricsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the end-to-end latency from the creation time of a record (stamped by the producer) until a stage of the
+ * pipeline is reached. Per stage and per partition there is one Micrometer timer, whose percentiles are based on
+ * the HdrHistogram of Micrometer. The timers are kept in arrays, that grow on demand, so there is no map lookup
+ * per record. A published array is never modified - a new timer is added to a copy, that replaces the array of
+ * the stage.
+ */
+public class LatencyRecorder {
+
+    public enum Stage {
+        RECEIVE("receive"),
+        PROCESS("process"),
+        SEND("send"),
+        COMMIT("commit");
+
+        private final String tagValue;
+
+        Stage(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+    private static final int INITIAL_NUMBER_OF_PARTITIONS = 16;
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final boolean perPartition;
+    private final double[] percentiles;
+    private final AtomicReferenceArray<Timer[]> timersPerStage = new AtomicReferenceArray<>(Stage.values().length);
+
+    public LatencyRecorder(MetricsProperties metricsProperties, MeterRegistry registry) {
+        this.registry = registry;
+        this.enabled = metricsProperties.isLatencyEnabled();
+        this.perPartition = metricsProperties.isLatencyPerPartition();
+        this.percentiles = metricsProperties.getLatencyPercentiles();
+        for (Stage stage : Stage.values()) {
+            timersPerStage.set(stage.ordinal(), new Timer[perPartition ? INITIAL_NUMBER_OF_PARTITIONS : 1]);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record the latency of one record.
+     *
+     * @param stage           the reached stage
+     * @param partition       the partition of the record
+     * @param createdAtMillis the creation time (epoch millis) from the record header
+     * @param nowMillis       the current time (epoch millis)
+     */
+    public void record(Stage stage, int partition, long createdAtMillis, long nowMillis) {
+        if (!enabled || createdAtMillis <= 0L) {
+            return;
+        }
+        timer(stage, perPartition ? partition : 0).record(Math.max(0L, nowMillis - createdAtMillis), TimeUnit.MILLISECONDS);
+    }
+
+    Timer timer(Stage stage, int index) {
+        final Timer[] timers = timersPerStage.get(stage.ordinal());
+        if (index < timers.length) {
+            final Timer ret = timers[index];
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return createTimer(stage, index);
+    }
+
+    private synchronized Timer createTimer(Stage stage, int index) {
+        Timer[] timers = timersPerStage.get(stage.ordinal());
+        if (index < timers.length && timers[index] != null) {
+            return timers[index];
+        }
+        timers = Arrays.copyOf(timers, Math.max(index + 1, timers.length));
+        final Timer.Builder builder = Timer.builder("pipeline.latency")
+            .description("Latency from record creation by the producer until the stage is reached")
+            .tag("stage", stage.tagValue)
+            .publishPercentiles(percentiles);
+        if (perPartition) {
+            builder.tag("partition", Integer.toString(index));
+        }
+        final Timer ret = builder.register(registry);
+        timers[index] = ret;
+        timersPerStage.set(stage.ordinal(), timers);
+        return ret;
+    }
+}
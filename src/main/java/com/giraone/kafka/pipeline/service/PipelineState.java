@@ -0,0 +1,259 @@
+package com.giraone.kafka.pipeline.service;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live state of the consumed partitions for the pipeline actuator endpoint: the last offset of each processing step,
+ * the number of records in flight and the time of the last commit - per topic and partition. The records in flight
+ * are a gauge, that goes up, when a record is received, and down, when it is acknowledged or negatively
+ * acknowledged. The state is updated by the processing threads without locks - reading it is a cheap snapshot, that
+ * may be slightly inconsistent between the values of one partition.
+ * <p>
+ * The states of the partitions of a topic are kept in an array indexed by the partition. The services resolve the
+ * {@link TopicState} of their consumed topics once (see {@link TopicMarks}), so a mark needs neither a lookup by
+ * topic nor an allocation.
+ * <p>
+ * A partition is added, when its first record is received. The receiver does not report revoked partitions, so all
+ * partitions are dropped, when the main loop is restarted, and a partition without records in flight is dropped,
+ * when it did not receive a record for {@link #IDLE_MILLIS}.
+ */
+public class PipelineState {
+
+    /**
+     * Time without received records, after which a partition without records in flight is dropped.
+     */
+    public static final long IDLE_MILLIS = 300_000L;
+
+    private static final int INITIAL_NUMBER_OF_PARTITIONS = 16;
+
+    private final Map<String, TopicState> topics = new ConcurrentHashMap<>();
+
+    /**
+     * @return the state of the partitions of a topic - created on the first call for the topic
+     */
+    public TopicState topicState(String topic) {
+        return topics.computeIfAbsent(topic, TopicState::new);
+    }
+
+    /**
+     * A record of a consumed partition reached a marked point - see
+     * {@link #reached(LatencyBreakdown.Mark, TopicState, int, long, long)}.
+     */
+    public void reached(LatencyBreakdown.Mark mark, String topic, int partition, long offset, long nowMillis) {
+        reached(mark, topicState(topic), partition, offset, nowMillis);
+    }
+
+    /**
+     * A record of a consumed partition reached a marked point.
+     *
+     * @param mark       the reached point
+     * @param topicState the state of the topic of the consumed record
+     * @param partition  the partition of the consumed record
+     * @param offset     the offset of the consumed record
+     * @param nowMillis  the current time (epoch millis)
+     */
+    public void reached(LatencyBreakdown.Mark mark, TopicState topicState, int partition, long offset, long nowMillis) {
+        if (mark == LatencyBreakdown.Mark.RECEIVED) {
+            final PartitionState state = topicState.getOrAdd(partition);
+            state.lastReceivedOffset = offset;
+            state.lastReceiveMillis = nowMillis;
+            state.inFlight.increment();
+            return;
+        }
+        // records of a dropped partition, that are completed later, do not add the partition again
+        final PartitionState state = topicState.get(partition);
+        if (state == null) {
+            return;
+        }
+        switch (mark) {
+            case PROCESSED -> state.lastProcessedOffset = offset;
+            case SENT -> state.lastSentOffset = offset;
+            case ACKNOWLEDGED -> {
+                state.lastCommittedOffset = offset;
+                state.lastCommitMillis = nowMillis;
+                state.inFlight.decrement();
+            }
+            default -> {
+                // PROCESS_STARTED is only used by the latency breakdown
+            }
+        }
+    }
+
+    /**
+     * A record of a consumed partition was negatively acknowledged - it is no longer in flight.
+     */
+    public void nacknowledged(String topic, int partition) {
+        nacknowledged(topicState(topic), partition);
+    }
+
+    /**
+     * A record of a consumed partition was negatively acknowledged - it is no longer in flight.
+     */
+    public void nacknowledged(TopicState topicState, int partition) {
+        final PartitionState state = topicState.get(partition);
+        if (state != null) {
+            state.inFlight.decrement();
+        }
+    }
+
+    /**
+     * Drop all partitions, e.g. when the main loop is restarted and the partitions are assigned again.
+     */
+    public void clear() {
+        topics.values().forEach(TopicState::clear);
+    }
+
+    /**
+     * @param nowMillis the current time (epoch millis) to drop idle partitions
+     * @return the partitions ordered by topic and partition
+     */
+    public List<PartitionState> getPartitions(long nowMillis) {
+        final List<PartitionState> ret = new ArrayList<>();
+        for (TopicState topicState : topics.values()) {
+            topicState.removeIdle(nowMillis);
+            for (PartitionState state : topicState.partitions) {
+                if (state != null) {
+                    ret.add(state);
+                }
+            }
+        }
+        ret.sort(Comparator.comparing(PartitionState::getTopic).thenComparingInt(PartitionState::getPartition));
+        return ret;
+    }
+
+    /**
+     * @return the records in flight of all partitions
+     */
+    public long getInFlight() {
+        long ret = 0L;
+        for (TopicState topicState : topics.values()) {
+            for (PartitionState state : topicState.partitions) {
+                if (state != null) {
+                    ret += state.getInFlight();
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The states of the partitions of one topic indexed by the partition - copied on write, when a partition is
+     * added or dropped.
+     */
+    public static final class TopicState {
+
+        private final String topic;
+        private volatile PartitionState[] partitions = new PartitionState[INITIAL_NUMBER_OF_PARTITIONS];
+
+        private TopicState(String topic) {
+            this.topic = topic;
+        }
+
+        private PartitionState get(int partition) {
+            final PartitionState[] current = partitions;
+            return partition < current.length ? current[partition] : null;
+        }
+
+        private PartitionState getOrAdd(int partition) {
+            final PartitionState ret = get(partition);
+            return ret != null ? ret : add(partition);
+        }
+
+        private synchronized PartitionState add(int partition) {
+            PartitionState[] current = partitions;
+            if (partition < current.length && current[partition] != null) {
+                return current[partition];
+            }
+            current = Arrays.copyOf(current, Math.max(partition + 1, current.length));
+            final PartitionState ret = new PartitionState(new TopicPartition(topic, partition));
+            current[partition] = ret;
+            partitions = current;
+            return ret;
+        }
+
+        private synchronized void removeIdle(long nowMillis) {
+            PartitionState[] current = partitions;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != null && current[i].isIdle(nowMillis)) {
+                    if (current == partitions) {
+                        current = current.clone();
+                    }
+                    current[i] = null;
+                }
+            }
+            partitions = current;
+        }
+
+        private synchronized void clear() {
+            partitions = new PartitionState[partitions.length];
+        }
+    }
+
+    /**
+     * State of one consumed partition. Offsets are -1 and the last commit time is 0, until the first record
+     * reached the step.
+     */
+    public static final class PartitionState {
+
+        private final TopicPartition topicPartition;
+        private final LongAdder inFlight = new LongAdder();
+        private volatile long lastReceivedOffset = -1L;
+        private volatile long lastProcessedOffset = -1L;
+        private volatile long lastSentOffset = -1L;
+        private volatile long lastCommittedOffset = -1L;
+        private volatile long lastReceiveMillis;
+        private volatile long lastCommitMillis;
+
+        PartitionState(TopicPartition topicPartition) {
+            this.topicPartition = topicPartition;
+        }
+
+        public String getTopic() {
+            return topicPartition.topic();
+        }
+
+        public int getPartition() {
+            return topicPartition.partition();
+        }
+
+        public long getLastReceivedOffset() {
+            return lastReceivedOffset;
+        }
+
+        public long getLastProcessedOffset() {
+            return lastProcessedOffset;
+        }
+
+        public long getLastSentOffset() {
+            return lastSentOffset;
+        }
+
+        public long getLastCommittedOffset() {
+            return lastCommittedOffset;
+        }
+
+        public long getLastCommitMillis() {
+            return lastCommitMillis;
+        }
+
+        /**
+         * @return the received records, that were neither acknowledged nor negatively acknowledged yet
+         */
+        public long getInFlight() {
+            // a record, that was received before the partition was dropped and added again, may be completed later
+            return Math.max(0L, inFlight.sum());
+        }
+
+        private boolean isIdle(long nowMillis) {
+            return getInFlight() == 0L && nowMillis - lastReceiveMillis >= IDLE_MILLIS;
+        }
+    }
+}
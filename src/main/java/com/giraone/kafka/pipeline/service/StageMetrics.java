@@ -0,0 +1,139 @@
+package com.giraone.kafka.pipeline.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Operator level metrics of one named stage of a pipeline (receive, publishOn, process, send, commit), optionally
+ * per partition. The stage is the output of an operator, so the metrics show, whether the operator is starving for
+ * demand or whether it is the bottleneck:
+ * <ul>
+ *     <li>"pipeline.stage.onNext.delay", "pipeline.stage.requested", ... - the Reactor Micrometer tap with the onNext
+ *     rate (count of the timer) and the time between two onNext signals</li>
+ *     <li>"pipeline.stage.demand" - requested but not yet delivered elements of all subscriptions. A high value means,
+ *     the downstream is waiting for this stage. Unbounded demand (Long.MAX_VALUE) is not counted.</li>
+ *     <li>"pipeline.stage.wait" - time from a request until the next onNext, while there is outstanding demand</li>
+ * </ul>
+ * One instance can be used for multiple subscriptions, e.g. for all partition groups, when there is no partition tag.
+ */
+public class StageMetrics {
+
+    public static final String NAME = "pipeline.stage";
+    public static final String TAG_STAGE = "stage";
+    public static final String TAG_PARTITION = "partition";
+    public static final String ALL_PARTITIONS = "all";
+
+    private final String stage;
+    private final String partition;
+    private final MeterRegistry registry;
+    private final AtomicLong demand = new AtomicLong();
+    private final Timer timerWait;
+
+    public StageMetrics(String stage, String partition, MeterRegistry registry) {
+        this.stage = stage;
+        this.partition = partition;
+        this.registry = registry;
+        Gauge.builder(NAME + ".demand", demand, AtomicLong::get)
+            .tag(TAG_STAGE, stage).tag(TAG_PARTITION, partition)
+            .register(registry);
+        this.timerWait = Timer.builder(NAME + ".wait")
+            .tag(TAG_STAGE, stage).tag(TAG_PARTITION, partition)
+            .register(registry);
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public String getPartition() {
+        return partition;
+    }
+
+    public long getDemand() {
+        return demand.get();
+    }
+
+    /**
+     * Instrument the output of an operator as this stage.
+     */
+    public <T> Flux<T> instrument(Flux<T> flux) {
+        return Flux.defer(() -> {
+                final Probe probe = new Probe();
+                return flux
+                    .doOnRequest(probe::requested)
+                    .doOnNext(ignored -> probe.delivered())
+                    .doFinally(ignored -> probe.finished());
+            })
+            .name(NAME)
+            .tag(TAG_STAGE, stage)
+            .tag(TAG_PARTITION, partition)
+            .tap(Micrometer.metrics(registry));
+    }
+
+    /**
+     * The demand of one subscription. Requests and onNext signals may come from different threads, so the waiting
+     * time is approximate, when both happen at the same time.
+     */
+    class Probe {
+
+        private final AtomicLong outstanding = new AtomicLong();
+        // start of the current wait for an onNext or 0, if there is no outstanding demand
+        private volatile long waitingSince;
+
+        void requested(long n) {
+            requested(n, System.nanoTime());
+        }
+
+        void delivered() {
+            delivered(System.nanoTime());
+        }
+
+        void requested(long n, long nowNanos) {
+            final long before = outstanding.getAndAccumulate(n, StageMetrics::addCap);
+            if (before == Long.MAX_VALUE) {
+                return;
+            }
+            final long after = addCap(before, n);
+            demand.addAndGet(after == Long.MAX_VALUE ? -before : n);
+            if (before == 0L) {
+                waitingSince = nowNanos;
+            }
+        }
+
+        void delivered(long nowNanos) {
+            final long since = waitingSince;
+            if (since != 0L) {
+                timerWait.record(nowNanos - since, TimeUnit.NANOSECONDS);
+            }
+            final long before = outstanding.getAndUpdate(value -> value > 0L && value != Long.MAX_VALUE ? value - 1L : value);
+            if (before == Long.MAX_VALUE) {
+                waitingSince = nowNanos;
+                return;
+            }
+            if (before > 0L) {
+                demand.decrementAndGet();
+            }
+            // still waiting for the next element, if there is demand left
+            waitingSince = before > 1L ? nowNanos : 0L;
+        }
+
+        void finished() {
+            final long remaining = outstanding.getAndSet(0L);
+            if (remaining != Long.MAX_VALUE) {
+                demand.addAndGet(-remaining);
+            }
+            waitingSince = 0L;
+        }
+    }
+
+    private static long addCap(long a, long b) {
+        final long ret = a + b;
+        return ret < 0L ? Long.MAX_VALUE : ret;
+    }
+}
@@ -0,0 +1,71 @@
+package com.giraone.kafka.pipeline.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking token bucket rate limiter, which allows {@code limit} permits per {@code period} including a burst of
+ * {@code limit} permits. It is implemented as a generic cell rate algorithm (GCRA): instead of a token counter, that
+ * has to be refilled, only the theoretical arrival time of the next permit is kept in one {@link AtomicLong}.
+ * A permit is reserved with a single CAS and the caller gets the time to wait for the reserved permit, so no thread
+ * is blocked.
+ */
+public class TokenBucketRateLimiter {
+
+    private final boolean enabled;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalTime;
+
+    /**
+     * @param limit  number of permits per period - a value &lt;= 0 disables the rate limiter
+     * @param period the period of the limit
+     */
+    public TokenBucketRateLimiter(int limit, Duration period) {
+        this.enabled = limit > 0;
+        this.emissionIntervalNanos = enabled ? Math.max(1L, period.toNanos() / limit) : 0L;
+        this.burstToleranceNanos = enabled ? period.toNanos() - emissionIntervalNanos : 0L;
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserve one permit.
+     *
+     * @return the time in nanoseconds to wait until the reserved permit may be used - 0, if it can be used immediately
+     */
+    public long reserve() {
+        return reserve(1, System.nanoTime());
+    }
+
+    /**
+     * Reserve several permits at once, e.g. one per record of a batch.
+     *
+     * @param permits number of permits
+     * @return the time in nanoseconds to wait until all reserved permits may be used - 0, if they can be used immediately
+     */
+    public long reserve(int permits) {
+        return reserve(permits, System.nanoTime());
+    }
+
+    long reserve(long nowNanos) {
+        return reserve(1, nowNanos);
+    }
+
+    long reserve(int permits, long nowNanos) {
+        if (!enabled || permits <= 0) {
+            return 0L;
+        }
+        while (true) {
+            final long tat = theoreticalArrivalTime.get();
+            final long base = Math.max(tat, nowNanos);
+            if (theoreticalArrivalTime.compareAndSet(tat, base + permits * emissionIntervalNanos)) {
+                // the wait time of the last of the reserved permits
+                return Math.max(0L, base + (permits - 1) * emissionIntervalNanos - burstToleranceNanos - nowNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.giraone.kafka.pipeline.service;
+
+/**
+ * The state of the marks (see {@link LatencyBreakdown.Mark}) of one consumed topic. A service resolves it once for
+ * each of its consumed topics by {@link CounterService#topicMarks(String)}, so marking a record needs no lookup by
+ * the topic name.
+ */
+public final class TopicMarks {
+
+    private final String topic;
+    private final PipelineState.TopicState state;
+    // null, if the latency breakdown is disabled
+    private final LatencyBreakdown.TopicRings rings;
+
+    TopicMarks(String topic, PipelineState.TopicState state, LatencyBreakdown.TopicRings rings) {
+        this.topic = topic;
+        this.state = state;
+        this.rings = rings;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    PipelineState.TopicState getState() {
+        return state;
+    }
+
+    LatencyBreakdown.TopicRings getRings() {
+        return rings;
+    }
+}
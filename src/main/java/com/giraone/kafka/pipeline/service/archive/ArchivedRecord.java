@@ -0,0 +1,49 @@
+package com.giraone.kafka.pipeline.service.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A record read from a segment file. Key and value are read-only views on the memory-mapped segment.
+ */
+public class ArchivedRecord {
+
+    private final long offset;
+    private final long timestamp;
+    private final ByteBuffer key;
+    private final ByteBuffer value;
+
+    ArchivedRecord(long offset, long timestamp, ByteBuffer key, ByteBuffer value) {
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * @return the Kafka offset of the archived record
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * @return the timestamp (epoch millis) of the archived record
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the key bytes or null
+     */
+    public ByteBuffer key() {
+        return key;
+    }
+
+    /**
+     * @return the value bytes or null
+     */
+    public ByteBuffer value() {
+        return value;
+    }
+}
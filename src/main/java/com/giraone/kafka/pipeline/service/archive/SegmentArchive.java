@@ -0,0 +1,91 @@
+package com.giraone.kafka.pipeline.service.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Archive of the records of a topic with one {@link SegmentWriter} per partition in the directory
+ * "&lt;directory&gt;/&lt;topic&gt;-&lt;partition&gt;". All partitions are synced together (group commit).
+ */
+public class SegmentArchive implements Closeable {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final Map<String, SegmentWriter> writers = new HashMap<>();
+    private long records;
+
+    /**
+     * @param directory     base directory of the archive
+     * @param segmentSize   maximum size of a segment in bytes
+     * @param indexInterval number of log bytes between two index entries
+     */
+    public SegmentArchive(Path directory, int segmentSize, int indexInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+    }
+
+    /**
+     * Append a record to the current segment of its partition. The record is durable after the next {@link #sync()}.
+     *
+     * @return false, if the record was skipped, because it was already appended (redelivered record)
+     */
+    public synchronized boolean append(String topic, int partition, long offset, long timestamp, byte[] key, byte[] value)
+        throws IOException {
+
+        final String name = topic + "-" + partition;
+        SegmentWriter writer = writers.get(name);
+        if (writer == null) {
+            writer = new SegmentWriter(partitionDirectory(topic, partition), segmentSize, indexInterval);
+            writers.put(name, writer);
+        }
+        if (!writer.append(offset, timestamp, key, value)) {
+            return false;
+        }
+        records++;
+        return true;
+    }
+
+    /**
+     * Force the records of all partitions appended since the last sync to the storage device.
+     */
+    public synchronized void sync() throws IOException {
+        for (SegmentWriter writer : writers.values()) {
+            writer.sync();
+        }
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public synchronized long getSegments() {
+        return writers.values().stream().mapToLong(SegmentWriter::getSegments).sum();
+    }
+
+    public Path partitionDirectory(String topic, int partition) {
+        return directory.resolve(topic + "-" + partition);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException firstException = null;
+        for (SegmentWriter writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException ioException) {
+                if (firstException == null) {
+                    firstException = ioException;
+                }
+            }
+        }
+        writers.clear();
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+}
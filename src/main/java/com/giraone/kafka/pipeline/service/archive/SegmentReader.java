@@ -0,0 +1,102 @@
+package com.giraone.kafka.pipeline.service.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the records of a segment file (see {@link SegmentWriter} for the layout) from a memory mapping of the file.
+ * {@link #seek(long)} uses the sparse index of the segment to find the position of an offset, so only the records
+ * of one index interval have to be scanned. Key and value of a record are slices of the mapping. Not thread safe.
+ */
+public class SegmentReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer log;
+    private final long[] indexOffsets;
+    private final int[] indexPositions;
+
+    public SegmentReader(Path logFile) throws IOException {
+        this.channel = FileChannel.open(logFile, StandardOpenOption.READ);
+        this.log = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        final Path indexFile = SegmentWriter.indexFile(logFile);
+        final ByteBuffer index = ByteBuffer.wrap(Files.exists(indexFile) ? Files.readAllBytes(indexFile) : new byte[0]);
+        final int entries = index.remaining() / SegmentWriter.INDEX_ENTRY_SIZE;
+        this.indexOffsets = new long[entries];
+        this.indexPositions = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            indexOffsets[i] = index.getLong();
+            indexPositions[i] = index.getInt();
+        }
+    }
+
+    /**
+     * Position the reader on the first record with an offset greater or equal to the given offset.
+     */
+    public void seek(long offset) {
+        // the last index entry with an offset less or equal to the given offset
+        int low = 0;
+        int high = indexOffsets.length - 1;
+        int position = 0;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (indexOffsets[mid] <= offset) {
+                position = indexPositions[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        log.position(position);
+        while (hasNext() && log.getLong(log.position() + Integer.BYTES) < offset) {
+            log.position(log.position() + Integer.BYTES + log.getInt(log.position()));
+        }
+    }
+
+    /**
+     * @return the next record or null at the end of the segment
+     */
+    public ArchivedRecord next() {
+        if (!hasNext()) {
+            return null;
+        }
+        log.position(log.position() + Integer.BYTES);
+        final long offset = log.getLong();
+        final long timestamp = log.getLong();
+        final ByteBuffer key = nextBytes();
+        final ByteBuffer value = nextBytes();
+        return new ArchivedRecord(offset, timestamp, key, value);
+    }
+
+    /**
+     * @return the number of entries of the sparse index
+     */
+    public int indexEntries() {
+        return indexOffsets.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean hasNext() {
+        // the zero filled rest of a segment, that was not closed properly, ends the records
+        return log.remaining() >= SegmentWriter.RECORD_HEADER_SIZE && log.getInt(log.position()) > 0;
+    }
+
+    private ByteBuffer nextBytes() {
+        final int length = log.getInt();
+        if (length == SegmentWriter.NULL_LENGTH) {
+            return null;
+        }
+        final ByteBuffer ret = log.slice(log.position(), length).asReadOnlyBuffer();
+        log.position(log.position() + length);
+        return ret;
+    }
+}
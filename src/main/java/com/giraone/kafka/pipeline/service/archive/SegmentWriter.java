@@ -0,0 +1,304 @@
+package com.giraone.kafka.pipeline.service.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Appends the records of one partition to rolling segment files. The current segment is memory-mapped with its full
+ * size, so an append is a copy into the mapping without a system call. The data is durable only after
+ * {@link #sync()}, which forces the written range of the mapping to the storage device (group commit). A segment is
+ * rolled, when the next record does not fit, and truncated to its written size on closing.
+ * <p>
+ * Each segment "&lt;baseOffset&gt;.log" has a sparse index "&lt;baseOffset&gt;.index" with an entry for the first
+ * record and then one entry every indexInterval bytes. Index entries are written on {@link #sync()} after the log
+ * data, so the index never points to data, that is not durable. Layout (all numbers big endian):
+ * <pre>
+ * log    = record*
+ * record = length:int offset:long timestamp:long key:bytes value:bytes
+ * bytes  = length:int (-1 for null) byte*
+ * index  = (offset:long position:int)*
+ * </pre>
+ * The record length is the number of bytes following the length field. The remainder of a segment, that was not
+ * closed properly, is zero, so a length of 0 marks the end.
+ * <p>
+ * The offsets within the segments must increase, because the sparse index and the reader depend on it. Records,
+ * that are redelivered after a restart of the consumer or a rebalance, are already in the segment and are skipped.
+ * On creation, the last offset is recovered from the last segment of the directory (see {@link #recover()}), so
+ * this holds also after a restart of the process. Not thread safe.
+ */
+public class SegmentWriter implements Closeable {
+
+    public static final String LOG_SUFFIX = ".log";
+    public static final String INDEX_SUFFIX = ".index";
+
+    static final int NULL_LENGTH = -1;
+    static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final ByteBuffer pendingIndexEntries;
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+    private MappedByteBuffer log;
+    private int syncedPosition;
+    private int bytesSinceIndexEntry;
+    private long segments;
+    private long lastOffset = -1L;
+
+    /**
+     * @param directory     directory of the segments - created, if it does not exist
+     * @param segmentSize   maximum size of a segment in bytes
+     * @param indexInterval number of log bytes between two index entries
+     */
+    public SegmentWriter(Path directory, int segmentSize, int indexInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.indexInterval = Math.max(indexInterval, 1);
+        // one entry per index interval and one for the first record
+        this.pendingIndexEntries = ByteBuffer.allocate((segmentSize / this.indexInterval + 1) * INDEX_ENTRY_SIZE);
+        recover();
+    }
+
+    /**
+     * Append a record to the current segment. A new segment is started, if the record does not fit.
+     *
+     * @param offset    Kafka offset of the record
+     * @param timestamp timestamp of the record (epoch millis)
+     * @param key       key bytes or null
+     * @param value     value bytes or null
+     * @return false, if the record was skipped, because its offset is not greater than the last appended offset
+     */
+    public boolean append(long offset, long timestamp, byte[] key, byte[] value) throws IOException {
+
+        if (offset <= lastOffset) {
+            return false;
+        }
+        final int recordSize = RECORD_HEADER_SIZE + lengthOf(key) + lengthOf(value);
+        if (recordSize > segmentSize) {
+            throw new IOException("Record with offset " + offset + " and " + recordSize
+                + " bytes is larger than the segment size " + segmentSize);
+        }
+        if (log != null && log.remaining() < recordSize) {
+            closeSegment();
+        }
+        if (log == null) {
+            openSegment(offset);
+        }
+        if (log.position() == 0 || bytesSinceIndexEntry >= indexInterval) {
+            pendingIndexEntries.putLong(offset);
+            pendingIndexEntries.putInt(log.position());
+            bytesSinceIndexEntry = 0;
+        }
+        log.putInt(recordSize - Integer.BYTES);
+        log.putLong(offset);
+        log.putLong(timestamp);
+        putBytes(log, key);
+        putBytes(log, value);
+        bytesSinceIndexEntry += recordSize;
+        lastOffset = offset;
+        return true;
+    }
+
+    /**
+     * Force the records appended since the last sync and the new index entries to the storage device.
+     */
+    public void sync() throws IOException {
+        if (log == null) {
+            return;
+        }
+        final int position = log.position();
+        if (position > syncedPosition) {
+            log.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+        if (pendingIndexEntries.position() > 0) {
+            pendingIndexEntries.flip();
+            while (pendingIndexEntries.hasRemaining()) {
+                indexChannel.write(pendingIndexEntries);
+            }
+            pendingIndexEntries.clear();
+            indexChannel.force(false);
+        }
+    }
+
+    /**
+     * @return the number of segments started by this writer
+     */
+    public long getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the offset of the last appended or recovered record or -1, if there is no record
+     */
+    public long getLastOffset() {
+        return lastOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    public static Path logFile(Path directory, long baseOffset) {
+        return directory.resolve(String.format("%020d", baseOffset) + LOG_SUFFIX);
+    }
+
+    public static Path indexFile(Path logFile) {
+        final String name = logFile.getFileName().toString();
+        return logFile.resolveSibling(name.substring(0, name.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private void openSegment(long offset) throws IOException {
+        final Path logFile = logFile(directory, offset);
+        // the offset is greater than the recovered last offset, so a segment with the same base offset contains
+        // no complete record and is overwritten
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        indexChannel = FileChannel.open(indexFile(logFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentSize);
+        syncedPosition = 0;
+        bytesSinceIndexEntry = 0;
+        segments++;
+    }
+
+    /**
+     * Recover the last offset from the last segment of the directory. The records are scanned from the last index
+     * entry, because the index points only to synced data. A torn record - not completely written before a crash -
+     * and the zero filled rest of a segment, that was not closed, are cut off together with the index entries
+     * pointing there. A segment without any complete record is deleted and the previous segment is used.
+     * The appends continue in a new segment.
+     */
+    private void recover() throws IOException {
+        final List<Path> logFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            // the base offsets in the file names have a fixed length, so the names sort by offset
+            logFiles = files.filter(file -> file.getFileName().toString().endsWith(LOG_SUFFIX)).sorted().toList();
+        }
+        for (int i = logFiles.size() - 1; i >= 0 && lastOffset < 0L; i--) {
+            final Path logFile = logFiles.get(i);
+            lastOffset = recoverSegment(logFile);
+            if (lastOffset < 0L) {
+                Files.delete(logFile);
+                Files.deleteIfExists(indexFile(logFile));
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the last complete record of the segment or -1, if there is none
+     */
+    private static long recoverSegment(Path logFile) throws IOException {
+        final Path indexFile = indexFile(logFile);
+        final ByteBuffer index = ByteBuffer.wrap(Files.exists(indexFile) ? Files.readAllBytes(indexFile) : new byte[0]);
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            // the position of the last complete index entry, that points into the log
+            int position = 0;
+            for (int i = 0; i + INDEX_ENTRY_SIZE <= index.limit(); i += INDEX_ENTRY_SIZE) {
+                final int entryPosition = index.getInt(i + Long.BYTES);
+                if (entryPosition < 0 || entryPosition >= log.limit()) {
+                    break;
+                }
+                position = entryPosition;
+            }
+            long ret = -1L;
+            int end = position;
+            int next;
+            while ((next = recordEnd(log, end, ret)) > 0) {
+                ret = log.getLong(end + Integer.BYTES);
+                end = next;
+            }
+            if (ret < 0L && position > 0) {
+                // the index does not match the log - scan all records
+                end = 0;
+                while ((next = recordEnd(log, end, ret)) > 0) {
+                    ret = log.getLong(end + Integer.BYTES);
+                    end = next;
+                }
+            }
+            channel.truncate(end);
+            // keep the index entries of the remaining records
+            int indexSize = 0;
+            while (indexSize + INDEX_ENTRY_SIZE <= index.limit() && index.getInt(indexSize + Long.BYTES) >= 0
+                && index.getInt(indexSize + Long.BYTES) < end) {
+                indexSize += INDEX_ENTRY_SIZE;
+            }
+            if (indexSize < index.limit()) {
+                try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                    indexChannel.truncate(indexSize);
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * @return the end position of the complete record at the given position or -1, if there is no complete record
+     * with an offset greater than the previous offset
+     */
+    private static int recordEnd(ByteBuffer log, int position, long previousOffset) {
+        // header and the two length fields of key and value
+        if (log.limit() - position < RECORD_HEADER_SIZE + 2 * Integer.BYTES) {
+            return -1;
+        }
+        final long end = (long) position + Integer.BYTES + log.getInt(position);
+        if (end < position + RECORD_HEADER_SIZE + 2 * Integer.BYTES || end > log.limit()
+            || log.getLong(position + Integer.BYTES) <= previousOffset) {
+            return -1;
+        }
+        final int keyLength = log.getInt(position + RECORD_HEADER_SIZE);
+        final long valuePosition = (long) position + RECORD_HEADER_SIZE + Integer.BYTES + Math.max(keyLength, 0);
+        if (keyLength < NULL_LENGTH || valuePosition + Integer.BYTES > end) {
+            return -1;
+        }
+        final int valueLength = log.getInt((int) valuePosition);
+        if (valueLength < NULL_LENGTH || valuePosition + Integer.BYTES + Math.max(valueLength, 0) != end) {
+            return -1;
+        }
+        return (int) end;
+    }
+
+    private void closeSegment() throws IOException {
+        if (log == null) {
+            return;
+        }
+        try {
+            sync();
+            // cut off the unused, zero filled rest of the mapping
+            logChannel.truncate(log.position());
+        } finally {
+            log = null;
+            try {
+                logChannel.close();
+            } finally {
+                indexChannel.close();
+            }
+        }
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putBytes(ByteBuffer target, byte[] bytes) {
+        if (bytes == null) {
+            target.putInt(NULL_LENGTH);
+        } else {
+            target.putInt(bytes.length);
+            target.put(bytes);
+        }
+    }
+}
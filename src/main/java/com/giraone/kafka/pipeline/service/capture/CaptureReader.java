@@ -0,0 +1,121 @@
+package com.giraone.kafka.pipeline.service.capture;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the records of a capture file (see {@link CaptureWriter} for the layout) from memory-mapped regions of the
+ * file. Key, value and headers of a record are slices of the mapped region, so no bytes are copied. A mapping is
+ * limited to 2 GB, so larger files are mapped region by region - each region starts at a record boundary.
+ * Not thread safe.
+ */
+public class CaptureReader implements Closeable {
+
+    static final long DEFAULT_MAX_REGION_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long maxRegionSize;
+    private long regionStart;
+    private MappedByteBuffer region;
+
+    public CaptureReader(Path file) throws IOException {
+        this(file, DEFAULT_MAX_REGION_SIZE);
+    }
+
+    CaptureReader(Path file, long maxRegionSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.maxRegionSize = Math.min(maxRegionSize, Integer.MAX_VALUE);
+        if (fileSize < Long.BYTES) {
+            channel.close();
+            throw new IOException("Capture file " + file + " is too short!");
+        }
+        map(0L);
+        if (region.getLong() != CaptureWriter.MAGIC) {
+            channel.close();
+            throw new IOException("File " + file + " is not a capture file!");
+        }
+    }
+
+    /**
+     * @return the next record or null at the end of the file
+     */
+    public CaptureRecord next() throws IOException {
+
+        if (region.remaining() < Integer.BYTES && !remap(Integer.BYTES)) {
+            return null;
+        }
+        final int length = region.getInt(region.position());
+        if (region.remaining() < Integer.BYTES + length && !remap(Integer.BYTES + length)) {
+            throw new IOException("Truncated record at position " + (regionStart + region.position()));
+        }
+        region.position(region.position() + Integer.BYTES);
+        final long timestamp = region.getLong();
+        final ByteBuffer key = nextBytes();
+        final ByteBuffer value = nextBytes();
+        final int headerCount = region.getInt();
+        final List<Header> headers;
+        if (headerCount == 0) {
+            headers = Collections.emptyList();
+        } else {
+            headers = new ArrayList<>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(new RecordHeader(nextBytes(), nextBytes()));
+            }
+        }
+        return new CaptureRecord(timestamp, key, value, headers);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Map the next region starting at the current position.
+     *
+     * @param needed number of bytes, that are needed in the new region
+     * @return false, if the end of the file is reached
+     */
+    private boolean remap(int needed) throws IOException {
+        final long position = regionStart + region.position();
+        if (position >= fileSize) {
+            return false;
+        }
+        if (fileSize - position < needed) {
+            throw new IOException("Truncated capture file at position " + position);
+        }
+        if (needed > maxRegionSize) {
+            throw new IOException("Record at position " + position + " is larger than a mapped region");
+        }
+        map(position);
+        return true;
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(fileSize - position, maxRegionSize));
+    }
+
+    private ByteBuffer nextBytes() {
+        final int length = region.getInt();
+        if (length == CaptureWriter.NULL_LENGTH) {
+            return null;
+        }
+        final ByteBuffer ret = region.slice(region.position(), length).asReadOnlyBuffer();
+        region.position(region.position() + length);
+        return ret;
+    }
+}
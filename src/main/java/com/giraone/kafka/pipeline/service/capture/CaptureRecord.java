@@ -0,0 +1,58 @@
+package com.giraone.kafka.pipeline.service.capture;
+
+import org.apache.kafka.common.header.Header;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A record read from a capture file. Key, value and headers are read-only views on the memory-mapped file - no bytes
+ * are copied, until they are used.
+ */
+public class CaptureRecord {
+
+    private final long timestamp;
+    private final ByteBuffer key;
+    private final ByteBuffer value;
+    private final List<Header> headers;
+
+    CaptureRecord(long timestamp, ByteBuffer key, ByteBuffer value, List<Header> headers) {
+        this.timestamp = timestamp;
+        this.key = key;
+        this.value = value;
+        this.headers = headers;
+    }
+
+    /**
+     * @return the timestamp (epoch millis) of the captured record
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the key bytes or null
+     */
+    public ByteBuffer key() {
+        return key;
+    }
+
+    /**
+     * @return the key decoded as UTF-8 or null
+     */
+    public String keyAsString() {
+        return key != null ? StandardCharsets.UTF_8.decode(key.duplicate()).toString() : null;
+    }
+
+    /**
+     * @return the value bytes or null
+     */
+    public ByteBuffer value() {
+        return value;
+    }
+
+    public List<Header> headers() {
+        return headers;
+    }
+}
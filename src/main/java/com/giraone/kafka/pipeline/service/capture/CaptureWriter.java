@@ -0,0 +1,133 @@
+package com.giraone.kafka.pipeline.service.capture;
+
+import org.apache.kafka.common.header.Header;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes records to a capture file. The records are collected in a direct buffer, that is written to the file
+ * channel, when it is full or on {@link #flush()}. Only {@link #flush()} forces the written records to the storage
+ * device. An existing file is overwritten.
+ * <p>
+ * File layout (all numbers big endian):
+ * <pre>
+ * file   = magic:long record*
+ * record = length:int timestamp:long key:bytes value:bytes headerCount:int (headerKey:bytes headerValue:bytes)*
+ * bytes  = length:int (-1 for null) byte*
+ * </pre>
+ * The record length is the number of bytes following the length field.
+ */
+public class CaptureWriter implements Closeable {
+
+    /**
+     * "KPCAP001" - the first 8 bytes of a capture file.
+     */
+    public static final long MAGIC = 0x4B50434150303031L;
+
+    static final int NULL_LENGTH = -1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long records;
+
+    /**
+     * @param file       the capture file
+     * @param bufferSize size of the write buffer in bytes
+     */
+    public CaptureWriter(Path file, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, Long.BYTES));
+        buffer.putLong(MAGIC);
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param timestamp timestamp of the record (epoch millis)
+     * @param key       key bytes or null
+     * @param value     value bytes or null
+     * @param headers   headers of the record
+     */
+    public synchronized void write(long timestamp, byte[] key, byte[] value, Iterable<Header> headers) throws IOException {
+
+        int length = Long.BYTES + lengthOf(key) + lengthOf(value) + Integer.BYTES;
+        int headerCount = 0;
+        for (Header header : headers) {
+            length += lengthOf(header.key().getBytes(StandardCharsets.UTF_8)) + lengthOf(header.value());
+            headerCount++;
+        }
+        final int recordSize = Integer.BYTES + length;
+        if (recordSize > buffer.remaining()) {
+            writeBuffer();
+        }
+        // a record larger than the buffer is written with its own buffer
+        final ByteBuffer target = recordSize <= buffer.remaining() ? buffer : ByteBuffer.allocate(recordSize);
+        target.putInt(length);
+        target.putLong(timestamp);
+        putBytes(target, key);
+        putBytes(target, value);
+        target.putInt(headerCount);
+        for (Header header : headers) {
+            putBytes(target, header.key().getBytes(StandardCharsets.UTF_8));
+            putBytes(target, header.value());
+        }
+        if (target != buffer) {
+            target.flip();
+            writeFully(target);
+        }
+        records++;
+    }
+
+    /**
+     * Write the buffered records to the file and force all written records to the storage device, so they survive
+     * a crash of the process or the operating system.
+     */
+    public synchronized void flush() throws IOException {
+        writeBuffer();
+        channel.force(false);
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putBytes(ByteBuffer target, byte[] bytes) {
+        if (bytes == null) {
+            target.putInt(NULL_LENGTH);
+        } else {
+            target.putInt(bytes.length);
+            target.put(bytes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Commit all records, that were processed within a period, which adapts to the latency of the offset commits to the
+ * broker. The period is the average commit latency measured by the Kafka consumer multiplied by a factor, limited by
+ * a minimum and a maximum. With a factor of 20, committing takes at most approx. 5% of the time. Fast commits lead to
+ * short periods (low redelivery after a crash), slow commits lead to larger groups and fewer commits.
+ * <p>
+ * The receiver commits with the minimum period, so an acknowledged group is committed to the broker without
+ * additional delay.
+ */
+public class AdaptiveCommitStrategy implements CommitStrategy {
+
+    private final long minPeriodNanos;
+    private final long maxPeriodNanos;
+    private final double latencyFactor;
+    // average commit latency in nanoseconds - NaN, if unknown
+    private final DoubleSupplier commitLatencyNanos;
+
+    // shared by all partitions of a service
+    private volatile long periodNanos;
+
+    public AdaptiveCommitStrategy(Duration minPeriod, Duration maxPeriod, double latencyFactor, DoubleSupplier commitLatencyNanos) {
+        this.minPeriodNanos = minPeriod.toNanos();
+        this.maxPeriodNanos = Math.max(minPeriodNanos, maxPeriod.toNanos());
+        this.latencyFactor = latencyFactor;
+        this.commitLatencyNanos = commitLatencyNanos;
+        this.periodNanos = minPeriodNanos;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.ADAPTIVE;
+    }
+
+    @Override
+    public <T> Flux<List<T>> commitGroups(Flux<T> processed) {
+        // the boundary timer reads the current period for every group
+        final Flux<Long> boundaries = Mono.defer(() -> Mono.delay(nextPeriod())).repeat();
+        return processed.buffer(boundaries)
+            .filter(group -> !group.isEmpty());
+    }
+
+    /**
+     * Compute the period from the current commit latency. Without a measured commit the last period is kept.
+     */
+    Duration nextPeriod() {
+        final double latencyNanos = commitLatencyNanos.getAsDouble();
+        if (!Double.isNaN(latencyNanos)) {
+            periodNanos = Math.max(minPeriodNanos, Math.min(maxPeriodNanos, (long) (latencyNanos * latencyFactor)));
+        }
+        return Duration.ofNanos(periodNanos);
+    }
+
+    public Duration getPeriod() {
+        return Duration.ofNanos(periodNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ADAPTIVE(minPeriod=" + Duration.ofNanos(minPeriodNanos) + ", maxPeriod=" + Duration.ofNanos(maxPeriodNanos)
+            + ", latencyFactor=" + latencyFactor + ")";
+    }
+}
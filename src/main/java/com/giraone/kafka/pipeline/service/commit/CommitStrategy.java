@@ -0,0 +1,46 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Defines, how often processed records are acknowledged (committed). The processed records of a partition (or of
+ * the whole receiver) are grouped and all records of a group are acknowledged together in offset order.
+ * Every record is acknowledged exactly once - a strategy only defines the grouping.
+ * <p>
+ * Acknowledging only marks the offsets as committable. The acknowledged offsets are committed to the broker by the
+ * receiver, whose commit period and commit batch size are set from the same commit properties (see
+ * KafkaConsumerConfig), so the broker commits follow the strategy.
+ */
+public interface CommitStrategy {
+
+    enum Type {
+        /**
+         * Acknowledge every record, when it is processed.
+         */
+        PER_RECORD,
+        /**
+         * Acknowledge after N records or after a maximum wait time.
+         */
+        EVERY_N,
+        /**
+         * Acknowledge all records processed within a fixed period.
+         */
+        EVERY_T,
+        /**
+         * Acknowledge all records processed within a period, that follows the commit latency measured by the consumer.
+         */
+        ADAPTIVE
+    }
+
+    Type getType();
+
+    /**
+     * Group the processed records into commits.
+     *
+     * @param processed the processed records in commit order
+     * @return the groups of records to be committed together - never an empty group
+     */
+    <T> Flux<List<T>> commitGroups(Flux<T> processed);
+}
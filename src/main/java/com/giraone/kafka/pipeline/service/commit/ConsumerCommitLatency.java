@@ -0,0 +1,70 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latency of the offset commits to the broker, as measured by the Kafka consumers
+ * ("consumer-coordinator-metrics:commit-latency-avg"). The metrics are passed in by the metrics reporter of each
+ * consumer (see ReactorKafkaMetricsExporter). The reporter is created by the Kafka client and not by Spring, so the
+ * metrics are kept in a static registry.
+ */
+public final class ConsumerCommitLatency {
+
+    static final String GROUP = "consumer-coordinator-metrics";
+    static final String NAME = "commit-latency-avg";
+
+    private static final Map<MetricName, KafkaMetric> METRICS = new ConcurrentHashMap<>();
+
+    private ConsumerCommitLatency() {
+    }
+
+    /**
+     * @return true, if the metric is the average commit latency of a consumer
+     */
+    public static boolean isCommitLatency(MetricName metricName) {
+        return GROUP.equals(metricName.group()) && NAME.equals(metricName.name());
+    }
+
+    /**
+     * Add or replace a metric. Other metrics are ignored.
+     */
+    public static void register(KafkaMetric metric) {
+        if (isCommitLatency(metric.metricName())) {
+            METRICS.put(metric.metricName(), metric);
+        }
+    }
+
+    /**
+     * Remove a metric, e.g. when its consumer is closed.
+     */
+    public static void unregister(KafkaMetric metric) {
+        METRICS.remove(metric.metricName());
+    }
+
+    /**
+     * The average commit latency of the consumers - the maximum, if there is more than one consumer.
+     *
+     * @return the latency in nanoseconds - NaN, if no commit was measured within the sample window of the consumers
+     */
+    public static double averageNanos() {
+        double maxMillis = Double.NaN;
+        for (KafkaMetric metric : METRICS.values()) {
+            // NaN, when there was no commit within the sample window
+            if (metric.metricValue() instanceof Double millis && !millis.isNaN() && !(millis <= maxMillis)) {
+                maxMillis = millis;
+            }
+        }
+        return maxMillis * 1_000_000.0;
+    }
+
+    /**
+     * @return the average commit latency in seconds for the gauge "pipeline.commit.latency" - NaN, if unknown
+     */
+    public static double averageSeconds() {
+        return averageNanos() / 1_000_000_000.0;
+    }
+}
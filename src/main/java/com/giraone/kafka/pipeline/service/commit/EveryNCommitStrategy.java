@@ -0,0 +1,36 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Commit every N records. A group, that is not full, is committed after a maximum wait time, so the last records
+ * of a partition are committed, even if no more records arrive.
+ */
+public class EveryNCommitStrategy implements CommitStrategy {
+
+    private final int size;
+    private final Duration maxWait;
+
+    public EveryNCommitStrategy(int size, Duration maxWait) {
+        this.size = size;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.EVERY_N;
+    }
+
+    @Override
+    public <T> Flux<List<T>> commitGroups(Flux<T> processed) {
+        return processed.bufferTimeout(size, maxWait);
+    }
+
+    @Override
+    public String toString() {
+        return "EVERY_N(size=" + size + ", maxWait=" + maxWait + ")";
+    }
+}
@@ -0,0 +1,34 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Commit all records, that were processed within a fixed period. Periods without records cause no commit.
+ */
+public class EveryTCommitStrategy implements CommitStrategy {
+
+    private final Duration period;
+
+    public EveryTCommitStrategy(Duration period) {
+        this.period = period;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.EVERY_T;
+    }
+
+    @Override
+    public <T> Flux<List<T>> commitGroups(Flux<T> processed) {
+        return processed.buffer(period)
+            .filter(group -> !group.isEmpty());
+    }
+
+    @Override
+    public String toString() {
+        return "EVERY_T(period=" + period + ")";
+    }
+}
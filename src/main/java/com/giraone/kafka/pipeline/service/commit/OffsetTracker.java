@@ -0,0 +1,173 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the in-flight records of one partition, that may complete out of order, and releases them in strict offset
+ * order as soon as all records with lower offsets are completed (contiguous-offset watermark).
+ * <p>
+ * The records are kept in a ring buffer in the order they were tracked together with their offsets, the completion
+ * state is a bitset over the same ring. There is no object allocated per record. The ring grows, when more records
+ * are in flight than its capacity. Offsets need not be contiguous (compacted topics, transaction markers), but must
+ * be tracked in increasing order. A lower offset than the last tracked one means, the partition was re-assigned and
+ * the records are delivered again, so the tracker is reset. A record is completed by its offset and by itself: a late
+ * completion of a record from before the reset does not complete the record, that was delivered again with the same
+ * offset, and a record of another topic with the same partition and offset is ignored.
+ * <p>
+ * All methods are synchronized, because the records of a partition are completed on different worker threads.
+ *
+ * @param <T> the type of the tracked records
+ */
+public class OffsetTracker<T> {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+    private Object[] items;
+    private long[] offsets;
+    private long[] completed; // bitset
+    private int mask;
+    // sequence numbers of the tracked records - the ring index is sequence & mask
+    private long head; // the oldest not yet released record
+    private long tail; // the next record to be tracked
+    private long lastTrackedOffset = -1L;
+    private long lastReleasedOffset = -1L;
+
+    public OffsetTracker() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public OffsetTracker(int initialCapacity) {
+        // power of two and at least one word of the bitset
+        allocate(Math.max(64, 1 << (32 - Integer.numberOfLeadingZeros(initialCapacity - 1))));
+    }
+
+    /**
+     * Track a received record.
+     *
+     * @param offset the offset of the record
+     * @param item   the record
+     */
+    public synchronized void track(long offset, T item) {
+        if (offset <= lastTrackedOffset) {
+            reset();
+        }
+        if (tail - head == items.length) {
+            grow();
+        }
+        final int index = (int) (tail & mask);
+        items[index] = item;
+        offsets[index] = offset;
+        tail++;
+        lastTrackedOffset = offset;
+    }
+
+    /**
+     * Mark a record as completed and release all records, which now form a contiguous completed range starting at
+     * the oldest tracked record.
+     *
+     * @param offset  the offset of the completed record
+     * @param item    the completed record - the same instance, that was tracked
+     * @param release called for every released record in offset order - while holding the lock of the tracker
+     * @return the number of released records
+     */
+    public synchronized int complete(long offset, T item, Consumer<T> release) {
+        final long sequence = find(offset);
+        if (sequence < 0L || items[(int) (sequence & mask)] != item) {
+            // not tracked (anymore), e.g. completed after a reset, or another record with the same offset
+            return 0;
+        }
+        final int completedIndex = (int) (sequence & mask);
+        completed[completedIndex >>> 6] |= 1L << completedIndex;
+
+        int ret = 0;
+        while (head < tail) {
+            final int index = (int) (head & mask);
+            if ((completed[index >>> 6] & (1L << index)) == 0L) {
+                break;
+            }
+            completed[index >>> 6] &= ~(1L << index);
+            @SuppressWarnings("unchecked") final T releasedItem = (T) items[index];
+            items[index] = null;
+            lastReleasedOffset = offsets[index];
+            head++;
+            ret++;
+            release.accept(releasedItem);
+        }
+        return ret;
+    }
+
+    /**
+     * @return number of tracked, but not yet released records
+     */
+    public synchronized int inFlight() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return the highest released offset (the watermark) or -1, if nothing was released yet
+     */
+    public synchronized long lastReleasedOffset() {
+        return lastReleasedOffset;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(items, null);
+        Arrays.fill(completed, 0L);
+        head = 0L;
+        tail = 0L;
+        lastTrackedOffset = -1L;
+        lastReleasedOffset = -1L;
+    }
+
+    // Find the sequence number of an offset. The offsets in the ring are increasing, so the fast path (no gaps in
+    // the offsets) is a direct hit, otherwise a binary search is done.
+    private long find(long offset) {
+        if (head == tail) {
+            return -1L;
+        }
+        final long firstOffset = offsets[(int) (head & mask)];
+        final long guess = head + (offset - firstOffset);
+        if (offset >= firstOffset && guess < tail && offsets[(int) (guess & mask)] == offset) {
+            return guess;
+        }
+        long low = head;
+        long high = tail - 1;
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            final long midOffset = offsets[(int) (mid & mask)];
+            if (midOffset < offset) {
+                low = mid + 1;
+            } else if (midOffset > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1L;
+    }
+
+    private void grow() {
+        final Object[] oldItems = items;
+        final long[] oldOffsets = offsets;
+        final long[] oldCompleted = completed;
+        final int oldMask = mask;
+        allocate(oldItems.length << 1);
+        for (long sequence = head; sequence < tail; sequence++) {
+            final int oldIndex = (int) (sequence & oldMask);
+            final int newIndex = (int) (sequence & mask);
+            items[newIndex] = oldItems[oldIndex];
+            offsets[newIndex] = oldOffsets[oldIndex];
+            if ((oldCompleted[oldIndex >>> 6] & (1L << oldIndex)) != 0L) {
+                completed[newIndex >>> 6] |= 1L << newIndex;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        items = new Object[capacity];
+        offsets = new long[capacity];
+        completed = new long[capacity >>> 6];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import java.util.Arrays;
+
+/**
+ * The {@link OffsetTracker} for each partition of a service. The trackers are kept in an array, that grows on demand
+ * (e.g. after a rebalance) using copy on write, so there is no map lookup and no lock, to find the tracker of a
+ * record's partition.
+ *
+ * @param <T> the type of the tracked records
+ */
+public class OffsetTrackers<T> {
+
+    private static final int INITIAL_NUMBER_OF_PARTITIONS = 16;
+
+    @SuppressWarnings("unchecked")
+    private volatile OffsetTracker<T>[] trackers = new OffsetTracker[INITIAL_NUMBER_OF_PARTITIONS];
+
+    public OffsetTracker<T> forPartition(int partition) {
+        final OffsetTracker<T>[] current = trackers;
+        if (partition < current.length) {
+            final OffsetTracker<T> ret = current[partition];
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return createTracker(partition);
+    }
+
+    /**
+     * @return the tracker of the partition or null, if no record of the partition was tracked yet
+     */
+    public OffsetTracker<T> getIfPresent(int partition) {
+        final OffsetTracker<T>[] current = trackers;
+        return partition < current.length ? current[partition] : null;
+    }
+
+    public int numberOfPartitions() {
+        return trackers.length;
+    }
+
+    private synchronized OffsetTracker<T> createTracker(int partition) {
+        OffsetTracker<T>[] current = trackers;
+        if (partition >= current.length) {
+            current = Arrays.copyOf(current, Math.max(partition + 1, current.length * 2));
+        } else if (current[partition] != null) {
+            return current[partition];
+        } else {
+            current = current.clone();
+        }
+        final OffsetTracker<T> ret = new OffsetTracker<>();
+        current[partition] = ret;
+        trackers = current;
+        return ret;
+    }
+}
@@ -0,0 +1,27 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Commit every record on its own.
+ */
+public class PerRecordCommitStrategy implements CommitStrategy {
+
+    @Override
+    public Type getType() {
+        return Type.PER_RECORD;
+    }
+
+    @Override
+    public <T> Flux<List<T>> commitGroups(Flux<T> processed) {
+        return processed.map(Collections::singletonList);
+    }
+
+    @Override
+    public String toString() {
+        return "PER_RECORD";
+    }
+}
@@ -3,16 +3,20 @@ package com.giraone.kafka.pipeline.service.consume;
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.AbstractService;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
 import io.atleon.kafka.KafkaReceiver;
 import io.atleon.kafka.KafkaReceiverRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 @Service
@@ -25,9 +29,10 @@ public abstract class AbstractConsumeService extends AbstractService {
     protected AbstractConsumeService(
         ApplicationProperties applicationProperties,
         KafkaReceiver<String, String> kafkaReceiver,
-        CounterService counterService
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, counterService);
+        super(applicationProperties, counterService, retryTopicRouter);
         this.topicInput = applicationProperties.getTopicB();
         this.kafkaReceiver = kafkaReceiver;
         this.delay = applicationProperties.getProcessing().getWaitTime();
@@ -37,9 +42,15 @@ public abstract class AbstractConsumeService extends AbstractService {
 
     //------------------------------------------------------------------------------------------------------------------
 
+    @Override
+    protected String getTopicInput() {
+        return topicInput;
+    }
+
     protected abstract Flux<Void> consume();
 
     protected void start() {
+        LOGGER.info("{}: commitStrategy={}", getClass().getSimpleName(), commitStrategy);
         consume()
             .doOnError(e -> counterService.logError("ConsumeDefaultService failed!", e))
             .subscribe(null, counterService::logMainLoopError);
@@ -51,21 +62,63 @@ public abstract class AbstractConsumeService extends AbstractService {
         return kafkaReceiver.receiveManual(Collections.singleton(topicInput))
             // kafka consume retries
             .retryWhen(retryBackoffSpec)
-            .doOnNext(this::logReceived);
+            .doOnNext(this::logReceived)
+            .doOnNext(this::track)
+            .transform(stage(STAGE_RECEIVE));
     }
 
     /**
      * The consumer task, that may take some time (defined by APPLICATION_PROCESSING_TIME) for processing an input.
      */
     protected Mono<KafkaReceiverRecord<String, String>> process(KafkaReceiverRecord<String, String> inputRecord) {
-        return Mono.delay(this.delay)
-            .map(result -> coreProcess(inputRecord))
-            .doOnError(throwable -> {
-                LOGGER.error("Error processing record from topic \"{}\" with key={}",
-                    inputRecord.topicPartition().topic(), inputRecord.key(), throwable);
-                inputRecord.nacknowledge(throwable);
+        return process(inputRecord, Schedulers.parallel());
+    }
+
+    /**
+     * The consumer task like {@link #process(KafkaReceiverRecord)}, but the waiting time and so the core task run
+     * on the given scheduler.
+     */
+    protected Mono<KafkaReceiverRecord<String, String>> process(KafkaReceiverRecord<String, String> inputRecord, Scheduler scheduler) {
+        return acquirePermit()
+            .then(Mono.delay(this.delay, scheduler)
+                .doOnSubscribe(ignored -> this.logProcessStarted(inputRecord)))
+            .map(result -> {
+                simulateFailure();
+                return coreProcess(inputRecord);
             })
-            .doOnNext(this::logProcessed);
+            .doOnNext(this::logProcessed)
+            // route to a retry topic (empty result) or nacknowledge (error)
+            .onErrorResume(throwable -> handleProcessingError(inputRecord, throwable));
+    }
+
+    /**
+     * Consume the retry topics of the input topic. Each retry topic partition waits, until its next record is due.
+     * A record, that fails again, is routed to the next tier by {@link #processRetry(KafkaReceiverRecord)}.
+     */
+    @Override
+    protected void startRetryLoop() {
+
+        final List<String> retryTopics = retryTopicRouter.retryTopics(topicInput);
+        LOGGER.info("{}: Start reading from retry topics {}", getClass().getSimpleName(), retryTopics);
+        retrySubscription = kafkaReceiver.receiveManual(retryTopics)
+            .retryWhen(applicationProperties.getConsumer().getRetrySpecification().toRetry())
+            .doOnNext(this::logRetryReceived)
+            .groupBy(KafkaReceiverRecord::topicPartition)
+            .flatMap(partitionFlux -> partitionFlux
+                .concatMap(receiverRecord -> retryTopicRouter.awaitDue(receiverRecord)
+                    .then(processRetry(receiverRecord))
+                    .flatMap(this::manualCommit)))
+            .doOnError(e -> counterService.logError(getClass().getSimpleName() + " retry loop failed!", e))
+            // subscription retry loop - restart on unhandled errors like the main loop
+            .subscribe(null, this::restartRetryLoopOnError);
+    }
+
+    /**
+     * The consumer task for a record of a retry topic. Here the same as for a record of the input topic. A record,
+     * that fails again, must be routed to the next tier (see handleProcessingError).
+     */
+    protected Mono<KafkaReceiverRecord<String, String>> processRetry(KafkaReceiverRecord<String, String> receiverRecord) {
+        return process(receiverRecord);
     }
 
     /**
@@ -0,0 +1,118 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.ArchiveProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.archive.SegmentArchive;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Archives the records of topicB into rolling, memory-mapped segment files per partition (see
+ * {@link com.giraone.kafka.pipeline.service.archive.SegmentWriter}). The records are appended in groups
+ * (archive.syncMaxRecords, archive.syncInterval) and each group is synced with one fsync per partition, before its
+ * records are committed. So a committed record is always durable.
+ * <p>
+ * On a restart of the main loop or the process or a rebalance, the records after the last commit are delivered again.
+ * Those, that are already in the segments, are skipped and committed with the next sync, so the offsets of a segment
+ * keep increasing. After a restart of the process, the last offset of a partition is recovered from its segments.
+ */
+@Service
+@ConditionalOnProperty(name = "application.mode", havingValue = "ConsumeArchive")
+public class ConsumeArchiveService extends AbstractService {
+
+    private final KafkaReceiver<String, byte[]> kafkaReceiver;
+    private final String topicInput;
+    private final ArchiveProperties archiveProperties;
+    private SegmentArchive segmentArchive;
+
+    public ConsumeArchiveService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaReceiver<String, byte[]> bytesKafkaReceiver
+    ) {
+        super(applicationProperties, counterService);
+        this.kafkaReceiver = bytesKafkaReceiver;
+        this.topicInput = applicationProperties.getTopicB();
+        this.archiveProperties = applicationProperties.getArchive();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {} writing to \"{}\"", this.getClass().getSimpleName(), archiveProperties.getDirectory());
+        // on a restart of the main loop, the current segments are continued - redelivered records are skipped
+        if (segmentArchive == null) {
+            segmentArchive = new SegmentArchive(Path.of(archiveProperties.getDirectory()),
+                archiveProperties.getSegmentSize(), archiveProperties.getIndexInterval());
+        }
+        subscription = this.receive()
+            .bufferTimeout(archiveProperties.getSyncMaxRecords(), archiveProperties.getSyncInterval())
+            // file I/O is blocking - the groups are written one after the other
+            .concatMap(group -> Mono.fromCallable(() -> append(group)).subscribeOn(Schedulers.boundedElastic()))
+            .concatMapIterable(group -> group)
+            .transform(archived -> commit(archived, this::acknowledge))
+            // log any error
+            .doOnError(e -> counterService.logError("ConsumeArchiveService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+        if (segmentArchive != null) {
+            try {
+                segmentArchive.close();
+                LOGGER.info("Archive \"{}\" closed with {} records in {} segments", archiveProperties.getDirectory(),
+                    segmentArchive.getRecords(), segmentArchive.getSegments());
+            } catch (IOException ioException) {
+                LOGGER.error("Cannot close archive \"{}\"", archiveProperties.getDirectory(), ioException);
+            }
+        }
+    }
+
+    protected Flux<KafkaReceiverRecord<String, byte[]>> receive() {
+        LOGGER.info("{}: Start reading from topic \"{}\"", getClass().getSimpleName(), topicInput);
+        return kafkaReceiver.receiveManual(Collections.singleton(topicInput))
+            // kafka consume retries
+            .retryWhen(applicationProperties.getConsumer().getRetrySpecification().toRetry())
+            .doOnNext(this::logReceived);
+    }
+
+    /**
+     * Append a group of records to the segments of their partitions and sync the segments (group commit).
+     */
+    protected List<KafkaReceiverRecord<String, byte[]>> append(List<KafkaReceiverRecord<String, byte[]>> group) throws IOException {
+        for (KafkaReceiverRecord<String, byte[]> receiverRecord : group) {
+            final ConsumerRecord<String, byte[]> consumerRecord = receiverRecord.consumerRecord();
+            final String key = consumerRecord.key();
+            if (!segmentArchive.append(consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset(),
+                consumerRecord.timestamp(), key != null ? key.getBytes(StandardCharsets.UTF_8) : null, consumerRecord.value())) {
+                LOGGER.debug("Skipped redelivered record {}/{}", consumerRecord.partition(), consumerRecord.offset());
+            }
+        }
+        segmentArchive.sync();
+        group.forEach(this::logProcessed);
+        return group;
+    }
+}
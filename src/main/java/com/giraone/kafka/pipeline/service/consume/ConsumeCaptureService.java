@@ -0,0 +1,119 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.CaptureProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.capture.CaptureWriter;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the records of topicB (keys, raw values, headers and timestamps) to a capture file, that can be replayed
+ * by ProduceReplay. The records are written in batches (processing.batchMaxSize, processing.batchMaxWait) and each
+ * batch is written and forced (fsync) to the file, before its records are committed.
+ */
+@Service
+@ConditionalOnProperty(name = "application.mode", havingValue = "ConsumeCapture")
+public class ConsumeCaptureService extends AbstractService {
+
+    private final KafkaReceiver<String, byte[]> kafkaReceiver;
+    private final String topicInput;
+    private final CaptureProperties captureProperties;
+    private final int batchMaxSize;
+    private final Duration batchMaxWait;
+    private CaptureWriter captureWriter;
+
+    public ConsumeCaptureService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaReceiver<String, byte[]> bytesKafkaReceiver
+    ) {
+        super(applicationProperties, counterService);
+        this.kafkaReceiver = bytesKafkaReceiver;
+        this.topicInput = applicationProperties.getTopicB();
+        this.captureProperties = applicationProperties.getCapture();
+        this.batchMaxSize = applicationProperties.getProcessing().getBatchMaxSize();
+        this.batchMaxWait = applicationProperties.getProcessing().getBatchMaxWait();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {} writing to \"{}\"", this.getClass().getSimpleName(), captureProperties.getFile());
+        // on a restart of the main loop, the file is continued
+        if (captureWriter == null) {
+            try {
+                captureWriter = new CaptureWriter(Path.of(captureProperties.getFile()), captureProperties.getBufferSize());
+            } catch (IOException ioException) {
+                throw new UncheckedIOException("Cannot create capture file " + captureProperties.getFile(), ioException);
+            }
+        }
+        subscription = this.receive()
+            .bufferTimeout(batchMaxSize, batchMaxWait)
+            // file I/O is blocking
+            .concatMap(batch -> Mono.fromCallable(() -> write(batch)).subscribeOn(Schedulers.boundedElastic()))
+            .concatMapIterable(batch -> batch)
+            .transform(written -> commit(written, this::acknowledge))
+            // log any error
+            .doOnError(e -> counterService.logError("ConsumeCaptureService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+        if (captureWriter != null) {
+            try {
+                captureWriter.close();
+                LOGGER.info("Capture file \"{}\" closed with {} records", captureProperties.getFile(), captureWriter.getRecords());
+            } catch (IOException ioException) {
+                LOGGER.error("Cannot close capture file \"{}\"", captureProperties.getFile(), ioException);
+            }
+        }
+    }
+
+    protected Flux<KafkaReceiverRecord<String, byte[]>> receive() {
+        LOGGER.info("{}: Start reading from topic \"{}\"", getClass().getSimpleName(), topicInput);
+        return kafkaReceiver.receiveManual(Collections.singleton(topicInput))
+            // kafka consume retries
+            .retryWhen(applicationProperties.getConsumer().getRetrySpecification().toRetry())
+            .doOnNext(this::logReceived);
+    }
+
+    /**
+     * Append a batch of records to the capture file and force it to the storage device.
+     */
+    protected List<KafkaReceiverRecord<String, byte[]>> write(List<KafkaReceiverRecord<String, byte[]>> batch) throws IOException {
+        for (KafkaReceiverRecord<String, byte[]> receiverRecord : batch) {
+            final ConsumerRecord<String, byte[]> consumerRecord = receiverRecord.consumerRecord();
+            final String key = consumerRecord.key();
+            captureWriter.write(consumerRecord.timestamp(), key != null ? key.getBytes(StandardCharsets.UTF_8) : null,
+                consumerRecord.value(), consumerRecord.headers());
+            logProcessed(receiverRecord);
+        }
+        captureWriter.flush();
+        return batch;
+    }
+}
@@ -2,6 +2,7 @@ package com.giraone.kafka.pipeline.service.consume;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
 import io.atleon.kafka.KafkaReceiver;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -12,9 +13,10 @@ public class ConsumeDefaultService extends AbstractConsumeService {
     public ConsumeDefaultService(
         ApplicationProperties applicationProperties,
         KafkaReceiver<String, String> kafkaReceiver,
-        CounterService counterService
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, kafkaReceiver, counterService);
+        super(applicationProperties, kafkaReceiver, counterService, retryTopicRouter);
     }
 
     //------------------------------------------------------------------------------------------------------------------
@@ -24,6 +26,7 @@ public class ConsumeDefaultService extends AbstractConsumeService {
 
         return receive()
             .flatMapSequential(this::process)
-            .concatMap(this::manualCommit);
+            .transform(stage(STAGE_PROCESS))
+            .transform(processed -> commit(processed, this::commitInOffsetOrder));
     }
 }
\ No newline at end of file
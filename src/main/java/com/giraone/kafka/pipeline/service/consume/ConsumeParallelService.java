@@ -0,0 +1,84 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Consumer for CPU-heavy processing, that uses more than one core. The records are distributed to a fixed number of
+ * rails by their partition number. Each rail runs on its own thread and processes its records one after the other,
+ * so the order per partition is kept and the records of a partition are committed in order by their rail.
+ * <p>
+ * {@link Flux#parallel(int)} is not used, because it assigns the records round-robin to the rails and not by partition.
+ * The queue depth of each rail is published as a gauge, its busy time as a counter.
+ */
+@Service
+public class ConsumeParallelService extends AbstractConsumeService {
+
+    private final int rails;
+    private final Scheduler[] railSchedulers;
+    private final RailMetrics[] railMetrics;
+
+    public ConsumeParallelService(
+        ApplicationProperties applicationProperties,
+        KafkaReceiver<String, String> kafkaReceiver,
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, kafkaReceiver, counterService, retryTopicRouter);
+        final int configuredRails = applicationProperties.getProcessing().getRails();
+        this.rails = configuredRails > 0 ? configuredRails : Runtime.getRuntime().availableProcessors();
+        this.railSchedulers = new Scheduler[rails];
+        this.railMetrics = new RailMetrics[rails];
+        for (int rail = 0; rail < rails; rail++) {
+            // the threads are created lazily on first use
+            railSchedulers[rail] = Schedulers.newSingle("consumeRail-" + rail);
+            railMetrics[rail] = new RailMetrics(rail);
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void start() {
+        LOGGER.info("{}: rails={}", getClass().getSimpleName(), rails);
+        for (RailMetrics metrics : railMetrics) {
+            counterService.monitorRail(metrics);
+        }
+        super.start();
+    }
+
+    @Override
+    public Flux<Void> consume() {
+
+        return receive()
+            .groupBy(receiverRecord -> railOf(receiverRecord.consumerRecord().partition()))
+            .flatMap(this::consumeRail, rails);
+    }
+
+    /**
+     * Process and commit the records of one rail on the thread of the rail.
+     */
+    protected Flux<Void> consumeRail(GroupedFlux<Integer, KafkaReceiverRecord<String, String>> railFlux) {
+        final Scheduler scheduler = railSchedulers[railFlux.key()];
+        final RailMetrics metrics = railMetrics[railFlux.key()];
+        return railFlux
+            .doOnNext(ignored -> metrics.enqueued())
+            .publishOn(scheduler)
+            .concatMap(receiverRecord -> process(receiverRecord, scheduler)
+                .doOnSubscribe(ignored -> metrics.busyStart())
+                .doFinally(ignored -> metrics.busyEnd()))
+            .transform(processed -> commit(processed, this::commitInOffsetOrder));
+    }
+
+    protected int railOf(int partition) {
+        return partition % rails;
+    }
+}
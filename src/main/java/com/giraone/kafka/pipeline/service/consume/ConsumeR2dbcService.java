@@ -0,0 +1,204 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.R2dbcSinkProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Consumer writing the records of topicB into a database table using R2DBC. The records are buffered per partition
+ * and each batch is written by one multi-row insert statement. The number of concurrently executed statements is
+ * bounded. The records of a batch are committed only after the batch has been written - in strict offset order
+ * per partition, because the batches of one partition may complete out of order.
+ * <p>
+ * When retry topics are enabled, the records of a batch, that cannot be written, are routed to the retry topics.
+ * A record of a retry topic is written by a single-row insert with its original topic, partition and offset.
+ * <p>
+ * The delivery is at least once: after a restart, the records since the last commit are inserted again.
+ */
+@Service
+public class ConsumeR2dbcService extends AbstractConsumeService {
+
+    private static final String[] COLUMNS = {
+        "kafka_topic", "kafka_partition", "kafka_offset", "record_timestamp", "record_key", "record_value"
+    };
+
+    private final ConnectionFactory connectionFactory;
+    private final R2dbcSinkProperties sinkProperties;
+    // insert statements per number of rows - there are at most batchSize different ones
+    private final Map<Integer, String> insertStatements = new ConcurrentHashMap<>();
+
+    public ConsumeR2dbcService(
+        ApplicationProperties applicationProperties,
+        KafkaReceiver<String, String> kafkaReceiver,
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter,
+        ConnectionFactory connectionFactory
+    ) {
+        super(applicationProperties, kafkaReceiver, counterService, retryTopicRouter);
+        this.connectionFactory = connectionFactory;
+        this.sinkProperties = applicationProperties.getR2dbc();
+        // the batches complete out of order
+        this.trackOffsets = true;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public Flux<Void> consume() {
+
+        LOGGER.info("{}: Writing to table \"{}\" with batchSize={} and maxConcurrentStatements={}",
+            getClass().getSimpleName(), sinkProperties.getTable(), sinkProperties.getBatchSize(),
+            sinkProperties.getMaxConcurrentStatements());
+        return createTable()
+            // the records are tracked in offset order on receive, before the batches are written out of order
+            .thenMany(receive())
+            // a batch contains the records of one partition only
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux -> partitionFlux.bufferTimeout(sinkProperties.getBatchSize(), sinkProperties.getBatchMaxWait()))
+            // the statements of all partitions share the bound
+            .flatMap(this::insert, sinkProperties.getMaxConcurrentStatements())
+            .concatMapIterable(batch -> batch)
+            // commit all records up to the contiguous-offset watermark in strict offset order
+            .transform(written -> commit(written, this::commitInOffsetOrder));
+    }
+
+    /**
+     * Write a batch of records with one multi-row insert statement. Failed statements are retried as defined by the
+     * processing retry properties. When the retries are exhausted, the records of the batch are routed to the retry
+     * topics or - if these are disabled - nacknowledged.
+     *
+     * @param batch records of one partition
+     * @return the batch, when it was written - empty, when the records were routed
+     */
+    protected Mono<List<KafkaReceiverRecord<String, String>>> insert(List<KafkaReceiverRecord<String, String>> batch) {
+        return execute(connection -> bind(connection.createStatement(insertStatement(batch.size())), batch))
+            .retryWhen(applicationProperties.getProcessingRetry().toRetry())
+            .doOnNext(rowsUpdated -> batch.forEach(this::logProcessed))
+            .thenReturn(batch)
+            .onErrorResume(throwable -> {
+                final ConsumerRecord<String, String> first = batch.get(0).consumerRecord();
+                LOGGER.error("Error inserting {} records from topic \"{}\" partition {} starting at offset {}",
+                    batch.size(), first.topic(), first.partition(), first.offset(), throwable);
+                if (retryTopicRouter != null && retryTopicRouter.isEnabled()) {
+                    // route every record of the batch - the routed records are committed in offset order
+                    return Flux.fromIterable(batch)
+                        .concatMap(receiverRecord -> handleProcessingError(receiverRecord, throwable))
+                        .then(Mono.empty());
+                }
+                batch.forEach(receiverRecord -> nacknowledge(receiverRecord, throwable));
+                return Mono.error(throwable);
+            });
+    }
+
+    /**
+     * Write a record of a retry topic with a single-row insert. When it fails again, it is routed to the next tier.
+     */
+    @Override
+    protected Mono<KafkaReceiverRecord<String, String>> processRetry(KafkaReceiverRecord<String, String> receiverRecord) {
+        final List<KafkaReceiverRecord<String, String>> batch = List.of(receiverRecord);
+        return execute(connection -> bind(connection.createStatement(insertStatement(1)), batch))
+            .retryWhen(applicationProperties.getProcessingRetry().toRetry())
+            .doOnNext(rowsUpdated -> logProcessed(receiverRecord))
+            .thenReturn(receiverRecord)
+            .onErrorResume(throwable -> handleProcessingError(receiverRecord, throwable));
+    }
+
+    protected Mono<Void> createTable() {
+        if (!sinkProperties.isCreateTable()) {
+            return Mono.empty();
+        }
+        final String sql = "CREATE TABLE IF NOT EXISTS " + sinkProperties.getTable() + " ("
+            + "kafka_topic VARCHAR(255) NOT NULL, kafka_partition INTEGER NOT NULL, kafka_offset BIGINT NOT NULL, "
+            + "record_timestamp BIGINT NOT NULL, record_key VARCHAR(255), record_value VARCHAR(65535))";
+        return execute(connection -> connection.createStatement(sql))
+            .doOnNext(ignored -> LOGGER.info("{}: Table \"{}\" created or already existing",
+                getClass().getSimpleName(), sinkProperties.getTable()))
+            .then();
+    }
+
+    /**
+     * Execute a statement on a connection of the pool and close (release) the connection afterward.
+     *
+     * @return the number of updated rows
+     */
+    private Mono<Long> execute(Function<Connection, Statement> statementBuilder) {
+        return Mono.usingWhen(connectionFactory.create(),
+            connection -> Flux.from(statementBuilder.apply(connection).execute())
+                .flatMap(Result::getRowsUpdated)
+                .reduce(0L, Long::sum),
+            Connection::close);
+    }
+
+    private Statement bind(Statement statement, List<KafkaReceiverRecord<String, String>> batch) {
+        int index = 0;
+        for (KafkaReceiverRecord<String, String> receiverRecord : batch) {
+            final ConsumerRecord<String, String> consumerRecord = receiverRecord.consumerRecord();
+            // a record of a retry topic is written with the position, where it was consumed first
+            statement.bind(index++, RetryTopicRouter.originalTopic(consumerRecord));
+            statement.bind(index++, RetryTopicRouter.originalPartition(consumerRecord));
+            statement.bind(index++, RetryTopicRouter.originalOffset(consumerRecord));
+            statement.bind(index++, consumerRecord.timestamp());
+            index = bindNullable(statement, index, consumerRecord.key());
+            index = bindNullable(statement, index, consumerRecord.value());
+        }
+        return statement;
+    }
+
+    private static int bindNullable(Statement statement, int index, String value) {
+        if (value != null) {
+            statement.bind(index, value);
+        } else {
+            statement.bindNull(index, String.class);
+        }
+        return index + 1;
+    }
+
+    private String insertStatement(int rows) {
+        return insertStatements.computeIfAbsent(rows,
+            key -> insertStatement(sinkProperties.getTable(), key, sinkProperties.getBindMarker()));
+    }
+
+    /**
+     * Build a multi-row insert statement, e.g. "INSERT INTO t (a, b) VALUES ($1, $2), ($3, $4)".
+     *
+     * @param table      name of the table
+     * @param rows       number of rows
+     * @param bindMarker "?" for anonymous bind markers, otherwise the prefix of indexed bind markers starting at 1
+     */
+    static String insertStatement(String table, int rows, String bindMarker) {
+        final StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (")
+            .append(String.join(", ", COLUMNS)).append(") VALUES ");
+        int index = 1;
+        for (int row = 0; row < rows; row++) {
+            sb.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (column > 0) {
+                    sb.append(", ");
+                }
+                sb.append(bindMarker);
+                if (!"?".equals(bindMarker)) {
+                    sb.append(index);
+                }
+                index++;
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -2,14 +2,12 @@ package com.giraone.kafka.pipeline.service.consume;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.commit.CommitStrategy;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
 import io.atleon.kafka.KafkaReceiver;
 import io.atleon.kafka.KafkaReceiverRecord;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
-import reactor.util.concurrent.Queues;
-
-import java.time.Duration;
 
 @Service
 public class ConsumeSampledService extends AbstractConsumeService {
@@ -17,9 +15,12 @@ public class ConsumeSampledService extends AbstractConsumeService {
     public ConsumeSampledService(
         ApplicationProperties applicationProperties,
         KafkaReceiver<String, String> kafkaReceiver,
-        CounterService counterService
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, kafkaReceiver, counterService);
+        super(applicationProperties, kafkaReceiver, counterService, retryTopicRouter);
+        // commit periodically (every 250ms), if no other strategy is configured
+        this.commitStrategy = applicationProperties.getConsumer().getCommit().toCommitStrategy(CommitStrategy.Type.EVERY_T);
     }
 
     //------------------------------------------------------------------------------------------------------------------
@@ -36,10 +37,7 @@ public class ConsumeSampledService extends AbstractConsumeService {
                 partitionFlux
                     .flatMapSequential(this::process)
                     // Commit the processed records periodically
-                    .sample(Duration.ofMillis(250L))
-                    .onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, BufferOverflowStrategy.DROP_OLDEST)
-                    .concatMap(this::manualCommit)
-                    .doOnDiscard(KafkaReceiverRecord.class, this::onDiscardCommit)
+                    .transform(processed -> commit(processed, this::commitInOffsetOrder))
             );
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import io.atleon.kafka.KafkaReceiver;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Consumer for stateless processing, where the order does not matter. The records of a partition are processed with
+ * high concurrency and complete out of order. A slow record does not hold up the records behind it. Commits are done
+ * in strict offset order up to the lowest offset, that is not yet finished (contiguous-offset watermark).
+ */
+@Service
+public class ConsumeUnorderedService extends AbstractConsumeService {
+
+    private final int concurrency;
+
+    public ConsumeUnorderedService(
+        ApplicationProperties applicationProperties,
+        KafkaReceiver<String, String> kafkaReceiver,
+        CounterService counterService,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, kafkaReceiver, counterService, retryTopicRouter);
+        this.concurrency = applicationProperties.getProcessing().getUnorderedConcurrency();
+        // the records complete out of order
+        this.trackOffsets = true;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public Flux<Void> consume() {
+
+        return receive()
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux -> partitionFlux
+                // the records were tracked in offset order on receive, before they are processed out of order
+                .flatMap(this::process, concurrency)
+                // commit all records up to the contiguous-offset watermark in strict offset order
+                .transform(processed -> commit(processed, this::commitInOffsetOrder)));
+    }
+}
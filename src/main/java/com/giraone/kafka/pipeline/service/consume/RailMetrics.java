@@ -0,0 +1,77 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth and busy time of one rail of {@link ConsumeParallelService}. The queue depth is the number of records
+ * handed over to the rail, that are not yet processed. The busy time is the monotonic total of the time, in which the
+ * rail was processing a record, including the current busy period. It is published as a counter, so the utilization
+ * of the rail is its rate over any window of the monitoring backend. Reading it has no side effects, so any number of
+ * registries may scrape it. A rail processes one record at a time.
+ */
+public class RailMetrics {
+
+    private final int rail;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    // sum of the finished busy periods
+    private final AtomicLong busyNanos = new AtomicLong();
+    // start of the current busy period or 0, if idle
+    private volatile long busySince;
+    // the last returned busy time - a busy period, that ends while it is read, must not let the total go back
+    private long lastBusyNanos;
+
+    public RailMetrics(int rail) {
+        this.rail = rail;
+    }
+
+    public int getRail() {
+        return rail;
+    }
+
+    public void enqueued() {
+        queueDepth.incrementAndGet();
+    }
+
+    public void busyStart() {
+        busyStart(System.nanoTime());
+    }
+
+    public void busyEnd() {
+        busyEnd(System.nanoTime());
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the total busy time in seconds
+     */
+    public double getBusySeconds() {
+        return busyNanos(System.nanoTime()) / 1_000_000_000.0;
+    }
+
+    void busyStart(long nowNanos) {
+        queueDepth.decrementAndGet();
+        busySince = nowNanos;
+    }
+
+    void busyEnd(long nowNanos) {
+        final long since = busySince;
+        if (since != 0L) {
+            busyNanos.addAndGet(nowNanos - since);
+            busySince = 0L;
+        }
+    }
+
+    /**
+     * @return the total busy time in nanos including the current busy period - never less than a previous result
+     */
+    synchronized long busyNanos(long nowNanos) {
+        final long since = busySince;
+        final long busy = busyNanos.get() + (since != 0L ? Math.max(0L, nowNanos - since) : 0L);
+        lastBusyNanos = Math.max(lastBusyNanos, busy);
+        return lastBusyNanos;
+    }
+}
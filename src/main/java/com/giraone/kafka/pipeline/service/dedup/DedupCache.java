@@ -0,0 +1,207 @@
+package com.giraone.kafka.pipeline.service.dedup;
+
+/**
+ * Bounded set of 64-bit record hashes to detect duplicates. The set is an open-addressing hash table of primitive
+ * longs (linear probing, backward shift deletion), so there is no boxing and no allocation per record. The insertion
+ * order is kept in a ring buffer, which is used to evict entries by age (time to live) and by size (oldest first).
+ * <p>
+ * Memory usage is fixed on creation: 8 bytes per table slot (2-4 slots per entry) plus 16 bytes per entry in the
+ * ring buffer. The hash value 0 is used as the empty marker and is mapped to 1.
+ */
+public class DedupCache {
+
+    private static final long EMPTY = 0L;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // the hash table
+    private final long[] table;
+    private final int mask;
+    private int size;
+
+    // the ring buffer with the insertion order
+    private final long[] ringHashes;
+    private final long[] ringTimes;
+    private int ringHead;
+
+    /**
+     * @param maxEntries maximum number of entries - when exceeded, the oldest entry is evicted
+     * @param ttlMillis  entries older than this are evicted - 0 or less for no time based eviction
+     */
+    public DedupCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be > 0");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // load factor of at most 0.5 to keep the probe sequences short
+        final int tableSize = Integer.highestOneBit(Math.max(maxEntries, 8) * 2 - 1) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.ringHashes = new long[maxEntries];
+        this.ringTimes = new long[maxEntries];
+    }
+
+    /**
+     * @return true, if the hash is in the set and not yet expired
+     */
+    public synchronized boolean contains(long hash, long nowMillis) {
+        evictExpired(nowMillis);
+        return indexOf(normalize(hash)) >= 0;
+    }
+
+    /**
+     * Add a hash to the set. When the set is full, the oldest entry is evicted.
+     *
+     * @return true, if the hash was added - false, if it was already in the set
+     */
+    public synchronized boolean add(long hash, long nowMillis) {
+        evictExpired(nowMillis);
+        final long key = normalize(hash);
+        int index = (int) mix(key) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        if (size == maxEntries) {
+            evictOldest();
+            // the eviction may have shifted entries into the probe sequence of the new key
+            index = (int) mix(key) & mask;
+            while (table[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+        }
+        table[index] = key;
+        final int ringTail = (ringHead + size) % maxEntries;
+        ringHashes[ringTail] = key;
+        ringTimes[ringTail] = nowMillis;
+        size++;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the fixed memory used by the arrays in bytes
+     */
+    public long memoryBytes() {
+        return (long) table.length * Long.BYTES + (long) maxEntries * 2 * Long.BYTES;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of key and value (UTF-16 chars) of a record. A null key and an empty key hash differently.
+     */
+    public static long hash(String key, String value) {
+        long ret = FNV_OFFSET_BASIS;
+        ret = hash(ret, key);
+        ret = (ret ^ 0xFF) * FNV_PRIME; // separator
+        ret = hash(ret, value);
+        return ret;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of key (UTF-16 chars) and raw value bytes of a record. A null value and an empty value
+     * hash differently.
+     */
+    public static long hash(String key, byte[] value) {
+        long ret = FNV_OFFSET_BASIS;
+        ret = hash(ret, key);
+        ret = (ret ^ 0xFF) * FNV_PRIME; // separator
+        if (value == null) {
+            return (ret ^ 0xFE) * FNV_PRIME;
+        }
+        for (byte b : value) {
+            ret = (ret ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return ret;
+    }
+
+    private static long hash(long ret, String s) {
+        if (s == null) {
+            return (ret ^ 0xFE) * FNV_PRIME;
+        }
+        // hash the two bytes of each char - no byte array is allocated
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            ret = (ret ^ (c & 0xFF)) * FNV_PRIME;
+            ret = (ret ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return ret;
+    }
+
+    private void evictExpired(long nowMillis) {
+        if (ttlMillis <= 0L) {
+            return;
+        }
+        while (size > 0 && nowMillis - ringTimes[ringHead] > ttlMillis) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        remove(ringHashes[ringHead]);
+        ringHead = (ringHead + 1) % maxEntries;
+        size--;
+    }
+
+    private int indexOf(long key) {
+        int index = (int) mix(key) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Remove a key by shifting the following entries of the probe sequence back, so no tombstones are needed.
+     */
+    private void remove(long key) {
+        int gap = indexOf(key);
+        if (gap < 0) {
+            return;
+        }
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            final long current = table[index];
+            if (current == EMPTY) {
+                break;
+            }
+            final int home = (int) mix(current) & mask;
+            // move the entry into the gap, if its home slot is not between the gap and its current slot
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                table[gap] = current;
+                gap = index;
+            }
+        }
+        table[gap] = EMPTY;
+    }
+
+    private static long normalize(long hash) {
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    /**
+     * Spread the bits of the key (murmur3 finalizer), because the low bits select the slot.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -3,11 +3,17 @@ package com.giraone.kafka.pipeline.service.pipe;
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.AbstractService;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.scheduler.InstrumentedScheduler;
+import com.giraone.kafka.pipeline.service.scheduler.SchedulerMetrics;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
 import io.atleon.kafka.KafkaReceiver;
 import io.atleon.kafka.KafkaReceiverRecord;
-import io.atleon.kafka.KafkaSender;
 import io.atleon.kafka.KafkaSenderRecord;
 import io.atleon.kafka.KafkaSenderResult;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
@@ -17,36 +23,67 @@ import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Locale;
+import java.util.Comparator;
+import java.util.List;
 
-public abstract class AbstractPipeService extends AbstractService {
+/**
+ * Base of the pipes from topicA to topicB. The value type is a parameter, so the pipes on Strings and the pipe on
+ * the raw value bytes share the receive, process, send and commit steps, the retry routing and the dedup.
+ *
+ * @param <V> the value type of the consumed and the produced records
+ */
+public abstract class AbstractPipeService<V> extends AbstractService {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractPipeService.class);
 
-    private final KafkaSender<String, String> kafkaSender;
-    private final KafkaReceiver<String, String> kafkaReceiver;
+    private final KafkaSenderPool<V> kafkaSenderPool;
+    private final KafkaReceiver<String, V> kafkaReceiver;
     protected final String topicInput;
     protected final String topicOutput;
     protected final Duration delay; // How long does the pure processing take?
     protected final Retry retry;
     protected final Scheduler scheduler;
+    private final SchedulerMetrics schedulerMetrics;
+    // remembers the sent records to skip duplicates - null, when dedup is disabled or the service is not started
+    protected DedupCache dedupCache;
 
     protected AbstractPipeService(ApplicationProperties applicationProperties,
                                   CounterService counterService,
-                                  KafkaSender<String, String> kafkaSender,
-                                  KafkaReceiver<String, String> kafkaReceiver
+                                  KafkaSenderPool<V> kafkaSenderPool,
+                                  KafkaReceiver<String, V> kafkaReceiver,
+                                  RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, counterService);
-        this.kafkaSender = kafkaSender;
+        super(applicationProperties, counterService, retryTopicRouter);
+        this.kafkaSenderPool = kafkaSenderPool;
         this.kafkaReceiver = kafkaReceiver;
         this.topicInput = applicationProperties.getTopicA();
         this.topicOutput = applicationProperties.getTopicB();
         this.delay = applicationProperties.getProcessing().getWaitTime();
         this.retry = applicationProperties.getConsumer().getRetrySpecification().toRetry();
-        this.scheduler = applicationProperties.getProcessing().buildScheduler();
+        final InstrumentedScheduler instrumentedScheduler = applicationProperties.getProcessing().buildScheduler();
+        this.scheduler = instrumentedScheduler;
+        this.schedulerMetrics = instrumentedScheduler.getMetrics();
+        // a skipped duplicate is committed, while records received before it may still be in process or send
+        this.trackOffsets |= applicationProperties.getProcessing().getDedup().isEnabled();
+        LOGGER.info("{}: commitStrategy={}, senders={}", getClass().getSimpleName(), commitStrategy, kafkaSenderPool.size());
     }
 
+    /**
+     * The dedup cache is created here and not in the constructor, because every pipe bean is instantiated, but
+     * only the started one needs the cache - and only its cache may be published by the gauges.
+     */
+    @Override
+    protected void monitor() {
+        counterService.monitorScheduler(schedulerMetrics);
+        if (applicationProperties.getProcessing().getDedup().isEnabled()) {
+            this.dedupCache = applicationProperties.getProcessing().getDedup().toDedupCache();
+            counterService.monitorDedupCache(dedupCache);
+        }
+    }
+
+    @Override
     protected String getTopicInput() {
         return topicInput;
     }
@@ -58,43 +95,187 @@ public abstract class AbstractPipeService extends AbstractService {
     /**
      * The pipeline task, that may take some time (defined by APPLICATION_PROCESSING_TIME) for processing an input.
      */
-    protected Mono<KafkaSenderRecord<String, String, KafkaReceiverRecord<String, String>>> process(KafkaReceiverRecord<String, String> inputRecord) {
-        return Mono.delay(this.delay)
-            .map(ignored -> coreProcess(inputRecord.value()))
-            .doOnError(throwable -> {
-                LOGGER.error("Error processing record from topic \"{}\" with key={}",
-                    inputRecord.topicPartition().topic(), inputRecord.key(), throwable);
-                inputRecord.nacknowledge(throwable);
+    protected Mono<KafkaSenderRecord<String, V, KafkaReceiverRecord<String, V>>> process(KafkaReceiverRecord<String, V> inputRecord) {
+        return acquirePermit()
+            .then(Mono.delay(this.delay)
+                .doOnSubscribe(ignored -> this.logProcessStarted(inputRecord)))
+            .map(ignored -> {
+                simulateFailure();
+                return coreProcess(inputRecord.value());
             })
             .doOnNext(ignored -> this.logProcessed(inputRecord))
             // pass KafkaReceiverRecord as correlation metadata to KafkaSenderRecord to be able to commit later
-            .map(outputValue -> KafkaSenderRecord.create(getTopicOutput(), inputRecord.key(), outputValue, inputRecord));
+            .map(outputValue -> KafkaSenderRecord.create(kafkaSenderPool.assignPartition(buildOutputRecord(inputRecord, outputValue)), inputRecord))
+            // route to a retry topic (empty result) or nacknowledge (error)
+            .onErrorResume(throwable -> handleProcessingError(inputRecord, throwable, kafkaSenderPool.sender(0)));
+    }
+
+    /**
+     * Build the output record. The creation time header of the input record is passed through, so the
+     * end-to-end latency can be measured by the consumer of the output topic.
+     */
+    protected ProducerRecord<String, V> buildOutputRecord(KafkaReceiverRecord<String, V> inputRecord, V outputValue) {
+        final ProducerRecord<String, V> producerRecord = new ProducerRecord<>(getTopicOutput(), inputRecord.key(), outputValue);
+        final Header createdAt = inputRecord.consumerRecord().headers().lastHeader(HEADER_CREATED_AT);
+        if (createdAt != null) {
+            producerRecord.headers().add(createdAt);
+        }
+        return producerRecord;
+    }
+
+    /**
+     * The pipeline task for a batch of records. The additional processing time (APPLICATION_PROCESSING_TIME) is
+     * spent once per batch and not once per record. The rate limit is applied per record.
+     */
+    protected Mono<List<KafkaSenderRecord<String, V, KafkaReceiverRecord<String, V>>>> processBatch(List<KafkaReceiverRecord<String, V>> inputRecords) {
+        return acquirePermits(inputRecords.size())
+            .then(Mono.delay(this.delay))
+            .map(ignored -> {
+                simulateFailure();
+                final List<V> inputValues = new ArrayList<>(inputRecords.size());
+                for (KafkaReceiverRecord<String, V> inputRecord : inputRecords) {
+                    inputValues.add(inputRecord.value());
+                }
+                final List<V> outputValues = coreProcessBatch(inputValues);
+                final List<KafkaSenderRecord<String, V, KafkaReceiverRecord<String, V>>> ret = new ArrayList<>(inputRecords.size());
+                for (int i = 0; i < inputRecords.size(); i++) {
+                    final KafkaReceiverRecord<String, V> inputRecord = inputRecords.get(i);
+                    this.logProcessed(inputRecord);
+                    ret.add(KafkaSenderRecord.create(kafkaSenderPool.assignPartition(buildOutputRecord(inputRecord, outputValues.get(i))), inputRecord));
+                }
+                return ret;
+            })
+            .onErrorResume(throwable -> {
+                final KafkaReceiverRecord<String, V> firstRecord = inputRecords.get(0);
+                LOGGER.error("Error processing batch of {} records from topic \"{}\" starting with key={}",
+                    inputRecords.size(), firstRecord.topicPartition().topic(), firstRecord.key(), throwable);
+                if (retryTopicRouter.isEnabled()) {
+                    // route every record of the batch - nothing is left to be sent
+                    return Flux.fromIterable(inputRecords)
+                        .concatMap(inputRecord -> handleProcessingError(inputRecord, throwable, kafkaSenderPool.sender(0)))
+                        .then(Mono.just(Collections.emptyList()));
+                }
+                inputRecords.forEach(inputRecord -> nacknowledge(inputRecord, throwable));
+                return Mono.error(throwable);
+            });
     }
 
     /**
      * The core pipeline task, without the event metadata (message key) and without additional waiting time.
-     * Here a simple convert toUpperCase.
      */
-    protected String coreProcess(String input) {
-        return input.toUpperCase(Locale.ROOT);
+    protected abstract V coreProcess(V input);
+
+    /**
+     * The hash of key and value of a record, that identifies duplicates in the dedup cache.
+     */
+    protected abstract long dedupHash(String key, V value);
+
+    /**
+     * The core pipeline task for a batch of values. The result list has the same order as the input list.
+     */
+    protected List<V> coreProcessBatch(List<V> inputs) {
+        final List<V> ret = new ArrayList<>(inputs.size());
+        for (V input : inputs) {
+            ret.add(coreProcess(input));
+        }
+        return ret;
     }
 
-    protected Flux<KafkaReceiverRecord<String, String>> receive() {
+    protected Flux<KafkaReceiverRecord<String, V>> receive() {
         final RetryBackoffSpec retryBackoffSpec = applicationProperties.getConsumer().getRetrySpecification().toRetry();
         return kafkaReceiver.receiveManual(Collections.singleton(topicInput))
             // kafka consume retries
             .retryWhen(retryBackoffSpec)
-            .doOnNext(this::logReceived);
+            .doOnNext(this::logReceived)
+            .doOnNext(this::track)
+            .filter(this::isNotDuplicate)
+            .transform(stage(STAGE_RECEIVE));
+    }
+
+    /**
+     * Check, whether the record was already sent. A duplicate is skipped and completed as a no-op record - it is
+     * committed in offset order, when the records received before it are committed.
+     * Records, that are processed at the same time, are not detected as duplicates, because a record is remembered
+     * after it was sent - this way a record, that was received again after an error, is not lost.
+     */
+    protected boolean isNotDuplicate(KafkaReceiverRecord<String, V> receiverRecord) {
+        if (dedupCache == null
+            || !dedupCache.contains(dedupHash(receiverRecord.key(), receiverRecord.value()), System.currentTimeMillis())) {
+            return true;
+        }
+        counterService.logDuplicate();
+        commitInOffsetOrder(receiverRecord);
+        return false;
     }
 
-    protected Mono<KafkaSenderResult<KafkaReceiverRecord<String, String>>> send(KafkaSenderRecord<String, String, KafkaReceiverRecord<String, String>> recordToSend) {
-        return kafkaSender.send(recordToSend)
-            .doOnNext(this::logSent);
+    private void rememberSent(KafkaSenderResult<KafkaReceiverRecord<String, V>> senderResult) {
+        if (dedupCache != null) {
+            final KafkaReceiverRecord<String, V> receiverRecord = senderResult.correlationMetadata();
+            dedupCache.add(dedupHash(receiverRecord.key(), receiverRecord.value()), System.currentTimeMillis());
+        }
     }
 
-    protected Mono<Void> manualCommit(KafkaSenderResult<KafkaReceiverRecord<String, String>> senderResult) {
+    /**
+     * Consume the retry topics of the input topic. Each retry topic partition waits, until its next record is due.
+     * A record, that fails again, is routed to the next tier by {@link #process(KafkaReceiverRecord)}.
+     */
+    @Override
+    protected void startRetryLoop() {
+
+        final List<String> retryTopics = retryTopicRouter.retryTopics(topicInput);
+        LOGGER.info("{}: Start reading from retry topics {}", getClass().getSimpleName(), retryTopics);
+        retrySubscription = kafkaReceiver.receiveManual(retryTopics)
+            .retryWhen(applicationProperties.getConsumer().getRetrySpecification().toRetry())
+            .doOnNext(this::logRetryReceived)
+            .groupBy(KafkaReceiverRecord::topicPartition)
+            .flatMap(partitionFlux -> partitionFlux
+                .concatMap(receiverRecord -> retryTopicRouter.awaitDue(receiverRecord)
+                    .then(process(receiverRecord))
+                    .flatMap(this::send)
+                    .flatMap(this::manualCommit)))
+            .doOnError(e -> counterService.logError(getClass().getSimpleName() + " retry loop failed!", e))
+            // subscription retry loop - restart on unhandled errors like the main loop
+            .subscribe(null, this::restartRetryLoopOnError);
+    }
+
+    protected Mono<KafkaSenderResult<KafkaReceiverRecord<String, V>>> send(KafkaSenderRecord<String, V, KafkaReceiverRecord<String, V>> recordToSend) {
+        return kafkaSenderPool.send(recordToSend)
+            .doOnNext(this::logSent)
+            .doOnNext(this::rememberSent);
+    }
+
+    /**
+     * Send a batch of records with one call to the sender - or one call per sender of the pool.
+     *
+     * @return the sender results of the whole batch, after all records were sent
+     */
+    protected Mono<List<KafkaSenderResult<KafkaReceiverRecord<String, V>>>> sendBatch(List<KafkaSenderRecord<String, V, KafkaReceiverRecord<String, V>>> recordsToSend) {
+        return kafkaSenderPool.send(Flux.fromIterable(recordsToSend))
+            .doOnNext(this::logSent)
+            .doOnNext(this::rememberSent)
+            .collectList();
+    }
+
+    protected Mono<Void> manualCommit(KafkaSenderResult<KafkaReceiverRecord<String, V>> senderResult) {
         return Mono.fromRunnable(() -> senderResult.correlationMetadata().acknowledge()) // commit vs. acknowledge
             .doOnSuccess(unused -> logCommited(senderResult.correlationMetadata()))
             .doOnError(this::logCommitError).then();
     }
+
+    /**
+     * Commit the sent records as defined by the commit strategy - in strict offset order per partition.
+     */
+    protected Flux<Void> commitSent(Flux<KafkaSenderResult<KafkaReceiverRecord<String, V>>> sent) {
+        return commit(sent, senderResult -> commitInOffsetOrder(senderResult.correlationMetadata()));
+    }
+
+    /**
+     * The sender results of a batch of one partition in offset order. Atleon tracks every received record, so every
+     * record of a batch is acknowledged in offset order.
+     */
+    protected List<KafkaSenderResult<KafkaReceiverRecord<String, V>>> inOffsetOrder(List<KafkaSenderResult<KafkaReceiverRecord<String, V>>> senderResults) {
+        final List<KafkaSenderResult<KafkaReceiverRecord<String, V>>> ret = new ArrayList<>(senderResults);
+        ret.sort(Comparator.comparingLong(senderResult -> senderResult.correlationMetadata().consumerRecord().offset()));
+        return ret;
+    }
 }
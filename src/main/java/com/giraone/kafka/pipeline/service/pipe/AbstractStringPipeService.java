@@ -0,0 +1,39 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+
+import java.util.Locale;
+
+/**
+ * Base of the pipes, that decode the values into Strings.
+ */
+public abstract class AbstractStringPipeService extends AbstractPipeService<String> {
+
+    protected AbstractStringPipeService(ApplicationProperties applicationProperties,
+                                        CounterService counterService,
+                                        KafkaSenderPool<String> kafkaSenderPool,
+                                        KafkaReceiver<String, String> kafkaReceiver,
+                                        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
+    }
+
+    /**
+     * The core pipeline task, without the event metadata (message key) and without additional waiting time.
+     * Here a simple convert toUpperCase.
+     */
+    @Override
+    protected String coreProcess(String input) {
+        return input.toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    protected long dedupHash(String key, String value) {
+        return DedupCache.hash(key, value);
+    }
+}
@@ -0,0 +1,67 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Service
+public class PipeBatchedService extends AbstractStringPipeService {
+
+    private final int batchMaxSize;
+    private final Duration batchMaxWait;
+
+    public PipeBatchedService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSenderPool<String> kafkaSenderPool,
+        KafkaReceiver<String, String> kafkaReceiver,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
+        this.batchMaxSize = applicationProperties.getProcessing().getBatchMaxSize();
+        this.batchMaxWait = applicationProperties.getProcessing().getBatchMaxWait();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {} with batchMaxSize={} and batchMaxWait={}", this.getClass().getSimpleName(),
+            batchMaxSize, batchMaxWait);
+        subscription = this.receive()
+            // group by partition to guarantee ordering
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux ->
+                partitionFlux
+                    // collect records of one partition in micro batches
+                    .bufferTimeout(batchMaxSize, batchMaxWait)
+                    .publishOn(scheduler)
+                    // perform the pipe task on the whole batch
+                    .concatMap(this::processBatch)
+                    // send the batch result to target topic
+                    .concatMap(this::sendBatch)
+                    // commit the records, when all records of the batch are sent
+                    .concatMapIterable(this::inOffsetOrder)
+                    .transform(this::commitSent)
+            )
+            // log any error
+            .doOnError(e -> counterService.logError("PipeBatchedService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+    }
+}
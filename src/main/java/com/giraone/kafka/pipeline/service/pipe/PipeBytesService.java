@@ -0,0 +1,103 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pipe working on the raw value bytes. The value is neither decoded into a String nor encoded again, and the
+ * upper case transformation is done in place on the consumed byte array. So there is only the copy of the value
+ * from the fetch buffer into the byte array and no String garbage per record.
+ * <p>
+ * Only ASCII letters are converted to upper case. Other bytes - including all bytes of multibyte UTF-8 characters -
+ * are left untouched, so the result is still valid UTF-8, but non-ASCII letters are not converted.
+ * <p>
+ * The bean and its byte array sender and receiver are only created in this mode.
+ */
+@Service
+@ConditionalOnProperty(name = "application.mode", havingValue = "PipeBytes")
+public class PipeBytesService extends AbstractPipeService<byte[]> {
+
+    public PipeBytesService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSenderPool<byte[]> bytesKafkaSenderPool,
+        KafkaReceiver<String, byte[]> bytesKafkaReceiver,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, counterService, bytesKafkaSenderPool, bytesKafkaReceiver, retryTopicRouter);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {}", this.getClass().getSimpleName());
+        subscription = this.receive()
+            // group by partition to guarantee ordering
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux ->
+                partitionFlux.publishOn(scheduler)
+                    // perform the pipe task
+                    .concatMap(this::process)
+                    // send result to target topic
+                    .concatMap(this::send)
+                    // commit the processed records in strict order as defined by the commit strategy
+                    .transform(this::commitSent)
+            )
+            // log any error
+            .doOnError(e -> counterService.logError("PipeBytesService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+    }
+
+    /**
+     * The core pipeline task: convert the ASCII letters to upper case - in place.
+     */
+    @Override
+    protected byte[] coreProcess(byte[] input) {
+        if (input != null) {
+            toUpperCaseAscii(input, 0, input.length);
+        }
+        return input;
+    }
+
+    @Override
+    protected long dedupHash(String key, byte[] value) {
+        return DedupCache.hash(key, value);
+    }
+
+    /**
+     * Convert the ASCII letters a-z of a byte range to upper case in place. The loop has no branches and no
+     * method calls, so the JIT compiler can vectorize it (SIMD). Bytes of multibyte UTF-8 characters are negative
+     * and never in the range of 'a' to 'z', so they are not changed.
+     *
+     * @param value  the bytes to convert
+     * @param offset start of the range
+     * @param length length of the range
+     */
+    public static void toUpperCaseAscii(byte[] value, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final int b = value[i];
+            // sign bit is set, if and only if 'a' <= b <= 'z'
+            final int isLower = (('a' - 1 - b) & (b - ('z' + 1))) >>> 31;
+            value[i] = (byte) (b - (isLower << 5));
+        }
+    }
+}
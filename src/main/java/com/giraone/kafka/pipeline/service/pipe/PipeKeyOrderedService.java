@@ -0,0 +1,80 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pipe with parallel lanes inside a partition. The records of a partition are distributed by the hash of their key
+ * to a configurable number of lanes, that are processed in parallel. Within a key the order is kept. The commits are
+ * done in strict offset order per partition using a contiguous-offset watermark.
+ */
+@Service
+public class PipeKeyOrderedService extends AbstractStringPipeService {
+
+    private final int lanesPerPartition;
+
+    public PipeKeyOrderedService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSenderPool<String> kafkaSenderPool,
+        KafkaReceiver<String, String> kafkaReceiver,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
+        this.lanesPerPartition = applicationProperties.getProcessing().getLanesPerPartition();
+        // the lanes complete out of order
+        this.trackOffsets = true;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {} with lanesPerPartition={}", this.getClass().getSimpleName(), lanesPerPartition);
+        subscription = this.receive()
+            // group by partition to commit in offset order per partition
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux -> partitionFlux
+                // the records were tracked in offset order on receive, before they are distributed to the lanes
+                // group by key hash to guarantee ordering per key
+                .groupBy(this::lane)
+                .flatMap(laneFlux ->
+                    laneFlux.publishOn(scheduler)
+                        // perform the pipe task
+                        .concatMap(this::process)
+                        // send result to target topic
+                        .concatMap(this::send),
+                    lanesPerPartition
+                )
+                // commit all records up to the contiguous-offset watermark in strict offset order
+                .transform(this::commitSent)
+            )
+            // log any error
+            .doOnError(e -> counterService.logError("PipeKeyOrderedService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+    }
+
+    private int lane(KafkaReceiverRecord<String, String> receiverRecord) {
+        final String key = receiverRecord.key();
+        // records without key have no order, so they are distributed round-robin
+        return key != null
+            ? Math.floorMod(key.hashCode(), lanesPerPartition)
+            : (int) (receiverRecord.consumerRecord().offset() % lanesPerPartition);
+    }
+}
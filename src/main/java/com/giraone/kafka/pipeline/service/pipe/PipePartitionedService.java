@@ -2,20 +2,22 @@ package com.giraone.kafka.pipeline.service.pipe;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
 import io.atleon.kafka.KafkaReceiver;
-import io.atleon.kafka.KafkaSender;
 import org.springframework.stereotype.Service;
 
 @Service
-public class PipePartitionedService extends AbstractPipeService {
+public class PipePartitionedService extends AbstractStringPipeService {
 
     public PipePartitionedService(
         ApplicationProperties applicationProperties,
         CounterService counterService,
-        KafkaSender<String, String> kafkaSender,
-        KafkaReceiver<String, String> kafkaReceiver
+        KafkaSenderPool<String> kafkaSenderPool,
+        KafkaReceiver<String, String> kafkaReceiver,
+        RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, counterService, kafkaSender, kafkaReceiver);
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
     }
 
     //------------------------------------------------------------------------------------------------------------------
@@ -29,12 +31,15 @@ public class PipePartitionedService extends AbstractPipeService {
             .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
             .flatMap(partitionFlux ->
                 partitionFlux.publishOn(scheduler)
+                    .transform(stage(STAGE_PUBLISH_ON, partitionFlux.key()))
                     // perform the pipe task
                     .flatMapSequential(this::process)
+                    .transform(stage(STAGE_PROCESS, partitionFlux.key()))
                     // send result to target topic
                     .concatMap(this::send)
-                    // commit every processed record in strict order
-                    .concatMap(this::manualCommit)
+                    .transform(stage(STAGE_SEND, partitionFlux.key()))
+                    // commit the processed records in strict order as defined by the commit strategy
+                    .transform(this::commitSent)
             )
             // log any error
             .doOnError(e -> counterService.logError("PipePartitionedService failed!", e))
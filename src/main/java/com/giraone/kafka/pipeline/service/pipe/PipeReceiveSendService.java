@@ -2,22 +2,24 @@ package com.giraone.kafka.pipeline.service.pipe;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
 import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
 import io.atleon.kafka.KafkaReceiver;
-import io.atleon.kafka.KafkaSender;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 @Service
-public class PipeReceiveSendService extends AbstractPipeService {
+public class PipeReceiveSendService extends AbstractStringPipeService {
 
     public PipeReceiveSendService(
         ApplicationProperties applicationProperties,
         CounterService counterService,
-        KafkaSender<String, String> kafkaSender,
-        KafkaReceiver<String, String> kafkaReceiver
+        KafkaSenderPool<String> kafkaSenderPool,
+        KafkaReceiver<String, String> kafkaReceiver,
+        RetryTopicRouter retryTopicRouter
     ) {
-        super(applicationProperties, counterService, kafkaSender, kafkaReceiver);
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
     }
 
     //------------------------------------------------------------------------------------------------------------------
@@ -29,12 +31,15 @@ public class PipeReceiveSendService extends AbstractPipeService {
         subscription = this.receive()
             // perform processing on another scheduler
             .publishOn(scheduler)
+            .transform(stage(STAGE_PUBLISH_ON))
             // perform the pipe task
             .concatMap(this::process)
+            .transform(stage(STAGE_PROCESS))
             // send result to target topic
             .concatMap(this::send)
-            // commit every processed record in strict order
-            .concatMap(this::manualCommit)
+            .transform(stage(STAGE_SEND))
+            // commit the processed records in strict order as defined by the commit strategy
+            .transform(this::commitSent)
             // log any error
             .doOnError(e -> counterService.logError("PipeReceiveSendService failed!", e))
             // subscription main loop - restart on unhandled errors
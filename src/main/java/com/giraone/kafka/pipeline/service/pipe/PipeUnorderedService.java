@@ -0,0 +1,64 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pipe for stateless processing, where the order does not matter. The records of a partition are processed and sent
+ * with high concurrency and complete out of order. Commits are done in strict offset order up to the lowest offset,
+ * that is not yet finished (contiguous-offset watermark).
+ */
+@Service
+public class PipeUnorderedService extends AbstractStringPipeService {
+
+    private final int concurrency;
+
+    public PipeUnorderedService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSenderPool<String> kafkaSenderPool,
+        KafkaReceiver<String, String> kafkaReceiver,
+        RetryTopicRouter retryTopicRouter
+    ) {
+        super(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, retryTopicRouter);
+        this.concurrency = applicationProperties.getProcessing().getUnorderedConcurrency();
+        // the records complete out of order
+        this.trackOffsets = true;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("Assembly of {} with concurrency={}", this.getClass().getSimpleName(), concurrency);
+        subscription = this.receive()
+            // group by partition to commit in offset order per partition
+            .groupBy(receiverRecord -> receiverRecord.consumerRecord().partition())
+            .flatMap(partitionFlux -> partitionFlux
+                // the records were tracked in offset order on receive, before they are processed out of order
+                .publishOn(scheduler)
+                // perform the pipe task and send the result to target topic - both out of order
+                .flatMap(receiverRecord -> process(receiverRecord).flatMap(this::send), concurrency)
+                // commit all records up to the contiguous-offset watermark in strict offset order
+                .transform(this::commitSent)
+            )
+            // log any error
+            .doOnError(e -> counterService.logError("PipeUnorderedService failed!", e))
+            // subscription main loop - restart on unhandled errors
+            .subscribe(null, this::restartMainLoopOnError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    @Override
+    @EventListener
+    public void onApplicationCloseEvent(ContextClosedEvent contextClosedEvent) {
+        super.onApplicationCloseEvent(contextClosedEvent);
+    }
+}
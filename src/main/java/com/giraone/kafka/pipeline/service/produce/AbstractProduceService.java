@@ -1,11 +1,15 @@
 package com.giraone.kafka.pipeline.service.produce;
 
 import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.PacingProperties;
+import com.giraone.kafka.pipeline.config.properties.WorkloadProperties;
 import com.giraone.kafka.pipeline.service.AbstractService;
 import com.giraone.kafka.pipeline.service.CounterService;
 import io.atleon.kafka.KafkaSender;
 import io.atleon.kafka.KafkaSenderRecord;
 import io.atleon.kafka.KafkaSenderResult;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
@@ -14,6 +18,7 @@ import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
 import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class AbstractProduceService extends AbstractService {
@@ -26,6 +31,9 @@ public abstract class AbstractProduceService extends AbstractService {
     protected final String topicOutput;
     protected final int maxNumberOfEvents;
     protected final Duration interval;
+    protected final float duplicatePercentage;
+    protected final RatePacer ratePacer; // null, if no target rate is defined
+    protected final WorkloadGenerator workloadGenerator; // null, if no workload profile is used
 
     protected AbstractProduceService(
         ApplicationProperties applicationProperties,
@@ -37,42 +45,158 @@ public abstract class AbstractProduceService extends AbstractService {
         this.maxNumberOfEvents = applicationProperties.getProducerVariables().getMaxNumberOfEvents();
         this.interval = applicationProperties.getProducerVariables().getInterval();
         this.topicOutput = applicationProperties.getTopicA();
-        LOGGER.info("If activated, {} will produce {} events to topic \"{}\" using an interval of {} ms.",
-            getClass().getSimpleName(), maxNumberOfEvents, topicOutput, interval.toMillis());
+        this.duplicatePercentage = applicationProperties.getProducerVariables().getDuplicatePercentage();
+        final WorkloadProperties workloadProperties = applicationProperties.getProducerVariables().getWorkload();
+        if (workloadProperties.isEnabled()) {
+            this.workloadGenerator = workloadProperties.toWorkloadGenerator();
+            LOGGER.info("Workload profile {} with {} bytes of pre-generated values.", workloadProperties, workloadGenerator.poolBytes());
+        } else {
+            this.workloadGenerator = null;
+        }
+        final PacingProperties pacingProperties = applicationProperties.getProducerVariables().getPacing();
+        if (pacingProperties.isEnabled()) {
+            this.ratePacer = pacingProperties.toRatePacer();
+            LOGGER.info("If activated, {} will produce {} events to topic \"{}\" using {}.",
+                getClass().getSimpleName(), maxNumberOfEvents, topicOutput, ratePacer);
+        } else {
+            this.ratePacer = null;
+            LOGGER.info("If activated, {} will produce {} events to topic \"{}\" using an interval of {} ms.",
+                getClass().getSimpleName(), maxNumberOfEvents, topicOutput, interval.toMillis());
+        }
+    }
+
+    @Override
+    protected void monitor() {
+        if (ratePacer != null) {
+            counterService.monitorRatePacer(ratePacer);
+        }
     }
 
     protected Flux<Tuple2<String, String>> source(Duration delay, int limit) {
-        return sourceHot(delay, limit);
+        return ratePacer != null ? sourcePaced(limit) : sourceHot(delay, limit);
     }
 
     protected Flux<Tuple2<String, String>> sourceHot(Duration delay, int limit) {
 
         final AtomicInteger counter = new AtomicInteger((int) (System.currentTimeMillis() / 1000L));
-        return Flux.range(0, limit)
-            .delayElements(delay, schedulerForGenerateNumbers)
+        final DuplicateInjector duplicateInjector = new DuplicateInjector(duplicatePercentage);
+        final Flux<Integer> range = Flux.range(0, limit);
+        // no timer per event, when there is no interval
+        return (delay.isZero() ? range : range.delayElements(delay, schedulerForGenerateNumbers))
             .map(ignored -> counter.getAndIncrement())
-            .map(nr -> Tuples.of(Long.toString(nr), buildContent()))
+            .map(nr -> duplicateInjector.next(nextTuple(nr)))
             .doOnNext(t -> counterService.logRateProduced());
     }
 
     protected Flux<Tuple2<String, String>> sourceCold(Duration delay, int limit) {
 
         final AtomicInteger counter = new AtomicInteger((int) (System.currentTimeMillis() / 1000L));
+        final DuplicateInjector duplicateInjector = new DuplicateInjector(duplicatePercentage);
         return Flux.interval(delay, schedulerForGenerateNumbers)
             .take(limit)
             .map(ignored -> counter.getAndIncrement())
-            .map(nr -> Tuples.of(Long.toString(nr), buildContent()))
+            .map(nr -> duplicateInjector.next(nextTuple(nr)))
             .doOnNext(t -> counterService.logRateProduced());
     }
 
+    /**
+     * Source paced by the target rate. On each tick of the pacer all due events are emitted at once, so the
+     * rate is not limited to one event per timer tick.
+     */
+    protected Flux<Tuple2<String, String>> sourcePaced(int limit) {
+
+        final AtomicInteger counter = new AtomicInteger((int) (System.currentTimeMillis() / 1000L));
+        final DuplicateInjector duplicateInjector = new DuplicateInjector(duplicatePercentage);
+        return ratePacer.ticks(schedulerForGenerateNumbers)
+            .concatMap(count -> Flux.range(0, count))
+            .take(limit)
+            .map(ignored -> counter.getAndIncrement())
+            .map(nr -> duplicateInjector.next(nextTuple(nr)))
+            .doOnNext(t -> counterService.logRateProduced());
+    }
+
+    /**
+     * Wait until the intended send time of an event. Events, that are already late, are not delayed. Used by the
+     * modes, that send on a schedule (ProduceBenchmark, ProduceReplay) - static, because ProduceReplay sends byte
+     * buffers and is no AbstractProduceService.
+     *
+     * @param intendedNanos the intended send time (System.nanoTime())
+     * @param scheduler     the scheduler of the delay
+     * @return the intended send time, emitted when it is reached
+     */
+    protected static Mono<Long> awaitIntendedTime(long intendedNanos, Scheduler scheduler) {
+        return Mono.defer(() -> {
+            final long waitNanos = intendedNanos - System.nanoTime();
+            return waitNanos > 0L
+                ? Mono.delay(Duration.ofNanos(waitNanos), scheduler).thenReturn(intendedNanos)
+                : Mono.just(intendedNanos);
+        });
+    }
+
+    /**
+     * Build the record to be sent. The record is stamped with its creation time to measure end-to-end latencies.
+     */
+    protected ProducerRecord<String, String> buildProducerRecord(String key, String value) {
+
+        final ProducerRecord<String, String> producerRecord = new ProducerRecord<>(topicOutput, key, value);
+        producerRecord.headers().add(new RecordHeader(HEADER_CREATED_AT, createdAtHeaderValue(System.currentTimeMillis())));
+        return producerRecord;
+    }
+
     protected Mono<KafkaSenderResult<String>> send(KafkaSenderRecord<String, String, String> senderRecord) {
 
-        return kafkaSender.send(senderRecord)
-            .doOnNext(senderResult ->
-                counterService.logRateSent(senderResult.recordMetadata().get().partition(), senderResult.recordMetadata().get().offset()));
+        return send(kafkaSender, senderRecord);
+    }
+
+    protected Mono<KafkaSenderResult<String>> send(KafkaSender<String, String> sender, KafkaSenderRecord<String, String, String> senderRecord) {
+
+        return sender.send(senderRecord)
+            .doOnNext(senderResult -> {
+                counterService.logRateSent(senderResult.recordMetadata().get().partition(), senderResult.recordMetadata().get().offset());
+                if (ratePacer != null) {
+                    ratePacer.recordSent();
+                }
+            });
+    }
+
+    /**
+     * Key and value of the next event - as defined by the workload profile.
+     */
+    protected Tuple2<String, String> nextTuple(long nr) {
+        return workloadGenerator != null
+            ? Tuples.of(workloadGenerator.nextKey(nr), workloadGenerator.nextValue())
+            : Tuples.of(Long.toString(nr), buildContent());
     }
 
     private String buildContent() {
         return String.valueOf((char) (65 + System.currentTimeMillis() % 26)).repeat(10);
     }
+
+    /**
+     * Re-emits already produced tuples (same key, same content) for the given percentage of calls. The duplicate is
+     * taken randomly from the most recently produced tuples. Not thread safe - used on the single generator thread.
+     */
+    static class DuplicateInjector {
+
+        private static final int RECENT_SIZE = 1024;
+
+        private final float percentage;
+        @SuppressWarnings("unchecked")
+        private final Tuple2<String, String>[] recent = new Tuple2[RECENT_SIZE];
+        private long count;
+
+        DuplicateInjector(float percentage) {
+            this.percentage = percentage;
+        }
+
+        Tuple2<String, String> next(Tuple2<String, String> fresh) {
+            if (percentage > 0.0F && count > 0L && ThreadLocalRandom.current().nextFloat() * 100.0F < percentage) {
+                final int available = (int) Math.min(count, RECENT_SIZE);
+                return recent[(int) ((count - 1 - ThreadLocalRandom.current().nextInt(available)) % RECENT_SIZE)];
+            }
+            recent[(int) (count % RECENT_SIZE)] = fresh;
+            count++;
+            return fresh;
+        }
+    }
 }
\ No newline at end of file
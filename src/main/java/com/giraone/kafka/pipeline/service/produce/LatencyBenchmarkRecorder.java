@@ -0,0 +1,144 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.util.Locale;
+
+/**
+ * Records the send latencies of a benchmark twice:
+ * <ul>
+ *     <li><b>corrected</b>: from the intended send time until the acknowledgement. When the sender stalls, the
+ *     waiting time of the events, that could not be sent in time, is included. So the result is corrected for
+ *     coordinated omission.</li>
+ *     <li><b>uncorrected</b>: from the actual send time until the acknowledgement, as a naive benchmark measures it.</li>
+ * </ul>
+ * The latencies are recorded in nanoseconds with HdrHistogram recorders, which are safe for concurrent recording.
+ * Interval histograms can be written to an HdrHistogram log (tagged "corrected" and "uncorrected"), that can be
+ * analyzed with the HdrHistogram tools, e.g. the HistogramLogAnalyzer.
+ */
+public class LatencyBenchmarkRecorder implements Closeable {
+
+    public static final String TAG_CORRECTED = "corrected";
+    public static final String TAG_UNCORRECTED = "uncorrected";
+
+    private static final double[] SUMMARY_PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+    private final long highestTrackableNanos;
+    private final Recorder correctedRecorder;
+    private final Recorder uncorrectedRecorder;
+    private final Histogram correctedTotal;
+    private final Histogram uncorrectedTotal;
+    private final HistogramLogWriter logWriter; // null, if no log is written
+
+    private Histogram correctedInterval;
+    private Histogram uncorrectedInterval;
+
+    /**
+     * @param highestTrackableNanos highest latency, that can be recorded - higher latencies are recorded as this value
+     * @param significantDigits     number of significant decimal digits (1 - 5)
+     * @param histogramLog          file of the histogram log - null or empty for no log
+     * @param startMillis           start time of the benchmark (epoch millis) - the base time of the log
+     */
+    public LatencyBenchmarkRecorder(long highestTrackableNanos, int significantDigits, String histogramLog, long startMillis) {
+
+        this.highestTrackableNanos = highestTrackableNanos;
+        this.correctedRecorder = new Recorder(highestTrackableNanos, significantDigits);
+        this.uncorrectedRecorder = new Recorder(highestTrackableNanos, significantDigits);
+        this.correctedTotal = new Histogram(highestTrackableNanos, significantDigits);
+        this.uncorrectedTotal = new Histogram(highestTrackableNanos, significantDigits);
+        if (histogramLog != null && !histogramLog.isEmpty()) {
+            try {
+                this.logWriter = new HistogramLogWriter(histogramLog);
+            } catch (FileNotFoundException fileNotFoundException) {
+                throw new IllegalArgumentException("Cannot write histogram log " + histogramLog, fileNotFoundException);
+            }
+            logWriter.outputComment("Send latencies in nanoseconds - tags: " + TAG_CORRECTED + " (from intended send time), "
+                + TAG_UNCORRECTED + " (from actual send time)");
+            logWriter.outputLogFormatVersion();
+            logWriter.setBaseTime(startMillis);
+            logWriter.outputStartTime(startMillis);
+            logWriter.outputLegend();
+        } else {
+            this.logWriter = null;
+        }
+    }
+
+    /**
+     * Record the latencies of one acknowledged send.
+     *
+     * @param intendedNanos the time (System.nanoTime), when the event should have been sent
+     * @param sentNanos     the time, when the event was actually sent
+     * @param ackNanos      the time, when the send was acknowledged
+     */
+    public void record(long intendedNanos, long sentNanos, long ackNanos) {
+        correctedRecorder.recordValue(clamp(ackNanos - intendedNanos));
+        uncorrectedRecorder.recordValue(clamp(ackNanos - sentNanos));
+    }
+
+    /**
+     * Take the latencies recorded since the last call, add them to the totals and write them to the log.
+     */
+    public synchronized void writeInterval() {
+        correctedInterval = correctedRecorder.getIntervalHistogram(correctedInterval);
+        uncorrectedInterval = uncorrectedRecorder.getIntervalHistogram(uncorrectedInterval);
+        correctedTotal.add(correctedInterval);
+        uncorrectedTotal.add(uncorrectedInterval);
+        if (logWriter != null) {
+            correctedInterval.setTag(TAG_CORRECTED);
+            uncorrectedInterval.setTag(TAG_UNCORRECTED);
+            logWriter.outputIntervalHistogram(correctedInterval);
+            logWriter.outputIntervalHistogram(uncorrectedInterval);
+        }
+    }
+
+    /**
+     * @return all corrected latencies, that were taken by {@link #writeInterval()}
+     */
+    public synchronized Histogram getCorrectedTotal() {
+        return correctedTotal.copy();
+    }
+
+    /**
+     * @return all uncorrected latencies, that were taken by {@link #writeInterval()}
+     */
+    public synchronized Histogram getUncorrectedTotal() {
+        return uncorrectedTotal.copy();
+    }
+
+    /**
+     * @return the percentiles of the corrected and the uncorrected latencies in milliseconds
+     */
+    public synchronized String summary() {
+        return "corrected: " + summary(correctedTotal) + " - uncorrected: " + summary(uncorrectedTotal);
+    }
+
+    @Override
+    public synchronized void close() {
+        writeInterval();
+        if (logWriter != null) {
+            logWriter.close();
+        }
+    }
+
+    private long clamp(long latencyNanos) {
+        return Math.max(0L, Math.min(highestTrackableNanos, latencyNanos));
+    }
+
+    private static String summary(Histogram histogram) {
+        final StringBuilder ret = new StringBuilder("count=").append(histogram.getTotalCount());
+        for (double percentile : SUMMARY_PERCENTILES) {
+            ret.append(String.format(Locale.ROOT, " p%s=%.3fms", formatPercentile(percentile),
+                histogram.getValueAtPercentile(percentile) / 1_000_000.0));
+        }
+        ret.append(String.format(Locale.ROOT, " max=%.3fms", histogram.getMaxValue() / 1_000_000.0));
+        return ret.toString();
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,88 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.BenchmarkProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator with a fixed intended rate. Event i is intended to be sent at start + i / rate. At most maxInFlight
+ * sends are outstanding - when the limit is reached, the next events are sent late. The latency until the send is
+ * acknowledged is measured from the intended send time, so a stalling sender shows up in the tail latency
+ * (corrected for coordinated omission). For comparison the latency from the actual send time is recorded, too.
+ * Both are written to an HdrHistogram log and summarized in the log.
+ */
+@Service
+public class ProduceBenchmarkService extends AbstractProduceService {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final BenchmarkProperties benchmarkProperties;
+
+    public ProduceBenchmarkService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSender<String, String> kafkaSender
+    ) {
+        super(applicationProperties, counterService, kafkaSender);
+        this.benchmarkProperties = applicationProperties.getProducerVariables().getBenchmark();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("STARTING to produce {} events using ProduceBenchmarkService with {}.", maxNumberOfEvents, benchmarkProperties);
+        final long start = System.currentTimeMillis();
+        final LatencyBenchmarkRecorder recorder = new LatencyBenchmarkRecorder(
+            benchmarkProperties.getHighestTrackableLatency().toNanos(), benchmarkProperties.getSignificantDigits(),
+            benchmarkProperties.getHistogramLog(), start);
+        final Duration reportInterval = benchmarkProperties.getReportInterval();
+        final Disposable reporter = Flux.interval(reportInterval, reportInterval, schedulerForGenerateNumbers)
+            .subscribe(ignored -> {
+                recorder.writeInterval();
+                LOGGER.info("BENCH/**: {}", recorder.summary());
+            });
+        final double nanosPerEvent = NANOS_PER_SECOND / benchmarkProperties.getRate();
+        final AtomicInteger counter = new AtomicInteger((int) (System.currentTimeMillis() / 1000L));
+        final long startNanos = System.nanoTime();
+        Flux.range(0, maxNumberOfEvents)
+            // wait until the intended send time - events, that are already late, are not delayed
+            .concatMap(i -> awaitIntendedTime(startNanos + Math.round(i * nanosPerEvent), schedulerForGenerateNumbers))
+            .flatMap(intendedNanos -> send(intendedNanos, nextTuple(counter.getAndIncrement()), recorder),
+                benchmarkProperties.getMaxInFlight())
+            .doOnError(e -> counterService.logError("ProduceBenchmarkService failed!", e))
+            // the summary is logged after close(), which takes the latencies of the last interval
+            .doFinally(signalType -> {
+                reporter.dispose();
+                recorder.close();
+                if (signalType == SignalType.ON_COMPLETE) {
+                    LOGGER.info("Finished producing {} events to {} after {} seconds: {}",
+                        maxNumberOfEvents, topicOutput, (System.currentTimeMillis() - start) / 1000L, recorder.summary());
+                }
+            })
+            .subscribe(null, counterService::logMainLoopError);
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    private Mono<KafkaSenderResult<String>> send(long intendedNanos, Tuple2<String, String> tuple, LatencyBenchmarkRecorder recorder) {
+        counterService.logRateProduced();
+        final ProducerRecord<String, String> producerRecord = buildProducerRecord(tuple.getT1(), tuple.getT2());
+        final long sentNanos = System.nanoTime();
+        return send(KafkaSenderRecord.create(producerRecord, tuple.getT1()))
+            .doOnNext(senderResult -> recorder.record(intendedNanos, sentNanos, System.nanoTime()));
+    }
+}
@@ -29,7 +29,7 @@ public class ProduceFlatMapService extends AbstractProduceService {
             // A scheduler is needed - a single or parallel(1) is OK
             .publishOn(schedulerForKafkaProduce)
             .flatMap(tuple -> {
-                final ProducerRecord<String, String> producerRecord = new ProducerRecord<>(topicOutput, tuple.getT1(), tuple.getT2());
+                final ProducerRecord<String, String> producerRecord = buildProducerRecord(tuple.getT1(), tuple.getT2());
                 final KafkaSenderRecord<String, String, String> senderRecord = KafkaSenderRecord.create(producerRecord, tuple.getT1());
                 return this.send(senderRecord);
             })
@@ -0,0 +1,60 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Producer using the sender pool (application.producer.senders). The records are grouped by the sender of their
+ * target partition and each group is sent from its own thread, so neither the single producer scheduler nor the
+ * I/O thread of a single Kafka producer limits the throughput.
+ */
+@Service
+public class ProduceMultiSenderService extends AbstractProduceService {
+
+    private final KafkaSenderPool<String> kafkaSenderPool;
+    private Scheduler schedulerForSenderPool; // created, when the service is started
+
+    public ProduceMultiSenderService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSender<String, String> kafkaSender,
+        KafkaSenderPool<String> kafkaSenderPool
+    ) {
+        super(applicationProperties, counterService, kafkaSender);
+        this.kafkaSenderPool = kafkaSenderPool;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("STARTING to produce {} events using ProduceMultiSenderService with {} senders.",
+            maxNumberOfEvents, kafkaSenderPool.size());
+        schedulerForSenderPool = Schedulers.newParallel("senderPoolScheduler", kafkaSenderPool.size());
+        final long start = System.currentTimeMillis();
+        source(interval, maxNumberOfEvents)
+            .map(tuple -> {
+                final ProducerRecord<String, String> producerRecord = kafkaSenderPool.assignPartition(buildProducerRecord(tuple.getT1(), tuple.getT2()));
+                return KafkaSenderRecord.create(producerRecord, tuple.getT1());
+            })
+            // one group per sender - each group is sent from its own thread
+            .groupBy(kafkaSenderPool::senderIndex)
+            .flatMap(senderFlux -> senderFlux
+                .publishOn(schedulerForSenderPool)
+                .flatMap(senderRecord -> this.send(kafkaSenderPool.sender(senderFlux.key()), senderRecord)),
+                kafkaSenderPool.size())
+            .doOnError(e -> counterService.logError("ProduceMultiSenderService failed!", e))
+            .doFinally(signalType -> schedulerForSenderPool.dispose())
+            .subscribe(null, counterService::logMainLoopError, () -> LOGGER.info("Finished producing {} events to {} after {} seconds",
+                maxNumberOfEvents, topicOutput, (System.currentTimeMillis() - start) / 1000L));
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+}
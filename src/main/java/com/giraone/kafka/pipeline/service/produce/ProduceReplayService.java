@@ -0,0 +1,126 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.CaptureProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.capture.CaptureReader;
+import com.giraone.kafka.pipeline.service.capture.CaptureRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the records of a capture file (written by ConsumeCapture) to topicA - with the original keys, values and
+ * headers. The records are sent at the original speed (relative to the first captured timestamp), at a scaled speed
+ * or as fast as possible. The values are read from the memory-mapped file and passed to the sender as buffer views.
+ * The creation time header is replaced, so the end-to-end latencies of the replay are measured.
+ */
+@Service
+public class ProduceReplayService extends AbstractService {
+
+    private static final Scheduler schedulerForReplay = Schedulers.newSingle("replayScheduler", false);
+
+    private final KafkaSender<String, ByteBuffer> kafkaSender;
+    private final String topicOutput;
+    private final CaptureProperties captureProperties;
+
+    public ProduceReplayService(
+        ApplicationProperties applicationProperties,
+        CounterService counterService,
+        KafkaSender<String, ByteBuffer> byteBufferKafkaSender
+    ) {
+        super(applicationProperties, counterService);
+        this.kafkaSender = byteBufferKafkaSender;
+        this.topicOutput = applicationProperties.getTopicA();
+        this.captureProperties = applicationProperties.getCapture();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void start() {
+
+        LOGGER.info("STARTING to replay \"{}\" with speed {} using ProduceReplayService.", captureProperties.getFile(), captureProperties.getSpeed());
+        final long start = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final double speed = captureProperties.getSpeed();
+        final AtomicLong firstTimestamp = new AtomicLong(Long.MIN_VALUE);
+        readCapture(Path.of(captureProperties.getFile()))
+            .subscribeOn(schedulerForReplay)
+            .doOnNext(captureRecord -> counterService.logRateProduced())
+            .concatMap(captureRecord -> {
+                if (speed <= 0.0) {
+                    return Mono.just(captureRecord);
+                }
+                // the timing is relative to the first captured record
+                firstTimestamp.compareAndSet(Long.MIN_VALUE, captureRecord.timestamp());
+                final long intendedNanos = startNanos + Math.round((captureRecord.timestamp() - firstTimestamp.get()) * 1_000_000.0 / speed);
+                return AbstractProduceService.awaitIntendedTime(intendedNanos, schedulerForReplay).thenReturn(captureRecord);
+            })
+            .flatMap(this::send)
+            .doOnError(e -> counterService.logError("ProduceReplayService failed!", e))
+            .subscribe(null, counterService::logMainLoopError, () -> LOGGER.info("Finished replaying \"{}\" to {} after {} seconds",
+                captureProperties.getFile(), topicOutput, (System.currentTimeMillis() - start) / 1000L));
+        counterService.logMainLoopStarted(getClass().getSimpleName());
+    }
+
+    /**
+     * The records of a capture file - read on demand.
+     */
+    protected Flux<CaptureRecord> readCapture(Path file) {
+        return Flux.generate(
+            () -> new CaptureReader(file),
+            (captureReader, sink) -> {
+                try {
+                    final CaptureRecord captureRecord = captureReader.next();
+                    if (captureRecord != null) {
+                        sink.next(captureRecord);
+                    } else {
+                        sink.complete();
+                    }
+                } catch (IOException ioException) {
+                    sink.error(ioException);
+                }
+                return captureReader;
+            },
+            captureReader -> {
+                try {
+                    captureReader.close();
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+            });
+    }
+
+    protected Mono<KafkaSenderResult<String>> send(CaptureRecord captureRecord) {
+        final String key = captureRecord.keyAsString();
+        final List<Header> headers = new ArrayList<>(captureRecord.headers().size() + 1);
+        for (Header header : captureRecord.headers()) {
+            if (!HEADER_CREATED_AT.equals(header.key())) {
+                headers.add(header);
+            }
+        }
+        headers.add(new RecordHeader(HEADER_CREATED_AT, createdAtHeaderValue(System.currentTimeMillis())));
+        final ProducerRecord<String, ByteBuffer> producerRecord = new ProducerRecord<>(topicOutput, null, null, key, captureRecord.value(), headers);
+        return kafkaSender.send(KafkaSenderRecord.create(producerRecord, key))
+            .doOnNext(senderResult ->
+                counterService.logRateSent(senderResult.recordMetadata().get().partition(), senderResult.recordMetadata().get().offset()));
+    }
+}
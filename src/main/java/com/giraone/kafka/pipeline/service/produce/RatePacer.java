@@ -0,0 +1,102 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Paces a producer to a target rate, that may be far above one event per timer tick. On each coarse tick
+ * (e.g. every 10ms) the number of events, that are due since the last tick, is calculated from the target rate
+ * and the real elapsed time. The fractional rest is carried over to the next tick. Because the real time is used,
+ * late or dropped ticks do not reduce the rate (no drift) - the next tick emits the missing events.
+ */
+public class RatePacer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RatePacer.class);
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long REPORT_INTERVAL_NANOS = NANOS_PER_SECOND;
+
+    private final RateProfile rateProfile;
+    private final Duration tick;
+
+    // only changed on the tick thread
+    private boolean started;
+    private long startNanos;
+    private long lastTickNanos;
+    private double due;
+    private long reportStartNanos;
+
+    // the sent events are counted on the sender threads
+    private final LongAdder sent = new LongAdder();
+    private volatile double targetRate;
+    private volatile double achievedRate;
+
+    public RatePacer(RateProfile rateProfile, Duration tick) {
+        this.rateProfile = rateProfile;
+        this.tick = tick;
+    }
+
+    /**
+     * The number of events to be emitted per tick. Ticks without due events are skipped.
+     *
+     * @param scheduler the scheduler of the tick timer
+     */
+    public Flux<Integer> ticks(Scheduler scheduler) {
+        return Flux.interval(tick, scheduler)
+            // a slow downstream drops ticks - the missed events are emitted with the next tick
+            .onBackpressureDrop()
+            .map(ignored -> onTick(System.nanoTime()))
+            .filter(count -> count > 0);
+    }
+
+    /**
+     * Count one sent event to calculate the achieved rate.
+     */
+    public void recordSent() {
+        sent.increment();
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public double getAchievedRate() {
+        return achievedRate;
+    }
+
+    /**
+     * @param nowNanos current time (System.nanoTime)
+     * @return the number of events due since the last tick
+     */
+    int onTick(long nowNanos) {
+        if (!started) {
+            started = true;
+            startNanos = nowNanos;
+            lastTickNanos = nowNanos;
+            reportStartNanos = nowNanos;
+        }
+        final double rate = rateProfile.rateAt(nowNanos - startNanos);
+        due += rate * (nowNanos - lastTickNanos) / NANOS_PER_SECOND;
+        lastTickNanos = nowNanos;
+        targetRate = rate;
+        final int ret = (int) Math.min(Integer.MAX_VALUE, due);
+        due -= ret;
+
+        if (nowNanos - reportStartNanos >= REPORT_INTERVAL_NANOS) {
+            achievedRate = (double) sent.sumThenReset() * NANOS_PER_SECOND / (nowNanos - reportStartNanos);
+            reportStartNanos = nowNanos;
+            LOGGER.info("PACE/**: target={} achieved={}", Math.round(targetRate), Math.round(achievedRate));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "RatePacer(" + rateProfile + ", tick=" + tick + ")";
+    }
+}
@@ -0,0 +1,55 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import java.time.Duration;
+
+/**
+ * The target rate of the producer over time.
+ * <ul>
+ *     <li><b>CONSTANT</b>: always the base rate.</li>
+ *     <li><b>RAMP</b>: linear from the base rate to the maximum rate within one period, then the maximum rate.</li>
+ *     <li><b>STEP</b>: from the base rate to the maximum rate in equal steps, each step lasts one period.</li>
+ *     <li><b>SPIKE</b>: the base rate, but at the start of each period the maximum rate for the spike duration.</li>
+ * </ul>
+ */
+public class RateProfile {
+
+    public enum Type {
+        CONSTANT, RAMP, STEP, SPIKE
+    }
+
+    private final Type type;
+    private final double rate;
+    private final double rateMax;
+    private final long periodNanos;
+    private final int steps;
+    private final long spikeNanos;
+
+    public RateProfile(Type type, double rate, double rateMax, Duration period, int steps, Duration spikeDuration) {
+        this.type = type;
+        this.rate = rate;
+        this.rateMax = Math.max(rate, rateMax);
+        this.periodNanos = Math.max(1L, period.toNanos());
+        this.steps = Math.max(1, steps);
+        this.spikeNanos = spikeDuration.toNanos();
+    }
+
+    /**
+     * @param elapsedNanos time since the start of the producer
+     * @return the target rate in events per second
+     */
+    public double rateAt(long elapsedNanos) {
+        return switch (type) {
+            case CONSTANT -> rate;
+            case RAMP -> elapsedNanos >= periodNanos
+                ? rateMax
+                : rate + (rateMax - rate) * elapsedNanos / periodNanos;
+            case STEP -> rate + (rateMax - rate) * Math.min(steps, elapsedNanos / periodNanos) / steps;
+            case SPIKE -> elapsedNanos % periodNanos < spikeNanos ? rateMax : rate;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return type + "(rate=" + rate + ", rateMax=" + rateMax + ")";
+    }
+}
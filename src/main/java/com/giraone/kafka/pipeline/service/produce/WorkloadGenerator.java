@@ -0,0 +1,145 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates keys and values of a production like workload. All values and keys are generated in advance, so
+ * picking a key and a value for an event allocates nothing and the generator can't become the bottleneck.
+ * <ul>
+ *     <li>The value sizes follow a FIXED, UNIFORM or LOGNORMAL distribution. The values are taken randomly from
+ *     a pool of pre-generated values, so the pool size defines the number of distinct values.</li>
+ *     <li>The first part of each value (defined by the compressibility) is a repeated character, the rest are
+ *     random letters.</li>
+ *     <li>The keys are taken from a fixed set of keys (the key cardinality). With a key skew greater 0, the keys are
+ *     Zipf distributed with the skew as exponent: key k (starting with 1) has the probability 1/k^skew / H.
+ *     A key cardinality of 0 means sequential keys - one key per event.</li>
+ * </ul>
+ * Not thread safe - used on the single generator thread.
+ */
+public class WorkloadGenerator {
+
+    public enum SizeDistribution {
+        FIXED, UNIFORM, LOGNORMAL
+    }
+
+    private final SplittableRandom random;
+    private final String[] values;
+    private final String[] keys; // null for sequential keys
+    private final double[] keyCdf; // null for uniform keys
+
+    /**
+     * @param sizeDistribution distribution of the value sizes
+     * @param size             the fixed size or the mean size (LOGNORMAL) of a value in characters
+     * @param sizeMin          minimum size (UNIFORM, LOGNORMAL)
+     * @param sizeMax          maximum size (UNIFORM, LOGNORMAL)
+     * @param sizeSigma        shape of the LOGNORMAL distribution - the standard deviation of the logarithm
+     * @param poolSize         number of pre-generated values
+     * @param compressibility  fraction (0.0 - 1.0) of each value, that is a repeated character
+     * @param keyCardinality   number of distinct keys - 0 for sequential keys
+     * @param keySkew          Zipf exponent of the key distribution - 0 for uniformly distributed keys
+     * @param seed             seed of the random generator - 0 for a random seed
+     */
+    public WorkloadGenerator(SizeDistribution sizeDistribution, int size, int sizeMin, int sizeMax, double sizeSigma,
+                             int poolSize, double compressibility, int keyCardinality, double keySkew, long seed) {
+
+        this.random = seed != 0L ? new SplittableRandom(seed) : new SplittableRandom();
+        final double repeated = Math.max(0.0, Math.min(1.0, compressibility));
+        this.values = new String[Math.max(1, poolSize)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buildValue(nextSize(sizeDistribution, size, sizeMin, sizeMax, sizeSigma), repeated);
+        }
+        if (keyCardinality > 0) {
+            this.keys = new String[keyCardinality];
+            for (int i = 0; i < keyCardinality; i++) {
+                keys[i] = Integer.toString(i + 1);
+            }
+            this.keyCdf = keySkew > 0.0 ? zipfCdf(keyCardinality, keySkew) : null;
+        } else {
+            this.keys = null;
+            this.keyCdf = null;
+        }
+    }
+
+    /**
+     * @param sequenceNumber the number of the event, used as key for sequential keys
+     * @return the key of the next event
+     */
+    public String nextKey(long sequenceNumber) {
+        if (keys == null) {
+            return Long.toString(sequenceNumber);
+        }
+        if (keyCdf == null) {
+            return keys[random.nextInt(keys.length)];
+        }
+        // the first index with cdf >= u
+        final int index = Arrays.binarySearch(keyCdf, random.nextDouble());
+        return keys[index >= 0 ? index : Math.min(-index - 1, keys.length - 1)];
+    }
+
+    /**
+     * @return the value of the next event taken from the pool
+     */
+    public String nextValue() {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * @return the memory used by the pre-generated values in bytes (Latin-1 strings)
+     */
+    public long poolBytes() {
+        long ret = 0L;
+        for (String value : values) {
+            ret += value.length();
+        }
+        return ret;
+    }
+
+    int nextSize(SizeDistribution sizeDistribution, int size, int sizeMin, int sizeMax, double sizeSigma) {
+        final int ret = switch (sizeDistribution) {
+            case FIXED -> size;
+            case UNIFORM -> sizeMin + random.nextInt(Math.max(1, sizeMax - sizeMin + 1));
+            case LOGNORMAL -> {
+                // mu is chosen, so that the mean of the distribution is the given size
+                final double mu = Math.log(Math.max(1, size)) - sizeSigma * sizeSigma / 2.0;
+                yield (int) Math.round(Math.exp(mu + sizeSigma * nextGaussian()));
+            }
+        };
+        return sizeDistribution == SizeDistribution.FIXED ? Math.max(0, ret) : Math.max(sizeMin, Math.min(sizeMax, ret));
+    }
+
+    /**
+     * Cumulative distribution of the Zipf distribution: cdf[k-1] = sum(1/i^s, i=1..k) / sum(1/i^s, i=1..n).
+     */
+    static double[] zipfCdf(int n, double s) {
+        final double[] ret = new double[n];
+        double sum = 0.0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, s);
+            ret[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            ret[k] /= sum;
+        }
+        return ret;
+    }
+
+    private String buildValue(int size, double repeated) {
+        final int repeatedLength = (int) Math.round(size * repeated);
+        final char[] chars = new char[size];
+        Arrays.fill(chars, 0, repeatedLength, 'x');
+        for (int i = repeatedLength; i < size; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Standard normal distributed random number (Box-Muller).
+     */
+    private double nextGaussian() {
+        final double u1 = 1.0 - random.nextDouble(); // (0, 1] to avoid log(0)
+        final double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+}
@@ -0,0 +1,247 @@
+package com.giraone.kafka.pipeline.service.retry;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.RetryProperties;
+import com.giraone.kafka.pipeline.config.properties.RetryTopicProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes records, that failed in processing, to tiered retry topics (e.g. "a1-retry-2s", "a1-retry-4s") and finally
+ * to the dead-letter topic ("a1-dlt"). The tiers are derived from the processing retry properties: one tier per
+ * attempt with the backoff of the attempt as delay. Tiers with the same delay (fixed delay backoff) share one topic.
+ * <p>
+ * The routed record carries the retry state in headers. The retry consumer waits per retry topic partition, until
+ * the record is due, so the input topic is never blocked by a failing record.
+ */
+@Service
+public class RetryTopicRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryTopicRouter.class);
+
+    /**
+     * Header with the number of the retry attempt (1 for the first retry topic).
+     */
+    public static final String HEADER_RETRY_ATTEMPT = "x-retry-attempt";
+    /**
+     * Header with the time (epoch millis), when the record should be processed again.
+     */
+    public static final String HEADER_RETRY_DUE = "x-retry-due";
+    /**
+     * Header with the class and message of the last processing error.
+     */
+    public static final String HEADER_RETRY_EXCEPTION = "x-retry-exception";
+    /**
+     * Headers with the topic, partition and offset of the record, when it failed for the first time.
+     */
+    public static final String HEADER_ORIGINAL_TOPIC = "x-original-topic";
+    public static final String HEADER_ORIGINAL_PARTITION = "x-original-partition";
+    public static final String HEADER_ORIGINAL_OFFSET = "x-original-offset";
+
+    private final KafkaSender<String, String> kafkaSender;
+    private final CounterService counterService;
+    private final RetryProperties retryProperties;
+    private final RetryTopicProperties retryTopicProperties;
+
+    public RetryTopicRouter(ApplicationProperties applicationProperties,
+                            CounterService counterService,
+                            KafkaSender<String, String> kafkaSender) {
+        this.kafkaSender = kafkaSender;
+        this.counterService = counterService;
+        this.retryProperties = applicationProperties.getProcessingRetry();
+        this.retryTopicProperties = applicationProperties.getRetryTopics();
+        if (isEnabled()) {
+            // pipes consume topic A, consumers consume topic B
+            for (String baseTopic : List.of(applicationProperties.getTopicA(), applicationProperties.getTopicB())) {
+                LOGGER.info("Retry topics for \"{}\": {} and dead-letter topic \"{}\"", baseTopic,
+                    retryTopics(baseTopic), dltTopic(baseTopic));
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return retryTopicProperties.isEnabled();
+    }
+
+    /**
+     * @param baseTopic the topic, from which the records were consumed originally
+     * @return the distinct retry topics of all tiers in order of their attempts
+     */
+    public List<String> retryTopics(String baseTopic) {
+        final List<String> ret = new ArrayList<>();
+        for (int attempt = 1; attempt <= retryProperties.getMaxAttempts(); attempt++) {
+            final String topic = retryTopic(baseTopic, attempt);
+            if (!ret.contains(topic)) {
+                ret.add(topic);
+            }
+        }
+        return ret;
+    }
+
+    public String retryTopic(String baseTopic, int attempt) {
+        return baseTopic + retryTopicProperties.getRetrySuffix() + delayLabel(retryProperties.backoff(attempt));
+    }
+
+    public String dltTopic(String baseTopic) {
+        return baseTopic + retryTopicProperties.getDltSuffix();
+    }
+
+    /**
+     * Send a failed record to the next retry topic or - if all attempts are exhausted - to the dead-letter topic.
+     * The failed record itself is not acknowledged here. This is up to the caller, because the commit strategy
+     * depends on the processing mode.
+     *
+     * @param failedRecord the record, that failed in processing
+     * @param throwable    the processing error
+     * @return a Mono completing, when the record was sent
+     */
+    public Mono<Void> route(KafkaReceiverRecord<String, String> failedRecord, Throwable throwable) {
+        return route(failedRecord, throwable, kafkaSender);
+    }
+
+    /**
+     * Send a failed record like {@link #route(KafkaReceiverRecord, Throwable)}, but with the given sender - for
+     * records, whose value is not a String.
+     *
+     * @param failedRecord the record, that failed in processing
+     * @param throwable    the processing error
+     * @param sender       the sender with the serializer of the value type
+     * @return a Mono completing, when the record was sent
+     */
+    public <V> Mono<Void> route(KafkaReceiverRecord<String, V> failedRecord, Throwable throwable, KafkaSender<String, V> sender) {
+
+        final ConsumerRecord<String, V> consumerRecord = failedRecord.consumerRecord();
+        final ProducerRecord<String, V> producerRecord = routedRecord(consumerRecord, throwable, System.currentTimeMillis());
+        final boolean deadLetter = producerRecord.headers().lastHeader(HEADER_RETRY_DUE) == null;
+        return sender.send(KafkaSenderRecord.create(producerRecord, failedRecord))
+            .doOnNext(senderResult -> {
+                LOGGER.debug("Routed record {}/{}/{} with key={} to \"{}\"", consumerRecord.topic(),
+                    consumerRecord.partition(), consumerRecord.offset(), consumerRecord.key(), producerRecord.topic());
+                counterService.logRetryRouted(deadLetter);
+            })
+            .then();
+    }
+
+    /**
+     * Build the record for the next retry topic or the dead-letter topic. The attempt is counted from the retry
+     * attempt header of the failed record. Records for the dead-letter topic have no due header.
+     *
+     * @param consumerRecord the record, that failed in processing
+     * @param throwable      the processing error
+     * @param nowMillis      the current time (epoch millis) to compute the due time
+     * @return the record to be sent
+     */
+    <V> ProducerRecord<String, V> routedRecord(ConsumerRecord<String, V> consumerRecord, Throwable throwable, long nowMillis) {
+
+        final int attempt = (int) longHeader(consumerRecord.headers(), HEADER_RETRY_ATTEMPT, 0L) + 1;
+        final String baseTopic = stringHeader(consumerRecord.headers(), HEADER_ORIGINAL_TOPIC, consumerRecord.topic());
+        final boolean deadLetter = attempt > retryProperties.getMaxAttempts();
+        final String targetTopic = deadLetter ? dltTopic(baseTopic) : retryTopic(baseTopic, attempt);
+
+        final ProducerRecord<String, V> producerRecord = new ProducerRecord<>(targetTopic, consumerRecord.key(), consumerRecord.value());
+        final Headers headers = producerRecord.headers();
+        for (Header header : consumerRecord.headers()) {
+            headers.add(header);
+        }
+        headers.remove(HEADER_RETRY_ATTEMPT);
+        headers.remove(HEADER_RETRY_DUE);
+        headers.remove(HEADER_RETRY_EXCEPTION);
+        if (attempt == 1) {
+            addHeader(headers, HEADER_ORIGINAL_TOPIC, consumerRecord.topic());
+            addHeader(headers, HEADER_ORIGINAL_PARTITION, Integer.toString(consumerRecord.partition()));
+            addHeader(headers, HEADER_ORIGINAL_OFFSET, Long.toString(consumerRecord.offset()));
+        }
+        addHeader(headers, HEADER_RETRY_ATTEMPT, Integer.toString(attempt));
+        addHeader(headers, HEADER_RETRY_EXCEPTION, throwable.getClass().getName() + ": " + throwable.getMessage());
+        if (!deadLetter) {
+            final long due = nowMillis + retryProperties.backoff(attempt).toMillis();
+            addHeader(headers, HEADER_RETRY_DUE, Long.toString(due));
+        }
+        return producerRecord;
+    }
+
+    /**
+     * @return the topic of a record before it was routed - the topic of the record, if it was never routed
+     */
+    public static String originalTopic(ConsumerRecord<?, ?> consumerRecord) {
+        return stringHeader(consumerRecord.headers(), HEADER_ORIGINAL_TOPIC, consumerRecord.topic());
+    }
+
+    /**
+     * @return the partition of a record before it was routed - the partition of the record, if it was never routed
+     */
+    public static int originalPartition(ConsumerRecord<?, ?> consumerRecord) {
+        return (int) longHeader(consumerRecord.headers(), HEADER_ORIGINAL_PARTITION, consumerRecord.partition());
+    }
+
+    /**
+     * @return the offset of a record before it was routed - the offset of the record, if it was never routed
+     */
+    public static long originalOffset(ConsumerRecord<?, ?> consumerRecord) {
+        return longHeader(consumerRecord.headers(), HEADER_ORIGINAL_OFFSET, consumerRecord.offset());
+    }
+
+    /**
+     * Wait, until a record consumed from a retry topic is due.
+     *
+     * @param retryRecord record consumed from a retry topic
+     * @return an empty Mono completing, when the record is due - immediately, if the due time has passed
+     */
+    public Mono<Void> awaitDue(KafkaReceiverRecord<?, ?> retryRecord) {
+        final long waitMillis = longHeader(retryRecord.consumerRecord().headers(), HEADER_RETRY_DUE, 0L)
+            - System.currentTimeMillis();
+        return waitMillis > 0L ? Mono.delay(Duration.ofMillis(waitMillis)).then() : Mono.empty();
+    }
+
+    /**
+     * Build the delay part of a retry topic name, e.g. "500ms", "2s" or "5m".
+     */
+    static String delayLabel(Duration delay) {
+        final long millis = delay.toMillis();
+        if (millis > 0L && millis % 60_000L == 0L) {
+            return millis / 60_000L + "m";
+        } else if (millis > 0L && millis % 1_000L == 0L) {
+            return millis / 1_000L + "s";
+        } else {
+            return millis + "ms";
+        }
+    }
+
+    private static void addHeader(Headers headers, String key, String value) {
+        headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String stringHeader(Headers headers, String key, String defaultValue) {
+        final Header header = headers.lastHeader(key);
+        return header != null && header.value() != null
+            ? new String(header.value(), StandardCharsets.UTF_8)
+            : defaultValue;
+    }
+
+    private static long longHeader(Headers headers, String key, long defaultValue) {
+        final String value = stringHeader(headers, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
+}
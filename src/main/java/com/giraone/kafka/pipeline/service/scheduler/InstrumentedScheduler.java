@@ -0,0 +1,219 @@
+package com.giraone.kafka.pipeline.service.scheduler;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A scheduler, that measures the tasks of another scheduler and of its workers in {@link SchedulerMetrics}.
+ * Immediate tasks are measured from submission (queued) over start (active) until finished. Delayed and periodic
+ * tasks are measured only while they run. Rejected tasks are counted and the rejection is passed on.
+ */
+public class InstrumentedScheduler implements Scheduler {
+
+    private final Scheduler delegate;
+    private final SchedulerMetrics metrics;
+
+    public InstrumentedScheduler(Scheduler delegate, SchedulerMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public SchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Disposable schedule(Runnable task) {
+        return scheduleQueued(task, delegate::schedule);
+    }
+
+    @Override
+    public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+        return scheduleTimed(() -> delegate.schedule(new TimedTask(task), delay, unit));
+    }
+
+    @Override
+    public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return scheduleTimed(() -> delegate.schedulePeriodically(new TimedTask(task), initialDelay, period, unit));
+    }
+
+    @Override
+    public long now(TimeUnit unit) {
+        return delegate.now(unit);
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new InstrumentedWorker(delegate.createWorker());
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+
+    @Override
+    public Mono<Void> disposeGracefully() {
+        return delegate.disposeGracefully();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate.isDisposed();
+    }
+
+    /**
+     * The description of the measured scheduler, e.g. for the logs of the services.
+     */
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    private Disposable scheduleQueued(Runnable task, Function<Runnable, Disposable> schedule) {
+        final QueuedTask queuedTask = new QueuedTask(task, System.nanoTime());
+        metrics.queued();
+        try {
+            queuedTask.scheduled = schedule.apply(queuedTask);
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            queuedTask.cancel();
+            metrics.rejected();
+            throw rejectedExecutionException;
+        }
+        return queuedTask;
+    }
+
+    private Disposable scheduleTimed(Supplier<Disposable> schedule) {
+        try {
+            return schedule.get();
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            metrics.rejected();
+            throw rejectedExecutionException;
+        }
+    }
+
+    private final class InstrumentedWorker implements Worker {
+
+        private final Worker delegateWorker;
+
+        private InstrumentedWorker(Worker delegateWorker) {
+            this.delegateWorker = delegateWorker;
+        }
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return scheduleQueued(task, delegateWorker::schedule);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            return scheduleTimed(() -> delegateWorker.schedule(new TimedTask(task), delay, unit));
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            return scheduleTimed(() -> delegateWorker.schedulePeriodically(new TimedTask(task), initialDelay, period, unit));
+        }
+
+        @Override
+        public void dispose() {
+            delegateWorker.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return delegateWorker.isDisposed();
+        }
+    }
+
+    /**
+     * An immediate task, that is queued until it runs. A task, that is disposed before it runs, leaves the queue.
+     */
+    private final class QueuedTask implements Runnable, Disposable {
+
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Runnable task;
+        private final long queuedNanos;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile Disposable scheduled;
+
+        private QueuedTask(Runnable task, long queuedNanos) {
+            this.task = task;
+            this.queuedNanos = queuedNanos;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, STARTED)) {
+                return;
+            }
+            metrics.dequeued();
+            final long start = System.nanoTime();
+            metrics.started(start - queuedNanos);
+            try {
+                task.run();
+            } finally {
+                metrics.finished(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            cancel();
+            final Disposable current = scheduled;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            final Disposable current = scheduled;
+            return state.get() == CANCELLED || (current != null && current.isDisposed());
+        }
+
+        private void cancel() {
+            if (state.compareAndSet(QUEUED, CANCELLED)) {
+                metrics.dequeued();
+            }
+        }
+    }
+
+    /**
+     * A delayed or periodic task, that is measured, while it runs.
+     */
+    private final class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        private TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            metrics.startedWithoutWait();
+            final long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                metrics.finished(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.giraone.kafka.pipeline.service.scheduler;
+
+import com.giraone.kafka.pipeline.service.CounterService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Health of the processing schedulers ("scheduler" in the health endpoint). The status is DEGRADED, when a scheduler
+ * is saturated - see {@link SchedulerMetrics#checkSaturated()}. A saturated scheduler does not stop the pipeline,
+ * so the status is neither DOWN nor OUT_OF_SERVICE.
+ */
+@Component
+public class SchedulerHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Processing scheduler is saturated");
+
+    private final CounterService counterService;
+
+    public SchedulerHealthIndicator(CounterService counterService) {
+        this.counterService = counterService;
+    }
+
+    @Override
+    public Health health() {
+
+        final List<SchedulerMetrics> schedulers = counterService.getMonitoredSchedulers();
+        boolean saturated = false;
+        final Health.Builder builder = Health.up();
+        for (SchedulerMetrics scheduler : schedulers) {
+            final boolean schedulerSaturated = scheduler.checkSaturated();
+            saturated |= schedulerSaturated;
+            final Map<String, Object> details = new LinkedHashMap<>();
+            details.put("threads", scheduler.getThreads());
+            details.put("active", scheduler.getActive());
+            details.put("queued", scheduler.getQueued());
+            if (scheduler.getQueueCapacity() > 0) {
+                details.put("queueCapacity", scheduler.getQueueCapacity());
+            }
+            details.put("rejected", scheduler.getRejected());
+            details.put("saturated", schedulerSaturated);
+            builder.withDetail(scheduler.getName(), details);
+        }
+        if (saturated) {
+            builder.status(DEGRADED);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.giraone.kafka.pipeline.service.scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage of a processing scheduler, measured by {@link InstrumentedScheduler}: active tasks (busy threads), queued
+ * tasks, waiting time in the queue, execution time and rejected tasks. Only immediate tasks (e.g. of publishOn) are
+ * queued - delayed and periodic tasks count only as active and in the execution time, when they run.
+ */
+public class SchedulerMetrics {
+
+    /**
+     * Time after a rejected task, in which the scheduler counts as saturated. Default for the 3-args constructor.
+     */
+    public static final Duration DEFAULT_REJECTED_WINDOW = Duration.ofMinutes(1);
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final long rejectedWindowNanos;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder executionCount = new LongAdder();
+    private final LongAdder executionNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long lastRejectedNanos;
+
+    /**
+     * @param name          name of the scheduler used as tag
+     * @param threads       number of threads of the scheduler
+     * @param queueCapacity maximum number of queued tasks or -1, if unbounded
+     */
+    public SchedulerMetrics(String name, int threads, int queueCapacity) {
+        this(name, threads, queueCapacity, DEFAULT_REJECTED_WINDOW);
+    }
+
+    /**
+     * @param name           name of the scheduler used as tag
+     * @param threads        number of threads of the scheduler
+     * @param queueCapacity  maximum number of queued tasks or -1, if unbounded
+     * @param rejectedWindow time after a rejected task, in which the scheduler counts as saturated
+     */
+    public SchedulerMetrics(String name, int threads, int queueCapacity, Duration rejectedWindow) {
+        this.name = name;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.rejectedWindowNanos = rejectedWindow.toNanos();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public double getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    public double getExecutionNanos() {
+        return executionNanos.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * The scheduler is saturated, when a task was rejected within the rejected window, when a bounded queue is full or
+     * when all threads are busy and there are more queued tasks than threads. The check does not change the state,
+     * so every client polling the health endpoint gets the same answer.
+     */
+    public boolean checkSaturated() {
+        return checkSaturated(System.nanoTime());
+    }
+
+    boolean checkSaturated(long nowNanos) {
+        final boolean rejectedWithinWindow = rejected.sum() > 0L && nowNanos - lastRejectedNanos < rejectedWindowNanos;
+        final int queuedNow = queued.get();
+        return rejectedWithinWindow
+            || (queueCapacity > 0 && queuedNow >= queueCapacity)
+            || (active.get() >= threads && queuedNow > threads);
+    }
+
+    void queued() {
+        queued.incrementAndGet();
+    }
+
+    void dequeued() {
+        queued.decrementAndGet();
+    }
+
+    void started(long waitedNanos) {
+        waitCount.increment();
+        waitNanos.add(waitedNanos);
+        active.incrementAndGet();
+    }
+
+    void startedWithoutWait() {
+        active.incrementAndGet();
+    }
+
+    void finished(long executedNanos) {
+        active.decrementAndGet();
+        executionCount.increment();
+        executionNanos.add(executedNanos);
+    }
+
+    void rejected() {
+        lastRejectedNanos = System.nanoTime();
+        rejected.increment();
+    }
+}
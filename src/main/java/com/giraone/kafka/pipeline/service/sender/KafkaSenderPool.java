@@ -0,0 +1,200 @@
+package com.giraone.kafka.pipeline.service.sender;
+
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * A pool of {@link KafkaSender} instances - each with its own Kafka producer and its own I/O thread. The records are
+ * routed to a sender by their target partition, so each sender serves only a part of the partitions and builds
+ * fuller batches. The partition of a keyed record is computed locally with the murmur2 hash, that the Kafka default
+ * partitioner uses, and is set explicitly on the record. So the record lands in the same partition as without the pool.
+ * <p>
+ * The keys are expected to be serialized as UTF-8 (StringSerializer). Records without key and records for a topic,
+ * whose number of partitions is unknown, are not assigned to a partition and are distributed round-robin.
+ * The number of partitions of the target topics is looked up at startup ({@link #resolvePartitions(Collection)}).
+ * The lookup of another topic and the repeated lookup after a failure run in the background, so a sending thread
+ * is never blocked.
+ * With a pool size of 1 the records are passed through unchanged.
+ * <p>
+ * The first sender is the shared default sender, which is owned by the caller. Closing the pool closes all other
+ * senders.
+ *
+ * @param <V> the value type
+ */
+public class KafkaSenderPool<V> implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KafkaSenderPool.class);
+
+    private static final long LOOKUP_RUNNING = Long.MAX_VALUE;
+    private static final long LOOKUP_RETRY_INTERVAL_NANOS = Duration.ofSeconds(5).toNanos();
+
+    private final List<KafkaSender<String, V>> senders;
+    private final ToIntFunction<String> partitionLookup;
+    // only successful lookups are cached
+    private final Map<String, Integer> numberOfPartitionsPerTopic = new ConcurrentHashMap<>();
+    // topics without a known number of partitions - the earliest time of the next lookup or LOOKUP_RUNNING
+    private final Map<String, Long> pendingLookups = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    /**
+     * @param senders         the senders of the pool - at least one, the first one is not closed by the pool
+     * @param partitionLookup returns the number of partitions of a topic - may block and may throw, if the topic
+     *                        can't be described
+     */
+    public KafkaSenderPool(List<KafkaSender<String, V>> senders, ToIntFunction<String> partitionLookup) {
+        if (senders.isEmpty()) {
+            throw new IllegalArgumentException("At least one sender is needed!");
+        }
+        this.senders = senders;
+        this.partitionLookup = partitionLookup;
+    }
+
+    public int size() {
+        return senders.size();
+    }
+
+    public KafkaSender<String, V> sender(int index) {
+        return senders.get(index);
+    }
+
+    /**
+     * Look up the number of partitions of the target topics. To be called at startup, before records are sent - the
+     * call blocks, until all lookups are done. A failed lookup is repeated in the background, when a record for the
+     * topic is sent.
+     */
+    public void resolvePartitions(Collection<String> topics) {
+        if (senders.size() == 1) {
+            return;
+        }
+        for (String topic : topics) {
+            lookupNumberOfPartitions(topic);
+        }
+    }
+
+    /**
+     * Assign the partition to a keyed record, the same way as the Kafka default partitioner does.
+     *
+     * @return a copy of the record with the partition set or the unchanged record, if there is only one sender,
+     * the record has no key, the partition is already set or the number of partitions of the topic is unknown
+     */
+    public ProducerRecord<String, V> assignPartition(ProducerRecord<String, V> producerRecord) {
+        if (senders.size() == 1 || producerRecord.key() == null || producerRecord.partition() != null) {
+            return producerRecord;
+        }
+        final int numberOfPartitions = numberOfPartitions(producerRecord.topic());
+        if (numberOfPartitions <= 0) {
+            return producerRecord;
+        }
+        return new ProducerRecord<>(producerRecord.topic(), partition(producerRecord.key(), numberOfPartitions),
+            producerRecord.timestamp(), producerRecord.key(), producerRecord.value(), producerRecord.headers());
+    }
+
+    /**
+     * @return the index of the sender for a record - records of the same partition always use the same sender
+     */
+    public int senderIndex(KafkaSenderRecord<String, V, ?> senderRecord) {
+        return senderIndex(senderRecord.partition());
+    }
+
+    /**
+     * Send a record with the sender of its partition.
+     */
+    public <T> Mono<KafkaSenderResult<T>> send(KafkaSenderRecord<String, V, T> senderRecord) {
+        return senders.get(senderIndex(senderRecord)).send(senderRecord);
+    }
+
+    /**
+     * Send records with the senders of their partitions. The order of the results is kept per partition only.
+     */
+    public <T> Flux<KafkaSenderResult<T>> send(Flux<KafkaSenderRecord<String, V, T>> senderRecords) {
+        if (senders.size() == 1) {
+            return senders.get(0).send(senderRecords);
+        }
+        return senderRecords
+            .groupBy(this::senderIndex)
+            .flatMap(group -> senders.get(group.key()).send(group), senders.size());
+    }
+
+    /**
+     * The partition of a key as computed by the Kafka default partitioner (BuiltInPartitioner.partitionForKey).
+     */
+    public static int partition(String key, int numberOfPartitions) {
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % numberOfPartitions;
+    }
+
+    /**
+     * Close the senders created for the pool - all senders except the first one.
+     */
+    @Override
+    public void close() {
+        for (int i = 1; i < senders.size(); i++) {
+            senders.get(i).close();
+        }
+    }
+
+    int senderIndex(Integer partition) {
+        if (senders.size() == 1) {
+            return 0;
+        }
+        return partition != null
+            ? partition % senders.size()
+            : Utils.toPositive(roundRobin.getAndIncrement()) % senders.size();
+    }
+
+    /**
+     * @return the number of partitions of a topic - 0, while it is unknown
+     */
+    int numberOfPartitions(String topic) {
+        final Integer ret = numberOfPartitionsPerTopic.get(topic);
+        if (ret != null) {
+            return ret;
+        }
+        lookupInBackground(topic);
+        return 0;
+    }
+
+    private void lookupInBackground(String topic) {
+        final long now = System.nanoTime();
+        final Long notBefore = pendingLookups.putIfAbsent(topic, LOOKUP_RUNNING);
+        if (notBefore != null
+            && (notBefore == LOOKUP_RUNNING || now - notBefore < 0L || !pendingLookups.replace(topic, notBefore, LOOKUP_RUNNING))) {
+            // a lookup is running or the last one failed recently
+            return;
+        }
+        // the lookup blocks - it must not run on the sending (event loop) thread
+        Mono.fromRunnable(() -> lookupNumberOfPartitions(topic))
+            .subscribeOn(Schedulers.boundedElastic())
+            .subscribe();
+    }
+
+    private void lookupNumberOfPartitions(String topic) {
+        try {
+            final int ret = partitionLookup.applyAsInt(topic);
+            numberOfPartitionsPerTopic.put(topic, ret);
+            pendingLookups.remove(topic);
+            LOGGER.info("Sender pool of size {} uses {} partitions of topic \"{}\"", senders.size(), ret, topic);
+        } catch (RuntimeException exception) {
+            // not cached - the lookup is repeated after the retry interval
+            pendingLookups.put(topic, System.nanoTime() + LOOKUP_RETRY_INTERVAL_NANOS);
+            LOGGER.warn("Cannot get the number of partitions of topic \"{}\"! Records are sent round-robin.", topic, exception);
+        }
+    }
+}
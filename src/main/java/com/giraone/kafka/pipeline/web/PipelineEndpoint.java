@@ -0,0 +1,136 @@
+package com.giraone.kafka.pipeline.web;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.ProcessingProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.PipelineState;
+import com.giraone.kafka.pipeline.service.scheduler.SchedulerMetrics;
+import io.atleon.kafka.KafkaReceiverOptions;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live state of the pipeline ("/actuator/pipeline"): the selected mode, the restarts of its main loop, the processing
+ * scheduler and per consumed partition the records in flight, the last received, processed, sent and committed offset,
+ * the rates of the counter service and the time since the last commit. The values are read from counters, that are
+ * kept anyway, so a request does not touch the consumer or the processing chain.
+ * <p>
+ * The partitions are keyed by topic and partition. The records in flight go up, when a record is received, and down,
+ * when it is acknowledged or negatively acknowledged. The partitions are dropped, when the main loop is restarted, and
+ * a partition without records in flight is dropped after {@link PipelineState#IDLE_MILLIS} without received records.
+ * The rates of the counter service are kept per partition number only, so they are reported for the input topic
+ * and null for other topics, e.g. retry topics.
+ * <p>
+ * The receiver does not report, whether it paused a partition. A partition is reported as paused, when its records
+ * in flight reached the maximum of the receiver (maxActiveInFlight) - then no further records are fetched.
+ */
+@Component
+@Endpoint(id = "pipeline")
+public class PipelineEndpoint {
+
+    private final ApplicationProperties applicationProperties;
+    private final CounterService counterService;
+    private final List<AbstractService> services;
+    private final int maxActiveInFlight;
+
+    public PipelineEndpoint(ApplicationProperties applicationProperties,
+                            CounterService counterService,
+                            List<AbstractService> services,
+                            KafkaReceiverOptions<String, String> kafkaReceiverOptions) {
+        this.applicationProperties = applicationProperties;
+        this.counterService = counterService;
+        this.services = services;
+        this.maxActiveInFlight = kafkaReceiverOptions.maxActiveInFlight();
+    }
+
+    @ReadOperation
+    public Map<String, Object> pipeline() {
+
+        final long now = System.currentTimeMillis();
+        final Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("mode", applicationProperties.getMode());
+        ret.put("service", service());
+        ret.put("scheduler", scheduler());
+
+        final PipelineState pipelineState = counterService.getPipelineState();
+        final List<Map<String, Object>> partitions = new ArrayList<>();
+        boolean paused = false;
+        for (PipelineState.PartitionState state : pipelineState.getPartitions(now)) {
+            final boolean partitionPaused = isPaused(state.getInFlight());
+            paused |= partitionPaused;
+            partitions.add(partition(state, partitionPaused, now));
+        }
+        final Map<String, Object> receiver = new LinkedHashMap<>();
+        receiver.put("maxActiveInFlight", maxActiveInFlight);
+        receiver.put("inFlight", pipelineState.getInFlight());
+        receiver.put("paused", paused);
+        ret.put("receiver", receiver);
+        ret.put("partitions", partitions);
+        return ret;
+    }
+
+    private Map<String, Object> service() {
+        final Map<String, Object> ret = new LinkedHashMap<>();
+        for (AbstractService service : services) {
+            if (service.isSelected()) {
+                ret.put("name", service.getClass().getSimpleName());
+                ret.put("restarts", service.getStarts());
+            }
+        }
+        return ret;
+    }
+
+    private Map<String, Object> scheduler() {
+        final ProcessingProperties processingProperties = applicationProperties.getProcessing();
+        final Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("type", processingProperties.getSchedulerType());
+        if ("newParallel".equals(processingProperties.getSchedulerType())) {
+            ret.put("poolSize", processingProperties.getNewParallelPoolSize());
+        } else if ("newBoundedElastic".equals(processingProperties.getSchedulerType())) {
+            ret.put("size", processingProperties.getNewBoundedElasticSize());
+            ret.put("queueSize", processingProperties.getNewBoundedElasticQueueSize());
+        }
+        for (SchedulerMetrics scheduler : counterService.getMonitoredSchedulers()) {
+            final Map<String, Object> usage = new LinkedHashMap<>();
+            usage.put("threads", scheduler.getThreads());
+            usage.put("active", scheduler.getActive());
+            usage.put("queued", scheduler.getQueued());
+            usage.put("rejected", scheduler.getRejected());
+            ret.put(scheduler.getName(), usage);
+        }
+        return ret;
+    }
+
+    private Map<String, Object> partition(PipelineState.PartitionState state, boolean paused, long now) {
+        final Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("topic", state.getTopic());
+        ret.put("partition", state.getPartition());
+        ret.put("inFlight", state.getInFlight());
+        ret.put("lastReceivedOffset", state.getLastReceivedOffset());
+        ret.put("lastProcessedOffset", state.getLastProcessedOffset());
+        ret.put("lastSentOffset", state.getLastSentOffset());
+        ret.put("lastCommittedOffset", state.getLastCommittedOffset());
+        final boolean inputTopic = isInputTopic(state.getTopic());
+        ret.put("rateReceived", inputTopic ? counterService.getRateReceived(state.getPartition()) : null);
+        ret.put("rateCommitted", inputTopic ? counterService.getRateCommitted(state.getPartition()) : null);
+        ret.put("paused", paused);
+        // -1, when nothing was committed yet
+        ret.put("millisSinceLastCommit", state.getLastCommitMillis() > 0L ? now - state.getLastCommitMillis() : -1L);
+        return ret;
+    }
+
+    private boolean isInputTopic(String topic) {
+        return topic.equals(applicationProperties.getTopicA()) || topic.equals(applicationProperties.getTopicB());
+    }
+
+    private boolean isPaused(long inFlight) {
+        return maxActiveInFlight > 0 && inFlight >= maxActiveInFlight;
+    }
+}
@@ -0,0 +1,211 @@
+package com.giraone.kafka.pipeline.config;
+
+import com.giraone.kafka.pipeline.config.properties.KafkaMetricsProperties;
+import com.giraone.kafka.pipeline.service.commit.ConsumerCommitLatency;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.utils.Time;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactorKafkaMetricsExporterTest {
+
+    @ParameterizedTest
+    @CsvSource(value = {
+        "consumer-fetch-manager-metrics|records-lag-max|true",
+        "consumer-fetch-manager-metrics|records-lag|true",
+        "consumer-node-metrics|request-rate|false",
+        "consumer-coordinator-metrics|commit-rate|false",
+    }, delimiterString = "|")
+    void isExported(String group, String name, boolean expected) {
+
+        KafkaMetricsProperties kafkaMetricsProperties = new KafkaMetricsProperties();
+        kafkaMetricsProperties.setAllow(List.of("consumer-fetch-manager-metrics:.*", "consumer-node-metrics:.*"));
+        kafkaMetricsProperties.setDeny(List.of(".*-node-metrics:.*"));
+        ReactorKafkaMetricsExporter exporter = new ReactorKafkaMetricsExporter();
+        exporter.configure(ReactorKafkaMetricsExporter.configs(kafkaMetricsProperties));
+        assertThat(exporter.isExported(new MetricName(name, group, "", Map.of()))).isEqualTo(expected);
+    }
+
+    @Test
+    void isExportedWithoutPatterns() {
+
+        ReactorKafkaMetricsExporter exporter = new ReactorKafkaMetricsExporter();
+        exporter.configure(ReactorKafkaMetricsExporter.configs(new KafkaMetricsProperties()));
+        assertThat(exporter.isExported(new MetricName("request-rate", "producer-node-metrics", "", Map.of()))).isTrue();
+    }
+
+    @Test
+    void patterns() {
+
+        assertThat(ReactorKafkaMetricsExporter.patterns(null)).isEmpty();
+        assertThat(ReactorKafkaMetricsExporter.patterns("")).isEmpty();
+        assertThat(ReactorKafkaMetricsExporter.patterns("a:.*\n b:c ")).hasSize(2);
+        assertThat(ReactorKafkaMetricsExporter.patterns(List.of("a:.*"))).hasSize(1);
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {
+        "records-lag-max|MAX|5.0",
+        "records-lag-min|MIN|1.0",
+        "records-lag-avg|AVG|3.0",
+        "records-lag|SUM|9.0",
+    }, delimiterString = "|")
+    void aggregation(String name, ReactorKafkaMetricsExporter.Aggregation expected, double expectedValue) {
+
+        ReactorKafkaMetricsExporter.Aggregation aggregation = ReactorKafkaMetricsExporter.Aggregation.of(name);
+        assertThat(aggregation).isEqualTo(expected);
+        List<KafkaMetric> partitions = List.of(
+            metric(name, 0, 1.0), metric(name, 1, 5.0), metric(name, 2, 3.0), metric(name, 3, Double.NaN));
+        assertThat(aggregation.apply(partitions)).isEqualTo(expectedValue);
+    }
+
+    @Test
+    void aggregationWithoutValues() {
+
+        assertThat(ReactorKafkaMetricsExporter.Aggregation.SUM.apply(List.of())).isNaN();
+    }
+
+    @Test
+    void cachedValue() {
+
+        AtomicInteger reads = new AtomicInteger();
+        ReactorKafkaMetricsExporter.CachedValue cached = new ReactorKafkaMetricsExporter.CachedValue(
+            60_000_000_000L, reads::incrementAndGet);
+        assertThat(cached.get()).isEqualTo(1);
+        assertThat(cached.get()).isEqualTo(1);
+        assertThat(reads.get()).isEqualTo(1);
+
+        ReactorKafkaMetricsExporter.CachedValue uncached = new ReactorKafkaMetricsExporter.CachedValue(
+            0L, reads::incrementAndGet);
+        assertThat(uncached.get()).isEqualTo(2);
+        assertThat(uncached.get()).isEqualTo(3);
+    }
+
+    @Test
+    void partitionsAreAggregatedUntilTheLastIsRemoved() {
+
+        ReactorKafkaMetricsExporter exporter = exporter(true);
+        KafkaMetric partition0 = metric("records-lag-max", 0, 1.0);
+        KafkaMetric partition1 = metric("records-lag-max", 1, 5.0);
+
+        KafkaMetric aggregate = exporter.route(partition0);
+        assertThat(aggregate).isNotNull();
+        assertThat(aggregate.metricName().name()).isEqualTo("records-lag-max");
+        assertThat(aggregate.metricName().group()).isEqualTo("consumer-fetch-manager-metrics");
+        assertThat(aggregate.metricName().tags()).containsOnlyKeys("client-id", "topic");
+        // the second partition is added to the existing aggregate
+        assertThat(exporter.route(partition1)).isNull();
+        assertThat(aggregate.metricValue()).isEqualTo(5.0);
+
+        assertThat(exporter.removeFromAggregate(partition0)).isNull();
+        assertThat(aggregate.metricValue()).isEqualTo(5.0);
+        assertThat(exporter.removeFromAggregate(partition1)).isSameAs(aggregate);
+        // a partition, that is added again, creates a new aggregate
+        assertThat(exporter.route(partition0)).isNotNull().isNotSameAs(aggregate);
+    }
+
+    @Test
+    void metricsWithoutPartitionAreNotAggregated() {
+
+        ReactorKafkaMetricsExporter exporter = exporter(true);
+        KafkaMetric metric = new KafkaMetric(new Object(),
+            new MetricName("records-lag-max", "consumer-fetch-manager-metrics", "", Map.of("client-id", "test")),
+            (Gauge<Object>) (config, now) -> 3.0, new MetricConfig(), Time.SYSTEM);
+        assertThat(exporter.route(metric)).isSameAs(metric);
+    }
+
+    /**
+     * The commit latency is passed to the ADAPTIVE commit strategy, even if it is not exported.
+     */
+    @Test
+    void commitLatencyIsPassedOnUntilRemoved() {
+
+        KafkaMetricsProperties kafkaMetricsProperties = new KafkaMetricsProperties();
+        kafkaMetricsProperties.setDeny(List.of(".*"));
+        ReactorKafkaMetricsExporter exporter = new ReactorKafkaMetricsExporter();
+        exporter.configure(ReactorKafkaMetricsExporter.configs(kafkaMetricsProperties));
+        KafkaMetric commitLatency = new KafkaMetric(new Object(),
+            new MetricName("commit-latency-avg", "consumer-coordinator-metrics", "", Map.of("client-id", "test")),
+            (Gauge<Object>) (config, now) -> 4.0, new MetricConfig(), Time.SYSTEM);
+        try {
+            exporter.init(List.of(commitLatency));
+            assertThat(ConsumerCommitLatency.averageNanos()).isEqualTo(4_000_000.0);
+        } finally {
+            exporter.metricRemoval(commitLatency);
+        }
+        assertThat(ConsumerCommitLatency.averageNanos()).isNaN();
+    }
+
+    /**
+     * The meters of the aggregates are registered by the base class - with the same name and the same tags, except the
+     * partition, as the meters of the single partitions.
+     */
+    @Test
+    void aggregatedMetersHaveTheNameAndTagsOfThePartitionMeters() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.globalRegistry.add(registry);
+        try {
+            ReactorKafkaMetricsExporter perPartition = exporter(false);
+            perPartition.init(List.of(metric("records-lag-max", 0, 1.0), metric("records-lag-max", 1, 5.0)));
+            List<Meter> partitionMeters = List.copyOf(registry.getMeters());
+            assertThat(partitionMeters).hasSize(2);
+            Meter partitionMeter = partitionMeters.stream()
+                .filter(meter -> meter.getId().getTags().stream().anyMatch(tag -> tag.getValue().equals("0")))
+                .findFirst().orElseThrow();
+            List<Tag> expectedTags = partitionMeter.getId().getTags().stream()
+                .filter(tag -> !tag.getValue().equals("0"))
+                .toList();
+            perPartition.close();
+            registry.clear();
+
+            ReactorKafkaMetricsExporter aggregated = exporter(true);
+            KafkaMetric partition0 = metric("records-lag-max", 0, 1.0);
+            KafkaMetric partition1 = metric("records-lag-max", 1, 5.0);
+            aggregated.init(List.of(partition0));
+            aggregated.metricChange(partition1);
+            assertThat(registry.getMeters()).hasSize(1);
+            Meter aggregateMeter = registry.getMeters().get(0);
+            assertThat(aggregateMeter.getId().getName()).isEqualTo(partitionMeter.getId().getName());
+            assertThat(aggregateMeter.getId().getTags()).containsExactlyInAnyOrderElementsOf(expectedTags);
+            assertThat(aggregateMeter.measure().iterator().next().getValue()).isEqualTo(5.0);
+
+            aggregated.metricRemoval(partition0);
+            assertThat(registry.getMeters()).hasSize(1);
+            aggregated.metricRemoval(partition1);
+            assertThat(registry.getMeters()).isEmpty();
+            aggregated.close();
+        } finally {
+            Metrics.globalRegistry.remove(registry);
+        }
+    }
+
+    private static ReactorKafkaMetricsExporter exporter(boolean aggregatePartitions) {
+        KafkaMetricsProperties kafkaMetricsProperties = new KafkaMetricsProperties();
+        kafkaMetricsProperties.setAggregatePartitions(aggregatePartitions);
+        ReactorKafkaMetricsExporter exporter = new ReactorKafkaMetricsExporter();
+        exporter.configure(ReactorKafkaMetricsExporter.configs(kafkaMetricsProperties));
+        return exporter;
+    }
+
+    private static KafkaMetric metric(String name, int partition, double value) {
+        MetricName metricName = new MetricName(name, "consumer-fetch-manager-metrics", "",
+            Map.of("client-id", "test", "topic", "a1", "partition", Integer.toString(partition)));
+        return new KafkaMetric(new Object(), metricName, (Gauge<Object>) (config, now) -> value,
+            new MetricConfig(), Time.SYSTEM);
+    }
+}
@@ -0,0 +1,89 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.consume.ConsumeDefaultService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class AbstractServiceTest {
+
+    /**
+     * A routed record must not be acknowledged before a record received before it - with the COMPACT acknowledgement
+     * queue its acknowledgement would commit the offset of the earlier record, that is still in process.
+     */
+    @Test
+    void routedRecordIsCommittedAfterTheRecordsReceivedBeforeIt() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetryTopics().setEnabled(true);
+        AbstractService service = consumeService(applicationProperties);
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        KafkaReceiverRecord<String, String> slow = receiverRecord(applicationProperties.getTopicB(), 10L, acknowledged);
+        KafkaReceiverRecord<String, String> failed = receiverRecord(applicationProperties.getTopicB(), 11L, acknowledged);
+        service.track(slow);
+        service.track(failed);
+
+        service.handleProcessingError(failed, new IllegalStateException("Simulated processing failure")).block();
+        assertThat(acknowledged).isEmpty();
+
+        service.commitInOffsetOrder(slow);
+        assertThat(acknowledged).containsExactly(10L, 11L);
+    }
+
+    @Test
+    void routedRecordOfRetryTopicIsCommittedDirectly() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetryTopics().setEnabled(true);
+        AbstractService service = consumeService(applicationProperties);
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        service.track(receiverRecord(applicationProperties.getTopicB(), 10L, acknowledged));
+
+        service.handleProcessingError(receiverRecord(applicationProperties.getTopicB() + "-retry-1s", 3L, acknowledged),
+            new IllegalStateException("Simulated processing failure")).block();
+        assertThat(acknowledged).containsExactly(3L);
+    }
+
+    @Test
+    void recordsAreCommittedDirectlyWithoutTracking() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        AbstractService service = consumeService(applicationProperties);
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        KafkaReceiverRecord<String, String> receiverRecord = receiverRecord(applicationProperties.getTopicB(), 10L, acknowledged);
+        service.track(receiverRecord);
+
+        service.commitInOffsetOrder(receiverRecord);
+        assertThat(acknowledged).containsExactly(10L);
+    }
+
+    private static AbstractService consumeService(ApplicationProperties applicationProperties) {
+        CounterService counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+        @SuppressWarnings("unchecked") KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        doReturn(Mono.just(mock(KafkaSenderResult.class))).when(kafkaSender).send(any(KafkaSenderRecord.class));
+        RetryTopicRouter retryTopicRouter = new RetryTopicRouter(applicationProperties, counterService, kafkaSender);
+        // the receiver is only needed to start the main loop
+        return new ConsumeDefaultService(applicationProperties, null, counterService, retryTopicRouter);
+    }
+
+    private static KafkaReceiverRecord<String, String> receiverRecord(String topic, long offset, List<Long> acknowledged) {
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>(topic, 0, offset, "key", "value");
+        return KafkaReceiverRecord.create(consumerRecord, () -> acknowledged.add(offset), throwable -> {
+        });
+    }
+}
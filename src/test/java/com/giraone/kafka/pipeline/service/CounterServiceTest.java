@@ -0,0 +1,55 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CounterServiceTest {
+
+    @Test
+    void countsAreNotLostWithMultipleThreads() throws Exception {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setLogRate(Duration.ofMillis(1));
+        CounterService counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+
+        final int threads = 8;
+        final int callsPerThread = 10_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final int partition = t * 5; // forces the partition array to grow
+            executorService.submit(() -> {
+                for (int i = 0; i < callsPerThread; i++) {
+                    counterService.logRateReceived(partition, i);
+                    counterService.logRateProcessed();
+                }
+            });
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counterService.getTotal(CounterService.Metric.RECV)).isEqualTo((long) threads * callsPerThread);
+        assertThat(counterService.getTotal(CounterService.Metric.TASK)).isEqualTo((long) threads * callsPerThread);
+        assertThat(counterService.getTotal(CounterService.Metric.RECV, 35)).isEqualTo(callsPerThread);
+        assertThat(counterService.getCounterReceived()).isEqualTo((long) threads * callsPerThread);
+    }
+
+    @Test
+    void retryRecordsAreNotCountedAsReceived() {
+
+        CounterService counterService = new CounterService(new ApplicationProperties(), new SimpleMeterRegistry());
+        counterService.logRateReceived(0, 10L);
+        counterService.logRateRetryReceived(0, 3L);
+
+        assertThat(counterService.getTotal(CounterService.Metric.RECV, 0)).isEqualTo(1L);
+        assertThat(counterService.getTotal(CounterService.Metric.RETRY, 0)).isEqualTo(1L);
+        assertThat(counterService.getCounterReceived()).isEqualTo(1L);
+    }
+}
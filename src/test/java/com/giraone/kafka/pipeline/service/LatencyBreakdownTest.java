@@ -0,0 +1,110 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.properties.MetricsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.giraone.kafka.pipeline.service.LatencyBreakdown.Mark.ACKNOWLEDGED;
+import static com.giraone.kafka.pipeline.service.LatencyBreakdown.Mark.PROCESSED;
+import static com.giraone.kafka.pipeline.service.LatencyBreakdown.Mark.PROCESS_STARTED;
+import static com.giraone.kafka.pipeline.service.LatencyBreakdown.Mark.RECEIVED;
+import static com.giraone.kafka.pipeline.service.LatencyBreakdown.Mark.SENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyBreakdownTest {
+
+    @Test
+    void partsOfAPipe() {
+
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(enabled(), new SimpleMeterRegistry(), 0L);
+        latencyBreakdown.reached(RECEIVED, "a", 3, 100L, 1_000L);
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 3, 100L, 1_100L);
+        latencyBreakdown.reached(PROCESSED, "a", 3, 100L, 1_300L);
+        latencyBreakdown.reached(SENT, "a", 3, 100L, 1_600L);
+        latencyBreakdown.reached(ACKNOWLEDGED, "a", 3, 100L, 2_000L);
+
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.QUEUE)).isEqualTo(100.0);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.PROCESS)).isEqualTo(200.0);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.SEND)).isEqualTo(300.0);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.ACKNOWLEDGE)).isEqualTo(400.0);
+    }
+
+    @Test
+    void acknowledgeOfAConsumerStartsWhenProcessed() {
+
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(enabled(), new SimpleMeterRegistry(), 0L);
+        latencyBreakdown.reached(RECEIVED, "b", 0, 7L, 1_000L);
+        latencyBreakdown.reached(PROCESSED, "b", 0, 7L, 1_500L);
+        latencyBreakdown.reached(ACKNOWLEDGED, "b", 0, 7L, 1_750L);
+
+        assertThat(latencyBreakdown.timer(LatencyBreakdown.Part.PROCESS).count()).isZero();
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.ACKNOWLEDGE)).isEqualTo(250.0);
+    }
+
+    @Test
+    void overwrittenSlotsAreNotMeasured() {
+
+        MetricsProperties metricsProperties = enabled();
+        metricsProperties.setBreakdownRingSize(4);
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(metricsProperties, new SimpleMeterRegistry(), 0L);
+        latencyBreakdown.reached(RECEIVED, "a", 20, 1L, 1_000L);
+        // same slot (1 + 4) in a partition beyond the initial number of partitions
+        latencyBreakdown.reached(RECEIVED, "a", 20, 5L, 1_100L);
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 20, 1L, 1_200L);
+        assertThat(latencyBreakdown.timer(LatencyBreakdown.Part.QUEUE).count()).isZero();
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 20, 5L, 1_300L);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.QUEUE)).isEqualTo(200.0);
+    }
+
+    @Test
+    void topicsDoNotShareRings() {
+
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(enabled(), new SimpleMeterRegistry(), 0L);
+        latencyBreakdown.reached(RECEIVED, "a", 0, 7L, 1_000L);
+        // same partition and offset in a retry topic
+        latencyBreakdown.reached(RECEIVED, "a-retry-1", 0, 7L, 1_500L);
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 0, 7L, 1_600L);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.QUEUE)).isEqualTo(600.0);
+    }
+
+    @Test
+    void resolvedTopicRingsAreUsedByTheMarks() {
+
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(enabled(), new SimpleMeterRegistry(), 0L);
+        LatencyBreakdown.TopicRings topicRings = latencyBreakdown.topicRings("a");
+        assertThat(latencyBreakdown.topicRings("a")).isSameAs(topicRings);
+        latencyBreakdown.reached(RECEIVED, topicRings, 2, 7L, 1_000L);
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 2, 7L, 1_300L);
+        assertThat(totalNanos(latencyBreakdown, LatencyBreakdown.Part.QUEUE)).isEqualTo(300.0);
+    }
+
+    @Test
+    void disabledByDefault() {
+
+        LatencyBreakdown latencyBreakdown = new LatencyBreakdown(new MetricsProperties(), new SimpleMeterRegistry(), 0L);
+        assertThat(latencyBreakdown.isEnabled()).isFalse();
+        latencyBreakdown.reached(RECEIVED, "a", 0, 7L, 1_000L);
+        latencyBreakdown.reached(PROCESS_STARTED, "a", 0, 7L, 1_600L);
+        assertThat(latencyBreakdown.timer(LatencyBreakdown.Part.QUEUE).count()).isZero();
+    }
+
+    @Test
+    void ringSizeIsAPowerOfTwo() {
+
+        assertThat(LatencyBreakdown.ringSize(0)).isEqualTo(1);
+        assertThat(LatencyBreakdown.ringSize(4096)).isEqualTo(4096);
+        assertThat(LatencyBreakdown.ringSize(5000)).isEqualTo(8192);
+    }
+
+    private static MetricsProperties enabled() {
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setBreakdownEnabled(true);
+        return metricsProperties;
+    }
+
+    private static double totalNanos(LatencyBreakdown latencyBreakdown, LatencyBreakdown.Part part) {
+        return latencyBreakdown.timer(part).totalTime(TimeUnit.NANOSECONDS);
+    }
+}
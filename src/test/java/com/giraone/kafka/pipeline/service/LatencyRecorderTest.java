@@ -0,0 +1,46 @@
+package com.giraone.kafka.pipeline.service;
+
+import com.giraone.kafka.pipeline.config.properties.MetricsProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyRecorderTest {
+
+    @Test
+    void recordPerStageAndPartition() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MetricsProperties(), registry);
+
+        latencyRecorder.record(LatencyRecorder.Stage.RECEIVE, 3, 1000L, 1010L);
+        latencyRecorder.record(LatencyRecorder.Stage.RECEIVE, 3, 1000L, 1030L);
+        latencyRecorder.record(LatencyRecorder.Stage.COMMIT, 40, 1000L, 1100L);
+        // without creation time nothing is recorded
+        latencyRecorder.record(LatencyRecorder.Stage.COMMIT, 40, -1L, 1100L);
+
+        Timer receive = registry.get("pipeline.latency").tag("stage", "receive").tag("partition", "3").timer();
+        assertThat(receive.count()).isEqualTo(2);
+        assertThat(receive.max(TimeUnit.MILLISECONDS)).isEqualTo(30.0);
+        Timer commit = registry.get("pipeline.latency").tag("stage", "commit").tag("partition", "40").timer();
+        assertThat(commit.count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordWithoutPartitionTag() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setLatencyPerPartition(false);
+        LatencyRecorder latencyRecorder = new LatencyRecorder(metricsProperties, registry);
+
+        latencyRecorder.record(LatencyRecorder.Stage.SEND, 1, 1000L, 1010L);
+        latencyRecorder.record(LatencyRecorder.Stage.SEND, 2, 1000L, 1010L);
+
+        assertThat(registry.get("pipeline.latency").tag("stage", "send").timer().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,131 @@
+package com.giraone.kafka.pipeline.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineStateTest {
+
+    @Test
+    void offsetsAndInFlight() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 1, 10L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 1, 11L, 1001L);
+        pipelineState.reached(LatencyBreakdown.Mark.PROCESSED, "a1", 1, 10L, 1002L);
+        pipelineState.reached(LatencyBreakdown.Mark.SENT, "a1", 1, 10L, 1003L);
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1", 1, 10L, 1004L);
+
+        List<PipelineState.PartitionState> partitions = pipelineState.getPartitions(1005L);
+        assertThat(partitions).hasSize(1);
+        PipelineState.PartitionState state = partitions.get(0);
+        assertThat(state.getTopic()).isEqualTo("a1");
+        assertThat(state.getPartition()).isEqualTo(1);
+        assertThat(state.getLastReceivedOffset()).isEqualTo(11L);
+        assertThat(state.getLastProcessedOffset()).isEqualTo(10L);
+        assertThat(state.getLastSentOffset()).isEqualTo(10L);
+        assertThat(state.getLastCommittedOffset()).isEqualTo(10L);
+        assertThat(state.getLastCommitMillis()).isEqualTo(1004L);
+        assertThat(state.getInFlight()).isEqualTo(1L);
+        assertThat(pipelineState.getInFlight()).isEqualTo(1L);
+    }
+
+    @Test
+    void partitionsAreKeyedByTopicAndPartition() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 0, 10L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1-retry-1", 0, 20L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1-retry-1", 0, 20L, 1001L);
+
+        List<PipelineState.PartitionState> partitions = pipelineState.getPartitions(1002L);
+        assertThat(partitions)
+            .extracting(PipelineState.PartitionState::getTopic)
+            .containsExactly("a1", "a1-retry-1");
+        assertThat(partitions.get(0).getLastReceivedOffset()).isEqualTo(10L);
+        assertThat(partitions.get(0).getInFlight()).isEqualTo(1L);
+        assertThat(partitions.get(1).getLastCommittedOffset()).isEqualTo(20L);
+        assertThat(partitions.get(1).getInFlight()).isZero();
+    }
+
+    @Test
+    void nacknowledgedRecordsAreNoLongerInFlight() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 0, 10L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 0, 11L, 1000L);
+        pipelineState.nacknowledged("a1", 0);
+        assertThat(pipelineState.getInFlight()).isEqualTo(1L);
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1", 0, 11L, 1001L);
+        assertThat(pipelineState.getInFlight()).isZero();
+        // a negative acknowledgement of an unknown partition is ignored
+        pipelineState.nacknowledged("a1", 1);
+        assertThat(pipelineState.getPartitions(1002L)).hasSize(1);
+    }
+
+    @Test
+    void clearDropsAllPartitions() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 0, 10L, 1000L);
+        pipelineState.clear();
+        assertThat(pipelineState.getPartitions(1001L)).isEmpty();
+        assertThat(pipelineState.getInFlight()).isZero();
+        // a record, that was received before, does not add the partition again
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1", 0, 10L, 1002L);
+        assertThat(pipelineState.getPartitions(1003L)).isEmpty();
+    }
+
+    @Test
+    void resolvedTopicStateIsKeptOnClear() {
+
+        PipelineState pipelineState = new PipelineState();
+        PipelineState.TopicState topicState = pipelineState.topicState("a1");
+        assertThat(pipelineState.topicState("a1")).isSameAs(topicState);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, topicState, 2, 10L, 1000L);
+        pipelineState.clear();
+        // the partitions are assigned again after the restart of the main loop
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, topicState, 2, 11L, 1001L);
+        pipelineState.nacknowledged(topicState, 2);
+
+        assertThat(pipelineState.getPartitions(1002L)).singleElement().satisfies(state -> {
+            assertThat(state.getTopic()).isEqualTo("a1");
+            assertThat(state.getLastReceivedOffset()).isEqualTo(11L);
+            assertThat(state.getInFlight()).isZero();
+        });
+    }
+
+    @Test
+    void idlePartitionsWithoutRecordsInFlightAreDropped() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 0, 10L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 1, 10L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1", 1, 10L, 1001L);
+
+        long idle = 1000L + PipelineState.IDLE_MILLIS;
+        assertThat(pipelineState.getPartitions(idle - 1L)).hasSize(2);
+        // partition 0 is kept, because its record is still in flight
+        assertThat(pipelineState.getPartitions(idle))
+            .extracting(PipelineState.PartitionState::getPartition)
+            .containsExactly(0);
+    }
+
+    @Test
+    void partitionsAreGrownAndOrdered() {
+
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 40, 0L, 1000L);
+        pipelineState.reached(LatencyBreakdown.Mark.RECEIVED, "a1", 3, 0L, 1000L);
+        // a commit without a receive (e.g. after a rebalance) does not list the partition
+        pipelineState.reached(LatencyBreakdown.Mark.ACKNOWLEDGED, "a1", 7, 0L, 1000L);
+
+        assertThat(pipelineState.getPartitions(1001L))
+            .extracting(PipelineState.PartitionState::getPartition)
+            .containsExactly(3, 40);
+        assertThat(pipelineState.getPartitions(1001L).get(0).getLastCommitMillis()).isZero();
+        assertThat(pipelineState.getPartitions(1001L).get(0).getLastCommittedOffset()).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,77 @@
+package com.giraone.kafka.pipeline.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageMetricsTest {
+
+    @Test
+    void demandIsRequestedMinusDelivered() {
+
+        StageMetrics stageMetrics = new StageMetrics("process", "all", new SimpleMeterRegistry());
+        StageMetrics.Probe probe1 = stageMetrics.new Probe();
+        StageMetrics.Probe probe2 = stageMetrics.new Probe();
+        probe1.requested(3, 1_000L);
+        probe2.requested(2, 1_000L);
+        assertThat(stageMetrics.getDemand()).isEqualTo(5L);
+        probe1.delivered(2_000L);
+        probe2.delivered(2_000L);
+        assertThat(stageMetrics.getDemand()).isEqualTo(3L);
+        probe1.finished();
+        assertThat(stageMetrics.getDemand()).isEqualTo(1L);
+    }
+
+    @Test
+    void unboundedDemandIsNotCounted() {
+
+        StageMetrics stageMetrics = new StageMetrics("commit", "all", new SimpleMeterRegistry());
+        StageMetrics.Probe probe = stageMetrics.new Probe();
+        probe.requested(10, 1_000L);
+        probe.requested(Long.MAX_VALUE, 1_000L);
+        assertThat(stageMetrics.getDemand()).isZero();
+        probe.delivered(2_000L);
+        probe.finished();
+        assertThat(stageMetrics.getDemand()).isZero();
+    }
+
+    @Test
+    void waitIsMeasuredFromRequestToOnNext() {
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StageMetrics stageMetrics = new StageMetrics("send", "0", registry);
+        StageMetrics.Probe probe = stageMetrics.new Probe();
+        probe.requested(2, 1_000L);
+        probe.delivered(1_500L);
+        probe.delivered(2_000L);
+        // no outstanding demand - the stage is not waiting
+        probe.requested(1, 5_000L);
+        probe.delivered(5_100L);
+
+        Timer timer = registry.find("pipeline.stage.wait").tag("stage", "send").tag("partition", "0").timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(3L);
+        assertThat(timer.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(1_100.0);
+    }
+
+    @Test
+    void instrumentedFluxLeavesNoDemand() {
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StageMetrics stageMetrics = new StageMetrics("receive", "all", registry);
+        Long count = Flux.range(0, 100)
+            .transform(stageMetrics::instrument)
+            .limitRate(10)
+            .count()
+            .block();
+        assertThat(count).isEqualTo(100L);
+        assertThat(stageMetrics.getDemand()).isZero();
+        assertThat(registry.find("pipeline.stage.wait").timer().count()).isEqualTo(100L);
+    }
+}
@@ -0,0 +1,59 @@
+package com.giraone.kafka.pipeline.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void burstThenFixedRate() {
+
+        // 10 permits per 100ms = one permit per 10ms
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(10, Duration.ofMillis(100));
+        long now = System.nanoTime() + 1000 * MS;
+        // the burst of 10 permits is granted without waiting
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.reserve(now)).isZero();
+        }
+        // the next permits have to wait 10ms, 20ms, ...
+        assertThat(rateLimiter.reserve(now)).isEqualTo(10 * MS);
+        assertThat(rateLimiter.reserve(now)).isEqualTo(20 * MS);
+        // after a long pause the full burst is available again
+        now += 1000 * MS;
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.reserve(now)).isZero();
+        }
+        assertThat(rateLimiter.reserve(now)).isEqualTo(10 * MS);
+    }
+
+    @Test
+    void disabled() {
+
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(0, Duration.ofSeconds(1));
+        assertThat(rateLimiter.isEnabled()).isFalse();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(rateLimiter.reserve()).isZero();
+        }
+    }
+
+    @Test
+    void reserveSeveralPermitsLikeSingleReservations() {
+
+        TokenBucketRateLimiter batched = new TokenBucketRateLimiter(10, Duration.ofMillis(100));
+        TokenBucketRateLimiter single = new TokenBucketRateLimiter(10, Duration.ofMillis(100));
+        long now = System.nanoTime() + 1000 * MS;
+        long singleWait = 0L;
+        for (int i = 0; i < 15; i++) {
+            singleWait = single.reserve(now);
+        }
+        // the batch waits for its last permit
+        assertThat(batched.reserve(15, now)).isEqualTo(singleWait).isEqualTo(50 * MS);
+        assertThat(batched.reserve(1, now)).isEqualTo(single.reserve(now));
+        assertThat(batched.reserve(0, now)).isZero();
+    }
+}
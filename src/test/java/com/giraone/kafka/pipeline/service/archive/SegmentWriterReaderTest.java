@@ -0,0 +1,226 @@
+package com.giraone.kafka.pipeline.service.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentWriterReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendAndRead() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64)) {
+            segmentWriter.append(10L, 1000L, bytes("key1"), bytes("value1"));
+            segmentWriter.append(11L, 1001L, null, null);
+            segmentWriter.sync();
+        }
+
+        Path logFile = SegmentWriter.logFile(tempDir, 10L);
+        // truncated to the written size
+        assertThat(Files.size(logFile)).isLessThan(1024L);
+        try (SegmentReader segmentReader = new SegmentReader(logFile)) {
+            ArchivedRecord archivedRecord = segmentReader.next();
+            assertThat(archivedRecord.offset()).isEqualTo(10L);
+            assertThat(archivedRecord.timestamp()).isEqualTo(1000L);
+            assertThat(string(archivedRecord.key())).isEqualTo("key1");
+            assertThat(string(archivedRecord.value())).isEqualTo("value1");
+
+            archivedRecord = segmentReader.next();
+            assertThat(archivedRecord.offset()).isEqualTo(11L);
+            assertThat(archivedRecord.key()).isNull();
+            assertThat(archivedRecord.value()).isNull();
+            assertThat(segmentReader.next()).isNull();
+        }
+    }
+
+    @Test
+    void segmentsAreRolled() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64)) {
+            for (long offset = 0; offset < 100; offset++) {
+                segmentWriter.append(offset, offset, bytes(Long.toString(offset)), bytes("value-" + offset));
+            }
+            assertThat(segmentWriter.getSegments()).isGreaterThan(1L);
+        }
+
+        List<Path> logFiles;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            logFiles = files.filter(file -> file.toString().endsWith(SegmentWriter.LOG_SUFFIX)).sorted().toList();
+        }
+        assertThat(logFiles).hasSizeGreaterThan(1);
+        long expectedOffset = 0;
+        for (Path logFile : logFiles) {
+            assertThat(Files.size(logFile)).isLessThanOrEqualTo(1024L);
+            try (SegmentReader segmentReader = new SegmentReader(logFile)) {
+                ArchivedRecord archivedRecord;
+                while ((archivedRecord = segmentReader.next()) != null) {
+                    assertThat(archivedRecord.offset()).isEqualTo(expectedOffset);
+                    assertThat(string(archivedRecord.value())).isEqualTo("value-" + expectedOffset);
+                    expectedOffset++;
+                }
+            }
+        }
+        assertThat(expectedOffset).isEqualTo(100L);
+    }
+
+    @Test
+    void seekUsesSparseIndex() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 64 * 1024, 256)) {
+            // offsets with gaps, as after compaction
+            for (long offset = 0; offset < 2000; offset += 2) {
+                segmentWriter.append(offset, offset, null, bytes("value-" + offset));
+            }
+        }
+
+        try (SegmentReader segmentReader = new SegmentReader(SegmentWriter.logFile(tempDir, 0L))) {
+            assertThat(segmentReader.indexEntries()).isGreaterThan(1);
+            segmentReader.seek(1000L);
+            assertThat(segmentReader.next().offset()).isEqualTo(1000L);
+            // an offset in a gap is positioned on the next record
+            segmentReader.seek(1501L);
+            assertThat(segmentReader.next().offset()).isEqualTo(1502L);
+            segmentReader.seek(0L);
+            assertThat(segmentReader.next().offset()).isEqualTo(0L);
+            segmentReader.seek(5000L);
+            assertThat(segmentReader.next()).isNull();
+        }
+    }
+
+    @Test
+    void unclosedSegmentEndsAtZeroLength() throws IOException {
+
+        SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64);
+        segmentWriter.append(0L, 0L, bytes("key"), bytes("value"));
+        segmentWriter.sync();
+        // not closed - the rest of the segment is zero filled
+        try (SegmentReader segmentReader = new SegmentReader(SegmentWriter.logFile(tempDir, 0L))) {
+            assertThat(segmentReader.next().offset()).isEqualTo(0L);
+            assertThat(segmentReader.next()).isNull();
+        }
+        segmentWriter.close();
+    }
+
+    @Test
+    void redeliveredOffsetsAreSkipped() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64)) {
+            assertThat(segmentWriter.append(0L, 0L, null, bytes("value-0"))).isTrue();
+            assertThat(segmentWriter.append(1L, 1L, null, bytes("value-1"))).isTrue();
+            // redelivered after a restart
+            assertThat(segmentWriter.append(0L, 0L, null, bytes("value-0"))).isFalse();
+            assertThat(segmentWriter.append(1L, 1L, null, bytes("value-1"))).isFalse();
+            assertThat(segmentWriter.append(2L, 2L, null, bytes("value-2"))).isTrue();
+            assertThat(segmentWriter.getLastOffset()).isEqualTo(2L);
+        }
+
+        try (SegmentReader segmentReader = new SegmentReader(SegmentWriter.logFile(tempDir, 0L))) {
+            for (long offset = 0; offset < 3; offset++) {
+                assertThat(segmentReader.next().offset()).isEqualTo(offset);
+            }
+            assertThat(segmentReader.next()).isNull();
+            segmentReader.seek(1L);
+            assertThat(segmentReader.next().offset()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    void lastOffsetIsRecoveredOnRestart() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 16)) {
+            for (long offset = 0; offset < 3; offset++) {
+                segmentWriter.append(offset, offset, null, bytes("value-" + offset));
+            }
+        }
+        Path logFile = SegmentWriter.logFile(tempDir, 0L);
+        Path indexFile = SegmentWriter.indexFile(logFile);
+        long logSize = Files.size(logFile);
+        long indexSize = Files.size(indexFile);
+        // crash while writing offset 3: a torn record, an index entry pointing to it and the zero filled rest
+        ByteBuffer torn = ByteBuffer.allocate(256);
+        torn.putInt(100).putLong(3L).putLong(3L).putInt(-1).putInt(7).put(bytes("val"));
+        Files.write(logFile, torn.array(), StandardOpenOption.APPEND);
+        Files.write(indexFile, ByteBuffer.allocate(SegmentWriter.INDEX_ENTRY_SIZE).putLong(3L).putInt((int) logSize).array(),
+            StandardOpenOption.APPEND);
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 16)) {
+            assertThat(segmentWriter.getLastOffset()).isEqualTo(2L);
+            assertThat(Files.size(logFile)).isEqualTo(logSize);
+            assertThat(Files.size(indexFile)).isEqualTo(indexSize);
+            // redelivered after the restart
+            assertThat(segmentWriter.append(2L, 2L, null, bytes("value-2"))).isFalse();
+            assertThat(segmentWriter.append(3L, 3L, null, bytes("value-3"))).isTrue();
+        }
+
+        try (SegmentReader segmentReader = new SegmentReader(logFile)) {
+            for (long offset = 0; offset < 3; offset++) {
+                assertThat(segmentReader.next().offset()).isEqualTo(offset);
+            }
+            assertThat(segmentReader.next()).isNull();
+        }
+        try (SegmentReader segmentReader = new SegmentReader(SegmentWriter.logFile(tempDir, 3L))) {
+            assertThat(string(segmentReader.next().value())).isEqualTo("value-3");
+            assertThat(segmentReader.next()).isNull();
+        }
+    }
+
+    @Test
+    void segmentWithoutCompleteRecordIsDeletedOnRestart() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64)) {
+            segmentWriter.append(5L, 5L, null, bytes("value-5"));
+        }
+        // crash after the next segment was created, but before its first record was written
+        Path emptyLogFile = SegmentWriter.logFile(tempDir, 6L);
+        Files.write(emptyLogFile, new byte[1024]);
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 1024, 64)) {
+            assertThat(segmentWriter.getLastOffset()).isEqualTo(5L);
+            assertThat(emptyLogFile).doesNotExist();
+        }
+    }
+
+    @Test
+    void recordLargerThanSegmentIsRejected() throws IOException {
+
+        try (SegmentWriter segmentWriter = new SegmentWriter(tempDir, 128, 64)) {
+            assertThatThrownBy(() -> segmentWriter.append(0L, 0L, null, new byte[200])).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void archiveHasOneDirectoryPerPartition() throws IOException {
+
+        try (SegmentArchive segmentArchive = new SegmentArchive(tempDir, 1024, 64)) {
+            segmentArchive.append("b1", 0, 5L, 0L, null, bytes("p0"));
+            segmentArchive.append("b1", 1, 7L, 0L, null, bytes("p1"));
+            assertThat(segmentArchive.append("b1", 1, 7L, 0L, null, bytes("p1"))).isFalse();
+            segmentArchive.sync();
+            assertThat(segmentArchive.getRecords()).isEqualTo(2L);
+            assertThat(SegmentWriter.logFile(segmentArchive.partitionDirectory("b1", 0), 5L)).exists();
+            assertThat(SegmentWriter.logFile(segmentArchive.partitionDirectory("b1", 1), 7L)).exists();
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer byteBuffer) {
+        return StandardCharsets.UTF_8.decode(byteBuffer.duplicate()).toString();
+    }
+}
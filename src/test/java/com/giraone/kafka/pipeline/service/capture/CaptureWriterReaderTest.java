@@ -0,0 +1,113 @@
+package com.giraone.kafka.pipeline.service.capture;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaptureWriterReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeAndRead() throws IOException {
+
+        Path file = tempDir.resolve("test.kcap");
+        try (CaptureWriter captureWriter = new CaptureWriter(file, 64)) {
+            captureWriter.write(1000L, bytes("key1"), bytes("value1"),
+                List.of(new RecordHeader("h1", bytes("v1")), new RecordHeader("h2", null)));
+            captureWriter.write(1001L, null, null, Collections.emptyList());
+            // larger than the write buffer
+            captureWriter.write(1002L, bytes("key3"), bytes("x".repeat(1000)), Collections.emptyList());
+            assertThat(captureWriter.getRecords()).isEqualTo(3L);
+        }
+
+        try (CaptureReader captureReader = new CaptureReader(file)) {
+            CaptureRecord captureRecord = captureReader.next();
+            assertThat(captureRecord.timestamp()).isEqualTo(1000L);
+            assertThat(captureRecord.keyAsString()).isEqualTo("key1");
+            assertThat(string(captureRecord.value())).isEqualTo("value1");
+            assertThat(captureRecord.headers()).hasSize(2);
+            assertThat(captureRecord.headers().get(0).key()).isEqualTo("h1");
+            assertThat(captureRecord.headers().get(0).value()).isEqualTo(bytes("v1"));
+            assertThat(captureRecord.headers().get(1).key()).isEqualTo("h2");
+            assertThat(captureRecord.headers().get(1).value()).isNull();
+
+            captureRecord = captureReader.next();
+            assertThat(captureRecord.timestamp()).isEqualTo(1001L);
+            assertThat(captureRecord.key()).isNull();
+            assertThat(captureRecord.value()).isNull();
+            assertThat(captureRecord.headers()).isEmpty();
+
+            captureRecord = captureReader.next();
+            assertThat(string(captureRecord.value())).isEqualTo("x".repeat(1000));
+            assertThat(captureReader.next()).isNull();
+        }
+    }
+
+    @Test
+    void readRegionByRegion() throws IOException {
+
+        Path file = tempDir.resolve("regions.kcap");
+        try (CaptureWriter captureWriter = new CaptureWriter(file, 1024)) {
+            for (int i = 0; i < 1000; i++) {
+                captureWriter.write(i, bytes(Integer.toString(i)), bytes("value-" + i), List.of(new RecordHeader("h", bytes("v" + i))));
+            }
+        }
+        // regions of 100 bytes hold only a few records
+        try (CaptureReader captureReader = new CaptureReader(file, 100L)) {
+            for (int i = 0; i < 1000; i++) {
+                CaptureRecord captureRecord = captureReader.next();
+                assertThat(captureRecord.timestamp()).isEqualTo(i);
+                assertThat(captureRecord.keyAsString()).isEqualTo(Integer.toString(i));
+                assertThat(string(captureRecord.value())).isEqualTo("value-" + i);
+                Header header = captureRecord.headers().get(0);
+                assertThat(header.value()).isEqualTo(bytes("v" + i));
+            }
+            assertThat(captureReader.next()).isNull();
+        }
+    }
+
+    @Test
+    void truncatedFileIsDetected() throws IOException {
+
+        Path file = tempDir.resolve("truncated.kcap");
+        try (CaptureWriter captureWriter = new CaptureWriter(file, 1024)) {
+            captureWriter.write(1L, bytes("key"), bytes("value"), Collections.emptyList());
+        }
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 3));
+        try (CaptureReader captureReader = new CaptureReader(file)) {
+            assertThatThrownBy(captureReader::next).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+
+        Path file = tempDir.resolve("other.txt");
+        Files.writeString(file, "no capture file");
+        assertThatThrownBy(() -> new CaptureReader(file)).isInstanceOf(IOException.class);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer byteBuffer) {
+        return StandardCharsets.UTF_8.decode(byteBuffer.duplicate()).toString();
+    }
+}
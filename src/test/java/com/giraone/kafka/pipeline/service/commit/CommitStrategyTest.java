@@ -0,0 +1,88 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitStrategyTest {
+
+    @Test
+    void perRecord() {
+
+        StepVerifier.create(new PerRecordCommitStrategy().commitGroups(Flux.range(1, 3)))
+            .expectNext(List.of(1), List.of(2), List.of(3))
+            .verifyComplete();
+    }
+
+    @Test
+    void everyN() {
+
+        StepVerifier.create(new EveryNCommitStrategy(2, Duration.ofSeconds(1)).commitGroups(Flux.range(1, 5)))
+            .expectNext(List.of(1, 2), List.of(3, 4), List.of(5))
+            .verifyComplete();
+    }
+
+    @Test
+    void everyNCommitsTailAfterMaxWait() {
+
+        StepVerifier.withVirtualTime(() -> new EveryNCommitStrategy(10, Duration.ofSeconds(1))
+                .commitGroups(Flux.just(1, 2).concatWith(Flux.never())))
+            .thenAwait(Duration.ofSeconds(1))
+            .expectNext(List.of(1, 2))
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void everyT() {
+
+        StepVerifier.withVirtualTime(() -> new EveryTCommitStrategy(Duration.ofMillis(250))
+                .commitGroups(Flux.interval(Duration.ofMillis(100)).take(4)))
+            .thenAwait(Duration.ofMillis(250))
+            .expectNext(List.of(0L, 1L))
+            .thenAwait(Duration.ofMillis(250))
+            .expectNext(List.of(2L, 3L))
+            .verifyComplete();
+    }
+
+    @Test
+    void adaptivePeriodFollowsCommitLatency() {
+
+        AtomicReference<Double> latencyNanos = new AtomicReference<>(Double.NaN);
+        AdaptiveCommitStrategy commitStrategy = new AdaptiveCommitStrategy(Duration.ofMillis(10), Duration.ofSeconds(1), 20.0,
+            latencyNanos::get);
+        // no commit measured yet
+        assertThat(commitStrategy.nextPeriod()).isEqualTo(Duration.ofMillis(10));
+        // 5ms commit latency => 100ms period
+        latencyNanos.set((double) Duration.ofMillis(5).toNanos());
+        assertThat(commitStrategy.nextPeriod()).isEqualTo(Duration.ofMillis(100));
+        // no commit within the sample window - the last period is kept
+        latencyNanos.set(Double.NaN);
+        assertThat(commitStrategy.nextPeriod()).isEqualTo(Duration.ofMillis(100));
+        // limited by the maximum
+        latencyNanos.set((double) Duration.ofSeconds(1).toNanos());
+        assertThat(commitStrategy.nextPeriod()).isEqualTo(Duration.ofSeconds(1));
+        // limited by the minimum
+        latencyNanos.set(0.0);
+        assertThat(commitStrategy.nextPeriod()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void adaptiveGroupsByPeriod() {
+
+        StepVerifier.withVirtualTime(() -> new AdaptiveCommitStrategy(Duration.ofMillis(250), Duration.ofSeconds(1), 20.0,
+                () -> Double.NaN)
+                .commitGroups(Flux.interval(Duration.ofMillis(100)).take(3)))
+            .thenAwait(Duration.ofMillis(250))
+            .expectNext(List.of(0L, 1L))
+            .thenAwait(Duration.ofMillis(250))
+            .expectNext(List.of(2L))
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,94 @@
+package com.giraone.kafka.pipeline.service.commit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffsetTrackerTest {
+
+    @Test
+    void releaseOnlyContiguousRange() {
+
+        OffsetTracker<String> offsetTracker = new OffsetTracker<>();
+        List<String> released = new ArrayList<>();
+        offsetTracker.track(10L, "a");
+        offsetTracker.track(11L, "b");
+        offsetTracker.track(13L, "c"); // gap in offsets
+        offsetTracker.track(14L, "d");
+
+        assertThat(offsetTracker.complete(13L, "c", released::add)).isZero();
+        assertThat(offsetTracker.complete(11L, "b", released::add)).isZero();
+        assertThat(released).isEmpty();
+        assertThat(offsetTracker.complete(10L, "a", released::add)).isEqualTo(3);
+        assertThat(released).containsExactly("a", "b", "c");
+        assertThat(offsetTracker.lastReleasedOffset()).isEqualTo(13L);
+        assertThat(offsetTracker.inFlight()).isEqualTo(1);
+        assertThat(offsetTracker.complete(14L, "d", released::add)).isEqualTo(1);
+        assertThat(offsetTracker.inFlight()).isZero();
+    }
+
+    @Test
+    void releaseInOffsetOrderWhenCompletedInRandomOrder() {
+
+        OffsetTracker<Long> offsetTracker = new OffsetTracker<>(64); // forces the ring to grow
+        List<Long> offsets = new ArrayList<>();
+        for (long offset = 0; offset < 1000; offset++) {
+            final Long item = offset;
+            offsetTracker.track(offset, item);
+            offsets.add(item);
+        }
+        List<Long> completionOrder = new ArrayList<>(offsets);
+        Collections.shuffle(completionOrder, new Random(42));
+        List<Long> released = new ArrayList<>();
+        completionOrder.forEach(offset -> offsetTracker.complete(offset, offset, released::add));
+
+        assertThat(released).isEqualTo(offsets);
+        assertThat(offsetTracker.inFlight()).isZero();
+    }
+
+    @Test
+    void resetWhenOffsetsStartAgain() {
+
+        OffsetTracker<String> offsetTracker = new OffsetTracker<>();
+        offsetTracker.track(5L, "a");
+        offsetTracker.track(6L, "b");
+        // partition re-assigned, records are delivered again
+        offsetTracker.track(5L, "a");
+
+        assertThat(offsetTracker.inFlight()).isEqualTo(1);
+        List<String> released = new ArrayList<>();
+        assertThat(offsetTracker.complete(5L, "a", released::add)).isEqualTo(1);
+        assertThat(offsetTracker.complete(6L, "b", released::add)).isZero();
+        assertThat(released).containsExactly("a");
+    }
+
+    @Test
+    void resetClearsTheWatermarkAndIgnoresStaleCompletions() {
+
+        OffsetTracker<String> offsetTracker = new OffsetTracker<>();
+        String first = new String("a");
+        String redelivered = new String("a");
+        offsetTracker.track(4L, "z");
+        offsetTracker.track(5L, first);
+        List<String> released = new ArrayList<>();
+        assertThat(offsetTracker.complete(4L, "z", released::add)).isEqualTo(1);
+        assertThat(offsetTracker.lastReleasedOffset()).isEqualTo(4L);
+
+        // auto offset reset to a lower offset - the record at offset 5 is delivered again
+        offsetTracker.track(3L, "y");
+        assertThat(offsetTracker.lastReleasedOffset()).isEqualTo(-1L);
+        offsetTracker.track(5L, redelivered);
+
+        // late completion of the record from before the reset
+        assertThat(offsetTracker.complete(5L, first, released::add)).isZero();
+        assertThat(offsetTracker.complete(3L, "y", released::add)).isEqualTo(1);
+        assertThat(offsetTracker.inFlight()).isEqualTo(1);
+        assertThat(offsetTracker.complete(5L, redelivered, released::add)).isEqualTo(1);
+        assertThat(released).containsExactly("z", "y", redelivered);
+    }
+}
@@ -0,0 +1,68 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.service.archive.ArchivedRecord;
+import com.giraone.kafka.pipeline.service.archive.SegmentReader;
+import com.giraone.kafka.pipeline.service.archive.SegmentWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import reactor.util.function.Tuples;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:consume/test-consume-archive.properties") // must be properties - not yaml
+class ConsumeArchiveServiceIntTest extends ConsumerServiceIntTest {
+
+    @Test
+    void committedEventsAreArchivedWithIncreasingOffsets() throws Exception {
+
+        for (int i = 0; i < 10; i++) {
+            send(applicationProperties.getTopicB(), Tuples.of(String.format("%d", i), "archive-" + i));
+        }
+        // We have to wait some time. We use at least the producer request timeout.
+        Thread.sleep(REQUEST_TIMEOUT_MILLIS);
+        final List<String> archived = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            archived.addAll(readPartition(Path.of(applicationProperties.getArchive().getDirectory(),
+                applicationProperties.getTopicB() + "-" + partition)));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(archived).contains("archive-" + i);
+        }
+    }
+
+    // The synced segments can be read, while they are still written. Their unused rest is zero filled.
+    private static List<String> readPartition(Path partitionDirectory) throws IOException {
+        final List<String> ret = new ArrayList<>();
+        if (!Files.isDirectory(partitionDirectory)) {
+            return ret;
+        }
+        final List<Path> logFiles;
+        try (Stream<Path> files = Files.list(partitionDirectory)) {
+            logFiles = files.filter(file -> file.toString().endsWith(SegmentWriter.LOG_SUFFIX)).sorted().toList();
+        }
+        long lastOffset = -1L;
+        for (Path logFile : logFiles) {
+            try (SegmentReader segmentReader = new SegmentReader(logFile)) {
+                ArchivedRecord archivedRecord;
+                while ((archivedRecord = segmentReader.next()) != null) {
+                    assertThat(archivedRecord.offset()).isGreaterThan(lastOffset);
+                    lastOffset = archivedRecord.offset();
+                    ret.add(StandardCharsets.UTF_8.decode(archivedRecord.value()).toString());
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,48 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.service.capture.CaptureReader;
+import com.giraone.kafka.pipeline.service.capture.CaptureRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import reactor.util.function.Tuples;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:consume/test-consume-capture.properties") // must be properties - not yaml
+class ConsumeCaptureServiceIntTest extends ConsumerServiceIntTest {
+
+    @Test
+    void committedEventsAreInTheCaptureFile() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            send(applicationProperties.getTopicB(), Tuples.of("capture-" + i, String.format("%04d", i)));
+        }
+        // We have to wait some time. We use at least the producer request timeout.
+        Thread.sleep(REQUEST_TIMEOUT_MILLIS);
+        // the committed batches are flushed, so the file can be read, while it is still written
+        final List<String> captured = new ArrayList<>();
+        try (CaptureReader captureReader = new CaptureReader(Path.of(applicationProperties.getCapture().getFile()))) {
+            CaptureRecord captureRecord;
+            while ((captureRecord = captureReader.next()) != null) {
+                captured.add(captureRecord.keyAsString() + "=" + string(captureRecord.value()));
+            }
+        }
+        assertThat(captured).contains("capture-0=0000", "capture-1=0001", "capture-2=0002", "capture-3=0003", "capture-4=0004");
+    }
+
+    private static String string(ByteBuffer byteBuffer) {
+        final byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(locations = "classpath:consume/test-consume-r2dbc.properties") // must be properties - not yaml
+class ConsumeR2dbcServiceIntTest extends ConsumerServiceIntTest {
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Test
+    void receivedEventsAreInserted() throws Exception {
+
+        long before = countRows();
+        for (int i = 0; i < 10; i++) {
+            send(applicationProperties.getTopicB(), Tuples.of(String.format("%d", i), String.format("%04d", i)));
+        }
+        // We have to wait some time. We use at least the producer request timeout.
+        Thread.sleep(REQUEST_TIMEOUT_MILLIS);
+        assertThat(countRows() - before).isEqualTo(10);
+    }
+
+    private long countRows() {
+        return Mono.usingWhen(connectionFactory.create(),
+            connection -> Flux.from(connection.createStatement("SELECT COUNT(*) FROM " + applicationProperties.getR2dbc().getTable()).execute())
+                .flatMap(result -> result.map((row, rowMetadata) -> row.get(0, Long.class)))
+                .next(),
+            Connection::close).block();
+    }
+}
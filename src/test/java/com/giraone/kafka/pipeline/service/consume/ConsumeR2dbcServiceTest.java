@@ -0,0 +1,85 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ConsumeR2dbcServiceTest {
+
+    @Test
+    void insertStatementWithIndexedBindMarkers() {
+
+        assertThat(ConsumeR2dbcService.insertStatement("t", 2, "$")).isEqualTo(
+            "INSERT INTO t (kafka_topic, kafka_partition, kafka_offset, record_timestamp, record_key, record_value) VALUES "
+                + "($1, $2, $3, $4, $5, $6), ($7, $8, $9, $10, $11, $12)");
+    }
+
+    @Test
+    void insertStatementWithAnonymousBindMarkers() {
+
+        assertThat(ConsumeR2dbcService.insertStatement("t", 1, "?")).isEqualTo(
+            "INSERT INTO t (kafka_topic, kafka_partition, kafka_offset, record_timestamp, record_key, record_value) VALUES "
+                + "(?, ?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * A record of a retry topic must be inserted - with the position, where it was consumed first.
+     */
+    @Test
+    void retriedRecordIsInsertedWithItsOriginalPosition() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetryTopics().setEnabled(true);
+        Statement statement = mock(Statement.class);
+        doReturn(statement).when(statement).bind(anyInt(), any());
+        doReturn(statement).when(statement).bindNull(anyInt(), any());
+        Result result = mock(Result.class);
+        doReturn(Mono.just(1L)).when(result).getRowsUpdated();
+        doReturn(Mono.just(result)).when(statement).execute();
+        Connection connection = mock(Connection.class);
+        doReturn(statement).when(connection).createStatement(anyString());
+        doReturn(Mono.empty()).when(connection).close();
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        doReturn(Mono.just(connection)).when(connectionFactory).create();
+        CounterService counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+        ConsumeR2dbcService service = new ConsumeR2dbcService(applicationProperties, null, counterService,
+            new RetryTopicRouter(applicationProperties, counterService, null), connectionFactory);
+
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>(applicationProperties.getTopicB() + "-retry-1s", 0, 5L, "key", "value");
+        consumerRecord.headers().add(RetryTopicRouter.HEADER_ORIGINAL_TOPIC, applicationProperties.getTopicB().getBytes(StandardCharsets.UTF_8));
+        consumerRecord.headers().add(RetryTopicRouter.HEADER_ORIGINAL_PARTITION, "3".getBytes(StandardCharsets.UTF_8));
+        consumerRecord.headers().add(RetryTopicRouter.HEADER_ORIGINAL_OFFSET, "42".getBytes(StandardCharsets.UTF_8));
+        List<Throwable> nacknowledged = new CopyOnWriteArrayList<>();
+        KafkaReceiverRecord<String, String> receiverRecord = KafkaReceiverRecord.create(consumerRecord, () -> {
+        }, nacknowledged::add);
+
+        assertThat(service.processRetry(receiverRecord).block()).isSameAs(receiverRecord);
+        verify(statement).bind(0, applicationProperties.getTopicB());
+        verify(statement).bind(1, 3);
+        verify(statement).bind(2, 42L);
+        verify(statement).bind(4, "key");
+        verify(statement).bind(5, "value");
+        assertThat(nacknowledged).isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package com.giraone.kafka.pipeline.service.consume;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RailMetricsTest {
+
+    @Test
+    void queueDepth() {
+
+        RailMetrics railMetrics = new RailMetrics(1);
+        railMetrics.enqueued();
+        railMetrics.enqueued();
+        assertThat(railMetrics.getQueueDepth()).isEqualTo(2);
+        railMetrics.busyStart(2_000L);
+        assertThat(railMetrics.getQueueDepth()).isEqualTo(1);
+        railMetrics.busyEnd(3_000L);
+        assertThat(railMetrics.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void busyTimeOfFinishedBusyPeriods() {
+
+        RailMetrics railMetrics = new RailMetrics(0);
+        railMetrics.enqueued();
+        railMetrics.busyStart(1_000L);
+        railMetrics.busyEnd(1_250L);
+        railMetrics.enqueued();
+        railMetrics.busyStart(1_500L);
+        railMetrics.busyEnd(1_750L);
+        assertThat(railMetrics.busyNanos(2_000L)).isEqualTo(500L);
+        // reading has no side effects
+        assertThat(railMetrics.busyNanos(3_000L)).isEqualTo(500L);
+    }
+
+    @Test
+    void busyTimeIncludesTheCurrentBusyPeriod() {
+
+        RailMetrics railMetrics = new RailMetrics(0);
+        railMetrics.enqueued();
+        railMetrics.busyStart(1_500L);
+        assertThat(railMetrics.busyNanos(2_000L)).isEqualTo(500L);
+        // the busy period ended before the read, that included it
+        railMetrics.busyEnd(1_800L);
+        assertThat(railMetrics.busyNanos(2_100L)).isEqualTo(500L);
+        railMetrics.enqueued();
+        railMetrics.busyStart(2_500L);
+        assertThat(railMetrics.busyNanos(3_000L)).isEqualTo(800L);
+    }
+}
@@ -0,0 +1,95 @@
+package com.giraone.kafka.pipeline.service.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DedupCacheTest {
+
+    @Test
+    void addAndContains() {
+
+        DedupCache dedupCache = new DedupCache(100, 0L);
+        long hash = DedupCache.hash("key", "value");
+        assertThat(dedupCache.contains(hash, 0L)).isFalse();
+        assertThat(dedupCache.add(hash, 0L)).isTrue();
+        assertThat(dedupCache.add(hash, 0L)).isFalse();
+        assertThat(dedupCache.contains(hash, 0L)).isTrue();
+        assertThat(dedupCache.contains(DedupCache.hash("key", "other"), 0L)).isFalse();
+        assertThat(dedupCache.contains(DedupCache.hash(null, "value"), 0L)).isFalse();
+        assertThat(dedupCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void hashOfBytes() {
+
+        assertThat(DedupCache.hash("key", "value".getBytes(StandardCharsets.UTF_8)))
+            .isEqualTo(DedupCache.hash("key", "value".getBytes(StandardCharsets.UTF_8)))
+            .isNotEqualTo(DedupCache.hash("key", "other".getBytes(StandardCharsets.UTF_8)))
+            .isNotEqualTo(DedupCache.hash(null, "value".getBytes(StandardCharsets.UTF_8)));
+        assertThat(DedupCache.hash("key", (byte[]) null)).isNotEqualTo(DedupCache.hash("key", new byte[0]));
+    }
+
+    @Test
+    void evictOldestWhenFull() {
+
+        DedupCache dedupCache = new DedupCache(64, 0L);
+        for (long i = 1; i <= 100; i++) {
+            dedupCache.add(i, 0L);
+        }
+        assertThat(dedupCache.size()).isEqualTo(64);
+        for (long i = 1; i <= 36; i++) {
+            assertThat(dedupCache.contains(i, 0L)).isFalse();
+        }
+        for (long i = 37; i <= 100; i++) {
+            assertThat(dedupCache.contains(i, 0L)).isTrue();
+        }
+    }
+
+    @Test
+    void evictByAge() {
+
+        DedupCache dedupCache = new DedupCache(100, 1000L);
+        dedupCache.add(1L, 0L);
+        dedupCache.add(2L, 500L);
+        assertThat(dedupCache.contains(1L, 1000L)).isTrue();
+        assertThat(dedupCache.contains(1L, 1001L)).isFalse();
+        assertThat(dedupCache.contains(2L, 1001L)).isTrue();
+        assertThat(dedupCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void sameContentAsSetUnderRandomLoad() {
+
+        // compare with a window of the last entries kept in a HashSet - backward shift deletion must not lose entries
+        int maxEntries = 1000;
+        DedupCache dedupCache = new DedupCache(maxEntries, 0L);
+        long[] window = new long[maxEntries];
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42L);
+        int count = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long hash = 1 + random.nextInt(5000); // 0 is mapped to 1
+            if (expected.contains(hash)) {
+                assertThat(dedupCache.add(hash, 0L)).isFalse();
+                continue;
+            }
+            assertThat(dedupCache.add(hash, 0L)).isTrue();
+            if (count >= maxEntries) {
+                expected.remove(window[count % maxEntries]);
+            }
+            window[count % maxEntries] = hash;
+            expected.add(hash);
+            count++;
+        }
+        assertThat(dedupCache.size()).isEqualTo(expected.size());
+        for (long hash = 1; hash <= 5000; hash++) {
+            assertThat(dedupCache.contains(hash, 0L)).isEqualTo(expected.contains(hash));
+        }
+    }
+}
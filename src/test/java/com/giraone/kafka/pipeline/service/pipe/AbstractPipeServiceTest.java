@@ -0,0 +1,87 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.dedup.DedupCache;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class AbstractPipeServiceTest {
+
+    /**
+     * A duplicate must not be acknowledged before a record received before it - with the COMPACT acknowledgement
+     * queue its acknowledgement would commit the offset of the earlier record, that is still in process.
+     */
+    @Test
+    void duplicateIsCommittedAfterAnEarlierSlowRecord() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getProcessing().getDedup().setEnabled(true);
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        KafkaReceiverRecord<String, String> slow = receiverRecord(applicationProperties, 10L, "slow", acknowledged);
+        KafkaReceiverRecord<String, String> duplicate = receiverRecord(applicationProperties, 11L, "sent before", acknowledged);
+        AbstractPipeService<String> service = pipeService(applicationProperties, Flux.just(slow, duplicate));
+        service.monitor();
+        service.dedupCache.add(DedupCache.hash(duplicate.key(), duplicate.value()), System.currentTimeMillis());
+
+        assertThat(service.receive().collectList().block()).containsExactly(slow);
+        assertThat(acknowledged).isEmpty();
+
+        service.commitSent(Flux.just(senderResult(slow))).blockLast();
+        assertThat(acknowledged).containsExactly(10L, 11L);
+    }
+
+    @Test
+    void recordsPassWithoutDedup() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        KafkaReceiverRecord<String, String> first = receiverRecord(applicationProperties, 10L, "value", acknowledged);
+        KafkaReceiverRecord<String, String> second = receiverRecord(applicationProperties, 11L, "value", acknowledged);
+        AbstractPipeService<String> service = pipeService(applicationProperties, Flux.just(first, second));
+        service.monitor();
+
+        assertThat(service.receive().collectList().block()).containsExactly(first, second);
+        service.commitSent(Flux.just(senderResult(first), senderResult(second))).blockLast();
+        assertThat(acknowledged).containsExactly(10L, 11L);
+    }
+
+    private static AbstractPipeService<String> pipeService(ApplicationProperties applicationProperties,
+                                                   Flux<KafkaReceiverRecord<String, String>> received) {
+        CounterService counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+        @SuppressWarnings("unchecked") KafkaReceiver<String, String> kafkaReceiver = mock(KafkaReceiver.class);
+        doReturn(received).when(kafkaReceiver).receiveManual(any());
+        @SuppressWarnings("unchecked") KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        KafkaSenderPool<String> kafkaSenderPool = new KafkaSenderPool<>(List.of(kafkaSender), topic -> 1);
+        return new PipeReceiveSendService(applicationProperties, counterService, kafkaSenderPool, kafkaReceiver, null);
+    }
+
+    private static KafkaReceiverRecord<String, String> receiverRecord(ApplicationProperties applicationProperties,
+                                                                      long offset, String value, List<Long> acknowledged) {
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>(applicationProperties.getTopicA(), 0, offset, "key", value);
+        return KafkaReceiverRecord.create(consumerRecord, () -> acknowledged.add(offset), throwable -> {
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaSenderResult<KafkaReceiverRecord<String, String>> senderResult(KafkaReceiverRecord<String, String> receiverRecord) {
+        KafkaSenderResult<KafkaReceiverRecord<String, String>> ret = mock(KafkaSenderResult.class);
+        doReturn(receiverRecord).when(ret).correlationMetadata();
+        return ret;
+    }
+}
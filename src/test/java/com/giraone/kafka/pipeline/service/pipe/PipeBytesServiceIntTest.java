@@ -0,0 +1,9 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:pipe/test-pipe-bytes.properties") // must be properties - not yaml
+public class PipeBytesServiceIntTest extends PipeServiceIntTest {
+}
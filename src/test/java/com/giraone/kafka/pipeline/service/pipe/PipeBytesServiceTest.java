@@ -0,0 +1,93 @@
+package com.giraone.kafka.pipeline.service.pipe;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.service.CounterService;
+import com.giraone.kafka.pipeline.service.retry.RetryTopicRouter;
+import com.giraone.kafka.pipeline.service.sender.KafkaSenderPool;
+import io.atleon.kafka.KafkaReceiver;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class PipeBytesServiceTest {
+
+    @Test
+    void toUpperCaseAsciiSameAsString() {
+
+        byte[] value = new byte[128];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        String expected = new String(value, StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        PipeBytesService.toUpperCaseAscii(value, 0, value.length);
+        assertThat(new String(value, StandardCharsets.US_ASCII)).isEqualTo(expected);
+    }
+
+    @Test
+    void toUpperCaseAsciiKeepsUtf8() {
+
+        byte[] value = "grüße, 10€".getBytes(StandardCharsets.UTF_8);
+        PipeBytesService.toUpperCaseAscii(value, 0, value.length);
+        assertThat(new String(value, StandardCharsets.UTF_8)).isEqualTo("GRüßE, 10€");
+    }
+
+    @Test
+    void toUpperCaseAsciiRange() {
+
+        byte[] value = "abcdef".getBytes(StandardCharsets.US_ASCII);
+        PipeBytesService.toUpperCaseAscii(value, 2, 3);
+        assertThat(new String(value, StandardCharsets.US_ASCII)).isEqualTo("abCDEf");
+    }
+
+    @Test
+    void failedRecordIsRoutedWithTheBytesSender() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetryTopics().setEnabled(true);
+        applicationProperties.getProcessing().setFailurePercentage(100.0F);
+        applicationProperties.getProcessing().setWaitTime(Duration.ZERO);
+        CounterService counterService = new CounterService(applicationProperties, new SimpleMeterRegistry());
+        @SuppressWarnings("unchecked") KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        @SuppressWarnings("unchecked") KafkaSender<String, byte[]> bytesKafkaSender = mock(KafkaSender.class);
+        doReturn(Mono.just(mock(KafkaSenderResult.class))).when(bytesKafkaSender).send(any(KafkaSenderRecord.class));
+        List<Long> acknowledged = new CopyOnWriteArrayList<>();
+        byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+        ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>(applicationProperties.getTopicA(), 0, 10L, "key", value);
+        KafkaReceiverRecord<String, byte[]> receiverRecord = KafkaReceiverRecord.create(consumerRecord,
+            () -> acknowledged.add(10L), throwable -> {
+            });
+        @SuppressWarnings("unchecked") KafkaReceiver<String, byte[]> bytesKafkaReceiver = mock(KafkaReceiver.class);
+        doReturn(Flux.just(receiverRecord)).when(bytesKafkaReceiver).receiveManual(any());
+        PipeBytesService service = new PipeBytesService(applicationProperties, counterService,
+            new KafkaSenderPool<>(List.of(bytesKafkaSender), topic -> 1), bytesKafkaReceiver,
+            new RetryTopicRouter(applicationProperties, counterService, kafkaSender));
+
+        // nothing is left to be sent
+        assertThat(service.receive().concatMap(service::process).collectList().block()).isEmpty();
+
+        @SuppressWarnings("unchecked") ArgumentCaptor<KafkaSenderRecord<String, byte[], ?>> routed = ArgumentCaptor.forClass(KafkaSenderRecord.class);
+        verify(bytesKafkaSender).send(routed.capture());
+        assertThat(routed.getValue().topic()).startsWith(applicationProperties.getTopicA() + "-retry-");
+        assertThat(routed.getValue().value()).isSameAs(value);
+        assertThat(acknowledged).containsExactly(10L);
+    }
+}
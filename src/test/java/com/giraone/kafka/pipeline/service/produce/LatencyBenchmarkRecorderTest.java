@@ -0,0 +1,73 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyBenchmarkRecorderTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long MINUTE = 60_000L * MS;
+
+    @Test
+    void stallIsIncludedInCorrectedLatency() {
+
+        LatencyBenchmarkRecorder recorder = new LatencyBenchmarkRecorder(MINUTE, 3, null, 0L);
+        // 100 events intended every 1ms, the sender stalls for 100ms before the first send,
+        // then all events are sent at once and acknowledged after 1ms
+        for (int i = 0; i < 100; i++) {
+            recorder.record(i * MS, 100 * MS, 101 * MS);
+        }
+        recorder.writeInterval();
+        Histogram corrected = recorder.getCorrectedTotal();
+        Histogram uncorrected = recorder.getUncorrectedTotal();
+        assertThat(uncorrected.getTotalCount()).isEqualTo(100L);
+        assertThat(uncorrected.getMaxValue()).isBetween(MS - MS / 100, MS + MS / 100);
+        assertThat(corrected.getTotalCount()).isEqualTo(100L);
+        assertThat(corrected.getMaxValue()).isBetween(101 * MS - MS, 101 * MS + MS);
+        assertThat(corrected.getValueAtPercentile(50.0)).isGreaterThan(40 * MS);
+    }
+
+    @Test
+    void latenciesAboveHighestTrackableAreClamped() {
+
+        LatencyBenchmarkRecorder recorder = new LatencyBenchmarkRecorder(MINUTE, 3, null, 0L);
+        recorder.record(0L, 0L, 2 * MINUTE);
+        recorder.record(10L, 10L, 0L);
+        recorder.writeInterval();
+        assertThat(recorder.getCorrectedTotal().getTotalCount()).isEqualTo(2L);
+        assertThat(recorder.getCorrectedTotal().getMaxValue()).isGreaterThanOrEqualTo(MINUTE);
+    }
+
+    @Test
+    void intervalsAreWrittenToTheLog(@TempDir Path tempDir) throws FileNotFoundException {
+
+        final String histogramLog = tempDir.resolve("test.hlog").toString();
+        LatencyBenchmarkRecorder recorder = new LatencyBenchmarkRecorder(MINUTE, 3, histogramLog, System.currentTimeMillis());
+        recorder.record(0L, 0L, MS);
+        recorder.writeInterval();
+        recorder.record(0L, MS, 2 * MS);
+        recorder.close();
+        assertThat(recorder.summary()).startsWith("corrected: count=2 p50=");
+
+        HistogramLogReader reader = new HistogramLogReader(histogramLog);
+        Set<String> tags = new HashSet<>();
+        int intervals = 0;
+        Histogram histogram;
+        while ((histogram = (Histogram) reader.nextIntervalHistogram()) != null) {
+            tags.add(histogram.getTag());
+            intervals++;
+        }
+        reader.close();
+        assertThat(intervals).isEqualTo(4);
+        assertThat(tags).containsExactlyInAnyOrder(LatencyBenchmarkRecorder.TAG_CORRECTED, LatencyBenchmarkRecorder.TAG_UNCORRECTED);
+    }
+}
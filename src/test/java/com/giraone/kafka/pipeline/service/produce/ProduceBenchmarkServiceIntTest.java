@@ -0,0 +1,9 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:produce/test-produce-benchmark.properties") // must be properties - not yaml
+class ProduceBenchmarkServiceIntTest extends ProduceServiceIntTest {
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:produce/test-produce-multi-sender.properties") // must be properties - not yaml
+class ProduceMultiSenderServiceIntTest extends ProduceServiceIntTest {
+}
\ No newline at end of file
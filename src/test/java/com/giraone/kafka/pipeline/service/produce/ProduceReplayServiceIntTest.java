@@ -0,0 +1,59 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.capture.CaptureWriter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:produce/test-produce-replay.properties") // must be properties - not yaml
+class ProduceReplayServiceIntTest extends ProduceServiceIntTest {
+
+    private static final int NUMBER_OF_RECORDS = 3;
+
+    /**
+     * The capture file must exist, before the context (and so the replay) is started.
+     */
+    @DynamicPropertySource
+    static void captureFile(DynamicPropertyRegistry registry) throws IOException {
+        final Path file = Path.of("target/produce-replay-test.kcap");
+        Files.createDirectories(file.getParent());
+        try (CaptureWriter captureWriter = new CaptureWriter(file, 1024)) {
+            for (int i = 0; i < NUMBER_OF_RECORDS; i++) {
+                captureWriter.write(1000L + i, bytes("replay-" + i), bytes("value-" + i),
+                    List.of(new RecordHeader("h", bytes("v" + i))));
+            }
+        }
+        registry.add("application.capture.file", file::toString);
+    }
+
+    @Test
+    void capturedRecordsAreReplayed() {
+
+        waitForMessages(consumer, NUMBER_OF_RECORDS);
+        List<ConsumerRecord<String, String>> records = getAllConsumerRecords();
+        assertThat(records).extracting(ConsumerRecord::key).containsExactlyInAnyOrder("replay-0", "replay-1", "replay-2");
+        records.forEach(consumerRecord -> {
+            assertThat(consumerRecord.value()).isEqualTo("value-" + consumerRecord.key().substring("replay-".length()));
+            assertThat(consumerRecord.headers().lastHeader("h")).isNotNull();
+            assertThat(consumerRecord.headers().lastHeader(AbstractService.HEADER_CREATED_AT)).isNotNull();
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -25,7 +25,7 @@ abstract class ProduceServiceIntTest extends AbstractKafkaIntTest {
     @Autowired
     CounterService counterService;
 
-    private Consumer<String, String> consumer;
+    protected Consumer<String, String> consumer;
 
     @BeforeEach
     protected void setUp() {
@@ -0,0 +1,95 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RatePacerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void constantRateEmitsManyEventsPerTick() {
+
+        RatePacer ratePacer = new RatePacer(constant(100_000.0), Duration.ofMillis(10));
+        assertThat(ratePacer.onTick(0L)).isZero();
+        assertThat(ratePacer.onTick(10 * MS)).isEqualTo(1_000);
+        assertThat(ratePacer.onTick(20 * MS)).isEqualTo(1_000);
+    }
+
+    @Test
+    void lateTicksDoNotDrift() {
+
+        RatePacer ratePacer = new RatePacer(constant(1_000.0), Duration.ofMillis(10));
+        long total = ratePacer.onTick(0L);
+        // irregular ticks, including a long pause
+        long[] ticks = {13, 21, 30, 95, 101, 250, 1000};
+        for (long tick : ticks) {
+            total += ratePacer.onTick(tick * MS);
+        }
+        assertThat(total).isEqualTo(1_000L);
+    }
+
+    @Test
+    void fractionsAreCarriedOver() {
+
+        // 50 events per second and 1ms ticks: one event every 20 ticks
+        RatePacer ratePacer = new RatePacer(constant(50.0), Duration.ofMillis(1));
+        long total = 0L;
+        for (long tick = 0; tick <= 1000; tick++) {
+            total += ratePacer.onTick(tick * MS);
+        }
+        assertThat(total).isEqualTo(50L);
+        assertThat(ratePacer.getTargetRate()).isEqualTo(50.0);
+    }
+
+    @Test
+    void achievedRateIsReported() {
+
+        RatePacer ratePacer = new RatePacer(constant(100.0), Duration.ofMillis(10));
+        ratePacer.onTick(0L);
+        for (int i = 0; i < 80; i++) {
+            ratePacer.recordSent();
+        }
+        ratePacer.onTick(1000 * MS);
+        assertThat(ratePacer.getAchievedRate()).isCloseTo(80.0, within(0.001));
+    }
+
+    @Test
+    void rampProfile() {
+
+        RateProfile rateProfile = new RateProfile(RateProfile.Type.RAMP, 100.0, 1100.0, Duration.ofSeconds(10), 1, Duration.ZERO);
+        assertThat(rateProfile.rateAt(0L)).isEqualTo(100.0);
+        assertThat(rateProfile.rateAt(5_000 * MS)).isEqualTo(600.0);
+        assertThat(rateProfile.rateAt(10_000 * MS)).isEqualTo(1100.0);
+        assertThat(rateProfile.rateAt(60_000 * MS)).isEqualTo(1100.0);
+    }
+
+    @Test
+    void stepProfile() {
+
+        RateProfile rateProfile = new RateProfile(RateProfile.Type.STEP, 100.0, 500.0, Duration.ofSeconds(10), 4, Duration.ZERO);
+        assertThat(rateProfile.rateAt(9_999 * MS)).isEqualTo(100.0);
+        assertThat(rateProfile.rateAt(10_000 * MS)).isEqualTo(200.0);
+        assertThat(rateProfile.rateAt(35_000 * MS)).isEqualTo(400.0);
+        assertThat(rateProfile.rateAt(40_000 * MS)).isEqualTo(500.0);
+        assertThat(rateProfile.rateAt(90_000 * MS)).isEqualTo(500.0);
+    }
+
+    @Test
+    void spikeProfile() {
+
+        RateProfile rateProfile = new RateProfile(RateProfile.Type.SPIKE, 100.0, 5000.0, Duration.ofSeconds(60), 1, Duration.ofSeconds(5));
+        assertThat(rateProfile.rateAt(0L)).isEqualTo(5000.0);
+        assertThat(rateProfile.rateAt(4_999 * MS)).isEqualTo(5000.0);
+        assertThat(rateProfile.rateAt(5_000 * MS)).isEqualTo(100.0);
+        assertThat(rateProfile.rateAt(61_000 * MS)).isEqualTo(5000.0);
+    }
+
+    private static RateProfile constant(double rate) {
+        return new RateProfile(RateProfile.Type.CONSTANT, rate, 0.0, Duration.ofSeconds(1), 1, Duration.ZERO);
+    }
+}
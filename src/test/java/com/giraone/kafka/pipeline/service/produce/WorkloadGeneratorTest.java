@@ -0,0 +1,98 @@
+package com.giraone.kafka.pipeline.service.produce;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class WorkloadGeneratorTest {
+
+    private static final int EVENTS = 100_000;
+
+    @Test
+    void fixedSizeAndCompressibility() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.FIXED,
+            100, 0, 0, 0.0, 10, 0.25, 0, 0.0, 1L);
+        String value = workloadGenerator.nextValue();
+        assertThat(value).hasSize(100);
+        assertThat(value.substring(0, 25)).isEqualTo("x".repeat(25));
+        assertThat(value.substring(25)).matches("[a-z]{75}");
+        assertThat(workloadGenerator.poolBytes()).isEqualTo(1000L);
+    }
+
+    @Test
+    void uniformSizeWithinBounds() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.UNIFORM,
+            0, 10, 20, 0.0, 1000, 0.0, 0, 0.0, 1L);
+        Set<Integer> sizes = new HashSet<>();
+        for (int i = 0; i < EVENTS; i++) {
+            sizes.add(workloadGenerator.nextValue().length());
+        }
+        assertThat(sizes).hasSize(11).allMatch(size -> size >= 10 && size <= 20);
+    }
+
+    @Test
+    void lognormalSizeHasGivenMean() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.LOGNORMAL,
+            1000, 1, 1_000_000, 0.5, 1, 0.0, 0, 0.0, 1L);
+        long sum = 0L;
+        for (int i = 0; i < EVENTS; i++) {
+            sum += workloadGenerator.nextSize(WorkloadGenerator.SizeDistribution.LOGNORMAL, 1000, 1, 1_000_000, 0.5);
+        }
+        assertThat(sum / (double) EVENTS).isCloseTo(1000.0, within(20.0));
+    }
+
+    @Test
+    void sequentialKeys() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.FIXED,
+            10, 0, 0, 0.0, 1, 0.0, 0, 0.0, 1L);
+        assertThat(workloadGenerator.nextKey(42L)).isEqualTo("42");
+        assertThat(workloadGenerator.nextKey(43L)).isEqualTo("43");
+    }
+
+    @Test
+    void uniformKeysHaveGivenCardinality() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.FIXED,
+            10, 0, 0, 0.0, 1, 0.0, 50, 0.0, 1L);
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < EVENTS; i++) {
+            keys.add(workloadGenerator.nextKey(i));
+        }
+        assertThat(keys).hasSize(50);
+    }
+
+    @Test
+    void zipfKeysAreSkewed() {
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(WorkloadGenerator.SizeDistribution.FIXED,
+            10, 0, 0, 0.0, 1, 0.0, 100, 1.0, 1L);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < EVENTS; i++) {
+            counts.merge(workloadGenerator.nextKey(i), 1, Integer::sum);
+        }
+        // P(k) = 1/k / H(100) with H(100) = 5.187
+        assertThat(counts.get("1") / (double) EVENTS).isCloseTo(0.193, within(0.01));
+        assertThat(counts.get("2") / (double) EVENTS).isCloseTo(0.096, within(0.01));
+        assertThat(counts.get("1")).isGreaterThan(10 * counts.getOrDefault("100", 0));
+    }
+
+    @Test
+    void zipfCdf() {
+
+        double[] cdf = WorkloadGenerator.zipfCdf(3, 1.0);
+        // 1, 1/2, 1/3 normalized by 11/6
+        assertThat(cdf[0]).isCloseTo(6.0 / 11.0, within(1e-9));
+        assertThat(cdf[1]).isCloseTo(9.0 / 11.0, within(1e-9));
+        assertThat(cdf[2]).isEqualTo(1.0);
+    }
+}
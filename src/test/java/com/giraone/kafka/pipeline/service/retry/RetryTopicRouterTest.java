@@ -0,0 +1,183 @@
+package com.giraone.kafka.pipeline.service.retry;
+
+import com.giraone.kafka.pipeline.config.ApplicationProperties;
+import com.giraone.kafka.pipeline.config.properties.RetryProperties;
+import com.giraone.kafka.pipeline.service.AbstractService;
+import com.giraone.kafka.pipeline.service.CounterService;
+import io.atleon.kafka.KafkaReceiverRecord;
+import io.atleon.kafka.KafkaSender;
+import io.atleon.kafka.KafkaSenderRecord;
+import io.atleon.kafka.KafkaSenderResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class RetryTopicRouterTest {
+
+    @Test
+    void exponentialTiers() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setProcessingRetry(new RetryProperties(3, null, Duration.ofSeconds(1)));
+        RetryTopicRouter retryTopicRouter = buildRouter(applicationProperties);
+
+        assertThat(retryTopicRouter.retryTopics("a1")).containsExactly("a1-retry-1s", "a1-retry-2s", "a1-retry-4s");
+        assertThat(retryTopicRouter.dltTopic("a1")).isEqualTo("a1-dlt");
+    }
+
+    @Test
+    void fixedDelaySharesOneTopic() {
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setProcessingRetry(new RetryProperties(5, Duration.ofSeconds(30), null));
+        RetryTopicRouter retryTopicRouter = buildRouter(applicationProperties);
+
+        assertThat(retryTopicRouter.retryTopics("a1")).containsExactly("a1-retry-30s");
+        assertThat(retryTopicRouter.retryTopic("a1", 5)).isEqualTo("a1-retry-30s");
+    }
+
+    @Test
+    void delayLabel() {
+
+        assertThat(RetryTopicRouter.delayLabel(Duration.ofMillis(500))).isEqualTo("500ms");
+        assertThat(RetryTopicRouter.delayLabel(Duration.ofMillis(1500))).isEqualTo("1500ms");
+        assertThat(RetryTopicRouter.delayLabel(Duration.ofSeconds(90))).isEqualTo("90s");
+        assertThat(RetryTopicRouter.delayLabel(Duration.ofMinutes(5))).isEqualTo("5m");
+    }
+
+    @Test
+    void firstFailureIsRoutedToTheFirstTierWithTheOriginalPosition() {
+
+        RetryTopicRouter retryTopicRouter = buildRouter(exponential());
+        ConsumerRecord<String, String> failed = new ConsumerRecord<>("a1", 2, 17L, "key", "value");
+        failed.headers().add(AbstractService.HEADER_CREATED_AT, new byte[Long.BYTES]);
+
+        ProducerRecord<String, String> routed = retryTopicRouter.routedRecord(failed, new IllegalStateException("boom"), 1000L);
+        assertThat(routed.topic()).isEqualTo("a1-retry-1s");
+        assertThat(routed.key()).isEqualTo("key");
+        assertThat(routed.value()).isEqualTo("value");
+        assertThat(header(routed, RetryTopicRouter.HEADER_RETRY_ATTEMPT)).isEqualTo("1");
+        assertThat(header(routed, RetryTopicRouter.HEADER_RETRY_DUE)).isEqualTo("2000");
+        assertThat(header(routed, RetryTopicRouter.HEADER_RETRY_EXCEPTION)).isEqualTo("java.lang.IllegalStateException: boom");
+        assertThat(header(routed, RetryTopicRouter.HEADER_ORIGINAL_TOPIC)).isEqualTo("a1");
+        assertThat(header(routed, RetryTopicRouter.HEADER_ORIGINAL_PARTITION)).isEqualTo("2");
+        assertThat(header(routed, RetryTopicRouter.HEADER_ORIGINAL_OFFSET)).isEqualTo("17");
+        // the other headers are passed through
+        assertThat(routed.headers().lastHeader(AbstractService.HEADER_CREATED_AT)).isNotNull();
+    }
+
+    @Test
+    void attemptsAreCountedFromTheRetryHeaders() {
+
+        RetryTopicRouter retryTopicRouter = buildRouter(exponential());
+        ProducerRecord<String, String> first = retryTopicRouter.routedRecord(
+            new ConsumerRecord<>("a1", 2, 17L, "key", "value"), new IllegalStateException("boom"), 1000L);
+
+        ProducerRecord<String, String> second = retryTopicRouter.routedRecord(
+            consumed(first, 0, 5L), new IllegalStateException("again"), 5000L);
+        assertThat(second.topic()).isEqualTo("a1-retry-2s");
+        assertThat(header(second, RetryTopicRouter.HEADER_RETRY_ATTEMPT)).isEqualTo("2");
+        assertThat(header(second, RetryTopicRouter.HEADER_RETRY_DUE)).isEqualTo("7000");
+        assertThat(header(second, RetryTopicRouter.HEADER_RETRY_EXCEPTION)).isEqualTo("java.lang.IllegalStateException: again");
+        // the retry headers are replaced and the original position is kept
+        assertThat(second.headers().headers(RetryTopicRouter.HEADER_RETRY_ATTEMPT)).hasSize(1);
+        assertThat(second.headers().headers(RetryTopicRouter.HEADER_RETRY_EXCEPTION)).hasSize(1);
+        assertThat(second.headers().headers(RetryTopicRouter.HEADER_ORIGINAL_OFFSET)).hasSize(1);
+        assertThat(header(second, RetryTopicRouter.HEADER_ORIGINAL_TOPIC)).isEqualTo("a1");
+        assertThat(header(second, RetryTopicRouter.HEADER_ORIGINAL_OFFSET)).isEqualTo("17");
+    }
+
+    @Test
+    void exhaustedAttemptsAreRoutedToTheDeadLetterTopic() {
+
+        RetryTopicRouter retryTopicRouter = buildRouter(exponential());
+        ProducerRecord<String, String> routed = retryTopicRouter.routedRecord(
+            new ConsumerRecord<>("a1", 2, 17L, "key", "value"), new IllegalStateException("boom"), 1000L);
+        for (int attempt = 2; attempt <= 3; attempt++) {
+            routed = retryTopicRouter.routedRecord(consumed(routed, 0, attempt), new IllegalStateException("boom"), 1000L);
+        }
+        assertThat(routed.topic()).isEqualTo("a1-retry-4s");
+
+        ProducerRecord<String, String> deadLetter = retryTopicRouter.routedRecord(
+            consumed(routed, 0, 4L), new IllegalStateException("boom"), 1000L);
+        assertThat(deadLetter.topic()).isEqualTo("a1-dlt");
+        assertThat(header(deadLetter, RetryTopicRouter.HEADER_RETRY_ATTEMPT)).isEqualTo("4");
+        assertThat(deadLetter.headers().lastHeader(RetryTopicRouter.HEADER_RETRY_DUE)).isNull();
+        assertThat(header(deadLetter, RetryTopicRouter.HEADER_ORIGINAL_TOPIC)).isEqualTo("a1");
+    }
+
+    @Test
+    void routeSendsAndCounts() {
+
+        ApplicationProperties applicationProperties = exponential();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        @SuppressWarnings("unchecked") KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        doReturn(Mono.just(mock(KafkaSenderResult.class))).when(kafkaSender).send(any(KafkaSenderRecord.class));
+        RetryTopicRouter retryTopicRouter = new RetryTopicRouter(applicationProperties,
+            new CounterService(applicationProperties, registry), kafkaSender);
+
+        retryTopicRouter.route(receiverRecord(new ConsumerRecord<>("a1", 0, 1L, "key", "value")),
+            new IllegalStateException("boom")).block();
+        assertThat(registry.counter("pipeline.retry.routed").count()).isEqualTo(1.0);
+        assertThat(registry.counter("pipeline.retry.dlt").count()).isZero();
+    }
+
+    @Test
+    void routeFailsWhenTheRecordCannotBeSent() {
+
+        ApplicationProperties applicationProperties = exponential();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        @SuppressWarnings("unchecked") KafkaSender<String, String> kafkaSender = mock(KafkaSender.class);
+        doReturn(Mono.error(new IllegalStateException("broker down"))).when(kafkaSender).send(any(KafkaSenderRecord.class));
+        RetryTopicRouter retryTopicRouter = new RetryTopicRouter(applicationProperties,
+            new CounterService(applicationProperties, registry), kafkaSender);
+
+        Mono<Void> routed = retryTopicRouter.route(receiverRecord(new ConsumerRecord<>("a1", 0, 1L, "key", "value")),
+            new IllegalStateException("boom"));
+        assertThatThrownBy(routed::block).hasMessageContaining("broker down");
+        assertThat(registry.counter("pipeline.retry.routed").count()).isZero();
+    }
+
+    private static ApplicationProperties exponential() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.setProcessingRetry(new RetryProperties(3, null, Duration.ofSeconds(1)));
+        return applicationProperties;
+    }
+
+    // the routed record, as it is consumed from the retry topic
+    private static ConsumerRecord<String, String> consumed(ProducerRecord<String, String> routed, int partition, long offset) {
+        ConsumerRecord<String, String> ret = new ConsumerRecord<>(routed.topic(), partition, offset, routed.key(), routed.value());
+        for (Header header : routed.headers()) {
+            ret.headers().add(header);
+        }
+        return ret;
+    }
+
+    private static KafkaReceiverRecord<String, String> receiverRecord(ConsumerRecord<String, String> consumerRecord) {
+        return KafkaReceiverRecord.create(consumerRecord, () -> {
+        }, throwable -> {
+        });
+    }
+
+    private static String header(ProducerRecord<String, String> producerRecord, String key) {
+        return new String(producerRecord.headers().lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+
+    private static RetryTopicRouter buildRouter(ApplicationProperties applicationProperties) {
+        // the sender is only needed to route records
+        return new RetryTopicRouter(applicationProperties,
+            new CounterService(applicationProperties, new SimpleMeterRegistry()), null);
+    }
+}
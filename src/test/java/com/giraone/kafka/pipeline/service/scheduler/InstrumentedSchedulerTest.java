@@ -0,0 +1,119 @@
+package com.giraone.kafka.pipeline.service.scheduler;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InstrumentedSchedulerTest {
+
+    @Test
+    void queuedActiveAndExecuted() throws Exception {
+
+        SchedulerMetrics metrics = new SchedulerMetrics("test", 1, -1);
+        InstrumentedScheduler scheduler = new InstrumentedScheduler(Schedulers.newSingle("test"), metrics);
+        try {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(2);
+            scheduler.schedule(() -> {
+                running.countDown();
+                await(release);
+                done.countDown();
+            });
+            scheduler.schedule(done::countDown);
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(metrics.getActive()).isEqualTo(1);
+            assertThat(metrics.getQueued()).isEqualTo(1);
+            // one thread busy and one task queued is not saturated
+            assertThat(metrics.checkSaturated()).isFalse();
+
+            release.countDown();
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            waitForIdle(metrics);
+            assertThat(metrics.getQueued()).isZero();
+            assertThat(metrics.getExecutionCount()).isEqualTo(2L);
+            assertThat(metrics.getWaitCount()).isEqualTo(2L);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void disposedTasksLeaveTheQueue() throws Exception {
+
+        SchedulerMetrics metrics = new SchedulerMetrics("test", 1, -1);
+        InstrumentedScheduler scheduler = new InstrumentedScheduler(Schedulers.newSingle("test"), metrics);
+        try {
+            Scheduler.Worker worker = scheduler.createWorker();
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            worker.schedule(() -> {
+                running.countDown();
+                await(release);
+            });
+            Disposable queuedTask = worker.schedule(() -> {
+            });
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(metrics.getQueued()).isEqualTo(1);
+            queuedTask.dispose();
+            assertThat(metrics.getQueued()).isZero();
+            release.countDown();
+            worker.dispose();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void rejectedTasksAreCountedAndSaturate() throws Exception {
+
+        SchedulerMetrics metrics = new SchedulerMetrics("test", 1, 1);
+        InstrumentedScheduler scheduler = new InstrumentedScheduler(Schedulers.newBoundedElastic(1, 1, "test"), metrics);
+        try {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            scheduler.schedule(() -> {
+                running.countDown();
+                await(release);
+            });
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            scheduler.schedule(() -> {
+            });
+            assertThatThrownBy(() -> scheduler.schedule(() -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+            assertThat(metrics.getRejected()).isEqualTo(1L);
+            assertThat(metrics.getQueued()).isEqualTo(1);
+            assertThat(metrics.checkSaturated()).isTrue();
+            release.countDown();
+            waitForIdle(metrics);
+            // the rejection is reported to every caller within the rejected window - and not after it
+            assertThat(metrics.checkSaturated()).isTrue();
+            assertThat(metrics.checkSaturated(System.nanoTime() + SchedulerMetrics.DEFAULT_REJECTED_WINDOW.toNanos())).isFalse();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForIdle(SchedulerMetrics metrics) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5_000L;
+        while ((metrics.getActive() > 0 || metrics.getQueued() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+}
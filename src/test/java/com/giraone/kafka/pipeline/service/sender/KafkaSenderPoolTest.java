@@ -0,0 +1,147 @@
+package com.giraone.kafka.pipeline.service.sender;
+
+import io.atleon.kafka.KafkaSender;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KafkaSenderPoolTest {
+
+    private static final int PARTITIONS = 12;
+
+    @Test
+    void partitionIsDeterministicAndInRange() {
+
+        Set<Integer> partitions = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final String key = Integer.toString(i);
+            final int partition = KafkaSenderPool.partition(key, PARTITIONS);
+            assertThat(partition).isBetween(0, PARTITIONS - 1);
+            assertThat(KafkaSenderPool.partition(key, PARTITIONS)).isEqualTo(partition);
+            partitions.add(partition);
+        }
+        assertThat(partitions).hasSize(PARTITIONS);
+    }
+
+    @Test
+    void assignPartitionOfKeyedRecord() {
+
+        KafkaSenderPool<String> kafkaSenderPool = pool(3, topic -> PARTITIONS);
+        kafkaSenderPool.resolvePartitions(List.of("t"));
+        ProducerRecord<String, String> producerRecord = kafkaSenderPool.assignPartition(new ProducerRecord<>("t", "key", "value"));
+        assertThat(producerRecord.partition()).isEqualTo(KafkaSenderPool.partition("key", PARTITIONS));
+        assertThat(producerRecord.key()).isEqualTo("key");
+        assertThat(producerRecord.value()).isEqualTo("value");
+    }
+
+    @Test
+    void recordsAreUnchangedWithoutKeyOrSingleSender() {
+
+        ProducerRecord<String, String> noKey = new ProducerRecord<>("t", null, "value");
+        assertThat(pool(3, topic -> PARTITIONS).assignPartition(noKey)).isSameAs(noKey);
+        ProducerRecord<String, String> keyed = new ProducerRecord<>("t", "key", "value");
+        assertThat(pool(1, topic -> PARTITIONS).assignPartition(keyed)).isSameAs(keyed);
+    }
+
+    @Test
+    void partitionsAreLookedUpOncePerTopic() {
+
+        AtomicInteger lookups = new AtomicInteger();
+        KafkaSenderPool<String> kafkaSenderPool = pool(3, topic -> {
+            lookups.incrementAndGet();
+            return PARTITIONS;
+        });
+        kafkaSenderPool.resolvePartitions(List.of("t"));
+        assertThat(kafkaSenderPool.numberOfPartitions("t")).isEqualTo(PARTITIONS);
+        assertThat(kafkaSenderPool.numberOfPartitions("t")).isEqualTo(PARTITIONS);
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void unknownPartitionsAreSentRoundRobin() {
+
+        KafkaSenderPool<String> kafkaSenderPool = pool(3, topic -> {
+            throw new IllegalStateException("unknown topic");
+        });
+        kafkaSenderPool.resolvePartitions(List.of("t"));
+        ProducerRecord<String, String> keyed = new ProducerRecord<>("t", "key", "value");
+        assertThat(kafkaSenderPool.assignPartition(keyed)).isSameAs(keyed);
+        List<Integer> senderIndexes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            senderIndexes.add(kafkaSenderPool.senderIndex((Integer) null));
+        }
+        assertThat(senderIndexes).containsExactly(0, 1, 2, 0, 1, 2);
+    }
+
+    @Test
+    void failedLookupsAreNotCached() {
+
+        AtomicInteger lookups = new AtomicInteger();
+        KafkaSenderPool<String> kafkaSenderPool = pool(3, topic -> {
+            if (lookups.incrementAndGet() == 1) {
+                throw new IllegalStateException("unknown topic");
+            }
+            return PARTITIONS;
+        });
+        kafkaSenderPool.resolvePartitions(List.of("t"));
+        assertThat(kafkaSenderPool.numberOfPartitions("t")).isZero();
+        kafkaSenderPool.resolvePartitions(List.of("t"));
+        assertThat(kafkaSenderPool.numberOfPartitions("t")).isEqualTo(PARTITIONS);
+    }
+
+    @Test
+    void unknownTopicIsLookedUpInTheBackground() throws InterruptedException {
+
+        CountDownLatch lookupMayFinish = new CountDownLatch(1);
+        KafkaSenderPool<String> kafkaSenderPool = pool(3, topic -> {
+            try {
+                lookupMayFinish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PARTITIONS;
+        });
+        ProducerRecord<String, String> keyed = new ProducerRecord<>("t", "key", "value");
+        // the sending thread is not blocked by the lookup
+        assertThat(kafkaSenderPool.assignPartition(keyed)).isSameAs(keyed);
+        lookupMayFinish.countDown();
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (kafkaSenderPool.numberOfPartitions("t") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertThat(kafkaSenderPool.assignPartition(keyed).partition()).isEqualTo(KafkaSenderPool.partition("key", PARTITIONS));
+    }
+
+    @Test
+    void partitionsAreAffineToSenders() {
+
+        KafkaSenderPool<String> kafkaSenderPool = pool(4, topic -> PARTITIONS);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertThat(kafkaSenderPool.senderIndex(partition)).isEqualTo(partition % 4);
+        }
+    }
+
+    @Test
+    void emptyPoolIsRejected() {
+
+        assertThatThrownBy(() -> new KafkaSenderPool<String>(List.of(), topic -> PARTITIONS))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static KafkaSenderPool<String> pool(int size, ToIntFunction<String> partitionLookup) {
+        // the senders are not used by the routing logic
+        final List<KafkaSender<String, String>> senders = Collections.nCopies(size, null);
+        return new KafkaSenderPool<>(senders, partitionLookup);
+    }
+}
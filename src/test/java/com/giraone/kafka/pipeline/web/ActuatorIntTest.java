@@ -48,4 +48,20 @@ class ActuatorIntTest {
             .expectBody()
             .jsonPath("names").isNotEmpty();
     }
+
+    @DisplayName("Test GET /actuator/pipeline")
+    @Test
+    void pipelineIsAvailable() {
+
+        // act / assert
+        webTestClient.get().uri("/actuator/pipeline")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("mode").isEqualTo("to-be-overwritten-by-concrete-test")
+            .jsonPath("scheduler.type").isNotEmpty()
+            .jsonPath("receiver.paused").isEqualTo(false)
+            .jsonPath("partitions").isArray();
+    }
 }